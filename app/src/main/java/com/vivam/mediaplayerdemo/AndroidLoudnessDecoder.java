@@ -0,0 +1,53 @@
+package com.vivam.mediaplayerdemo;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+/**
+ * {@link LoudnessScanner.Decoder} on top of {@link AndroidPcmDecoder}, which needs
+ * API 16. The decoded audio goes straight from the codec's output buffers into the
+ * meter.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class AndroidLoudnessDecoder implements LoudnessScanner.Decoder {
+
+    private final Context mContext;
+
+    public AndroidLoudnessDecoder(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static boolean isSupported() {
+        return AndroidPcmDecoder.isSupported();
+    }
+
+    @Override
+    public LoudnessMeter decode(MusicBean music) throws IOException {
+        MeterSink sink = new MeterSink();
+        AndroidPcmDecoder.decode(mContext, music.getId(), sink);
+        return sink.mMeter;
+    }
+
+    private static class MeterSink implements AndroidPcmDecoder.Sink {
+
+        LoudnessMeter mMeter;
+
+        @Override
+        public void onFormat(int sampleRate, int channels) {
+            if (mMeter == null || sampleRate != mMeter.getSampleRate()
+                    || channels != mMeter.getChannelCount()) {
+                // the container may be wrong about it, nothing was decoded yet
+                mMeter = new LoudnessMeter(sampleRate, channels);
+            }
+        }
+
+        @Override
+        public void onSamples(ShortBuffer samples) {
+            mMeter.process(samples);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.vivam.mediaplayerdemo;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+
+/**
+ * {@link Player} backed by a {@link MediaPlayer}. Callbacks are delivered on the
+ * looper of the thread that created the instance.
+ */
+public class AndroidMediaPlayer implements Player, MediaPlayer.OnPreparedListener,
+        MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener {
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final MediaPlayer mMediaPlayer;
+    private final StreamProxy mProxy;
+
+    /**
+     * @param proxy serves remote tracks, may be null.
+     */
+    public AndroidMediaPlayer(Context context, Listener listener, StreamProxy proxy) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+        mProxy = proxy;
+        mMediaPlayer = new MediaPlayer();
+        mMediaPlayer.setOnPreparedListener(this);
+        mMediaPlayer.setOnCompletionListener(this);
+        mMediaPlayer.setOnErrorListener(this);
+    }
+
+    public static Factory factory(final Context context, final StreamProxy proxy) {
+        return new Factory() {
+
+            @Override
+            public Player create(Listener listener) {
+                return new AndroidMediaPlayer(context, listener, proxy);
+            }
+        };
+    }
+
+    @Override
+    public void setDataSource(long id) throws IOException {
+        mMediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        String url = mProxy != null ? mProxy.getUrl(id) : null;
+        mMediaPlayer.setDataSource(mContext,
+                url != null ? Uri.parse(url) : MediaUtils.uriWithAppendedId(id));
+    }
+
+    @Override
+    public void prepareAsync() {
+        mMediaPlayer.prepareAsync();
+    }
+
+    @Override
+    public void start() {
+        mMediaPlayer.start();
+    }
+
+    @Override
+    public void pause() {
+        mMediaPlayer.pause();
+    }
+
+    @Override
+    public void seekTo(int msec) {
+        mMediaPlayer.seekTo(msec);
+    }
+
+    @Override
+    public void reset() {
+        // reset() also drops the events still queued for this player, so a
+        // cancelled prepare never reaches onPrepared().
+        mMediaPlayer.reset();
+    }
+
+    @Override
+    public void release() {
+        mMediaPlayer.release();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mMediaPlayer.isPlaying();
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mMediaPlayer.getCurrentPosition();
+    }
+
+    @Override
+    public int getDuration() {
+        return mMediaPlayer.getDuration();
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        mMediaPlayer.setVolume(volume, volume);
+    }
+
+    @Override
+    public boolean setNextPlayer(Player next) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return false;
+        }
+        mMediaPlayer.setNextMediaPlayer(next != null
+                ? ((AndroidMediaPlayer) next).mMediaPlayer : null);
+        return true;
+    }
+
+    @Override
+    public void onPrepared(MediaPlayer mp) {
+        mListener.onPrepared(this);
+    }
+
+    @Override
+    public void onCompletion(MediaPlayer mp) {
+        mListener.onCompletion(this);
+    }
+
+    @Override
+    public boolean onError(MediaPlayer mp, int what, int extra) {
+        mListener.onError(this, what, extra);
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package com.vivam.mediaplayerdemo;
+
+import android.content.Context;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+
+/**
+ * {@link MetadataEnricher.Extractor} on top of {@link MediaMetadataRetriever}. The
+ * sample rate comes from {@link MediaExtractor}, which needs API 16.
+ */
+public class AndroidMetadataExtractor implements MetadataEnricher.Extractor {
+
+    private final Context mContext;
+
+    public AndroidMetadataExtractor(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public TrackMetadata extract(MusicBean music) throws IOException {
+        Uri uri = MediaUtils.uriWithAppendedId(music.getId());
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(mContext, uri);
+            String artist = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
+            String album = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
+            int bitrate = parseInt(
+                    retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE));
+            boolean hasArtwork = retriever.getEmbeddedPicture() != null;
+            return new TrackMetadata(music.getId(), music.getDateModified(), artist, album,
+                    bitrate, readSampleRate(uri), hasArtwork);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("cannot read " + uri, e);
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private int readSampleRate(Uri uri) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return TrackMetadata.UNKNOWN;
+        }
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(mContext, uri, null);
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")
+                        && format.containsKey(MediaFormat.KEY_SAMPLE_RATE)) {
+                    return format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                }
+            }
+        } catch (IOException e) {
+            // the retriever could read it, the sample rate stays unknown
+        } finally {
+            extractor.release();
+        }
+        return TrackMetadata.UNKNOWN;
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) {
+            return TrackMetadata.UNKNOWN;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return TrackMetadata.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.vivam.mediaplayerdemo;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes the first audio track of a file to 16 bit PCM with {@link MediaExtractor}
+ * and {@link MediaCodec}, which need API 16. The decoded audio is handed over in
+ * the codec's own output buffers, nothing is copied or kept.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class AndroidPcmDecoder {
+
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+
+    /** Takes the decoded audio, called on the decoding thread. */
+    public interface Sink {
+
+        /**
+         * The format of the samples that follow. Called before the first samples,
+         * and again if the codec finds the container was wrong about it.
+         */
+        void onFormat(int sampleRate, int channels);
+
+        /**
+         * @param samples interleaved samples, only valid during the call.
+         */
+        void onSamples(ShortBuffer samples);
+    }
+
+    private AndroidPcmDecoder() {
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * Decodes track {@code id} to its end.
+     *
+     * @throws InterruptedIOException if the thread was interrupted.
+     * @throws IOException            if the file cannot be decoded.
+     */
+    public static void decode(Context context, long id, Sink sink) throws IOException {
+        Uri uri = MediaUtils.uriWithAppendedId(id);
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                String mime = trackFormat.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = trackFormat;
+                    break;
+                }
+            }
+            if (format == null) {
+                throw new IOException("no audio track in " + uri);
+            }
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            sink.onFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                    format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            decode(extractor, codec, sink);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("cannot decode " + uri, e);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static void decode(MediaExtractor extractor, MediaCodec codec, Sink sink)
+            throws InterruptedIOException {
+        ByteBuffer[] inputBuffers = codec.getInputBuffers();
+        ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException();
+            }
+            if (!inputDone) {
+                int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                if (index >= 0) {
+                    int size = extractor.readSampleData(inputBuffers[index], 0);
+                    if (size < 0) {
+                        codec.queueInputBuffer(index, 0, 0, 0,
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int index = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+            if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                outputBuffers = codec.getOutputBuffers();
+            } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                MediaFormat format = codec.getOutputFormat();
+                sink.onFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                        format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            } else if (index >= 0) {
+                ByteBuffer output = outputBuffers[index];
+                output.limit(info.offset + info.size).position(info.offset);
+                sink.onSamples(output.order(ByteOrder.nativeOrder()).asShortBuffer());
+                codec.releaseOutputBuffer(index, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
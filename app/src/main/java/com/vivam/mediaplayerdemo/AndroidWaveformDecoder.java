@@ -0,0 +1,42 @@
+package com.vivam.mediaplayerdemo;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+/**
+ * {@link WaveformGenerator.Decoder} on top of {@link AndroidPcmDecoder}, which
+ * needs API 16.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class AndroidWaveformDecoder implements WaveformGenerator.Decoder {
+
+    private final Context mContext;
+
+    public AndroidWaveformDecoder(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static boolean isSupported() {
+        return AndroidPcmDecoder.isSupported();
+    }
+
+    @Override
+    public void decode(MusicBean music, final WaveformBuilder builder) throws IOException {
+        AndroidPcmDecoder.decode(mContext, music.getId(), new AndroidPcmDecoder.Sink() {
+
+            @Override
+            public void onFormat(int sampleRate, int channels) {
+                builder.setChannelCount(channels);
+            }
+
+            @Override
+            public void onSamples(ShortBuffer samples) {
+                builder.process(samples);
+            }
+        });
+    }
+}
@@ -0,0 +1,358 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Artwork by track id with a memory and a disk tier, independent of the bitmap
+ * type {@code B} so it runs on the JVM as well.
+ * <p>
+ * The memory tier is an LRU bounded in bytes. Artwork handed out is reference
+ * counted: once it is evicted and released by everyone it goes to a pool, and the
+ * next decode reuses it instead of allocating. The disk tier holds thumbnails
+ * that are already downscaled and encoded, so only the first load of a track
+ * reads its file. Concurrent loads of the same id share one decode.
+ * <p>
+ * Thread safe.
+ */
+public class ArtworkCache<B> {
+
+    public interface Codec<B> {
+
+        /**
+         * Reads the artwork of the track and returns it downscaled and encoded, called
+         * on the executor.
+         *
+         * @return null if the track has no artwork.
+         */
+        byte[] extract(long id) throws IOException;
+
+        /**
+         * Decodes an encoded thumbnail, called on the executor.
+         *
+         * @param reusable a pooled bitmap to decode into if it fits, may be null.
+         */
+        B decode(byte[] data, B reusable) throws IOException;
+
+        int sizeOf(B artwork);
+    }
+
+    public interface Callback<B> {
+
+        /**
+         * Called on the calling thread for artwork in memory, on the executor
+         * otherwise. Non null artwork has to be given back with {@link #release}.
+         *
+         * @param artwork null if the track has no artwork.
+         */
+        void onArtwork(long id, B artwork);
+    }
+
+    private final Codec<B> mCodec;
+    private final ThumbnailDiskCache mDisk;
+    private final Executor mExecutor;
+    private final long mMaxBytes;
+    private final long mMaxPoolBytes;
+
+    private final LinkedHashMap<Long, Entry<B>> mEntries =
+            new LinkedHashMap<Long, Entry<B>>(64, 0.75f, true);
+    private long mBytes;
+    private final IdentityHashMap<B, Entry<B>> mAcquired = new IdentityHashMap<B, Entry<B>>();
+
+    private final ArrayDeque<B> mPool = new ArrayDeque<B>();
+    private long mPoolBytes;
+
+    // tracks without artwork
+    private final LongIntMap mMissing = new LongIntMap();
+
+    // callbacks waiting for a decode, by id
+    private final Map<Long, ArrayList<Callback<B>>> mInFlight =
+            new HashMap<Long, ArrayList<Callback<B>>>();
+
+    private long mRequests;
+    private long mMemoryHits;
+    private long mDiskHits;
+    private long mExtractions;
+    private long mPoolReuses;
+
+    private final LatencyHistogram mDecodeLatency = new LatencyHistogram();
+    private final LatencyHistogram mExtractLatency = new LatencyHistogram();
+
+    /**
+     * @param maxBytes     bound of the memory tier.
+     * @param maxPoolBytes bound of the evicted artwork kept for reuse.
+     */
+    public ArtworkCache(Codec<B> codec, ThumbnailDiskCache disk, Executor executor,
+            long maxBytes, long maxPoolBytes) {
+        mCodec = codec;
+        mDisk = disk;
+        mExecutor = executor;
+        mMaxBytes = maxBytes;
+        mMaxPoolBytes = maxPoolBytes;
+    }
+
+    public void load(final long id, Callback<B> callback) {
+        B artwork = null;
+        boolean known;
+        synchronized (this) {
+            mRequests++;
+            Entry<B> entry = mEntries.get(id);
+            known = entry != null || mMissing.containsKey(id);
+            if (entry != null) {
+                mMemoryHits++;
+                artwork = acquire(entry);
+            } else if (!known) {
+                ArrayList<Callback<B>> waiting = mInFlight.get(id);
+                if (waiting != null) {
+                    waiting.add(callback);
+                    return;
+                }
+                waiting = new ArrayList<Callback<B>>(2);
+                waiting.add(callback);
+                mInFlight.put(id, waiting);
+            }
+        }
+        if (known) {
+            callback.onArtwork(id, artwork);
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                fetch(id);
+            }
+        });
+    }
+
+    /**
+     * Stops {@code callback} from being called for {@code id}, the decode itself goes on.
+     *
+     * @return false if it was not waiting.
+     */
+    public synchronized boolean cancel(long id, Callback<B> callback) {
+        ArrayList<Callback<B>> waiting = mInFlight.get(id);
+        return waiting != null && waiting.remove(callback);
+    }
+
+    /**
+     * Gives back artwork delivered to a callback.
+     */
+    public synchronized void release(B artwork) {
+        Entry<B> entry = mAcquired.get(artwork);
+        if (entry == null) {
+            throw new IllegalStateException("artwork was not handed out or released already");
+        }
+        if (--entry.refs == 0) {
+            mAcquired.remove(artwork);
+            if (!entry.cached) {
+                recycle(entry);
+            }
+        }
+    }
+
+    /**
+     * Evicts everything from memory, e.g. when the system is low on memory. Pooled
+     * artwork is dropped as well.
+     */
+    public synchronized void clearMemory() {
+        trimTo(0);
+        mPool.clear();
+        mPoolBytes = 0;
+    }
+
+    public synchronized long getMemorySizeInBytes() {
+        return mBytes;
+    }
+
+    public synchronized long getPoolSizeInBytes() {
+        return mPoolBytes;
+    }
+
+    public synchronized long getRequestCount() {
+        return mRequests;
+    }
+
+    public synchronized long getMemoryHitCount() {
+        return mMemoryHits;
+    }
+
+    public synchronized long getDiskHitCount() {
+        return mDiskHits;
+    }
+
+    /**
+     * @return the number of tracks whose file had to be read.
+     */
+    public synchronized long getExtractionCount() {
+        return mExtractions;
+    }
+
+    public synchronized long getPoolReuseCount() {
+        return mPoolReuses;
+    }
+
+    public synchronized double getMemoryHitRate() {
+        return mRequests == 0 ? 0 : (double) mMemoryHits / mRequests;
+    }
+
+    /**
+     * Time to decode a thumbnail from the disk tier.
+     */
+    public LatencyHistogram getDecodeLatency() {
+        return mDecodeLatency;
+    }
+
+    /**
+     * Time to read, downscale and encode the artwork of a file.
+     */
+    public LatencyHistogram getExtractLatency() {
+        return mExtractLatency;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ArtworkCache{requests=%d, memory hits=%.1f%%, disk hits=%d, "
+                        + "extractions=%d, reused=%d, %d/%d KB, pool %d KB, decode %s, "
+                        + "extract %s}", mRequests, getMemoryHitRate() * 100, mDiskHits,
+                mExtractions, mPoolReuses, mBytes / 1024, mMaxBytes / 1024, mPoolBytes / 1024,
+                mDecodeLatency, mExtractLatency);
+    }
+
+    private void fetch(long id) {
+        B artwork = null;
+        // taken from the pool and not given back yet
+        B reusable = null;
+        try {
+            byte[] data = mDisk.get(id);
+            boolean fromDisk = data != null;
+            if (data == null) {
+                long start = System.nanoTime();
+                data = mCodec.extract(id);
+                mExtractLatency.record(System.nanoTime() - start);
+                try {
+                    mDisk.put(id, data != null ? data : ThumbnailDiskCache.NO_ARTWORK);
+                } catch (IOException e) {
+                    // extracted again next time
+                }
+            }
+            if (data != null && data.length > 0) {
+                synchronized (this) {
+                    reusable = mPool.poll();
+                    if (reusable != null) {
+                        mPoolBytes -= mCodec.sizeOf(reusable);
+                    }
+                }
+                long start = System.nanoTime();
+                artwork = mCodec.decode(data, reusable);
+                mDecodeLatency.record(System.nanoTime() - start);
+                synchronized (this) {
+                    if (reusable != null && reusable == artwork) {
+                        mPoolReuses++;
+                    } else if (reusable != null) {
+                        offerToPool(reusable);
+                    }
+                    reusable = null;
+                }
+            }
+            synchronized (this) {
+                if (fromDisk) {
+                    mDiskHits++;
+                } else {
+                    mExtractions++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // e.g. a corrupt file, treated as missing until the next start
+            artwork = null;
+        } finally {
+            if (reusable != null) {
+                synchronized (this) {
+                    offerToPool(reusable);
+                }
+            }
+            complete(id, artwork);
+        }
+    }
+
+    /**
+     * Caches the outcome of a fetch and calls back everyone waiting for it.
+     *
+     * @param artwork null if the track has none or it could not be read.
+     */
+    private void complete(long id, B artwork) {
+        ArrayList<Callback<B>> waiting;
+        synchronized (this) {
+            waiting = mInFlight.remove(id);
+            if (artwork == null) {
+                mMissing.put(id, 1);
+            } else {
+                Entry<B> entry = new Entry<B>(artwork, mCodec.sizeOf(artwork));
+                mEntries.put(id, entry);
+                mBytes += entry.size;
+                entry.cached = true;
+                // if every callback was cancelled the artwork is still cached
+                for (int i = 0; i < waiting.size(); i++) {
+                    acquire(entry);
+                }
+                trimTo(mMaxBytes);
+            }
+        }
+        for (int i = 0; i < waiting.size(); i++) {
+            waiting.get(i).onArtwork(id, artwork);
+        }
+    }
+
+    private B acquire(Entry<B> entry) {
+        if (entry.refs++ == 0) {
+            mAcquired.put(entry.artwork, entry);
+        }
+        return entry.artwork;
+    }
+
+    private void trimTo(long maxBytes) {
+        Iterator<Entry<B>> it = mEntries.values().iterator();
+        while (mBytes > maxBytes && it.hasNext()) {
+            Entry<B> entry = it.next();
+            it.remove();
+            mBytes -= entry.size;
+            entry.cached = false;
+            if (entry.refs == 0) {
+                recycle(entry);
+            }
+        }
+    }
+
+    private void recycle(Entry<B> entry) {
+        offerToPool(entry.artwork);
+    }
+
+    private void offerToPool(B artwork) {
+        int size = mCodec.sizeOf(artwork);
+        if (mPoolBytes + size <= mMaxPoolBytes) {
+            mPool.add(artwork);
+            mPoolBytes += size;
+        }
+    }
+
+    private static class Entry<B> {
+
+        final B artwork;
+        final int size;
+        int refs;
+        boolean cached;
+
+        Entry(B artwork, int size) {
+            this.artwork = artwork;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.vivam.mediaplayerdemo;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads embedded album art into {@link ImageView}s through an {@link ArtworkCache}.
+ * <p>
+ * Artwork is cropped to a {@link #THUMB_SIZE} square when it is first read and
+ * stored on disk as JPEG. Every thumbnail has the same size and config, so decodes
+ * go into bitmaps of evicted artwork ({@link BitmapFactory.Options#inBitmap}).
+ * <p>
+ * Must be used from the main thread.
+ */
+public class ArtworkLoader implements ArtworkCache.Codec<Bitmap> {
+
+    /** Width and height of the thumbnails, in pixels. */
+    public static final int THUMB_SIZE = 144;
+
+    private static final String DISK_DIR = "artwork";
+    private static final long DISK_BYTES = 16 * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+    private static final int THREADS = 2;
+
+    private final Context mContext;
+    private final ThreadPoolExecutor mExecutor;
+    private final ArtworkCache<Bitmap> mCache;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public ArtworkLoader(Context context) {
+        mContext = context.getApplicationContext();
+        mExecutor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ArtworkLoader-" + mCount.incrementAndGet());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+
+        // an eighth of the heap for artwork on screen, a little more for reuse
+        long maxBytes = Runtime.getRuntime().maxMemory() / 8;
+        mCache = new ArtworkCache<Bitmap>(this,
+                new ThumbnailDiskCache(new File(mContext.getCacheDir(), DISK_DIR), DISK_BYTES),
+                mExecutor, maxBytes, maxBytes / 4);
+    }
+
+    /**
+     * Shows the artwork of track {@code id} in {@code view}, or nothing while it loads
+     * and if the track has none. The artwork shown before is given back.
+     */
+    public void load(long id, ImageView view) {
+        Target target = (Target) view.getTag();
+        if (target == null) {
+            target = new Target(view);
+            view.setTag(target);
+        }
+        target.bind(id);
+    }
+
+    /**
+     * Clears {@code view} and gives its artwork back, e.g. when its row is recycled.
+     */
+    public void unbind(ImageView view) {
+        Target target = (Target) view.getTag();
+        if (target != null) {
+            target.unbind();
+        }
+    }
+
+    /**
+     * @param level a {@link ComponentCallbacks2} trim level.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.clearMemory();
+        }
+    }
+
+    /**
+     * Stops loading, views bound so far keep their artwork.
+     */
+    public void release() {
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    @Override
+    public String toString() {
+        return mCache.toString();
+    }
+
+    @Override
+    public byte[] extract(long id) throws IOException {
+        byte[] picture;
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(mContext, MediaUtils.uriWithAppendedId(id));
+            picture = retriever.getEmbeddedPicture();
+        } catch (RuntimeException e) {
+            // "setDataSource failed" for corrupt or unreadable files
+            throw new IOException("cannot read track " + id, e);
+        } finally {
+            retriever.release();
+        }
+        if (picture == null) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(picture, 0, picture.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        int shortSide = Math.min(options.outWidth, options.outHeight);
+        while (shortSide / (sampleSize * 2) >= THUMB_SIZE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap full = BitmapFactory.decodeByteArray(picture, 0, picture.length, options);
+        if (full == null) {
+            return null;
+        }
+
+        // center crop to a square
+        int side = Math.min(full.getWidth(), full.getHeight());
+        int left = (full.getWidth() - side) / 2;
+        int top = (full.getHeight() - side) / 2;
+        Bitmap thumb = Bitmap.createBitmap(THUMB_SIZE, THUMB_SIZE, Bitmap.Config.RGB_565);
+        new Canvas(thumb).drawBitmap(full, new Rect(left, top, left + side, top + side),
+                new Rect(0, 0, THUMB_SIZE, THUMB_SIZE), new Paint(Paint.FILTER_BITMAP_FLAG));
+        full.recycle();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        thumb.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        thumb.recycle();
+        return out.toByteArray();
+    }
+
+    @Override
+    public Bitmap decode(byte[] data, Bitmap reusable) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        options.inBitmap = reusable;
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // the thumbnail does not fit the pooled bitmap
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("cannot decode thumbnail");
+        }
+        return bitmap;
+    }
+
+    @Override
+    public int sizeOf(Bitmap artwork) {
+        return artwork.getByteCount();
+    }
+
+    /**
+     * Artwork request of one view. It stays attached to the view as its tag.
+     */
+    private class Target implements ArtworkCache.Callback<Bitmap> {
+
+        private static final long NO_ID = -1;
+
+        final ImageView view;
+        long id = NO_ID;
+        Bitmap shown;
+
+        Target(ImageView view) {
+            this.view = view;
+        }
+
+        void bind(long id) {
+            if (id == this.id) {
+                return;
+            }
+            unbind();
+            this.id = id;
+            mCache.load(id, this);
+        }
+
+        void unbind() {
+            if (id != NO_ID) {
+                mCache.cancel(id, this);
+                id = NO_ID;
+            }
+            if (shown != null) {
+                // cleared first, the bitmap may be decoded into once it is given back
+                view.setImageDrawable(null);
+                mCache.release(shown);
+                shown = null;
+            }
+        }
+
+        @Override
+        public void onArtwork(final long id, final Bitmap artwork) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                show(id, artwork);
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    show(id, artwork);
+                }
+            });
+        }
+
+        private void show(long id, Bitmap artwork) {
+            if (artwork == null) {
+                return;
+            }
+            if (id != this.id || shown != null) {
+                // the view moved on to another track meanwhile
+                mCache.release(artwork);
+                return;
+            }
+            shown = artwork;
+            view.setImageBitmap(artwork);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Crash safe file replacement: data goes to a temporary sibling file that is
+ * synced to disk and then renamed over the target, so readers see either the old
+ * or the new content, never a partial write.
+ */
+public class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    public static File tempFile(File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    public static void write(File file, byte[] data, int offset, int length) throws IOException {
+        File temp = tempFile(file);
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(data, offset, length);
+            out.getFD().sync();
+        } catch (IOException e) {
+            out.close();
+            temp.delete();
+            throw e;
+        }
+        out.close();
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("could not rename " + temp + " to " + file);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disk cache of remote files in chunks of a fixed size, one file per chunk, the
+ * least recently used chunks are deleted once the cache outgrows its limit. A
+ * file only ever has the chunks that were read or read ahead, so seeking into a
+ * long track costs the chunks around the seek, not everything before it.
+ * <p>
+ * Chunks are written to a temporary file and renamed into place, a chunk file is
+ * always complete. The length and content type of every file are kept in a small
+ * info file next to its chunks. The recency order is rebuilt from the modification
+ * times of the chunk files, which are touched when a chunk is read.
+ * <p>
+ * Thread safe.
+ */
+public class ChunkCache {
+
+    private static final String INFO_SUFFIX = ".info";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDir;
+    private final int mChunkSize;
+    private final long mMaxBytes;
+
+    private boolean mLoaded;
+    // chunk file name to its size, least recently used first
+    private final LinkedHashMap<String, Long> mChunks = new LinkedHashMap<String, Long>(
+            64, 0.75f, true);
+    private long mSize;
+    private final HashMap<String, Info> mInfos = new HashMap<String, Info>();
+    private int mTempCount;
+
+    /** The length and content type of a cached file. */
+    public static class Info {
+
+        public final long length;
+        public final String contentType;
+
+        public Info(long length, String contentType) {
+            this.length = length;
+            this.contentType = contentType;
+        }
+    }
+
+    /**
+     * @param maxBytes the most bytes of chunks kept, a single chunk may exceed it.
+     */
+    public ChunkCache(File dir, int chunkSize, long maxBytes) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size " + chunkSize);
+        }
+        mDir = dir;
+        mChunkSize = chunkSize;
+        mMaxBytes = maxBytes;
+    }
+
+    public int getChunkSize() {
+        return mChunkSize;
+    }
+
+    /**
+     * Opens chunk {@code index} of {@code key} for reading, it becomes the most
+     * recently used.
+     *
+     * @return null if the chunk is not cached.
+     */
+    public synchronized FileChannel open(String key, int index) {
+        ensureLoaded();
+        String name = chunkName(key, index);
+        if (mChunks.get(name) == null) {
+            return null;
+        }
+        File file = new File(mDir, name);
+        try {
+            FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+            file.setLastModified(System.currentTimeMillis());
+            return channel;
+        } catch (IOException e) {
+            // deleted behind our back
+            mSize -= mChunks.remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the chunk is cached, without touching it.
+     */
+    public synchronized boolean contains(String key, int index) {
+        ensureLoaded();
+        return mChunks.containsKey(chunkName(key, index));
+    }
+
+    /**
+     * @return a new file to write a chunk to before it is {@link #commit committed}.
+     */
+    public synchronized File newTempFile() {
+        ensureLoaded();
+        return new File(mDir, System.nanoTime() + "-" + (mTempCount++) + TEMP_SUFFIX);
+    }
+
+    /**
+     * Moves {@code temp} into place as chunk {@code index} of {@code key}, older
+     * chunks are evicted if the cache is full.
+     */
+    public synchronized void commit(String key, int index, File temp) throws IOException {
+        ensureLoaded();
+        String name = chunkName(key, index);
+        File file = new File(mDir, name);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("cannot commit " + file);
+        }
+        Long previous = mChunks.put(name, file.length());
+        mSize += file.length() - (previous != null ? previous : 0);
+        evict(name);
+    }
+
+    /**
+     * @return the length and type of {@code key}, or null if nothing was fetched yet.
+     */
+    public synchronized Info getInfo(String key) {
+        ensureLoaded();
+        Info info = mInfos.get(key);
+        if (info == null) {
+            info = readInfo(new File(mDir, key + INFO_SUFFIX));
+            if (info != null) {
+                mInfos.put(key, info);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Keeps {@code info} for this session and writes it next to the chunks.
+     *
+     * @throws IOException if it could not be written, it is still kept in memory.
+     */
+    public synchronized void putInfo(String key, Info info) throws IOException {
+        ensureLoaded();
+        mInfos.put(key, info);
+        File temp = newTempFile();
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write((info.length + "\n"
+                        + (info.contentType != null ? info.contentType : "")).getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        File file = new File(mDir, key + INFO_SUFFIX);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("cannot commit " + file);
+        }
+    }
+
+    /**
+     * @return the bytes of all chunks.
+     */
+    public synchronized long getSize() {
+        ensureLoaded();
+        return mSize;
+    }
+
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = mChunks.entrySet().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            // a reader that has the chunk open keeps reading it
+            new File(mDir, entry.getKey()).delete();
+            mSize -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        mDir.mkdirs();
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File a, File b) {
+                long x = a.lastModified();
+                long y = b.lastModified();
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // a chunk that was being fetched when the process died
+                file.delete();
+            } else if (!name.endsWith(INFO_SUFFIX)) {
+                mChunks.put(name, file.length());
+                mSize += file.length();
+            }
+        }
+        evict(null);
+    }
+
+    private static Info readInfo(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                byte[] data = new byte[(int) Math.min(4096, in.length())];
+                in.readFully(data);
+                String text = new String(data, "UTF-8");
+                int newline = text.indexOf('\n');
+                if (newline < 0) {
+                    return null;
+                }
+                String type = text.substring(newline + 1);
+                return new Info(Long.parseLong(text.substring(0, newline)),
+                        type.isEmpty() ? null : type);
+            } finally {
+                in.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String chunkName(String key, int index) {
+        return key + "." + index;
+    }
+}
@@ -0,0 +1,209 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Client side of the command channel to {@link MediaPlayService}: commands are
+ * queued and handed to the service's {@link Receiver} in one call per batch
+ * instead of one {@code startService()} each.
+ * <p>
+ * A flush is scheduled on the executor when the first command of a batch is
+ * posted, e.g. at the end of the current main loop turn, so commands posted
+ * before it runs, such as a burst of queued key events, travel together. While
+ * they wait, superseded commands are folded away: skips in the same direction
+ * add up, a seek replaces the seek before it and is dropped by a skip away from
+ * its track, and pause or resume replaces the one before it. Without a receiver,
+ * e.g. while the service is not bound yet, commands are kept until one is set.
+ * <p>
+ * Not thread safe, used on the main thread like the binder it sends through.
+ */
+public class CommandBus {
+
+    public interface Receiver {
+
+        /**
+         * Applies {@code batch} in order, skipping commands applied before.
+         *
+         * @return the sequence number of the last command applied.
+         */
+        long apply(List<PlayerCommand> batch);
+    }
+
+    private final Executor mFlushExecutor;
+    private final ArrayList<PlayerCommand> mPending = new ArrayList<PlayerCommand>();
+    private Receiver mReceiver;
+    private boolean mFlushScheduled;
+    private long mSequence;
+    private long mAcknowledged;
+
+    private final LatencyHistogram mRoundTrip = new LatencyHistogram();
+    private long mPosted;
+    private long mCollapsed;
+    private long mBatches;
+
+    private final Runnable mFlush = new Runnable() {
+
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            flush();
+        }
+    };
+
+    /**
+     * @param flushExecutor runs the scheduled flushes on the thread posting commands.
+     */
+    public CommandBus(Executor flushExecutor) {
+        mFlushExecutor = flushExecutor;
+    }
+
+    /**
+     * @param receiver where batches go from now on, null to hold them.
+     */
+    public void setReceiver(Receiver receiver) {
+        mReceiver = receiver;
+        scheduleFlush();
+    }
+
+    /**
+     * @return the sequence number of the command, commands folded into a later
+     * one are acknowledged with it.
+     */
+    public long post(int type, long argument) {
+        long sequence = ++mSequence;
+        mPosted++;
+        mCollapsed += append(mPending, new PlayerCommand(type, argument, sequence,
+                System.nanoTime()));
+        scheduleFlush();
+        return sequence;
+    }
+
+    /**
+     * Sends the pending commands now, e.g. before the receiver goes away.
+     */
+    public void flush() {
+        if (mReceiver == null || mPending.isEmpty()) {
+            return;
+        }
+        List<PlayerCommand> batch = new ArrayList<PlayerCommand>(mPending);
+        mPending.clear();
+        mBatches++;
+        mAcknowledged = mReceiver.apply(batch);
+        mRoundTrip.record(System.nanoTime() - batch.get(0).getPostedNanos());
+    }
+
+    /**
+     * @return the number of commands waiting for a flush.
+     */
+    public int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * @return the sequence number of the last command the receiver applied.
+     */
+    public long getAcknowledgedSequence() {
+        return mAcknowledged;
+    }
+
+    /**
+     * @return from posting the first command of each batch until it was applied.
+     */
+    public LatencyHistogram getRoundTripLatency() {
+        return mRoundTrip;
+    }
+
+    public long getPostedCount() {
+        return mPosted;
+    }
+
+    /**
+     * @return the number of commands that never reached the receiver because a
+     * later one superseded them.
+     */
+    public long getCollapsedCount() {
+        return mCollapsed;
+    }
+
+    public long getBatchCount() {
+        return mBatches;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandBus{posted=" + mPosted + ", collapsed=" + mCollapsed
+                + ", batches=" + mBatches + ", pending=" + mPending.size()
+                + ", round trip " + mRoundTrip + "}";
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled && mReceiver != null && !mPending.isEmpty()) {
+            mFlushScheduled = true;
+            mFlushExecutor.execute(mFlush);
+        }
+    }
+
+    /**
+     * Adds {@code command} to {@code pending}, folding away what it supersedes.
+     *
+     * @return the number of commands removed.
+     */
+    static int append(List<PlayerCommand> pending, PlayerCommand command) {
+        int size = pending.size();
+        switch (command.getType()) {
+            case PlayerCommand.SEEK:
+                removeLast(pending, bit(PlayerCommand.SEEK));
+                break;
+
+            case PlayerCommand.NEXT:
+            case PlayerCommand.PREVIOUS:
+                // seeks within the track being skipped
+                while (removeLast(pending, bit(PlayerCommand.SEEK)) != null) {
+                    // keep going
+                }
+                PlayerCommand skip = removeLast(pending, bit(command.getType()));
+                if (skip != null) {
+                    // timed from the first tap
+                    command = new PlayerCommand(command.getType(),
+                            skip.getArgument() + command.getArgument(),
+                            command.getSequence(), skip.getPostedNanos());
+                }
+                break;
+
+            case PlayerCommand.PAUSE:
+            case PlayerCommand.RESUME:
+                removeLast(pending, bit(PlayerCommand.PAUSE) | bit(PlayerCommand.RESUME));
+                break;
+
+            case PlayerCommand.STOP:
+                // skips are kept, they move the queue
+                while (removeLast(pending, bit(PlayerCommand.PAUSE) | bit(PlayerCommand.RESUME)
+                        | bit(PlayerCommand.SEEK)) != null) {
+                    // keep going
+                }
+                break;
+        }
+        pending.add(command);
+        return size + 1 - pending.size();
+    }
+
+    /**
+     * Removes the last command if its type is one of {@code types}.
+     *
+     * @param types {@link #bit(int)} of every type to remove, or'ed together.
+     * @return the command removed, or null.
+     */
+    private static PlayerCommand removeLast(List<PlayerCommand> pending, int types) {
+        if (pending.isEmpty()
+                || (types & bit(pending.get(pending.size() - 1).getType())) == 0) {
+            return null;
+        }
+        return pending.remove(pending.size() - 1);
+    }
+
+    private static int bit(int type) {
+        return 1 << type;
+    }
+}
@@ -0,0 +1,79 @@
+package com.vivam.mediaplayerdemo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Direct {@link ByteBuffer}s of one size, allocated on demand up to a limit and
+ * reused after they are given back. Direct memory is expensive to allocate and is
+ * only freed when the GC gets to the buffer, so it is kept to a fixed budget.
+ * <p>
+ * Thread safe.
+ */
+public class DirectBufferPool {
+
+    private final int mBufferSize;
+    private final int mMaxBuffers;
+    private final ArrayList<ByteBuffer> mFree = new ArrayList<ByteBuffer>();
+    private int mAllocated;
+
+    /**
+     * @param maxBytes the most memory held by the buffers, handed out or free.
+     */
+    public DirectBufferPool(int bufferSize, long maxBytes) {
+        if (bufferSize <= 0 || maxBytes < bufferSize) {
+            throw new IllegalArgumentException("buffer size " + bufferSize
+                    + ", max bytes " + maxBytes);
+        }
+        mBufferSize = bufferSize;
+        mMaxBuffers = (int) Math.min(Integer.MAX_VALUE, maxBytes / bufferSize);
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * @return a cleared buffer in native byte order, or null if the limit is reached.
+     */
+    public synchronized ByteBuffer acquire() {
+        ByteBuffer buffer;
+        if (!mFree.isEmpty()) {
+            buffer = mFree.remove(mFree.size() - 1);
+        } else if (mAllocated < mMaxBuffers) {
+            buffer = ByteBuffer.allocateDirect(mBufferSize).order(ByteOrder.nativeOrder());
+            mAllocated++;
+        } else {
+            return null;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer.capacity() != mBufferSize || !buffer.isDirect()) {
+            throw new IllegalArgumentException("not a buffer of this pool");
+        }
+        mFree.add(buffer);
+    }
+
+    /**
+     * Drops the free buffers, their memory is reclaimed with them.
+     */
+    public synchronized void trim() {
+        mAllocated -= mFree.size();
+        mFree.clear();
+    }
+
+    /**
+     * @return the bytes held by the buffers allocated so far, handed out or free.
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) mAllocated * mBufferSize;
+    }
+
+    public synchronized int getFreeCount() {
+        return mFree.size();
+    }
+}
@@ -0,0 +1,166 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * Formats track durations as {@code mm:ss}, or {@code HH:mm:ss} from one hour on,
+ * straight into a {@code char[]}. Durations are not dates, so unlike
+ * {@code SimpleDateFormat} the output does not depend on the time zone and hours
+ * do not wrap at 24.
+ * <p>
+ * The static methods keep no state and are thread safe. A {@link Buffer} is a
+ * reusable {@link CharSequence} for one owner, e.g. a view holder.
+ */
+public class DurationFormatter {
+
+    /** Enough for any {@code long} duration, 2562047788015 hours at most. */
+    public static final int MAX_LENGTH = 19;
+
+    private static final long MILLIS_PER_HOUR = 3600000;
+
+    /**
+     * Writes {@code millis} to {@code dest} from {@code offset} on, negative values
+     * are formatted as zero.
+     *
+     * @return the number of chars written.
+     */
+    public static int format(long millis, char[] dest, int offset) {
+        if (millis < 0) {
+            millis = 0;
+        }
+        long seconds = millis / 1000;
+        long hours = seconds / 3600;
+        int minutes = (int) (seconds / 60 % 60);
+        int secs = (int) (seconds % 60);
+
+        int pos = offset;
+        if (millis >= MILLIS_PER_HOUR) {
+            pos = writeHours(hours, dest, pos);
+            dest[pos++] = ':';
+        }
+        dest[pos++] = (char) ('0' + minutes / 10);
+        dest[pos++] = (char) ('0' + minutes % 10);
+        dest[pos++] = ':';
+        dest[pos++] = (char) ('0' + secs / 10);
+        dest[pos++] = (char) ('0' + secs % 10);
+        return pos - offset;
+    }
+
+    /**
+     * @return the formatted duration as a new string, for places that are not hot.
+     */
+    public static String format(long millis) {
+        char[] chars = new char[MAX_LENGTH];
+        return new String(chars, 0, format(millis, chars, 0));
+    }
+
+    private static int writeHours(long hours, char[] dest, int pos) {
+        int digits = 2;
+        for (long h = hours / 100; h > 0; h /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dest[i] = (char) ('0' + hours % 10);
+            hours /= 10;
+        }
+        return pos + digits;
+    }
+
+    /**
+     * Reusable char buffer that can hold several formatted durations and separators,
+     * e.g. {@code "01:23 / 04:56"}. Not thread safe.
+     */
+    public static class Buffer implements CharSequence {
+
+        private final char[] mChars;
+        private int mLength;
+
+        public Buffer() {
+            this(MAX_LENGTH);
+        }
+
+        public Buffer(int capacity) {
+            mChars = new char[capacity];
+        }
+
+        public Buffer clear() {
+            mLength = 0;
+            return this;
+        }
+
+        public Buffer appendDuration(long millis) {
+            if (mLength + MAX_LENGTH > mChars.length) {
+                char[] scratch = new char[MAX_LENGTH];
+                return append(scratch, format(millis, scratch, 0));
+            }
+            mLength += format(millis, mChars, mLength);
+            return this;
+        }
+
+        public Buffer append(String text) {
+            int length = text.length();
+            checkCapacity(length);
+            text.getChars(0, length, mChars, mLength);
+            mLength += length;
+            return this;
+        }
+
+        /**
+         * The backing array, valid up to {@link #length()}. Pass it to
+         * {@code TextView.setText(char[], int, int)} to avoid creating a string.
+         */
+        public char[] array() {
+            return mChars;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + mLength);
+            }
+            return mChars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        /**
+         * @return whether the content equals {@code other}, without allocating.
+         */
+        public boolean contentEquals(CharSequence other) {
+            if (other.length() != mLength) {
+                return false;
+            }
+            for (int i = 0; i < mLength; i++) {
+                if (mChars[i] != other.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return new String(mChars, 0, mLength);
+        }
+
+        private Buffer append(char[] chars, int length) {
+            checkCapacity(length);
+            System.arraycopy(chars, 0, mChars, mLength, length);
+            mLength += length;
+            return this;
+        }
+
+        private void checkCapacity(int extra) {
+            if (mLength + extra > mChars.length) {
+                throw new IndexOutOfBoundsException("capacity " + mChars.length
+                        + " exceeded by " + (mLength + extra - mChars.length));
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Differences between the indexed library and the MediaStore, by id. A track is
+ * changed when its date modified differs.
+ */
+public class LibraryDiff {
+
+    public final ArrayList<MusicBean> added = new ArrayList<MusicBean>();
+    public final ArrayList<MusicBean> changed = new ArrayList<MusicBean>();
+    public final ArrayList<MusicBean> removed = new ArrayList<MusicBean>();
+
+    public static LibraryDiff compute(List<MusicBean> indexed, List<MusicBean> current) {
+        LongIntMap positions = new LongIntMap(indexed.size());
+        for (int i = 0; i < indexed.size(); i++) {
+            positions.put(indexed.get(i).getId(), i);
+        }
+
+        LibraryDiff diff = new LibraryDiff();
+        boolean[] seen = new boolean[indexed.size()];
+        for (int i = 0; i < current.size(); i++) {
+            MusicBean music = current.get(i);
+            int position = positions.get(music.getId(), -1);
+            if (position < 0) {
+                diff.added.add(music);
+            } else {
+                seen[position] = true;
+                if (indexed.get(position).getDateModified() != music.getDateModified()) {
+                    diff.changed.add(music);
+                }
+            }
+        }
+        for (int i = 0; i < seen.length; i++) {
+            if (!seen[i]) {
+                diff.removed.add(indexed.get(i));
+            }
+        }
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Applies the diff to {@code list} in place: removed tracks are dropped, changed
+     * ones replaced where they are and added ones appended.
+     */
+    public void applyTo(List<MusicBean> list) {
+        LongIntMap updates = new LongIntMap(changed.size() + removed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            updates.put(changed.get(i).getId(), i);
+        }
+        for (int i = 0; i < removed.size(); i++) {
+            updates.put(removed.get(i).getId(), -1);
+        }
+
+        int write = 0;
+        for (int read = 0; read < list.size(); read++) {
+            MusicBean music = list.get(read);
+            int update = updates.get(music.getId(), Integer.MIN_VALUE);
+            if (update == -1) {
+                continue;
+            }
+            list.set(write++, update >= 0 ? changed.get(update) : music);
+        }
+        while (list.size() > write) {
+            list.remove(list.size() - 1);
+        }
+        list.addAll(added);
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryDiff{added=" + added.size() + ", changed=" + changed.size()
+                + ", removed=" + removed.size() + "}";
+    }
+}
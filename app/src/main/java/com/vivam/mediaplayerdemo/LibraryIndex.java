@@ -0,0 +1,136 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk copy of the music library, loaded at startup instead of scanning the
+ * MediaStore.
+ * <p>
+ * Layout: magic, format version, generation (incremented on every write), payload
+ * length and CRC32 of the payload, followed by the payload, a
+ * {@link MusicBeanCodec} list. The file is mapped for reading and replaced
+ * atomically with {@link AtomicFiles}, a torn or corrupt file reads as missing.
+ */
+public class LibraryIndex {
+
+    /** Name of the index of the local library in the app's files directory. */
+    public static final String FILE_NAME = "library.idx";
+
+    private static final int MAGIC = 0x4d4c_4958; // "MLIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    private final File mFile;
+
+    private long mGeneration;
+
+    public LibraryIndex(File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * @return the generation of the last index loaded or written, 0 if none.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return the indexed library, or null if there is no usable index.
+     */
+    public ArrayList<MusicBean> load() {
+        if (!mFile.isFile()) {
+            return null;
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long generation = buffer.getLong();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length != size - HEADER_SIZE || crc != crc32(buffer, HEADER_SIZE, length)) {
+                return null;
+            }
+
+            buffer.position(HEADER_SIZE);
+            ArrayList<MusicBean> list = MusicBeanCodec.decode(buffer);
+            mGeneration = generation;
+            return list;
+        } catch (IOException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the index with {@code list}.
+     */
+    public void write(List<MusicBean> list) throws IOException {
+        MusicBeanCodec.Writer writer = new MusicBeanCodec.Writer(HEADER_SIZE + list.size() * 40);
+        // header is filled in once the payload is known
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            writer.writeByte(0);
+        }
+        MusicBeanCodec.encode(list, writer);
+
+        byte[] data = writer.buffer();
+        int length = writer.length() - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_SIZE, length);
+
+        long generation = mGeneration + 1;
+        ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putLong(generation);
+        header.putInt(length);
+        header.putInt((int) crc.getValue());
+
+        AtomicFiles.write(mFile, data, 0, writer.length());
+        mGeneration = generation;
+    }
+
+    private static int crc32(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        buffer.position(offset);
+        while (length > 0) {
+            int count = Math.min(length, chunk.length);
+            buffer.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+            length -= count;
+        }
+        return (int) crc.getValue();
+    }
+}
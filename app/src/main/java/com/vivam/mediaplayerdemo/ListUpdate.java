@@ -0,0 +1,183 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positional changes that turn one list of tracks into another, for dispatching
+ * fine grained adapter notifications instead of rebinding everything.
+ * <p>
+ * Tracks are matched by id, which is expected to be unique in each list. This is
+ * linear in the list sizes instead of the quadratic worst case of a general
+ * diff, in exchange it does not detect moves: if the tracks both lists share are
+ * not in the same order, or there are more than {@link #MAX_OPS} changed ranges,
+ * the update is a single reload.
+ */
+public class ListUpdate {
+
+    public interface Callback {
+
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+
+        /** Everything may have changed. */
+        void onReloaded();
+    }
+
+    /** Past this many ranges a reload is cheaper for the view than the single ops. */
+    static final int MAX_OPS = 64;
+
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+
+    // triples of op, position, count in dispatch order
+    private int[] mOps = new int[3 * 4];
+    private int mOpCount;
+    private boolean mReload;
+
+    private ListUpdate() {
+    }
+
+    public static ListUpdate compute(List<MusicBean> oldList, List<MusicBean> newList) {
+        ListUpdate update = new ListUpdate();
+        int oldSize = oldList.size();
+        int newSize = newList.size();
+
+        LongIntMap newPositions = new LongIntMap(newSize);
+        for (int i = 0; i < newSize; i++) {
+            newPositions.put(newList.get(i).getId(), i);
+        }
+
+        // for every new position the old position of the same track, or -1
+        int[] oldPositions = new int[newSize];
+        Arrays.fill(oldPositions, -1);
+        int lastNew = -1;
+        int removeStart = -1;
+        int removedRanges = 0;
+        // removals are collected front to back, dispatched back to front below
+        int[] removals = new int[8];
+        for (int i = 0; i < oldSize; i++) {
+            int position = newPositions.get(oldList.get(i).getId(), -1);
+            if (position < 0) {
+                if (removeStart < 0) {
+                    removeStart = i;
+                }
+                continue;
+            }
+            if (position < lastNew) {
+                update.mReload = true;
+                return update;
+            }
+            lastNew = position;
+            oldPositions[position] = i;
+            if (removeStart >= 0) {
+                removals = addRange(removals, removedRanges++, removeStart, i - removeStart);
+                removeStart = -1;
+            }
+        }
+        if (removeStart >= 0) {
+            removals = addRange(removals, removedRanges++, removeStart, oldSize - removeStart);
+        }
+        for (int r = removedRanges - 1; r >= 0; r--) {
+            update.addOp(OP_REMOVE, removals[2 * r], removals[2 * r + 1]);
+        }
+
+        // with the removals done the kept tracks are in order, inserting in
+        // ascending order puts every new track at its final position
+        int start = -1;
+        for (int i = 0; i <= newSize; i++) {
+            boolean inserted = i < newSize && oldPositions[i] < 0;
+            if (inserted && start < 0) {
+                start = i;
+            } else if (!inserted && start >= 0) {
+                update.addOp(OP_INSERT, start, i - start);
+                start = -1;
+            }
+        }
+
+        start = -1;
+        for (int i = 0; i <= newSize; i++) {
+            boolean changed = i < newSize && oldPositions[i] >= 0
+                    && !sameContent(oldList.get(oldPositions[i]), newList.get(i));
+            if (changed && start < 0) {
+                start = i;
+            } else if (!changed && start >= 0) {
+                update.addOp(OP_CHANGE, start, i - start);
+                start = -1;
+            }
+        }
+
+        if (update.mOpCount > MAX_OPS) {
+            update.mReload = true;
+        }
+        return update;
+    }
+
+    public boolean isEmpty() {
+        return !mReload && mOpCount == 0;
+    }
+
+    public boolean isReload() {
+        return mReload;
+    }
+
+    public void dispatchTo(Callback callback) {
+        if (mReload) {
+            callback.onReloaded();
+            return;
+        }
+        for (int i = 0; i < mOpCount; i++) {
+            int position = mOps[3 * i + 1];
+            int count = mOps[3 * i + 2];
+            switch (mOps[3 * i]) {
+                case OP_INSERT:
+                    callback.onInserted(position, count);
+                    break;
+                case OP_REMOVE:
+                    callback.onRemoved(position, count);
+                    break;
+                case OP_CHANGE:
+                    callback.onChanged(position, count);
+                    break;
+            }
+        }
+    }
+
+    private void addOp(int op, int position, int count) {
+        if (3 * (mOpCount + 1) > mOps.length) {
+            mOps = Arrays.copyOf(mOps, mOps.length * 2);
+        }
+        mOps[3 * mOpCount] = op;
+        mOps[3 * mOpCount + 1] = position;
+        mOps[3 * mOpCount + 2] = count;
+        mOpCount++;
+    }
+
+    private static int[] addRange(int[] ranges, int index, int position, int count) {
+        if (2 * (index + 1) > ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[2 * index] = position;
+        ranges[2 * index + 1] = count;
+        return ranges;
+    }
+
+    private static boolean sameContent(MusicBean a, MusicBean b) {
+        if (a == b) {
+            return true;
+        }
+        String title = a.getTitle();
+        return a.getDuration() == b.getDuration()
+                && a.getDateModified() == b.getDateModified()
+                && (title == null ? b.getTitle() == null : title.equals(b.getTitle()));
+    }
+
+    @Override
+    public String toString() {
+        return mReload ? "ListUpdate{reload}" : "ListUpdate{ops=" + mOpCount + "}";
+    }
+}
@@ -0,0 +1,179 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from {@code long} to {@code int} that does not box its
+ * keys or values. Uses linear probing with backward shift deletion, so removals
+ * leave no tombstones behind.
+ */
+public class LongIntMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private boolean[] mUsed;
+    private int mSize;
+    private int mMask;
+    private int mThreshold;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the value mapped to {@code key}, or {@code defaultValue} if there is none.
+     */
+    public int get(long key, int defaultValue) {
+        int i = hash(key) & mMask;
+        while (mUsed[i]) {
+            if (mKeys[i] == key) {
+                return mValues[i];
+            }
+            i = (i + 1) & mMask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        int i = hash(key) & mMask;
+        while (mUsed[i]) {
+            if (mKeys[i] == key) {
+                return true;
+            }
+            i = (i + 1) & mMask;
+        }
+        return false;
+    }
+
+    public void put(long key, int value) {
+        int i = hash(key) & mMask;
+        while (mUsed[i]) {
+            if (mKeys[i] == key) {
+                mValues[i] = value;
+                return;
+            }
+            i = (i + 1) & mMask;
+        }
+        mUsed[i] = true;
+        mKeys[i] = key;
+        mValues[i] = value;
+        if (++mSize > mThreshold) {
+            rehash(mKeys.length << 1);
+        }
+    }
+
+    /**
+     * @return true if a mapping was removed.
+     */
+    public boolean remove(long key) {
+        int i = hash(key) & mMask;
+        while (mUsed[i]) {
+            if (mKeys[i] == key) {
+                shiftKeys(i);
+                mSize--;
+                return true;
+            }
+            i = (i + 1) & mMask;
+        }
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(mUsed, false);
+        mSize = 0;
+    }
+
+    /**
+     * Makes sure {@code expectedSize} mappings fit without rehashing.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int size = tableSizeFor(expectedSize);
+        if (size > mKeys.length) {
+            rehash(size);
+        }
+    }
+
+    /**
+     * Rough heap footprint of the tables in bytes.
+     */
+    public long sizeInBytes() {
+        return (long) mKeys.length * (8 + 4 + 1);
+    }
+
+    private void shiftKeys(int slot) {
+        // Moves every following entry of the probe run that would no longer be
+        // reachable once slot is empty.
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & mMask;
+            while (true) {
+                if (!mUsed[slot]) {
+                    mUsed[last] = false;
+                    return;
+                }
+                int ideal = hash(mKeys[slot]) & mMask;
+                if (last <= slot ? (last >= ideal || ideal > slot) : (last >= ideal && ideal > slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mMask;
+            }
+            mKeys[last] = mKeys[slot];
+            mValues[last] = mValues[slot];
+        }
+    }
+
+    private void rehash(int newSize) {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        boolean[] used = mUsed;
+        allocate(newSize);
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                int j = hash(keys[i]) & mMask;
+                while (mUsed[j]) {
+                    j = (j + 1) & mMask;
+                }
+                mUsed[j] = true;
+                mKeys[j] = keys[i];
+                mValues[j] = values[i];
+            }
+        }
+    }
+
+    private void allocate(int size) {
+        mKeys = new long[size];
+        mValues = new int[size];
+        mUsed = new boolean[size];
+        mMask = size - 1;
+        mThreshold = (int) (size * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int size = 16;
+        while (size * LOAD_FACTOR < expectedSize) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int hash(long key) {
+        // finalizer of MurmurHash3, spreads sequential ids over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,226 @@
+package com.vivam.mediaplayerdemo;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Integrated loudness of 16 bit PCM after ITU-R BS.1770, as used by EBU R128 and
+ * ReplayGain 2.0, and its sample peak.
+ * <p>
+ * Every channel goes through the K-weighting filter, the mean square of the
+ * weighted sum is taken over 400ms blocks that overlap by 75%, and the blocks are
+ * gated twice: blocks below -70 LUFS are silence, then blocks more than 10 LU
+ * below the loudness of what is left are dropped. Only the energy of every 100ms
+ * step is kept, so memory grows by one double per 100ms of audio.
+ * <p>
+ * Channels get the weights of the standard for a 5.1 layout, LFE excluded and the
+ * surrounds at +1.5dB, any other layout weighs every channel the same.
+ * <p>
+ * Not thread safe.
+ */
+public class LoudnessMeter {
+
+    /** The loudness of audio with no block above the absolute gate. */
+    public static final double SILENCE = Double.NEGATIVE_INFINITY;
+
+    private static final double ABSOLUTE_GATE_LUFS = -70;
+    private static final double RELATIVE_GATE_LU = -10;
+    private static final int STEPS_PER_BLOCK = 4;
+
+    private final int mSampleRate;
+    private final int mChannels;
+    private final double[] mWeights;
+    private final int mStepFrames;
+
+    // the high shelf stage of the K-weighting filter, then the high pass
+    private final double mShelfB0, mShelfB1, mShelfB2, mShelfA1, mShelfA2;
+    private final double mPassA1, mPassA2;
+    // two delay elements per stage and channel, transposed direct form II
+    private final double[] mShelfZ;
+    private final double[] mPassZ;
+
+    private double mStepSum;
+    private int mStepCount;
+    private final double[] mLastSteps = new double[STEPS_PER_BLOCK];
+    private long mSteps;
+    private double[] mBlocks = new double[64];
+    private int mBlockCount;
+
+    private long mFrames;
+    private int mPeak;
+    private short[] mScratch;
+
+    public LoudnessMeter(int sampleRate, int channels) {
+        if (sampleRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("sample rate " + sampleRate
+                    + ", channels " + channels);
+        }
+        mSampleRate = sampleRate;
+        mChannels = channels;
+        mWeights = new double[channels];
+        for (int i = 0; i < channels; i++) {
+            mWeights[i] = channels == 6 ? (i == 3 ? 0 : (i >= 4 ? 1.41 : 1)) : 1;
+        }
+        mStepFrames = Math.max(1, sampleRate / 10);
+
+        // the filters of the standard, derived for any rate by the bilinear transform
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        mShelfB0 = (vh + vb * k / q + k * k) / a0;
+        mShelfB1 = 2 * (k * k - vh) / a0;
+        mShelfB2 = (vh - vb * k / q + k * k) / a0;
+        mShelfA1 = 2 * (k * k - 1) / a0;
+        mShelfA2 = (1 - k / q + k * k) / a0;
+
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        mPassA1 = 2 * (k * k - 1) / a0;
+        mPassA2 = (1 - k / q + k * k) / a0;
+
+        mShelfZ = new double[2 * channels];
+        mPassZ = new double[2 * channels];
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    /**
+     * Measures interleaved samples, {@code length} has to be whole frames.
+     */
+    public void process(short[] samples, int offset, int length) {
+        if (length % mChannels != 0) {
+            throw new IllegalArgumentException(length + " samples of " + mChannels
+                    + " channels");
+        }
+        int end = offset + length;
+        int peak = mPeak;
+        for (int i = offset; i < end; i += mChannels) {
+            double sum = 0;
+            for (int c = 0; c < mChannels; c++) {
+                int sample = samples[i + c];
+                int magnitude = sample < 0 ? -sample : sample;
+                if (magnitude > peak) {
+                    peak = magnitude;
+                }
+
+                double x = sample / 32768.0;
+                int z = 2 * c;
+                double y = mShelfB0 * x + mShelfZ[z];
+                mShelfZ[z] = mShelfB1 * x - mShelfA1 * y + mShelfZ[z + 1];
+                mShelfZ[z + 1] = mShelfB2 * x - mShelfA2 * y;
+                // the high pass has the numerator 1, -2, 1
+                double w = y + mPassZ[z];
+                mPassZ[z] = -2 * y - mPassA1 * w + mPassZ[z + 1];
+                mPassZ[z + 1] = y - mPassA2 * w;
+                sum += mWeights[c] * w * w;
+            }
+            mStepSum += sum;
+            if (++mStepCount == mStepFrames) {
+                endStep();
+            }
+        }
+        mPeak = peak;
+        mFrames += length / mChannels;
+    }
+
+    /**
+     * Measures the remaining interleaved samples of {@code buffer}, its position is
+     * advanced past them.
+     */
+    public void process(ShortBuffer buffer) {
+        if (mScratch == null) {
+            mScratch = new short[4096 / mChannels * mChannels];
+        }
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), mScratch.length);
+            buffer.get(mScratch, 0, length);
+            process(mScratch, 0, length);
+        }
+    }
+
+    /**
+     * @return the frames measured so far.
+     */
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    public long getDurationUs() {
+        return mFrames * 1000000 / mSampleRate;
+    }
+
+    /**
+     * @return the largest sample magnitude so far, 1.0 is full scale.
+     */
+    public double getPeak() {
+        return mPeak / 32768.0;
+    }
+
+    /**
+     * @return the gated loudness of everything measured so far in LUFS, or
+     * {@link #SILENCE}.
+     */
+    public double getIntegratedLoudness() {
+        double absoluteGate = energy(ABSOLUTE_GATE_LUFS);
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < mBlockCount; i++) {
+            if (mBlocks[i] > absoluteGate) {
+                sum += mBlocks[i];
+                count++;
+            }
+        }
+        if (count == 0) {
+            return SILENCE;
+        }
+
+        double gate = Math.max(absoluteGate,
+                energy(loudness(sum / count) + RELATIVE_GATE_LU));
+        sum = 0;
+        count = 0;
+        for (int i = 0; i < mBlockCount; i++) {
+            if (mBlocks[i] > gate) {
+                sum += mBlocks[i];
+                count++;
+            }
+        }
+        return count == 0 ? SILENCE : loudness(sum / count);
+    }
+
+    private void endStep() {
+        mLastSteps[(int) (mSteps % STEPS_PER_BLOCK)] = mStepSum / mStepFrames;
+        mSteps++;
+        mStepSum = 0;
+        mStepCount = 0;
+        if (mSteps < STEPS_PER_BLOCK) {
+            return;
+        }
+
+        double block = 0;
+        for (int i = 0; i < STEPS_PER_BLOCK; i++) {
+            block += mLastSteps[i];
+        }
+        if (mBlockCount == mBlocks.length) {
+            double[] blocks = new double[mBlocks.length * 2];
+            System.arraycopy(mBlocks, 0, blocks, 0, mBlockCount);
+            mBlocks = blocks;
+        }
+        mBlocks[mBlockCount++] = block / STEPS_PER_BLOCK;
+    }
+
+    private static double loudness(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    private static double energy(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+}
@@ -0,0 +1,248 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background stage that decodes every track of the library once and stores its
+ * {@link TrackLoudness}, so playback can set a per track gain without decoding.
+ * <p>
+ * Tracks are decoded on a fixed pool with one thread per core. The scan is
+ * resumable: results, failures included, go to a {@link LoudnessStore} as they
+ * come and the tracks found there for the same version of their file are skipped,
+ * a track interrupted by {@link #shutdown()} is decoded again next time. While
+ * {@link #setThrottled(boolean) throttled}, e.g. during playback, only one track
+ * is decoded at a time.
+ * <p>
+ * Thread safe.
+ */
+public class LoudnessScanner {
+
+    public interface Decoder {
+
+        /**
+         * Decodes {@code music} through a {@link LoudnessMeter}, called on a pool
+         * thread.
+         *
+         * @throws InterruptedIOException if the thread was interrupted.
+         * @throws IOException            if the file cannot be decoded.
+         */
+        LoudnessMeter decode(MusicBean music) throws IOException;
+    }
+
+    private final LoudnessStore mStore;
+    private final Decoder mDecoder;
+    private final int mThreads;
+    private final ThreadPoolExecutor mExecutor;
+
+    // date modified of every track queued or done, queueing it again is a no-op
+    private final ConcurrentHashMap<Long, Long> mClaimed = new ConcurrentHashMap<Long, Long>();
+
+    private final Object mGate = new Object();
+    // guarded by mGate
+    private boolean mThrottled;
+    private int mDecoding;
+
+    private final AtomicInteger mScanned = new AtomicInteger();
+    private final AtomicInteger mFailed = new AtomicInteger();
+    private final AtomicInteger mCached = new AtomicInteger();
+    private final AtomicLong mDecodedUs = new AtomicLong();
+    // System.nanoTime() of the first decode and the end of the latest one
+    private final AtomicLong mFirstStart = new AtomicLong();
+    private volatile long mLastEnd;
+
+    /**
+     * @param threads the pool size, e.g. the core count.
+     */
+    public LoudnessScanner(LoudnessStore store, Decoder decoder, int threads) {
+        mStore = store;
+        mDecoder = decoder;
+        mThreads = Math.max(1, threads);
+        mExecutor = new ThreadPoolExecutor(mThreads, mThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LoudnessScanner-" + mCount.incrementAndGet());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues {@code list} behind everything queued so far.
+     */
+    public void enqueue(List<MusicBean> list) {
+        for (int i = 0; i < list.size(); i++) {
+            final MusicBean music = list.get(i);
+            Long dateModified = music.getDateModified();
+            Long previous = mClaimed.put(music.getId(), dateModified);
+            if (previous == null || !previous.equals(dateModified)) {
+                mExecutor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        process(music);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Limits the scan to one track at a time, the tracks being decoded finish first.
+     */
+    public void setThrottled(boolean throttled) {
+        synchronized (mGate) {
+            if (mThrottled != throttled) {
+                mThrottled = throttled;
+                mGate.notifyAll();
+            }
+        }
+    }
+
+    public boolean isThrottled() {
+        synchronized (mGate) {
+            return mThrottled;
+        }
+    }
+
+    /**
+     * @return the loudness of {@code id} regardless of the version of its file, or
+     * null. May load the store and should not be called on the main thread.
+     */
+    public TrackLoudness get(long id) {
+        return mStore.get(id);
+    }
+
+    /**
+     * @return the number of tracks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    public int getScannedCount() {
+        return mScanned.get();
+    }
+
+    public int getFailedCount() {
+        return mFailed.get();
+    }
+
+    /**
+     * @return the number of tracks that were already in the store.
+     */
+    public int getCachedCount() {
+        return mCached.get();
+    }
+
+    /**
+     * @return tracks decoded per second, from the first decode to the latest.
+     */
+    public double getTracksPerSecond() {
+        long elapsed = elapsedNanos();
+        return elapsed <= 0 ? 0 : (mScanned.get() + mFailed.get()) * 1e9 / elapsed;
+    }
+
+    /**
+     * @return seconds of audio decoded per second, over all threads.
+     */
+    public double getRealtimeFactor() {
+        long elapsed = elapsedNanos();
+        return elapsed <= 0 ? 0 : mDecodedUs.get() * 1e3 / elapsed;
+    }
+
+    /**
+     * Stops the pool, queued tracks are dropped and the ones being decoded are
+     * interrupted. What was scanned so far is in the store.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        mExecutor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoudnessScanner{scanned=%d, failed=%d, cached=%d, queued=%d, "
+                        + "%.1f tracks/s, %.1fx realtime%s}", mScanned.get(), mFailed.get(),
+                mCached.get(), getQueueDepth(), getTracksPerSecond(), getRealtimeFactor(),
+                isThrottled() ? ", throttled" : "");
+    }
+
+    private long elapsedNanos() {
+        long first = mFirstStart.get();
+        return first == 0 ? 0 : mLastEnd - first;
+    }
+
+    private void process(MusicBean music) {
+        if (mStore.get(music.getId(), music.getDateModified()) != null) {
+            mCached.incrementAndGet();
+            return;
+        }
+
+        try {
+            acquire();
+        } catch (InterruptedException e) {
+            return;
+        }
+        TrackLoudness loudness;
+        try {
+            mFirstStart.compareAndSet(0, System.nanoTime());
+            LoudnessMeter meter = mDecoder.decode(music);
+            loudness = new TrackLoudness(music.getId(), music.getDateModified(),
+                    (float) meter.getIntegratedLoudness(), (float) meter.getPeak());
+            mDecodedUs.addAndGet(meter.getDurationUs());
+            mScanned.incrementAndGet();
+        } catch (InterruptedIOException e) {
+            // shut down, not a failure of the file
+            return;
+        } catch (IOException | RuntimeException e) {
+            loudness = TrackLoudness.failed(music.getId(), music.getDateModified());
+            mFailed.incrementAndGet();
+        } finally {
+            mLastEnd = System.nanoTime();
+            release();
+        }
+
+        try {
+            mStore.put(loudness);
+            // a track takes seconds to decode, each result is worth an append
+            mStore.flush();
+        } catch (IOException e) {
+            // kept in memory, decoded again next time
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        synchronized (mGate) {
+            while (mDecoding >= (mThrottled ? 1 : mThreads)) {
+                mGate.wait();
+            }
+            mDecoding++;
+        }
+    }
+
+    private void release() {
+        synchronized (mGate) {
+            mDecoding--;
+            mGate.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+
+/**
+ * Persistent {@link TrackLoudness} by track id, see {@link RecordStore}.
+ * <p>
+ * Thread safe, the file is loaded on first use.
+ */
+public class LoudnessStore extends RecordStore<TrackLoudness> {
+
+    private static final int MAGIC = 0x4c44_4e53; // "LDNS"
+    private static final int FORMAT_VERSION = 1;
+
+    public LoudnessStore(File file) {
+        super(file, MAGIC, FORMAT_VERSION);
+    }
+
+    @Override
+    protected long getId(TrackLoudness loudness) {
+        return loudness.getId();
+    }
+
+    @Override
+    protected long getDateModified(TrackLoudness loudness) {
+        return loudness.getDateModified();
+    }
+
+    @Override
+    protected void write(TrackLoudness loudness, MusicBeanCodec.Writer writer) {
+        loudness.write(writer);
+    }
+
+    @Override
+    protected TrackLoudness read(MusicBeanCodec.Reader reader) {
+        return TrackLoudness.read(reader);
+    }
+}
@@ -1,44 +1,78 @@
 package com.vivam.mediaplayerdemo;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
+import android.content.ComponentName;
+import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.ServiceConnection;
+import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.support.v4.view.MenuItemCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.support.v7.widget.Toolbar;
+import android.text.InputType;
 import android.util.Log;
-import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class MainActivity extends AppCompatActivity implements SeekBar.OnSeekBarChangeListener,
-        View.OnClickListener {
+        View.OnClickListener, MusicLoader.Callback, PlaybackTimeline.Listener,
+        MusicAdapter.OnItemClickListener, MusicSearcher.Callback,
+        SearchView.OnQueryTextListener {
 
     private static String LOG_TAG = "MainActivity";
 
+    private static final String METADATA_FILE = "metadata.db";
+    private static final String WAVEFORM_DIR = "waveform";
+    /** About 1.5KB per track, room for a library of 10k tracks. */
+    private static final long WAVEFORM_DISK_BYTES = 24 * 1024 * 1024;
+
     private RecyclerView mRecyclerView;
+    private ImageView mArtworkView;
     private TextView mTitleTextView;
     private TextView mDurationTextView;
     private ImageButton mPauseButton;
     private ImageButton mPreviousButton;
     private ImageButton mNextButton;
-    private SeekBar mSeekBar;
+    private WaveformSeekBar mSeekBar;
 
     private MusicAdapter mAdapter;
+    // shows search results in place of the library while there is a query
+    private MusicAdapter mResultsAdapter;
+
+    private MusicSearcher mSearcher;
 
-    private BroadcastReceiver mReceiver;
+    private MetadataEnricher mEnricher;
+    private ArtworkLoader mArtworkLoader;
+    // null below API 16
+    private WaveformGenerator mWaveforms;
+    private String mQuery = "";
 
     private boolean mIsDragging = false;
+    // a drag reported to the service as a scrub
+    private boolean mScrubbing;
 
-    private ArrayList<MusicBean> mData;
+    private MusicLoader mLoader;
+    private boolean mLibraryIndexed;
 
     private boolean mInitList = true;
 
@@ -46,6 +80,85 @@ public class MainActivity extends AppCompatActivity implements SeekBar.OnSeekBar
 
     private boolean mIsPaused = false;
 
+    private MediaPlayService.LocalBinder mService;
+
+    private final Handler mHandler = new Handler();
+
+    // transport commands to the bound service, batched until the end of the loop turn
+    private final CommandBus mCommands = new CommandBus(new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    });
+
+    private PlaybackTimeline mTimeline = PlaybackTimeline.IDLE;
+
+    // second shown by the progress label, it is only rebuilt when this changes
+    private long mShownSecond = -1;
+
+    // "position / duration", reused for every label update
+    private final DurationFormatter.Buffer mProgressText =
+            new DurationFormatter.Buffer(2 * DurationFormatter.MAX_LENGTH + 3);
+
+    private boolean mResumed;
+    private boolean mTicking;
+
+    /**
+     * Moves the progress along the timeline once per frame while visible and playing.
+     */
+    private final Runnable mTicker = new Runnable() {
+
+        @Override
+        public void run() {
+            mTicking = false;
+            if (!mResumed || !mTimeline.isPlaying()) {
+                return;
+            }
+            if (!mIsDragging) {
+                updateProgress(mTimeline.positionAt(SystemClock.elapsedRealtime()));
+            }
+            scheduleTick();
+        }
+    };
+
+    private final WaveformGenerator.Listener mWaveformListener = new WaveformGenerator.Listener() {
+
+        @Override
+        public void onWaveform(final MusicBean music, final Waveform waveform) {
+            mSeekBar.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    // the track may have changed while it was decoded
+                    if (mCurrentMusic != null && mCurrentMusic.getId() == music.getId()) {
+                        mSeekBar.setWaveform(waveform);
+                    }
+                }
+            });
+        }
+    };
+
+    private ServiceConnection mConnection = new ServiceConnection() {
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            mService = (MediaPlayService.LocalBinder) service;
+            mService.addTimelineListener(MainActivity.this);
+            mCommands.setReceiver(mService.openCommandChannel());
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            mCommands.setReceiver(null);
+            mService = null;
+            // a restarted service may not have our edits
+            mInitList = true;
+            onTimelineChanged(PlaybackTimeline.IDLE);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -54,14 +167,248 @@ public class MainActivity extends AppCompatActivity implements SeekBar.OnSeekBar
         setSupportActionBar(toolbar);
 
         startService(new Intent(this, MediaPlayService.class));
-        mReceiver = new ProgressBroadcastReceiver();
 
-        mData = MediaUtils.getLocalMusicList(this);
+        mSearcher = new MusicSearcher(this);
+        mEnricher = new MetadataEnricher(
+                new MetadataStore(new File(getFilesDir(), METADATA_FILE)),
+                new AndroidMetadataExtractor(this),
+                Runtime.getRuntime().availableProcessors(), null);
+        mArtworkLoader = new ArtworkLoader(this);
+        if (AndroidWaveformDecoder.isSupported()) {
+            mWaveforms = new WaveformGenerator(new ThumbnailDiskCache(
+                    new File(getCacheDir(), WAVEFORM_DIR), WAVEFORM_DISK_BYTES),
+                    new AndroidWaveformDecoder(this));
+        }
 
         initView();
+
+        LibraryIndex index = new LibraryIndex(new File(getFilesDir(), LibraryIndex.FILE_NAME));
+        // without an index the service has no library to scan yet, it gets the one loaded
+        mLibraryIndexed = index.getFile().isFile();
+        mLoader = new MusicLoader(this, index, AsyncTask.THREAD_POOL_EXECUTOR, this);
+        mLoader.start();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mLoader.cancel();
+        mAdapter.release();
+        mSearcher.release();
+        mEnricher.shutdown();
+        mArtworkLoader.release();
+        if (mWaveforms != null) {
+            mWaveforms.shutdown();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public void onBatchLoaded(ArrayList<MusicBean> batch, boolean last) {
+        mAdapter.append(batch);
+        mSearcher.addAll(batch);
+        mEnricher.enqueue(batch);
+        if (mWaveforms != null) {
+            mWaveforms.enqueue(batch);
+        }
+        if (last && !mLibraryIndexed && mService != null) {
+            mService.scanLoudness(mAdapter.getItems());
+        }
+        if (batch.size() == mAdapter.getItemCount()) {
+            // the first batch, its rows are on screen once laid out
+            mRecyclerView.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    prioritizeVisibleRows();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onLibraryChanged(LibraryDiff diff) {
+        mAdapter.applyDiff(diff);
+        mSearcher.applyDiff(diff);
+        mEnricher.enqueue(diff.changed);
+        mEnricher.enqueue(diff.added);
+        if (mWaveforms != null) {
+            mWaveforms.enqueue(diff.changed);
+            mWaveforms.enqueue(diff.added);
+        }
+        if (mService != null) {
+            mService.scanLoudness(diff.changed);
+            mService.scanLoudness(diff.added);
+        }
+        if (mQuery.length() > 0) {
+            mSearcher.search(mQuery);
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        MenuItem item = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(item);
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(this);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        MenuItem shuffle = menu.findItem(R.id.action_shuffle);
+        MenuItem repeat = menu.findItem(R.id.action_repeat);
+        MenuItem pcmBuffer = menu.findItem(R.id.action_pcm_buffer);
+        shuffle.setEnabled(mService != null);
+        repeat.setEnabled(mService != null);
+        MenuItem prefetch = menu.findItem(R.id.action_prefetch);
+        prefetch.setEnabled(mService != null);
+        menu.findItem(R.id.action_open_url).setEnabled(mService != null);
+        pcmBuffer.setVisible(mService != null && mService.isPcmBufferSupported());
+        if (mService != null) {
+            shuffle.setChecked(mService.isShuffleEnabled());
+            pcmBuffer.setChecked(mService.isPcmBufferEnabled());
+            prefetch.setChecked(mService.isPrefetchEnabled());
+            switch (mService.getRepeatMode()) {
+                case PlaybackOrder.REPEAT_OFF:
+                    repeat.setTitle(R.string.action_repeat_off);
+                    break;
+                case PlaybackOrder.REPEAT_ONE:
+                    repeat.setTitle(R.string.action_repeat_one);
+                    break;
+                default:
+                    repeat.setTitle(R.string.action_repeat_all);
+                    break;
+            }
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (mService == null) {
+            return super.onOptionsItemSelected(item);
+        }
+        switch (item.getItemId()) {
+            case R.id.action_shuffle:
+                mService.setShuffleEnabled(!mService.isShuffleEnabled());
+                return true;
+
+            case R.id.action_repeat:
+                // off, all, one, off...
+                mService.setRepeatMode((mService.getRepeatMode() + 1) % 3);
+                return true;
+
+            case R.id.action_pcm_buffer:
+                mService.setPcmBufferEnabled(!mService.isPcmBufferEnabled());
+                return true;
+
+            case R.id.action_prefetch:
+                // compare "prefetched" and "cold" in the service dump with it off and on
+                mService.setPrefetchEnabled(!mService.isPrefetchEnabled());
+                return true;
+
+            case R.id.action_open_url:
+                showOpenUrlDialog();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Asks for the HTTP URL of a track and plays it through the stream proxy of the
+     * service. The track is not added to the library.
+     */
+    private void showOpenUrlDialog() {
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        input.setHint(R.string.open_url_hint);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_open_url)
+                .setView(input)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        playUrl(input.getText().toString().trim());
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void playUrl(String url) {
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if (mService == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            return;
+        }
+        String title = uri.getLastPathSegment();
+        mCurrentMusic = mService.addRemoteTrack(url, title != null ? title : url);
+        syncView();
+        // commands posted before go first
+        mCommands.flush();
+        mService.play(mCurrentMusic);
+        enableAll(true);
+    }
+
+    @Override
+    public boolean onQueryTextChange(String newText) {
+        mQuery = newText.trim();
+        if (mQuery.length() == 0) {
+            mSearcher.cancel();
+            showResults(false);
+        } else {
+            mSearcher.search(mQuery);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onQueryTextSubmit(String query) {
+        return onQueryTextChange(query);
+    }
+
+    @Override
+    public void onSearchResults(String query, ArrayList<MusicBean> results) {
+        mResultsAdapter.setItems(results);
+        showResults(true);
+    }
+
+    /**
+     * Moves the rows on screen to the front of the metadata queue.
+     */
+    private void prioritizeVisibleRows() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last < first) {
+            return;
+        }
+        MusicAdapter adapter = (MusicAdapter) mRecyclerView.getAdapter();
+        List<MusicBean> items = adapter.getItems();
+        mEnricher.prioritize(items.subList(first, Math.min(last + 1, items.size())));
+    }
+
+    private void showResults(boolean show) {
+        boolean showing = mRecyclerView.getAdapter() == mResultsAdapter;
+        if (show != showing) {
+            mRecyclerView.setAdapter(show ? mResultsAdapter : mAdapter);
+        }
+    }
+
+    @Override
+    public void onItemClick(MusicBean item) {
+        mCurrentMusic = item;
+
+        syncView();
+
+        play(item);
+        enableAll(true);
     }
 
     private void initView() {
+        mArtworkView = (ImageView) findViewById(R.id.artwork);
         mTitleTextView = (TextView) findViewById(R.id.title);
         mDurationTextView = (TextView) findViewById(R.id.duration);
 
@@ -74,27 +421,133 @@ public class MainActivity extends AppCompatActivity implements SeekBar.OnSeekBar
         mNextButton = (ImageButton) findViewById(R.id.btn_next);
         mNextButton.setOnClickListener(this);
 
-        mSeekBar = (SeekBar) findViewById(R.id.seek_bar);
+        mSeekBar = (WaveformSeekBar) findViewById(R.id.seek_bar);
         mSeekBar.setOnSeekBarChangeListener(this);
 
         mRecyclerView = (RecyclerView) findViewById(R.id.recycler_view);
         mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        mAdapter = new MusicAdapter();
+        mRecyclerView.setHasFixedSize(true);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prioritizeVisibleRows();
+                }
+            }
+        });
+        mAdapter = new MusicAdapter(AsyncTask.THREAD_POOL_EXECUTOR, mArtworkLoader, this);
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+
+            @Override
+            public void onChanged() {
+                // the service has to get the new list with the next play
+                mInitList = true;
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                if (isQueueInSync()) {
+                    mService.updateInQueue(positionStart, mAdapter.getItems()
+                            .subList(positionStart, positionStart + itemCount));
+                }
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                if (isQueueInSync()) {
+                    mService.addToQueue(positionStart, mAdapter.getItems()
+                            .subList(positionStart, positionStart + itemCount));
+                }
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                if (isQueueInSync()) {
+                    mService.removeFromQueue(positionStart, itemCount);
+                }
+            }
+        });
         mRecyclerView.setAdapter(mAdapter);
+        mResultsAdapter = new MusicAdapter(AsyncTask.THREAD_POOL_EXECUTOR, mArtworkLoader,
+                this);
 
         enableAll(false);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        bindService(new Intent(this, MediaPlayService.class), mConnection, 0);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        Log.d(LOG_TAG, mEnricher.toString());
+        Log.d(LOG_TAG, mArtworkLoader.toString());
+        if (mWaveforms != null) {
+            Log.d(LOG_TAG, mWaveforms.toString());
+        }
+        Log.d(LOG_TAG, mCommands.toString());
+        if (mService != null) {
+            mCommands.flush();
+            mCommands.setReceiver(null);
+            if (mScrubbing) {
+                // the drag never ends for the service otherwise, playback would hold
+                mService.endScrub(mSeekBar.getProgress());
+                mScrubbing = false;
+            }
+            mService.removeTimelineListener(this);
+        }
+        unbindService(mConnection);
+        mService = null;
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        registerReceiver(mReceiver, new IntentFilter(MediaPlayService.ACTION_PROGRESS));
+        mResumed = true;
+        updateProgress(mTimeline.positionAt(SystemClock.elapsedRealtime()));
+        scheduleTick();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        unregisterReceiver(mReceiver);
+        mResumed = false;
+        mSeekBar.removeCallbacks(mTicker);
+        mTicking = false;
+    }
+
+    @Override
+    public void onTimelineChanged(PlaybackTimeline timeline) {
+        mTimeline = timeline;
+        MusicBean music = timeline.getMusic();
+        if (music != null && (mCurrentMusic == null || mCurrentMusic.getId() != music.getId())) {
+            mCurrentMusic = music;
+            syncView();
+            enableAll(true);
+        }
+        if (timeline.getDuration() > 0) {
+            mSeekBar.setMax((int) timeline.getDuration());
+        }
+
+        mIsPaused = timeline.getState() == PlaybackController.STATE_PAUSED;
+        mPauseButton.setImageResource(mIsPaused
+                ? R.drawable.ic_play_outline : R.drawable.ic_pause_outline);
+
+        if (!mIsDragging) {
+            updateProgress(timeline.positionAt(SystemClock.elapsedRealtime()));
+        }
+        scheduleTick();
+    }
+
+    private void scheduleTick() {
+        if (mResumed && !mTicking && mTimeline.isPlaying()) {
+            mTicking = true;
+            ViewCompat.postOnAnimation(mSeekBar, mTicker);
+        }
     }
 
     private void enableAll(boolean enable) {
@@ -105,20 +558,25 @@ public class MainActivity extends AppCompatActivity implements SeekBar.OnSeekBar
         mDurationTextView.setVisibility(enable ? View.VISIBLE : View.GONE);
     }
 
-    private void updateProgress(int progress) {
-        mSeekBar.setProgress(progress);
-        StringBuilder sb = new StringBuilder();
-        if (mCurrentMusic != null) {
-            long current = progress * mCurrentMusic.getDuration() / 100;
-            sb.append(MediaUtils.dateFormat(current))
+    /**
+     * @param position the playback position in milliseconds.
+     */
+    private void updateProgress(long position) {
+        mSeekBar.setProgress((int) position);
+        long second = position / 1000;
+        if (mCurrentMusic != null && second != mShownSecond) {
+            mShownSecond = second;
+            mProgressText.clear()
+                    .appendDuration(position)
                     .append(" / ")
-                    .append(MediaUtils.dateFormat(mCurrentMusic.getDuration()));
-            mDurationTextView.setText(sb.toString());
+                    .appendDuration(mCurrentMusic.getDuration());
+            mDurationTextView.setText(mProgressText.array(), 0, mProgressText.length());
         }
     }
 
     @Override
     public void onClick(View v) {
+        int command = 0;
         String action = null;
 
         switch (v.getId()) {
@@ -126,133 +584,164 @@ public class MainActivity extends AppCompatActivity implements SeekBar.OnSeekBar
                 if (mIsPaused) {
                     mIsPaused = false;
                     mPauseButton.setImageResource(R.drawable.ic_pause_outline);
+                    command = PlayerCommand.RESUME;
                     action = MediaPlayService.ACTION_RESUME;
                 } else {
                     mIsPaused = true;
                     mPauseButton.setImageResource(R.drawable.ic_play_outline);
+                    command = PlayerCommand.PAUSE;
                     action = MediaPlayService.ACTION_PAUSE;
                 }
                 break;
 
             case R.id.btn_previous:
                 syncView();
+                command = PlayerCommand.PREVIOUS;
                 action = MediaPlayService.ACTION_PREVIOUS;
                 break;
 
             case R.id.btn_next:
                 syncView();
+                command = PlayerCommand.NEXT;
                 action = MediaPlayService.ACTION_NEXT;
                 break;
         }
 
         if (action != null) {
-            Intent intent = new Intent(this, MediaPlayService.class);
-            intent.setAction(action);
-            startService(intent);
+            // skips are counted, the others ignore it
+            sendCommand(command, 1, action);
         }
     }
 
+    /**
+     * While dragging, positions go to the bound service as scrub previews, which it
+     * rate limits. Without the service only the final position is sent, as a
+     * single seek intent.
+     */
     @Override
     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
         if (fromUser) {
-            Log.d(LOG_TAG, "onProgressChanged: progress = " + progress);
-            Intent intent = new Intent(this, MediaPlayService.class);
-            intent.setAction(MediaPlayService.ACTION_SEEK);
-            intent.putExtra(MediaPlayService.EXTRA_SEEK_PROGRESS, progress);
-            startService(intent);
             updateProgress(progress);
+            if (!mIsDragging) {
+                // keys or accessibility, no scrub around it
+                seek(progress);
+            } else if (mService != null && mScrubbing) {
+                mService.scrubTo(progress);
+            }
         }
     }
 
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
         mIsDragging = true;
-        Intent intent = new Intent(this, MediaPlayService.class);
-        intent.setAction(MediaPlayService.ACTION_PAUSE);
-        startService(intent);
+        mScrubbing = mService != null;
+        if (mScrubbing) {
+            // e.g. a skip tapped just before, it must not land after the scrub
+            mCommands.flush();
+            mService.beginScrub();
+        }
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
         mIsDragging = false;
+        if (mScrubbing && mService != null) {
+            mService.endScrub(seekBar.getProgress());
+        } else {
+            seek(seekBar.getProgress());
+        }
+        mScrubbing = false;
     }
 
-    private void syncView() {
-        mTitleTextView.setText(mCurrentMusic.getTitle());
-        updateProgress(0);
-
-        mPauseButton.setImageResource(R.drawable.ic_pause_outline);
-        mIsPaused = false;
+    /**
+     * @param position in milliseconds.
+     */
+    private void seek(long position) {
+        sendCommand(PlayerCommand.SEEK, position, MediaPlayService.ACTION_SEEK);
     }
 
-    private class ProgressBroadcastReceiver extends BroadcastReceiver {
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            int progress = intent.getIntExtra(MediaPlayService.EXTRA_PROGRESS, 0);
-            if (progress > 0) {
-                updateProgress(progress);
-            }
-
-            MusicBean music = (MusicBean) intent.getSerializableExtra(MediaPlayService.EXTRA_MUSIC);
-            if (music != null) {
-                mCurrentMusic = music;
-                syncView();
-            }
+    /**
+     * Posts a {@link PlayerCommand} to the command bus of the bound service, or
+     * sends it as {@code action} while unbound.
+     */
+    private void sendCommand(int type, long argument, String action) {
+        if (mService != null) {
+            mCommands.post(type, argument);
+            return;
+        }
+        Intent intent = new Intent(this, MediaPlayService.class);
+        intent.setAction(action);
+        if (type == PlayerCommand.SEEK) {
+            intent.putExtra(MediaPlayService.EXTRA_SEEK_POSITION, argument);
         }
+        intent.putExtra(MediaPlayService.EXTRA_POSTED_AT, System.nanoTime());
+        startService(intent);
     }
 
-    private class MusicAdapter extends RecyclerView.Adapter<ViewHolder> {
-
-        @Override
-        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            return new ViewHolder(LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.item_music, null));
+    /**
+     * Whether the queue of the service is the list of {@link #mAdapter}, so an edit
+     * of the list only has to send the changed entries. Otherwise, and for edits
+     * made while unbound, the whole list is handed over with the next play.
+     */
+    private boolean isQueueInSync() {
+        if (mService == null) {
+            mInitList = true;
         }
+        return !mInitList;
+    }
 
-        @Override
-        public void onBindViewHolder(ViewHolder holder, final int position) {
-            final MusicBean item = mData.get(position);
-            if (item != null) {
-                holder.titleTv.setText(item.getTitle());
-                holder.durationTv.setText(MediaUtils.dateFormat(item.getDuration()));
-                holder.itemView.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        mCurrentMusic = item;
-
-                        syncView();
-
-                        Intent intent = new Intent(MainActivity.this, MediaPlayService.class);
-                        intent.setAction(MediaPlayService.ACTION_PLAY);
-                        intent.putExtra(MediaPlayService.EXTRA_MUSIC, item);
-                        intent.putExtra(MediaPlayService.EXTRA_LIST_CHANGED, mInitList);
-                        if (mInitList) {
-                            mInitList = false;
-                            intent.putExtra(MediaPlayService.EXTRA_MUSIC_LIST, mData);
-                        }
-                        startService(intent);
-                        enableAll(true);
-                    }
-                });
+    /**
+     * Plays {@code item}, the queue is only handed over when it changed. Through
+     * the binder it is passed by reference, the intent fallback carries ids only.
+     */
+    private void play(MusicBean item) {
+        if (mService != null) {
+            // commands posted before the pick go first
+            mCommands.flush();
+            if (mInitList) {
+                mInitList = false;
+                mService.setQueue(mAdapter.getItems(), item);
+            } else {
+                mService.play(item);
             }
+            return;
         }
 
-        @Override
-        public int getItemCount() {
-            return mData != null ? mData.size() : 0;
+        Intent intent = new Intent(this, MediaPlayService.class);
+        intent.setAction(MediaPlayService.ACTION_PLAY);
+        intent.putExtra(MediaPlayService.EXTRA_MUSIC, item);
+        intent.putExtra(MediaPlayService.EXTRA_LIST_CHANGED, mInitList);
+        if (mInitList) {
+            mInitList = false;
+            List<MusicBean> items = mAdapter.getItems();
+            long[] ids = new long[items.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = items.get(i).getId();
+            }
+            intent.putExtra(MediaPlayService.EXTRA_QUEUE_IDS, ids);
         }
+        startService(intent);
     }
 
-    private class ViewHolder extends RecyclerView.ViewHolder {
-
-        TextView titleTv;
-        TextView durationTv;
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        mArtworkLoader.onTrimMemory(level);
+    }
 
-        public ViewHolder(View itemView) {
-            super(itemView);
-            titleTv = (TextView) itemView.findViewById(R.id.title);
-            durationTv = (TextView) itemView.findViewById(R.id.duration);
+    private void syncView() {
+        mArtworkLoader.load(mCurrentMusic.getId(), mArtworkView);
+        mTitleTextView.setText(mCurrentMusic.getTitle());
+        mSeekBar.setMax((int) Math.max(mCurrentMusic.getDuration(), 0));
+        mSeekBar.setWaveform(null);
+        // remote tracks, with negative ids, are not in the MediaStore to decode
+        if (mWaveforms != null && mCurrentMusic.getId() >= 0) {
+            mWaveforms.request(mCurrentMusic, mWaveformListener);
         }
+        mShownSecond = -1;
+        updateProgress(0);
+
+        mPauseButton.setImageResource(R.drawable.ic_pause_outline);
+        mIsPaused = false;
     }
 }
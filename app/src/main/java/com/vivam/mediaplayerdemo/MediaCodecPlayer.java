@@ -0,0 +1,542 @@
+package com.vivam.mediaplayerdemo;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Player} that decodes with {@link MediaExtractor} and {@link MediaCodec}
+ * and plays through an {@link AudioTrack}, keeping the decoded audio around the
+ * playhead in a {@link PcmRingBuffer}. A seek into the buffered range, a skip back
+ * over what was just played or a scrub around the playhead, only moves the read
+ * position and does not touch the decoder.
+ * <p>
+ * Decoding and output run on a worker thread per data source, callbacks are
+ * delivered on the looper of the thread that created the instance. Players made
+ * by one {@link #factory(Context, StreamProxy) factory} share a {@link DirectBufferPool}, so
+ * the decoded audio of the current and the next track stays within one budget.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class MediaCodecPlayer implements Player {
+
+    private static final String LOG_TAG = "MediaCodecPlayer";
+
+    private static final int BLOCK_BYTES = 64 * 1024;
+    /** Decoded audio of both players, about 45s of 44.1kHz stereo. */
+    private static final int POOL_BYTES = 8 * 1024 * 1024;
+    /** Decoded audio of one player, history included. */
+    private static final int BUFFER_BYTES = 6 * 1024 * 1024;
+    /** Decoded ahead of the playhead, the rest of the buffer is history to seek back into. */
+    private static final int AHEAD_BYTES = 2 * 1024 * 1024;
+
+    private static final long DEQUEUE_TIMEOUT_US = 5000;
+    // written to the track at a time, small enough to react to a pause or seek quickly
+    private static final int WRITE_BYTES = 8 * 1024;
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final DirectBufferPool mPool;
+    private final StreamProxy mProxy;
+    private final Handler mHandler = new Handler(Looper.myLooper());
+
+    private Uri mUri;
+    private Worker mWorker;
+    private float mVolume = 1.0f;
+
+    /**
+     * @param proxy serves remote tracks, may be null.
+     */
+    public MediaCodecPlayer(Context context, Listener listener, DirectBufferPool pool,
+            StreamProxy proxy) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+        mPool = pool;
+        mProxy = proxy;
+    }
+
+    /**
+     * @return a factory of players sharing one buffer pool.
+     */
+    public static Factory factory(final Context context, final StreamProxy proxy) {
+        final DirectBufferPool pool = new DirectBufferPool(BLOCK_BYTES, POOL_BYTES);
+        return new Factory() {
+
+            @Override
+            public Player create(Listener listener) {
+                return new MediaCodecPlayer(context, listener, pool, proxy);
+            }
+        };
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    @Override
+    public void setDataSource(long id) throws IOException {
+        String url = mProxy != null ? mProxy.getUrl(id) : null;
+        mUri = url != null ? Uri.parse(url) : MediaUtils.uriWithAppendedId(id);
+    }
+
+    @Override
+    public void prepareAsync() {
+        stopWorker();
+        mWorker = new Worker(mUri);
+        mWorker.setVolume(mVolume);
+        mWorker.start();
+    }
+
+    @Override
+    public void start() {
+        if (mWorker != null) {
+            mWorker.setPlaying(true);
+        }
+    }
+
+    @Override
+    public void pause() {
+        if (mWorker != null) {
+            mWorker.setPlaying(false);
+        }
+    }
+
+    @Override
+    public void seekTo(int msec) {
+        if (mWorker != null) {
+            mWorker.seekTo(msec);
+        }
+    }
+
+    @Override
+    public void reset() {
+        stopWorker();
+        mUri = null;
+    }
+
+    @Override
+    public void release() {
+        reset();
+        mPool.trim();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mWorker != null && mWorker.isPlaying();
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mWorker != null ? mWorker.getPosition() : 0;
+    }
+
+    @Override
+    public int getDuration() {
+        return mWorker != null ? mWorker.getDuration() : 0;
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        mVolume = volume;
+        if (mWorker != null) {
+            mWorker.setVolume(volume);
+        }
+    }
+
+    @Override
+    public boolean setNextPlayer(Player next) {
+        return false;
+    }
+
+    private void stopWorker() {
+        if (mWorker != null) {
+            // it releases the codec and the track on its own, callbacks are dropped
+            mWorker.quit();
+            mWorker = null;
+        }
+    }
+
+    private void post(final Worker worker, final int event) {
+        mHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (worker != mWorker) {
+                    return;
+                }
+                switch (event) {
+                    case Worker.EVENT_PREPARED:
+                        mListener.onPrepared(MediaCodecPlayer.this);
+                        break;
+                    case Worker.EVENT_COMPLETED:
+                        mListener.onCompletion(MediaCodecPlayer.this);
+                        break;
+                    case Worker.EVENT_ERROR:
+                        mListener.onError(MediaCodecPlayer.this, 0, 0);
+                        break;
+                }
+            }
+        });
+    }
+
+    /**
+     * Decodes one data source into the ring buffer and writes it to the track. The
+     * buffer, codec and track are only touched on this thread, requests from the
+     * player are handed over under the lock.
+     */
+    private class Worker extends Thread {
+
+        static final int EVENT_PREPARED = 1;
+        static final int EVENT_COMPLETED = 2;
+        static final int EVENT_ERROR = 3;
+
+        private static final long NO_SEEK = -1;
+
+        private final Uri mUri;
+        private final PcmRingBuffer mBuffer;
+        private final byte[] mChunk = new byte[WRITE_BYTES];
+
+        // Guarded by this.
+        private boolean mQuit;
+        private boolean mPlaying;
+        private boolean mCompleted;
+        private long mSeekMs = NO_SEEK;
+        private float mTrackVolume = 1.0f;
+        private boolean mVolumeChanged;
+
+        private volatile int mPositionMs;
+        private volatile int mDurationMs;
+        private boolean mTrackPlaying;
+
+        private MediaExtractor mExtractor;
+        private MediaCodec mCodec;
+        private ByteBuffer[] mInputBuffers;
+        private ByteBuffer[] mOutputBuffers;
+        private final MediaCodec.BufferInfo mInfo = new MediaCodec.BufferInfo();
+        // output buffer only partly copied to the ring buffer yet, or -1
+        private int mOutputIndex = -1;
+        private boolean mInputDone;
+        private boolean mOutputDone;
+        // decoded frames before this one are dropped, they precede a decoder seek
+        private long mDropUntilFrame;
+
+        private AudioTrack mTrack;
+        // frames written to the track since it was last flushed, and the frame they start at
+        private long mTrackFrames;
+        private long mTrackStartFrame;
+
+        Worker(Uri uri) {
+            super(LOG_TAG + "-Worker");
+            mUri = uri;
+            mBuffer = new PcmRingBuffer(mPool, BUFFER_BYTES, AHEAD_BYTES);
+        }
+
+        synchronized void quit() {
+            mQuit = true;
+            notifyAll();
+        }
+
+        synchronized void setPlaying(boolean playing) {
+            if (playing && mCompleted && mSeekMs == NO_SEEK) {
+                // a start after completion plays the track again
+                mSeekMs = 0;
+            }
+            mCompleted = false;
+            mPlaying = playing;
+            notifyAll();
+        }
+
+        synchronized boolean isPlaying() {
+            return mPlaying;
+        }
+
+        synchronized void seekTo(int msec) {
+            mCompleted = false;
+            mSeekMs = Math.max(0, msec);
+            mPositionMs = (int) mSeekMs;
+            notifyAll();
+        }
+
+        synchronized void setVolume(float volume) {
+            mTrackVolume = volume;
+            mVolumeChanged = true;
+            notifyAll();
+        }
+
+        int getPosition() {
+            return mPositionMs;
+        }
+
+        int getDuration() {
+            return mDurationMs;
+        }
+
+        @Override
+        public void run() {
+            android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_AUDIO);
+            try {
+                open();
+                post(this, EVENT_PREPARED);
+                loop();
+            } catch (IOException | RuntimeException e) {
+                Log.e(LOG_TAG, "failed to play " + mUri, e);
+                post(this, EVENT_ERROR);
+            } catch (InterruptedException e) {
+                // quit
+            } finally {
+                close();
+            }
+        }
+
+        private void open() throws IOException {
+            mExtractor = new MediaExtractor();
+            mExtractor.setDataSource(mContext, mUri, null);
+            MediaFormat format = null;
+            for (int i = 0; i < mExtractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = mExtractor.getTrackFormat(i);
+                if (trackFormat.getString(MediaFormat.KEY_MIME).startsWith("audio/")) {
+                    mExtractor.selectTrack(i);
+                    format = trackFormat;
+                    break;
+                }
+            }
+            if (format == null) {
+                throw new IOException("no audio track in " + mUri);
+            }
+            if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                mDurationMs = (int) (format.getLong(MediaFormat.KEY_DURATION) / 1000);
+            }
+
+            mCodec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            mCodec.configure(format, null, null, 0);
+            mCodec.start();
+            mInputBuffers = mCodec.getInputBuffers();
+            mOutputBuffers = mCodec.getOutputBuffers();
+            setOutputFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                    format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+        }
+
+        private void loop() throws InterruptedException {
+            while (true) {
+                boolean playing;
+                long seekMs;
+                synchronized (this) {
+                    while (!mQuit && !mPlaying && mSeekMs == NO_SEEK && !mVolumeChanged
+                            && !canDecode()) {
+                        wait();
+                    }
+                    if (mQuit) {
+                        return;
+                    }
+                    playing = mPlaying;
+                    seekMs = mSeekMs;
+                    mSeekMs = NO_SEEK;
+                    if (mVolumeChanged) {
+                        mVolumeChanged = false;
+                        mTrack.setStereoVolume(mTrackVolume, mTrackVolume);
+                    }
+                }
+
+                if (seekMs != NO_SEEK) {
+                    seek(seekMs);
+                }
+                if (playing != mTrackPlaying) {
+                    if (playing) {
+                        mTrack.play();
+                    } else {
+                        mTrack.pause();
+                    }
+                    mTrackPlaying = playing;
+                }
+
+                boolean worked = false;
+                if (canDecode()) {
+                    worked = decode();
+                }
+                if (playing) {
+                    int length = mBuffer.read(mChunk, 0, mChunk.length);
+                    if (length > 0) {
+                        mTrack.write(mChunk, 0, length);
+                        mTrackFrames += length / mBuffer.getFrameSize();
+                        worked = true;
+                    } else if (mOutputDone && drained()) {
+                        onCompleted();
+                        continue;
+                    }
+                    updatePosition();
+                }
+                if (!worked) {
+                    // waiting on the codec, or on the track to play out the end
+                    Thread.sleep(DEQUEUE_TIMEOUT_US / 1000);
+                }
+            }
+        }
+
+        private boolean canDecode() {
+            return !mOutputDone && mBuffer.writableBytes() > 0;
+        }
+
+        /**
+         * Feeds the codec one sample and moves its output to the ring buffer.
+         *
+         * @return false if neither was possible.
+         */
+        private boolean decode() {
+            boolean worked = false;
+            if (!mInputDone) {
+                int index = mCodec.dequeueInputBuffer(0);
+                if (index >= 0) {
+                    int size = mExtractor.readSampleData(mInputBuffers[index], 0);
+                    if (size < 0) {
+                        mCodec.queueInputBuffer(index, 0, 0, 0,
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        mInputDone = true;
+                    } else {
+                        mCodec.queueInputBuffer(index, 0, size, mExtractor.getSampleTime(), 0);
+                        mExtractor.advance();
+                    }
+                    worked = true;
+                }
+            }
+
+            if (mOutputIndex < 0) {
+                int index = mCodec.dequeueOutputBuffer(mInfo, worked ? 0 : DEQUEUE_TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    mOutputBuffers = mCodec.getOutputBuffers();
+                    return true;
+                } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat format = mCodec.getOutputFormat();
+                    setOutputFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                            format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+                    return true;
+                } else if (index < 0) {
+                    return worked;
+                }
+                mOutputIndex = index;
+                ByteBuffer output = mOutputBuffers[index];
+                output.limit(mInfo.offset + mInfo.size).position(mInfo.offset);
+                long frame = mBuffer.frameAt(mInfo.presentationTimeUs);
+                if (frame < mDropUntilFrame) {
+                    long skip = (mDropUntilFrame - frame) * mBuffer.getFrameSize();
+                    output.position((int) Math.min(output.limit(), output.position() + skip));
+                }
+            }
+
+            ByteBuffer output = mOutputBuffers[mOutputIndex];
+            if (output.hasRemaining()) {
+                worked |= mBuffer.write(output) > 0;
+            }
+            if (!output.hasRemaining()) {
+                mCodec.releaseOutputBuffer(mOutputIndex, false);
+                mOutputIndex = -1;
+                if ((mInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    mOutputDone = true;
+                }
+                worked = true;
+            }
+            return worked;
+        }
+
+        private void seek(long ms) {
+            long frame = mBuffer.frameAt(ms * 1000);
+            mTrack.pause();
+            mTrack.flush();
+            mTrackPlaying = false;
+            mTrackFrames = 0;
+            mTrackStartFrame = frame;
+
+            if (!mBuffer.seekTo(frame)) {
+                mExtractor.seekTo(ms * 1000, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                mCodec.flush();
+                mOutputIndex = -1;
+                mInputDone = false;
+                mOutputDone = false;
+                mBuffer.reset(frame);
+                mDropUntilFrame = frame;
+            }
+        }
+
+        private void setOutputFormat(int sampleRate, int channelCount) {
+            if (mTrack != null && sampleRate == mBuffer.getSampleRate()
+                    && channelCount * 2 == mBuffer.getFrameSize()) {
+                return;
+            }
+            long frame = mBuffer.frameAt(mBuffer.timeAt(mBuffer.getEndFrame()));
+            long dropUntilUs = mBuffer.timeAt(mDropUntilFrame);
+            mBuffer.setFormat(sampleRate, channelCount);
+            frame = mBuffer.frameAt(mBuffer.timeAt(frame));
+            mBuffer.reset(frame);
+            mDropUntilFrame = mBuffer.frameAt(dropUntilUs);
+            mTrackStartFrame = frame;
+            mTrackFrames = 0;
+
+            if (mTrack != null) {
+                mTrack.release();
+            }
+            int channelConfig = channelCount == 1
+                    ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+            int minSize = AudioTrack.getMinBufferSize(sampleRate, channelConfig,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            mTrack = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, channelConfig,
+                    AudioFormat.ENCODING_PCM_16BIT, Math.max(minSize * 2, WRITE_BYTES * 2),
+                    AudioTrack.MODE_STREAM);
+            synchronized (this) {
+                mTrack.setStereoVolume(mTrackVolume, mTrackVolume);
+                mVolumeChanged = false;
+            }
+            mTrackPlaying = false;
+        }
+
+        /**
+         * @return whether the track played everything written to it.
+         */
+        private boolean drained() {
+            return mTrack.getPlaybackHeadPosition() >= mTrackFrames;
+        }
+
+        private void updatePosition() {
+            long played = Math.min(mTrackFrames, mTrack.getPlaybackHeadPosition());
+            synchronized (this) {
+                if (mSeekMs == NO_SEEK) {
+                    mPositionMs = (int) (mBuffer.timeAt(mTrackStartFrame + played) / 1000);
+                }
+            }
+        }
+
+        private void onCompleted() {
+            synchronized (this) {
+                mPlaying = false;
+                mCompleted = true;
+            }
+            mTrack.pause();
+            mTrackPlaying = false;
+            mPositionMs = mDurationMs;
+            post(this, EVENT_COMPLETED);
+        }
+
+        private void close() {
+            if (mCodec != null) {
+                mCodec.release();
+            }
+            if (mExtractor != null) {
+                mExtractor.release();
+            }
+            if (mTrack != null) {
+                mTrack.release();
+            }
+            mBuffer.reset(0);
+        }
+    }
+}
@@ -3,19 +3,31 @@ package com.vivam.mediaplayerdemo;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.media.AudioManager;
-import android.media.MediaPlayer;
-import android.net.Uri;
+import android.os.Binder;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
 import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static android.os.Handler.*;
 
@@ -23,9 +35,8 @@ import static android.os.Handler.*;
  * Created by vivam on 1/20/16.
  */
 public class MediaPlayService extends Service
-        implements MediaPlayer.OnErrorListener,
-        AudioManager.OnAudioFocusChangeListener,
-        MediaPlayer.OnCompletionListener {
+        implements AudioManager.OnAudioFocusChangeListener,
+        PlaybackController.Callback {
 
     private static final String LOG_TAG = "MediaPlayService";
 
@@ -36,52 +47,197 @@ public class MediaPlayService extends Service
     public static final String ACTION_NEXT = "com.vivam.action.NEXT";
     public static final String ACTION_STOP = "com.vivam.action.STOP";
     public static final String ACTION_SEEK = "com.vivam.action.SEEK";
-    public static final String ACTION_PROGRESS = "com.vivam.action.PROGRESS";
 
     public static final String EXTRA_MUSIC = "music";
-    public static final String EXTRA_MUSIC_LIST = "musicList";
+    /** The queue as a {@code long[]} of MediaStore ids, metadata is loaded when needed. */
+    public static final String EXTRA_QUEUE_IDS = "queueIds";
     public static final String EXTRA_LIST_CHANGED = "listChanged";
-    public static final String EXTRA_SEEK_PROGRESS = "seekProgress";
-    public static final String EXTRA_PROGRESS = "progress";
+    /** The position to seek to, in milliseconds. */
+    public static final String EXTRA_SEEK_POSITION = "seekPosition";
+    /** {@link System#nanoTime()} the intent was sent at, to time the command. */
+    public static final String EXTRA_POSTED_AT = "postedAt";
 
-    private MediaPlayer mMediaPlayer = null;
+    private static final String PREFS_NAME = "playback";
+    private static final String PREF_SHUFFLE = "shuffle";
+    private static final String PREF_REPEAT_MODE = "repeatMode";
+    private static final String PREF_PCM_BUFFER = "pcmBuffer";
+    private static final String PREF_PREFETCH = "prefetch";
+
+    private static final String STATE_FILE = "playback_state";
+    private static final String LOUDNESS_FILE = "loudness";
+    private static final String STREAM_CACHE_DIR = "stream";
+    private static final int STREAM_CHUNK_BYTES = 256 * 1024;
+    private static final long STREAM_CACHE_BYTES = 64 * 1024 * 1024;
+    /** Upcoming tracks whose start is read ahead, within the budget. */
+    private static final int PREFETCH_TRACKS = 3;
+    private static final int PREFETCH_TRACK_BYTES = 256 * 1024;
+    private static final long PREFETCH_BUDGET_BYTES = 1024 * 1024;
+    /** Slow enough to leave a class 4 card to the player. */
+    private static final long PREFETCH_BYTES_PER_SECOND = 1024 * 1024;
+    /** How often the position is checkpointed while playing. */
+    private static final long CHECKPOINT_INTERVAL_MS = 5000;
+    /** How long a session that lost focus for good keeps its player prepared. */
+    private static final long PARK_DELAY_MS = 60 * 1000;
+    /** The least time between two seeks while scrubbing. */
+    private static final long SCRUB_INTERVAL_MS = 100;
+
+    // Only touched on the play thread.
+    private PlaybackController mController;
+    private MusicBean mPlayingMusic;
+    private PlaybackSession mSession;
+    private boolean mScrubbing;
+    // whether playback goes on when the scrub ends
+    private boolean mResumeAfterScrub;
+
+    private volatile PlaybackTimeline mTimeline = PlaybackTimeline.IDLE;
+    // Only touched on the main thread.
+    private final ArrayList<PlaybackTimeline.Listener> mTimelineListeners =
+            new ArrayList<PlaybackTimeline.Listener>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     private AudioManager mAudioManager;
 
+    // Only touched on the main thread, player callbacks post their queue work there.
     private MusicBean mCurrentMusic;
-    private ArrayList<MusicBean> mMusicList;
+    private PlayQueue mQueue;
+    private PlaybackOrder mOrder;
     private boolean mListChanged;
 
     private HandlerThread mPlayThread;
     private Handler mPlayHandler;
 
+    private final PlaybackMetrics mMetrics = new PlaybackMetrics();
+    // scrub targets offered on the main thread, taken on the play thread
+    private final SeekCoalescer mScrubSeeks = new SeekCoalescer(SCRUB_INTERVAL_MS);
+    private PlaybackStateStore mStateStore;
+    private LoudnessStore mLoudnessStore;
+    // null below API 16
+    private LoudnessScanner mLoudnessScanner;
+    private Executor mStateExecutor;
+    private StreamProxy mStreamProxy;
+    private TrackPrefetcher mPrefetcher;
+
+    private final IBinder mBinder = new LocalBinder();
+
     @Override
     public void onCreate() {
         super.onCreate();
 
-        initMediaPlayer();
+        mStreamProxy = new StreamProxy(new ChunkCache(new File(getCacheDir(), STREAM_CACHE_DIR),
+                STREAM_CHUNK_BYTES, STREAM_CACHE_BYTES));
+        try {
+            mStreamProxy.start();
+        } catch (IOException e) {
+            // remote tracks fail to prepare, local ones are not affected
+            Log.e(LOG_TAG, "cannot start the stream proxy", e);
+        }
+
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        mController = new PlaybackController(
+                playerFactory(prefs.getBoolean(PREF_PCM_BUFFER, false)), this);
+        mController.setMetrics(mMetrics);
+        mPrefetcher = new TrackPrefetcher(new TrackPrefetcher.Source() {
+
+            @Override
+            public InputStream open(long id) throws IOException {
+                // remote tracks are prefetched by the stream proxy
+                return mStreamProxy.isRemote(id) ? null
+                        : getContentResolver().openInputStream(MediaUtils.uriWithAppendedId(id));
+            }
+        }, PREFETCH_TRACK_BYTES, PREFETCH_BUDGET_BYTES,
+                new TokenBucket(PREFETCH_BYTES_PER_SECOND, PREFETCH_TRACK_BYTES));
+        mPrefetcher.setEnabled(prefs.getBoolean(PREF_PREFETCH, true));
+        mLoudnessStore = new LoudnessStore(new File(getFilesDir(), LOUDNESS_FILE));
+        mController.setGain(new PlaybackController.Gain() {
+
+            @Override
+            public float get(long id) {
+                TrackLoudness loudness = mLoudnessStore.get(id);
+                return loudness == null ? 1.0f : loudness.getGain(TrackLoudness.REFERENCE_LUFS);
+            }
+        });
 
         mAudioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        // focus is requested when playback starts, see PlaybackSession
+        mSession = new PlaybackSession(mController, new PlaybackSession.AudioFocus() {
 
-        int result = mAudioManager.requestAudioFocus(this, AudioManager.STREAM_MUSIC,
-                AudioManager.AUDIOFOCUS_GAIN);
+            @Override
+            public boolean request() {
+                return mAudioManager.requestAudioFocus(MediaPlayService.this,
+                        AudioManager.STREAM_MUSIC, AudioManager.AUDIOFOCUS_GAIN)
+                        == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+            }
 
-        if (result != AudioManager.AUDIOFOCUS_REQUEST_GRANTED) {
-            // could not get audio focus.
-        }
+            @Override
+            public void abandon() {
+                mAudioManager.abandonAudioFocus(MediaPlayService.this);
+            }
+        });
 
+        // Players are created lazily on this thread, so their callbacks are
+        // delivered here as well.
         mPlayThread = new HandlerThread(LOG_TAG + "-PlayThread");
 
         mPlayThread.start();
         mPlayHandler = new Handler(mPlayThread.getLooper(), mCallback);
 
-        mMusicList = new ArrayList<MusicBean>();
+        mQueue = new PlayQueue();
+        mOrder = new PlaybackOrder(mQueue);
+        mOrder.setShuffleEnabled(prefs.getBoolean(PREF_SHUFFLE, false));
+        mOrder.setRepeatMode(prefs.getInt(PREF_REPEAT_MODE, PlaybackOrder.REPEAT_ALL));
+
+        ThreadPoolExecutor stateExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG + "-State");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        stateExecutor.allowCoreThreadTimeOut(true);
+        mStateExecutor = stateExecutor;
+        mStateStore = new PlaybackStateStore(new File(getFilesDir(), STATE_FILE), stateExecutor);
+        restoreState();
+
+        if (AndroidLoudnessDecoder.isSupported()) {
+            mLoudnessScanner = new LoudnessScanner(mLoudnessStore, new AndroidLoudnessDecoder(this),
+                    Runtime.getRuntime().availableProcessors());
+            stateExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    // loads the store off the play thread, before the first gain lookup
+                    mLoudnessStore.size();
+                    // the library as MainActivity last indexed it, without one the
+                    // activity hands it over once loaded; changes since come as diffs
+                    List<MusicBean> library = new LibraryIndex(
+                            new File(getFilesDir(), LibraryIndex.FILE_NAME)).load();
+                    if (library != null) {
+                        mLoudnessScanner.enqueue(library);
+                    }
+                }
+            });
+        }
     }
 
-    private void initMediaPlayer() {
-        mMediaPlayer = new MediaPlayer();
-        mMediaPlayer.setOnErrorListener(this);
-        mMediaPlayer.setOnCompletionListener(this);
+    /**
+     * Puts back the queue and the track of the last run, paused where it was.
+     * Only ids are restored here, the track metadata is loaded on the play thread.
+     */
+    private void restoreState() {
+        PlaybackStateStore.State state = mStateStore.load();
+        if (state == null) {
+            return;
+        }
+        mQueue.setAll(state.getIds());
+        boolean found = mQueue.moveTo(state.getCurrentId());
+        mOrder.onQueueReplaced();
+        if (found) {
+            send(mPlayHandler.obtainMessage(MSG_RESTORE, state));
+        }
     }
 
     @Override
@@ -89,49 +245,51 @@ public class MediaPlayService extends Service
         if (intent.getAction() != null) {
             switch (intent.getAction()) {
                 case ACTION_PLAY:
-                    mCurrentMusic = (MusicBean) intent.getSerializableExtra(EXTRA_MUSIC);
+                    MusicBean music = intent.getParcelableExtra(EXTRA_MUSIC);
                     mListChanged = intent.getBooleanExtra(EXTRA_LIST_CHANGED, false);
                     if (mListChanged) {
-                        if (mMusicList == null) {
-                            mMusicList = new ArrayList<MusicBean>();
-                        }
-                        mMusicList.clear();
-                        ArrayList<MusicBean> list = (ArrayList<MusicBean>)
-                                intent.getSerializableExtra(EXTRA_MUSIC_LIST);
-                        if (list != null) {
-                            mMusicList.addAll(list);
+                        long[] ids = intent.getLongArrayExtra(EXTRA_QUEUE_IDS);
+                        if (ids != null) {
+                            mQueue.setAll(ids);
+                        } else {
+                            mQueue.clear();
                         }
+                        onQueueReplaced();
                     }
-                    if (mCurrentMusic != null) {
-                        enqueuePlay();
+                    if (music != null) {
+                        mMetrics.onPlayRequested();
+                        play(music);
                     }
                     break;
 
                 case ACTION_PAUSE:
-                    pausePlaying();
+                    execute(PlayerCommand.PAUSE, 0);
                     break;
 
                 case ACTION_RESUME:
-                    resumePlaying();
+                    execute(PlayerCommand.RESUME, 0);
                     break;
 
                 case ACTION_PREVIOUS:
-                    playPrevious();
+                    execute(PlayerCommand.PREVIOUS, 1);
                     break;
 
                 case ACTION_NEXT:
-                    playNext();
+                    execute(PlayerCommand.NEXT, 1);
                     break;
 
                 case ACTION_STOP:
-                    stopPlaying();
+                    execute(PlayerCommand.STOP, 0);
                     break;
 
                 case ACTION_SEEK:
-                    int progress = intent.getIntExtra(EXTRA_SEEK_PROGRESS, 0);
-                    seekPlaying(progress);
+                    execute(PlayerCommand.SEEK, intent.getLongExtra(EXTRA_SEEK_POSITION, 0));
                     break;
             }
+            long postedAt = intent.getLongExtra(EXTRA_POSTED_AT, 0);
+            if (postedAt != 0) {
+                mMetrics.recordCommand(System.nanoTime() - postedAt, false);
+            }
         }
 
         return super.onStartCommand(intent, flags, startId);
@@ -140,105 +298,532 @@ public class MediaPlayService extends Service
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return mBinder;
     }
 
-    @Override
-    public void onCompletion(MediaPlayer mp) {
-        playNext();
+    /**
+     * Binder handed to clients in this process. The queue is passed by reference,
+     * nothing is copied or serialized, and edits only carry the changed entry.
+     * Must be called on the main thread.
+     */
+    public class LocalBinder extends Binder {
+
+        /**
+         * @return a receiver of command batches for a new {@link CommandBus}.
+         */
+        public CommandBus.Receiver openCommandChannel() {
+            return new CommandChannel();
+        }
+
+        /**
+         * Replaces the queue and plays {@code music} from it.
+         */
+        public void setQueue(List<MusicBean> queue, MusicBean music) {
+            mMetrics.onPlayRequested();
+            mQueue.setAll(queue);
+            onQueueReplaced();
+            play(music);
+        }
+
+        /**
+         * Plays {@code music} from the current queue.
+         */
+        public void play(MusicBean music) {
+            mMetrics.onPlayRequested();
+            MediaPlayService.this.play(music);
+        }
+
+        /**
+         * Queues {@code tracks} for the loudness scan, e.g. tracks added to or changed
+         * in the library since the index it was started from. Tracks scanned before
+         * are skipped.
+         */
+        public void scanLoudness(List<MusicBean> tracks) {
+            if (mLoudnessScanner == null || tracks.isEmpty()) {
+                return;
+            }
+            final List<MusicBean> copy = new ArrayList<MusicBean>(tracks);
+            mStateExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    mLoudnessScanner.enqueue(copy);
+                }
+            });
+        }
+
+        /**
+         * Inserts {@code music} at {@code position}, e.g. tracks added to the library
+         * the queue was taken from.
+         */
+        public void addToQueue(int position, List<MusicBean> music) {
+            for (int i = 0; i < music.size(); i++) {
+                mOrder.add(position + i, music.get(i));
+                mStateStore.add(position + i, music.get(i).getId());
+            }
+            onQueueEdited();
+        }
+
+        /**
+         * Removes {@code count} entries from {@code position}. If the current one is
+         * among them the entry after it becomes current, and plays if playback was on.
+         */
+        public void removeFromQueue(int position, int count) {
+            int current = mQueue.getPosition();
+            for (int i = 0; i < count; i++) {
+                mOrder.remove(position);
+                mStateStore.remove(position);
+            }
+            if (current >= position && current < position + count) {
+                MusicBean music = resolveCurrent();
+                if (music != null && mTimeline.isPlaying()) {
+                    mCurrentMusic = music;
+                    enqueuePlay();
+                    return;
+                }
+                mCurrentMusic = music;
+            }
+            onQueueEdited();
+        }
+
+        /**
+         * Replaces the entries from {@code position} with newer metadata of the same
+         * tracks.
+         */
+        public void updateInQueue(int position, List<MusicBean> music) {
+            for (int i = 0; i < music.size(); i++) {
+                MusicBean updated = music.get(i);
+                mQueue.set(position + i, updated);
+                if (mCurrentMusic != null && mCurrentMusic.getId() == updated.getId()) {
+                    mCurrentMusic = updated;
+                }
+            }
+        }
+
+        public boolean isShuffleEnabled() {
+            return mOrder.isShuffleEnabled();
+        }
+
+        /**
+         * Turns shuffle on or off, the setting is kept across restarts.
+         */
+        public void setShuffleEnabled(boolean enabled) {
+            mOrder.setShuffleEnabled(enabled);
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                    .putBoolean(PREF_SHUFFLE, enabled).apply();
+            onQueueEdited();
+        }
+
+        public int getRepeatMode() {
+            return mOrder.getRepeatMode();
+        }
+
+        /**
+         * @param mode one of the {@link PlaybackOrder} repeat modes, it is kept across
+         *             restarts.
+         */
+        public void setRepeatMode(int mode) {
+            mOrder.setRepeatMode(mode);
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                    .putInt(PREF_REPEAT_MODE, mode).apply();
+            onQueueEdited();
+        }
+
+        public boolean isPcmBufferSupported() {
+            return MediaCodecPlayer.isSupported();
+        }
+
+        public boolean isPcmBufferEnabled() {
+            return getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
+                    .getBoolean(PREF_PCM_BUFFER, false);
+        }
+
+        /**
+         * Plays through {@link MediaCodecPlayer}, which keeps decoded audio around the
+         * playhead for instant seeks, or through the framework player. The current
+         * track carries on where it was, the setting is kept across restarts.
+         */
+        public void setPcmBufferEnabled(boolean enabled) {
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                    .putBoolean(PREF_PCM_BUFFER, enabled).apply();
+            send(mPlayHandler.obtainMessage(MSG_SET_PLAYER_FACTORY, playerFactory(enabled)));
+        }
+
+        public boolean isPrefetchEnabled() {
+            return mPrefetcher.isEnabled();
+        }
+
+        /**
+         * Reads the start of the upcoming tracks ahead of time, see
+         * {@link TrackPrefetcher}. The dump times requests to start by whether the
+         * track was prefetched, turning this off shows what it saves.
+         */
+        public void setPrefetchEnabled(boolean enabled) {
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                    .putBoolean(PREF_PREFETCH, enabled).apply();
+            mPrefetcher.setEnabled(enabled);
+        }
+
+        /**
+         * Starts scrubbing: playback holds until {@link #endScrub(long)}, in between
+         * {@link #scrubTo(long)} previews positions.
+         */
+        public void beginScrub() {
+            mScrubSeeks.clear();
+            send(mPlayHandler.obtainMessage(MSG_SCRUB_BEGIN));
+        }
+
+        /**
+         * Previews {@code position} in milliseconds. Targets are coalesced, at most
+         * one seek is done per {@link #SCRUB_INTERVAL_MS}, always to the latest one.
+         */
+        public void scrubTo(long position) {
+            long delay = mScrubSeeks.offer(position, SystemClock.uptimeMillis());
+            if (delay >= 0) {
+                mMetrics.onMessageQueued();
+                mPlayHandler.sendEmptyMessageDelayed(MSG_SCRUB_SEEK, delay);
+            }
+        }
+
+        /**
+         * Seeks to the final {@code position} in milliseconds, playback goes on if it
+         * was playing when the scrub began.
+         */
+        public void endScrub(long position) {
+            mScrubSeeks.clear();
+            if (mPlayHandler.hasMessages(MSG_SCRUB_SEEK)) {
+                mPlayHandler.removeMessages(MSG_SCRUB_SEEK);
+                mMetrics.onMessagesRemoved(1);
+            }
+            send(mPlayHandler.obtainMessage(MSG_SCRUB_END, position));
+        }
+
+        /**
+         * Registers {@code listener} for timeline changes, it is called right away
+         * with the current timeline.
+         */
+        public void addTimelineListener(PlaybackTimeline.Listener listener) {
+            mTimelineListeners.add(listener);
+            listener.onTimelineChanged(mTimeline);
+        }
+
+        public void removeTimelineListener(PlaybackTimeline.Listener listener) {
+            mTimelineListeners.remove(listener);
+        }
+
+        public PlaybackTimeline getTimeline() {
+            return mTimeline;
+        }
+
+        /**
+         * @return the timings of the playback path, can be read on any thread.
+         */
+        public PlaybackMetrics getMetrics() {
+            return mMetrics;
+        }
+
+        /**
+         * Makes a track of an HTTP {@code url} that plays through the stream proxy,
+         * it can be queued like a local one but is forgotten when the service stops.
+         */
+        public MusicBean addRemoteTrack(String url, String title) {
+            MusicBean music = new MusicBean();
+            music.setId(mStreamProxy.add(url));
+            music.setTitle(title);
+            return music;
+        }
+    }
+
+    /**
+     * The service end of one {@link CommandBus}, batches are applied in order on
+     * the main thread. Sequence numbers are those of its bus, a command at or
+     * below the last one applied was delivered before and is skipped.
+     */
+    private class CommandChannel implements CommandBus.Receiver {
+
+        private long mApplied;
+
+        @Override
+        public long apply(List<PlayerCommand> batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                PlayerCommand command = batch.get(i);
+                if (command.getSequence() <= mApplied) {
+                    continue;
+                }
+                execute(command.getType(), command.getArgument());
+                mApplied = command.getSequence();
+                mMetrics.recordCommand(System.nanoTime() - command.getPostedNanos(), true);
+            }
+            return mApplied;
+        }
     }
 
     @Override
-    public boolean onError(MediaPlayer mp, int what, int extra) {
-        return false;
+    public void onStarted(long id) {
+        publishTimeline();
+        mMainHandler.post(mPrepareNext);
     }
 
     @Override
-    public void onAudioFocusChange(int focusChange) {
-        switch (focusChange) {
-            case AudioManager.AUDIOFOCUS_GAIN:
-                // resume playback
-                if (mMediaPlayer == null) {
-                    initMediaPlayer();
-                } else if (!mMediaPlayer.isPlaying()) {
-                    mMediaPlayer.start();
-                }
-                mMediaPlayer.setVolume(1.0f, 1.0f);
-                break;
+    public void onTrackChanged(final long id) {
+        mMainHandler.post(new Runnable() {
 
-            case AudioManager.AUDIOFOCUS_LOSS:
-                // Lost focus for an unbounded amount of time: stop playback
-                // and release media player
-                if (mMediaPlayer.isPlaying()) {
-                    mMediaPlayer.stop();
+            @Override
+            public void run() {
+                MusicBean music = null;
+                if (mQueue.moveTo(id)) {
+                    mOrder.onMoved();
+                    music = resolveCurrent();
+                    mCurrentMusic = music;
                 }
-                mMediaPlayer.release();
-                mMediaPlayer = null;
-                break;
+                send(obtainMusicMessage(MSG_TRACK_CHANGED, music));
+                prepareNextMusic();
+            }
+        });
+    }
 
-            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
-                // Lost focus for a short time, but we have to stop
-                // playback. We don't release the media player because playback
-                // is likely to resume
-                if (mMediaPlayer.isPlaying()) {
-                    mMediaPlayer.pause();
-                }
-                break;
+    @Override
+    public void onCompletion(long id) {
+        publishTimeline();
+        mMainHandler.post(new Runnable() {
 
-            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
-                // Lost focus for a short time, but is's ok to keep playing
-                // at an attenuated level
-                if (mMediaPlayer.isPlaying()) {
-                    mMediaPlayer.setVolume(0.1f, 0.1f);
-                }
-                break;
+            @Override
+            public void run() {
+                playNext(true, 1);
+            }
+        });
+    }
+
+    @Override
+    public void onError(long id) {
+        Log.e(LOG_TAG, "onError: failed to play " + id);
+        publishTimeline();
+    }
+
+    @Override
+    public void onAudioFocusChange(int focusChange) {
+        send(mPlayHandler.obtainMessage(MSG_FOCUS, focusChange, 0));
+    }
+
+    /**
+     * Prints the playback metrics, e.g. with
+     * {@code adb shell dumpsys activity service .MediaPlayService}. Passing
+     * {@code reset} clears them afterwards.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println(LOG_TAG + " state=" + mTimeline.getState()
+                + " session=" + mSession.getState());
+        mMetrics.dump(writer);
+        writer.println("scrub targets: " + mScrubSeeks.getOfferedCount() + " offered, "
+                + mScrubSeeks.getTakenCount() + " seeked to");
+        if (mLoudnessScanner != null) {
+            writer.println(mLoudnessScanner);
+        }
+        writer.println(mStreamProxy);
+        writer.println(mPrefetcher);
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            mMetrics.reset();
+            writer.println("metrics reset");
         }
     }
 
     @Override
     public void onDestroy() {
-        stopPlaying();
+        releasePlayback();
+        if (mLoudnessScanner != null) {
+            mLoudnessScanner.shutdown();
+        }
+        mStreamProxy.shutdown();
+        mPrefetcher.shutdown();
         super.onDestroy();
     }
 
+    private Player.Factory playerFactory(boolean pcmBuffer) {
+        return pcmBuffer && MediaCodecPlayer.isSupported()
+                ? MediaCodecPlayer.factory(this, mStreamProxy)
+                : AndroidMediaPlayer.factory(this, mStreamProxy);
+    }
+
     private void enqueuePlay() {
-        mPlayHandler.removeMessages(MSG_PLAY);
-        mPlayHandler.obtainMessage(MSG_PLAY, mCurrentMusic).sendToTarget();
+        // at most one play is queued, it is superseded
+        if (mPlayHandler.hasMessages(MSG_PLAY)) {
+            mPlayHandler.removeMessages(MSG_PLAY);
+            mMetrics.onMessagesRemoved(1);
+        }
+        mMetrics.onRequestResolved(mPrefetcher.isWarm(mCurrentMusic.getId()));
+        send(obtainMusicMessage(MSG_PLAY, mCurrentMusic));
+        // a jump makes other tracks upcoming, reading the old ones stops
+        mPrefetcher.setUpcoming(mOrder.peekUpcoming(PREFETCH_TRACKS));
+    }
+
+    /**
+     * @param music may be null, or a bare queue entry from {@link #resolveCurrent()},
+     *              which the play thread loads with {@link #loadMusic(long)}.
+     */
+    private Message obtainMusicMessage(int what, MusicBean music) {
+        boolean bare = false;
+        if (music != null) {
+            int position = mQueue.indexOf(music.getId());
+            bare = position != PlayQueue.NO_POSITION && mQueue.get(position) == null;
+        }
+        return mPlayHandler.obtainMessage(what, bare ? ARG_BARE : 0, 0, music);
+    }
+
+    private void send(Message msg) {
+        mMetrics.onMessageQueued();
+        msg.sendToTarget();
     }
 
     private static final int MSG_PLAY = 1;
-    private static final int MSG_PROGRESS = 2;
-    private static final int MSG_CHANGED = 3;
+    private static final int MSG_PAUSE = 2;
+    private static final int MSG_RESUME = 3;
+    private static final int MSG_SEEK = 4;
+    private static final int MSG_FOCUS = 5;
+    private static final int MSG_RELEASE = 6;
+    private static final int MSG_PREPARE_NEXT = 7;
+    private static final int MSG_TRACK_CHANGED = 8;
+    private static final int MSG_RESTORE = 9;
+    private static final int MSG_CHECKPOINT = 10;
+    private static final int MSG_SET_PLAYER_FACTORY = 11;
+    private static final int MSG_SCRUB_BEGIN = 12;
+    private static final int MSG_SCRUB_SEEK = 13;
+    private static final int MSG_SCRUB_END = 14;
+    private static final int MSG_STOP = 15;
+    private static final int MSG_PARK = 16;
 
-    private static final long DELAY_MILLIS = 1000;
+    /** arg1 of a message whose track only has its id, see {@link #obtainMusicMessage}. */
+    private static final int ARG_BARE = 1;
 
     private Callback mCallback = new Callback() {
 
         @Override
         public boolean handleMessage(Message msg) {
             Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            mMetrics.onMessageHandled(SystemClock.uptimeMillis() - msg.getWhen());
 
             switch (msg.what) {
                 case MSG_PLAY:
-                    MusicBean music = (MusicBean) msg.obj;
-                    startPlaying(music.getId());
+                    cancelPark();
+                    MusicBean requested = (MusicBean) msg.obj;
+                    if (msg.arg1 == ARG_BARE) {
+                        requested = loadMusic(requested.getId());
+                        if (requested == null) {
+                            Log.w(LOG_TAG, "track " + ((MusicBean) msg.obj).getId()
+                                    + " is gone, not playing");
+                            break;
+                        }
+                    }
+                    mPlayingMusic = requested;
+                    if (!mSession.play(mPlayingMusic.getId())) {
+                        Log.w(LOG_TAG, "audio focus denied, not playing");
+                    }
+                    publishTimeline();
+                    break;
+
+                case MSG_PAUSE:
+                    mSession.pause();
+                    publishTimeline();
+                    break;
+
+                case MSG_RESUME:
+                    cancelPark();
+                    mSession.resume();
+                    publishTimeline();
+                    break;
+
+                case MSG_SEEK:
+                    seek((Long) msg.obj);
+                    publishTimeline();
+                    break;
+
+                case MSG_SCRUB_BEGIN:
+                    mScrubbing = true;
+                    mResumeAfterScrub = mController.isPlaying();
+                    // a user pause to the session, a focus gain must not resume
+                    // playback under the finger
+                    mSession.pause();
+                    publishTimeline();
+                    break;
+
+                case MSG_SCRUB_SEEK:
+                    long target = mScrubSeeks.take(SystemClock.uptimeMillis());
+                    if (mScrubbing && target != SeekCoalescer.NO_TARGET) {
+                        seek(target);
+                    }
+                    break;
+
+                case MSG_SCRUB_END:
+                    seek((Long) msg.obj);
+                    if (mScrubbing && mResumeAfterScrub) {
+                        mSession.resume();
+                    }
+                    mScrubbing = false;
+                    publishTimeline();
+                    break;
+
+                case MSG_FOCUS:
+                    mSession.onFocusChange(msg.arg1);
+                    if (mSession.getState() == PlaybackSession.STATE_LOST
+                            && !mPlayHandler.hasMessages(MSG_PARK)) {
+                        mMetrics.onMessageQueued();
+                        mPlayHandler.sendEmptyMessageDelayed(MSG_PARK, PARK_DELAY_MS);
+                    }
+                    publishTimeline();
                     break;
 
-                case MSG_PROGRESS:
-                    mPlayHandler.removeMessages(MSG_PROGRESS);
-                    if (mMediaPlayer != null && mMediaPlayer.isPlaying()) {
-                        Intent intent = new Intent(ACTION_PROGRESS);
-                        intent.putExtra(EXTRA_PROGRESS, getProgress());
-                        sendBroadcast(intent);
-                        Message newMsg = mPlayHandler.obtainMessage(MSG_PROGRESS);
-                        mPlayHandler.sendMessageDelayed(newMsg, DELAY_MILLIS);
+                case MSG_PARK:
+                    checkpoint();
+                    mSession.park();
+                    publishTimeline();
+                    break;
+
+                case MSG_STOP:
+                    cancelPark();
+                    checkpoint();
+                    mSession.stop();
+                    publishTimeline();
+                    break;
+
+                case MSG_PREPARE_NEXT:
+                    if (mController.getCurrentId() != PlaybackController.NO_ID) {
+                        mController.prepareNext((Long) msg.obj);
+                    }
+                    break;
+
+                case MSG_TRACK_CHANGED:
+                    MusicBean music = (MusicBean) msg.obj;
+                    if (msg.arg1 == ARG_BARE) {
+                        music = loadMusic(music.getId());
                     }
+                    if (music != null && music.getId() == mController.getCurrentId()) {
+                        mPlayingMusic = music;
+                    }
+                    publishTimeline();
+                    break;
+
+                case MSG_RESTORE:
+                    restoreMusic((PlaybackStateStore.State) msg.obj);
+                    publishTimeline();
+                    break;
+
+                case MSG_CHECKPOINT:
+                    checkpoint();
+                    scheduleCheckpoint();
+                    break;
+
+                case MSG_SET_PLAYER_FACTORY:
+                    mController.setFactory((Player.Factory) msg.obj);
+                    publishTimeline();
+                    // the next track was dropped with the old players
+                    mMainHandler.post(mPrepareNext);
                     break;
 
-                case MSG_CHANGED:
-                    Intent intent = new Intent(ACTION_PROGRESS);
-                    intent.putExtra(EXTRA_MUSIC, mCurrentMusic);
-                    sendBroadcast(intent);
+                case MSG_RELEASE:
+                    checkpoint();
+                    mSession.release();
+                    publishTimeline();
+                    mPlayThread.quit();
                     break;
             }
 
@@ -246,113 +831,320 @@ public class MediaPlayService extends Service
         }
     };
 
-    private int getProgress() {
-        return mMediaPlayer.getCurrentPosition() * 100 / mMediaPlayer.getDuration();
+    /**
+     * Loads the metadata of a queue entry that only has its id. Called on the play
+     * thread, the query does not hold up commands on the main thread, which gets
+     * the loaded track for the queue.
+     *
+     * @return null if the track is not in the MediaStore any more.
+     */
+    private MusicBean loadMusic(long id) {
+        final MusicBean music = MediaUtils.getMusic(this, id);
+        if (music == null) {
+            return null;
+        }
+        mMainHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                int position = mQueue.indexOf(music.getId());
+                if (position != PlayQueue.NO_POSITION && mQueue.get(position) == null) {
+                    mQueue.set(position, music);
+                }
+                if (mCurrentMusic != null && mCurrentMusic.getId() == music.getId()) {
+                    mCurrentMusic = music;
+                }
+            }
+        });
+        return music;
     }
 
-    private void startPlaying(long id) {
-        if (mMediaPlayer == null) {
-            initMediaPlayer();
-        } else {
-            mMediaPlayer.reset();
+    /**
+     * Loads the track restored by {@link #restoreState()}, it starts at the stored
+     * position on the next resume.
+     */
+    private void restoreMusic(PlaybackStateStore.State state) {
+        if (mSession.getState() != PlaybackSession.STATE_IDLE) {
+            return;
+        }
+        final MusicBean music = MediaUtils.getMusic(this, state.getCurrentId());
+        if (music == null) {
+            return;
         }
+        mPlayingMusic = music;
+        mSession.restore(music.getId(), state.getPosition());
+        mMainHandler.post(new Runnable() {
 
-        Uri uri = MediaUtils.uriWithAppendedId(id);
-        mMediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-        try {
-            mMediaPlayer.setDataSource(this, uri);
-            mMediaPlayer.prepare();
-            mMediaPlayer.start();
+            @Override
+            public void run() {
+                int position = mQueue.getPosition();
+                if (mCurrentMusic == null && position != PlayQueue.NO_POSITION
+                        && mQueue.getId(position) == music.getId()) {
+                    mQueue.set(position, music);
+                    mCurrentMusic = music;
+                }
+            }
+        });
+    }
 
-            Message msg = mPlayHandler.obtainMessage(MSG_PROGRESS);
-            mPlayHandler.sendMessageDelayed(msg, DELAY_MILLIS);
+    /**
+     * Seeks the current track, or moves the start of the restored one. The
+     * playback state does not change.
+     */
+    private void seek(long position) {
+        mMetrics.onSeek();
+        mSession.seekTo(position);
+    }
 
-        } catch (IOException e) {
-            Log.e(LOG_TAG, Log.getStackTraceString(e));
+    private void cancelPark() {
+        if (mPlayHandler.hasMessages(MSG_PARK)) {
+            mPlayHandler.removeMessages(MSG_PARK);
+            mMetrics.onMessagesRemoved(1);
         }
     }
 
-    private void pausePlaying() {
-        if (mMediaPlayer != null && mMediaPlayer.isPlaying()) {
-            mMediaPlayer.pause();
+    /**
+     * Records the current track and position, must be called on the play thread.
+     * Nothing is recorded while there is no track or it is still preparing, so the
+     * last known position is kept.
+     */
+    private void checkpoint() {
+        long id = mController.getCurrentId();
+        int state = mController.getState();
+        if (id != PlaybackController.NO_ID && state != PlaybackController.STATE_PREPARING) {
+            mStateStore.checkpoint(id, mController.getCurrentPosition());
+        } else if (mSession.isParked()) {
+            mStateStore.checkpoint(mSession.getParkedId(), mSession.getParkedPosition());
         }
     }
 
-    private void resumePlaying() {
-        if (mMediaPlayer != null) {
-            mMediaPlayer.start();
-            mPlayHandler.obtainMessage(MSG_PROGRESS).sendToTarget();
+    private void scheduleCheckpoint() {
+        if (mController.isPlaying() && !mPlayHandler.hasMessages(MSG_CHECKPOINT)) {
+            mMetrics.onMessageQueued();
+            mPlayHandler.sendEmptyMessageDelayed(MSG_CHECKPOINT, CHECKPOINT_INTERVAL_MS);
         }
     }
 
-    private void playPrevious() {
-        if (mCurrentMusic != null && mMusicList != null) {
-            int currentIndex = getCurrentIndex();
-            if (currentIndex == -1) {
-                return;
+    /**
+     * Publishes the current playback state to the timeline listeners. Must be called
+     * on the play thread after every state change, clients extrapolate the position
+     * in between on their own.
+     */
+    private void publishTimeline() {
+        int state = mController.getState();
+        long position = mController.getCurrentPosition();
+        long duration = mController.getDuration();
+        if (duration <= 0 && mPlayingMusic != null) {
+            duration = mPlayingMusic.getDuration();
+        }
+        MusicBean music = mPlayingMusic;
+        if (state == PlaybackController.STATE_IDLE) {
+            if (mSession.isParked() && music != null) {
+                // shown paused until it is resumed
+                state = PlaybackController.STATE_PAUSED;
+                position = mSession.getParkedPosition();
+            } else {
+                music = null;
             }
+        }
+        final PlaybackTimeline timeline = new PlaybackTimeline(music, state,
+                position, SystemClock.elapsedRealtime(), 1.0f, duration);
+        mTimeline = timeline;
+        if (mLoudnessScanner != null) {
+            // leaves the cores to the decoder while playing
+            mLoudnessScanner.setThrottled(state == PlaybackController.STATE_PLAYING
+                    || state == PlaybackController.STATE_PREPARING);
+        }
+        checkpoint();
+        scheduleCheckpoint();
+
+        mMainHandler.post(new Runnable() {
 
-            if (currentIndex == 0) {
-                currentIndex = mMusicList.size();
+            @Override
+            public void run() {
+                for (int i = 0; i < mTimelineListeners.size(); i++) {
+                    mTimelineListeners.get(i).onTimelineChanged(timeline);
+                }
             }
-            mCurrentMusic = mMusicList.get(--currentIndex);
-            mPlayHandler.obtainMessage(MSG_CHANGED).sendToTarget();
-            enqueuePlay();
+        });
+    }
+
+    private final Runnable mPrepareNext = new Runnable() {
+
+        @Override
+        public void run() {
+            prepareNextMusic();
         }
+    };
+
+    /**
+     * Lets the controller prepare the track after {@link #mCurrentMusic} so that it
+     * starts without a gap. Must be called on the main thread, which owns the queue.
+     */
+    private void prepareNextMusic() {
+        long next = getNextId();
+        mPrefetcher.setUpcoming(mOrder.peekUpcoming(PREFETCH_TRACKS));
+        if (mStreamProxy.isRemote(next)) {
+            // the player preparing it waits on these fetches instead of starting its own
+            mStreamProxy.prefetch(next);
+        }
+        send(mPlayHandler.obtainMessage(MSG_PREPARE_NEXT, next));
     }
 
-    private void playNext() {
-        if (mCurrentMusic != null && mMusicList != null) {
-            int currentIndex = getCurrentIndex();
-            if (currentIndex == -1) {
-                return;
-            }
+    private void pausePlaying() {
+        send(mPlayHandler.obtainMessage(MSG_PAUSE));
+    }
+
+    private void resumePlaying() {
+        send(mPlayHandler.obtainMessage(MSG_RESUME));
+    }
+
+    private void play(MusicBean music) {
+        mCurrentMusic = music;
+        if (mQueue.moveTo(music.getId())) {
+            mQueue.set(mQueue.getPosition(), music);
+            mOrder.onPicked();
+        }
+        enqueuePlay();
+    }
 
-            if (++currentIndex == mMusicList.size()) {
-                currentIndex = 0;
+    /**
+     * Applies a transport command on the main thread, whether it came as an
+     * intent or through a {@link CommandChannel}.
+     */
+    private void execute(int type, long argument) {
+        switch (type) {
+            case PlayerCommand.PAUSE:
+                pausePlaying();
+                break;
+
+            case PlayerCommand.RESUME:
+                resumePlaying();
+                break;
+
+            case PlayerCommand.PREVIOUS:
+                mMetrics.onPlayRequested();
+                playPrevious((int) argument);
+                break;
+
+            case PlayerCommand.NEXT:
+                mMetrics.onPlayRequested();
+                playNext(false, (int) argument);
+                break;
+
+            case PlayerCommand.STOP:
+                stopPlaying();
+                break;
+
+            case PlayerCommand.SEEK:
+                seekPlaying(argument);
+                break;
+        }
+    }
+
+    /**
+     * @param count tracks to go back, only the last one is loaded and played.
+     */
+    private void playPrevious(int count) {
+        for (int i = 0; i < count; i++) {
+            if (mOrder.moveToPrevious() == PlayQueue.NO_POSITION) {
+                if (i == 0) {
+                    return;
+                }
+                break;
             }
-            mCurrentMusic = mMusicList.get(currentIndex);
-            mPlayHandler.obtainMessage(MSG_CHANGED).sendToTarget();
+        }
+        MusicBean previous = resolveCurrent();
+        if (previous != null) {
+            mCurrentMusic = previous;
             enqueuePlay();
         }
     }
 
-    private void stopPlaying() {
-        if (mMediaPlayer != null) {
-            if (mMediaPlayer.isPlaying()) {
-                mMediaPlayer.stop();
+    /**
+     * @param auto  whether the current track completed, see
+     *              {@link PlaybackOrder#moveToNext(boolean)}.
+     * @param count tracks to skip, only the last one is loaded and played.
+     */
+    private void playNext(boolean auto, int count) {
+        for (int i = 0; i < count; i++) {
+            if (mOrder.moveToNext(auto) == PlayQueue.NO_POSITION) {
+                if (i == 0) {
+                    return;
+                }
+                break;
             }
-            mMediaPlayer.release();
-            mMediaPlayer = null;
         }
-        mPlayThread.quit();
+        MusicBean next = resolveCurrent();
+        if (next != null) {
+            mCurrentMusic = next;
+            enqueuePlay();
+        }
     }
 
-    private void seekPlaying(int progress) {
-        if (progress < 0) {
-            progress = 0;
+    /**
+     * The queue may hold bare ids. For those this is a track with only its id, no
+     * query is made on the main thread: messages built by
+     * {@link #obtainMusicMessage} have the play thread load the rest.
+     *
+     * @return the current entry, or null if there is none.
+     */
+    private MusicBean resolveCurrent() {
+        int position = mQueue.getPosition();
+        if (position == PlayQueue.NO_POSITION) {
+            return null;
         }
-        if (mMediaPlayer == null) {
-            initMediaPlayer();
-        }
-        if (mCurrentMusic != null) {
-            int msec = (int) (mCurrentMusic.getDuration() * progress / 100);
-            try {
-                mMediaPlayer.seekTo(msec);
-                mMediaPlayer.start();
-                mPlayHandler.obtainMessage(MSG_PROGRESS).sendToTarget();
-            } catch (IllegalStateException e) {
-                Log.e(LOG_TAG, Log.getStackTraceString(e));
-            }
+        MusicBean music = mQueue.get(position);
+        if (music == null) {
+            music = new MusicBean();
+            music.setId(mQueue.getId(position));
         }
+        return music;
     }
 
-    private int getCurrentIndex() {
-        for (MusicBean m : mMusicList) {
-            if (mCurrentMusic.getId() == m.getId()) {
-                return mMusicList.indexOf(m);
-            }
+    private void onQueueReplaced() {
+        mOrder.onQueueReplaced();
+        mStateStore.setQueue(mQueue.getIds());
+    }
+
+    /**
+     * The entry after the current one may have changed, prepare it again.
+     */
+    private void onQueueEdited() {
+        prepareNextMusic();
+    }
+
+    private long getNextId() {
+        int position = mOrder.peekNextPosition(true);
+        return position != PlayQueue.NO_POSITION
+                ? mQueue.getId(position) : PlaybackController.NO_ID;
+    }
+
+    /**
+     * Stops playback and gives up audio focus, the service stays usable and a
+     * resume continues where it stopped.
+     */
+    private void stopPlaying() {
+        send(mPlayHandler.obtainMessage(MSG_STOP));
+    }
+
+    /**
+     * Releases the players and ends the play thread, only when the service goes away.
+     */
+    private void releasePlayback() {
+        mPlayHandler.removeCallbacksAndMessages(null);
+        mMetrics.onMessagesRemoved(mMetrics.getQueueDepth());
+        send(mPlayHandler.obtainMessage(MSG_RELEASE));
+    }
+
+    /**
+     * @param position in milliseconds, a seek still queued is superseded.
+     */
+    private void seekPlaying(long position) {
+        if (mPlayHandler.hasMessages(MSG_SEEK)) {
+            mPlayHandler.removeMessages(MSG_SEEK);
+            mMetrics.onMessagesRemoved(1);
         }
-        return -1;
+        send(mPlayHandler.obtainMessage(MSG_SEEK, Math.max(0, position)));
     }
 }
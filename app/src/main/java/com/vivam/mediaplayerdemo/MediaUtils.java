@@ -7,53 +7,90 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.provider.MediaStore;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.logging.SimpleFormatter;
 
 /**
  * Created by vivam on 1/20/16.
  */
 public class MediaUtils {
 
+    /** Only the columns {@link #readMusic(Cursor)} needs, in this order. */
+    static final String[] MUSIC_PROJECTION = new String[] {
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.DATE_MODIFIED
+    };
+
     public static ArrayList<MusicBean> getLocalMusicList(Context context) {
-        ContentResolver cr = context.getContentResolver();
-        Uri uri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
-        Cursor cursor = cr.query(uri, null, null, null, null);
+        Cursor cursor = queryLocalMusic(context);
         if (cursor == null) {
             return null;
         }
-        ArrayList<MusicBean> list = new ArrayList<MusicBean>();
-        if (!cursor.moveToFirst()) {
-            return list;
+        try {
+            return readMusicList(cursor);
+        } finally {
+            cursor.close();
         }
+    }
+
+    /**
+     * Queries every local track with {@link #MUSIC_PROJECTION}, the caller has to
+     * close the cursor.
+     */
+    public static Cursor queryLocalMusic(Context context) {
+        ContentResolver cr = context.getContentResolver();
+        Uri uri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+        return cr.query(uri, MUSIC_PROJECTION, null, null, null);
+    }
 
-        final int titleColumn = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
-        final int idColumn = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
-        final int durationColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
-        do {
-            MusicBean music = new MusicBean();
-            music.setId(cursor.getLong(idColumn));
-            music.setTitle(cursor.getString(titleColumn));
-            music.setDuration(cursor.getLong(durationColumn));
-
-            list.add(music);
-        } while (cursor.moveToNext());
+    static ArrayList<MusicBean> readMusicList(Cursor cursor) {
+        ArrayList<MusicBean> list = new ArrayList<MusicBean>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            list.add(readMusic(cursor));
+        }
         return list;
     }
 
+    /**
+     * Reads the row the cursor is on, the cursor must use {@link #MUSIC_PROJECTION}.
+     */
+    static MusicBean readMusic(Cursor cursor) {
+        MusicBean music = new MusicBean();
+        music.setId(cursor.getLong(0));
+        music.setTitle(cursor.getString(1));
+        music.setDuration(cursor.getLong(2));
+        music.setDateModified(cursor.getLong(3));
+        return music;
+    }
+
+    /**
+     * Loads a single track by its MediaStore id.
+     *
+     * @return null if there is no such track.
+     */
+    public static MusicBean getMusic(Context context, long id) {
+        ContentResolver cr = context.getContentResolver();
+        Cursor cursor = cr.query(uriWithAppendedId(id), MUSIC_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return cursor.moveToFirst() ? readMusic(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
     public static Uri uriWithAppendedId(long id) {
         return ContentUris.withAppendedId(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, id);
     }
 
+    /**
+     * @return {@code millis} as {@code mm:ss} or {@code HH:mm:ss}, see
+     * {@link DurationFormatter} for the allocation free variant.
+     */
     public static String dateFormat(long millis) {
-        String formatStr;
-        if (millis < 3600000) {
-            formatStr = "mm:ss";
-        } else {
-            formatStr = "HH:mm:ss";
-        }
-        return new SimpleDateFormat(formatStr).format(new Date(millis));
+        return DurationFormatter.format(millis);
     }
 }
@@ -0,0 +1,283 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background stage that extracts {@link TrackMetadata} for the library.
+ * <p>
+ * Files are analysed on a fixed pool with one thread per core. Tracks queued with
+ * {@link #prioritize(List)}, the rows on screen, run before the rest of the
+ * library, the latest call first. A track is analysed at most once per version
+ * of its file: results, failures included, go to a {@link MetadataStore}.
+ * <p>
+ * Thread safe.
+ */
+public class MetadataEnricher {
+
+    public interface Extractor {
+
+        /**
+         * Reads the metadata of {@code music}, called on a pool thread.
+         *
+         * @throws IOException if the file cannot be read.
+         */
+        TrackMetadata extract(MusicBean music) throws IOException;
+    }
+
+    public interface Listener {
+
+        /** Called on the pool thread that extracted {@code metadata}. */
+        void onEnriched(MusicBean music, TrackMetadata metadata);
+    }
+
+    private final MetadataStore mStore;
+    private final Extractor mExtractor;
+    private final Listener mListener;
+    private final ThreadPoolExecutor mExecutor;
+
+    // date modified of every track queued or done, queueing it again is a no-op
+    private final ConcurrentHashMap<Long, Long> mClaimed = new ConcurrentHashMap<Long, Long>();
+    // date modified of every track that has metadata in the store
+    private final ConcurrentHashMap<Long, Long> mDone = new ConcurrentHashMap<Long, Long>();
+    // visible tasks waiting for a thread, a track is queued as visible once
+    private final ConcurrentHashMap<Long, Task> mVisible = new ConcurrentHashMap<Long, Task>();
+
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger mAnalysed = new AtomicInteger();
+    private final AtomicInteger mFailed = new AtomicInteger();
+    private final AtomicInteger mCached = new AtomicInteger();
+    // tracks being extracted right now
+    private final ConcurrentHashMap<Long, Boolean> mRunning = new ConcurrentHashMap<Long, Boolean>();
+    // System.nanoTime() of the first extraction and the end of the latest one
+    private final AtomicLong mFirstStart = new AtomicLong();
+    private volatile long mLastEnd;
+
+    /**
+     * @param threads  the pool size, e.g. the core count.
+     * @param listener may be null.
+     */
+    public MetadataEnricher(MetadataStore store, Extractor extractor, int threads,
+            Listener listener) {
+        mStore = store;
+        mExtractor = extractor;
+        mListener = listener;
+        threads = Math.max(1, threads);
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MetadataEnricher-" + mCount.incrementAndGet());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues {@code list} behind everything queued so far.
+     */
+    public void enqueue(List<MusicBean> list) {
+        for (int i = 0; i < list.size(); i++) {
+            MusicBean music = list.get(i);
+            if (claim(music)) {
+                mExecutor.execute(new Task(music, false, mSequence.incrementAndGet()));
+            }
+        }
+    }
+
+    /**
+     * Queues {@code list} ahead of everything else, e.g. the rows that just became
+     * visible. Tracks already queued move up, done ones and ones still waiting
+     * from an earlier call are skipped.
+     */
+    public void prioritize(List<MusicBean> list) {
+        long sequence = mSequence.incrementAndGet();
+        for (int i = 0; i < list.size(); i++) {
+            MusicBean music = list.get(i);
+            Long done = mDone.get(music.getId());
+            if (done != null && done == music.getDateModified()) {
+                continue;
+            }
+            Task task = new Task(music, true, sequence);
+            Task waiting = mVisible.putIfAbsent(music.getId(), task);
+            if (waiting != null) {
+                if (waiting.music.getDateModified() == music.getDateModified()
+                        || !mVisible.replace(music.getId(), waiting, task)) {
+                    continue;
+                }
+            }
+            claim(music);
+            // the background task of the track is skipped once this one ran
+            mExecutor.execute(task);
+        }
+    }
+
+    /**
+     * @return the metadata of {@code music} if it was extracted, may load the store
+     * and should not be called on the main thread.
+     */
+    public TrackMetadata get(MusicBean music) {
+        return mStore.get(music.getId(), music.getDateModified());
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    public int getAnalysedCount() {
+        return mAnalysed.get();
+    }
+
+    public int getFailedCount() {
+        return mFailed.get();
+    }
+
+    /**
+     * @return the number of tracks that were already in the store.
+     */
+    public int getCachedCount() {
+        return mCached.get();
+    }
+
+    /**
+     * @return files analysed per second, from the first extraction to the latest.
+     */
+    public double getFilesPerSecond() {
+        long first = mFirstStart.get();
+        long elapsed = mLastEnd - first;
+        if (first == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return (mAnalysed.get() + mFailed.get()) * 1e9 / elapsed;
+    }
+
+    /**
+     * Stops the pool, queued tasks are dropped. What was extracted so far is flushed,
+     * results of tasks still running may be lost and are extracted again next time.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Waits for the pool to stop after {@link #shutdown()}, then flushes the store.
+     */
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        mExecutor.awaitTermination(timeout, unit);
+        flush();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MetadataEnricher{analysed=%d, failed=%d, cached=%d, "
+                        + "queued=%d, %.1f files/s}", mAnalysed.get(), mFailed.get(),
+                mCached.get(), getQueueDepth(), getFilesPerSecond());
+    }
+
+    /**
+     * @return false if the track is already queued or done for its version.
+     */
+    private boolean claim(MusicBean music) {
+        Long dateModified = music.getDateModified();
+        Long previous = mClaimed.put(music.getId(), dateModified);
+        return previous == null || !previous.equals(dateModified);
+    }
+
+    private void process(MusicBean music) {
+        Long done = mDone.get(music.getId());
+        if (done != null && done == music.getDateModified()) {
+            return;
+        }
+        if (mStore.get(music.getId(), music.getDateModified()) != null) {
+            mDone.put(music.getId(), music.getDateModified());
+            mCached.incrementAndGet();
+            return;
+        }
+
+        if (mRunning.putIfAbsent(music.getId(), Boolean.TRUE) != null) {
+            // the visible and the library task of a track ran at the same time
+            return;
+        }
+
+        mFirstStart.compareAndSet(0, System.nanoTime());
+        TrackMetadata metadata;
+        try {
+            metadata = mExtractor.extract(music);
+            mAnalysed.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            metadata = TrackMetadata.failed(music.getId(), music.getDateModified());
+            mFailed.incrementAndGet();
+        }
+        mLastEnd = System.nanoTime();
+
+        try {
+            mStore.put(metadata);
+        } catch (IOException e) {
+            // kept in memory, analysed again next time
+        }
+        mDone.put(music.getId(), music.getDateModified());
+        mRunning.remove(music.getId());
+        if (mListener != null) {
+            mListener.onEnriched(music, metadata);
+        }
+        if (mExecutor.getQueue().isEmpty()) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        try {
+            mStore.flush();
+        } catch (IOException e) {
+            // see process()
+        }
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+
+        final MusicBean music;
+        final boolean visible;
+        final long sequence;
+
+        Task(MusicBean music, boolean visible, long sequence) {
+            this.music = music;
+            this.visible = visible;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (visible) {
+                mVisible.remove(music.getId(), this);
+            }
+            process(music);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (visible != other.visible) {
+                return visible ? -1 : 1;
+            }
+            // the latest visible rows first, the library in the order it was queued
+            int order = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+            return visible ? -order : order;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+
+/**
+ * Persistent {@link TrackMetadata} by track id, see {@link RecordStore}.
+ * <p>
+ * Thread safe, the file is loaded on first use.
+ */
+public class MetadataStore extends RecordStore<TrackMetadata> {
+
+    private static final int MAGIC = 0x4d44_5354; // "MDST"
+    private static final int FORMAT_VERSION = 1;
+
+    public MetadataStore(File file) {
+        super(file, MAGIC, FORMAT_VERSION);
+    }
+
+    @Override
+    protected long getId(TrackMetadata metadata) {
+        return metadata.getId();
+    }
+
+    @Override
+    protected long getDateModified(TrackMetadata metadata) {
+        return metadata.getDateModified();
+    }
+
+    @Override
+    protected void write(TrackMetadata metadata, MusicBeanCodec.Writer writer) {
+        metadata.write(writer);
+    }
+
+    @Override
+    protected TrackMetadata read(MusicBeanCodec.Reader reader) {
+        return TrackMetadata.read(reader);
+    }
+}
@@ -0,0 +1,247 @@
+package com.vivam.mediaplayerdemo;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapter of the music list, built for libraries of 100k+ tracks.
+ * <p>
+ * Ids are stable, all rows share one click listener and display text is computed
+ * when rows are added ({@link MusicRows}), so binding does not allocate. Library
+ * changes are applied and diffed on a background executor and dispatched as
+ * range notifications ({@link ListUpdate}), one diff at a time.
+ * <p>
+ * Must be used from the main thread.
+ */
+public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.ViewHolder> {
+
+    private static final String LOG_TAG = "MusicAdapter";
+
+    public interface OnItemClickListener {
+
+        void onItemClick(MusicBean item);
+    }
+
+    private final Executor mExecutor;
+    private final ArtworkLoader mArtworkLoader;
+    private final OnItemClickListener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private MusicRows mRows = new MusicRows();
+    // bumped on every change of mRows, a diff of an older version is redone
+    private int mVersion;
+
+    private final ArrayList<LibraryDiff> mPendingDiffs = new ArrayList<LibraryDiff>();
+    private boolean mDiffing;
+    private boolean mReleased;
+
+    private final View.OnClickListener mClickHandler = new View.OnClickListener() {
+
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && mListener != null) {
+                mListener.onItemClick(mRows.get(position));
+            }
+        }
+    };
+
+    private final ListUpdate.Callback mNotifier = new ListUpdate.Callback() {
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+
+        @Override
+        public void onReloaded() {
+            notifyDataSetChanged();
+        }
+    };
+
+    /**
+     * @param executor      runs the diffs of {@link #applyDiff(LibraryDiff)}.
+     * @param artworkLoader may be null to show rows without artwork.
+     */
+    public MusicAdapter(Executor executor, ArtworkLoader artworkLoader,
+            OnItemClickListener listener) {
+        mExecutor = executor;
+        mArtworkLoader = artworkLoader;
+        mListener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * @return the rows as they are now, as a read only list.
+     */
+    public List<MusicBean> getItems() {
+        return mRows.snapshot();
+    }
+
+    public void append(List<MusicBean> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int start = mRows.size();
+        mRows.addAll(batch);
+        mVersion++;
+        notifyItemRangeInserted(start, batch.size());
+    }
+
+    /**
+     * Replaces all rows with {@code items}.
+     */
+    public void setItems(List<MusicBean> items) {
+        mRows = MusicRows.of(items);
+        mVersion++;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Applies {@code diff} to the rows. The new rows and the notifications for them
+     * are computed in the background, diffs are applied in the order they come in.
+     */
+    public void applyDiff(LibraryDiff diff) {
+        mPendingDiffs.add(diff);
+        startNextDiff();
+    }
+
+    /**
+     * Drops pending diffs, nothing is dispatched after this returns.
+     */
+    public void release() {
+        mReleased = true;
+        mPendingDiffs.clear();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void startNextDiff() {
+        if (mDiffing || mReleased || mPendingDiffs.isEmpty()) {
+            return;
+        }
+        mDiffing = true;
+        final LibraryDiff diff = mPendingDiffs.get(0);
+        final List<MusicBean> snapshot = mRows.snapshot();
+        final int version = mVersion;
+
+        mExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                ArrayList<MusicBean> list = new ArrayList<MusicBean>(snapshot);
+                diff.applyTo(list);
+                final MusicRows rows = MusicRows.of(list);
+                final ListUpdate update = ListUpdate.compute(snapshot, list);
+                mMainHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        onDiffComputed(diff, version, rows, update);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onDiffComputed(LibraryDiff diff, int version, MusicRows rows,
+            ListUpdate update) {
+        mDiffing = false;
+        if (mReleased) {
+            return;
+        }
+        if (version != mVersion) {
+            // rows were appended meanwhile, diff against those as well
+            Log.d(LOG_TAG, "rows changed while diffing, retrying");
+            startNextDiff();
+            return;
+        }
+        mPendingDiffs.remove(diff);
+        mRows = rows;
+        mVersion++;
+        Log.d(LOG_TAG, "applied " + diff + " as " + update);
+        update.dispatchTo(mNotifier);
+        startNextDiff();
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_music, parent, false);
+        ViewHolder holder = new ViewHolder(itemView);
+        itemView.setTag(holder);
+        itemView.setOnClickListener(mClickHandler);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        MusicRows rows = mRows;
+        holder.titleTv.setText(rows.get(position).getTitle());
+        int length = rows.getDurationLength(position);
+        if (length > 0) {
+            holder.durationTv.setText(rows.getDurationChars(),
+                    rows.getDurationOffset(position), length);
+        } else {
+            DurationFormatter.Buffer duration = holder.durationText.clear()
+                    .appendDuration(rows.get(position).getDuration());
+            holder.durationTv.setText(duration.array(), 0, duration.length());
+        }
+        if (mArtworkLoader != null) {
+            mArtworkLoader.load(rows.getId(position), holder.artworkIv);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        if (mArtworkLoader != null) {
+            mArtworkLoader.unbind(holder.artworkIv);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mRows.getId(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mRows.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        final ImageView artworkIv;
+        final TextView titleTv;
+        final TextView durationTv;
+        final DurationFormatter.Buffer durationText = new DurationFormatter.Buffer();
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            artworkIv = (ImageView) itemView.findViewById(R.id.artwork);
+            titleTv = (TextView) itemView.findViewById(R.id.title);
+            durationTv = (TextView) itemView.findViewById(R.id.duration);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.vivam.mediaplayerdemo;
 
-import java.io.Serializable;
+import android.os.Parcel;
+import android.os.Parcelable;
 
 /**
  * Created by vivam on 1/21/16.
  */
-public class MusicBean implements Serializable {
+public class MusicBean implements Parcelable {
+
+    // Written first in every parcel, bump it when the fields change.
+    private static final int PARCEL_VERSION = 2;
 
     private long id;
 
@@ -13,6 +17,25 @@ public class MusicBean implements Serializable {
 
     private long duration;
 
+    /** MediaStore DATE_MODIFIED in seconds, used to detect changed tracks. */
+    private long dateModified;
+
+    public MusicBean() {
+    }
+
+    protected MusicBean(Parcel in) {
+        int version = in.readInt();
+        if (version > PARCEL_VERSION) {
+            throw new IllegalArgumentException("unsupported MusicBean parcel version " + version);
+        }
+        id = in.readLong();
+        title = in.readString();
+        duration = in.readLong();
+        if (version >= 2) {
+            dateModified = in.readLong();
+        }
+    }
+
     public long getId() {
         return id;
     }
@@ -36,4 +59,39 @@ public class MusicBean implements Serializable {
     public void setDuration(long duration) {
         this.duration = duration;
     }
+
+    public long getDateModified() {
+        return dateModified;
+    }
+
+    public void setDateModified(long dateModified) {
+        this.dateModified = dateModified;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(PARCEL_VERSION);
+        dest.writeLong(id);
+        dest.writeString(title);
+        dest.writeLong(duration);
+        dest.writeLong(dateModified);
+    }
+
+    public static final Creator<MusicBean> CREATOR = new Creator<MusicBean>() {
+
+        @Override
+        public MusicBean createFromParcel(Parcel in) {
+            return new MusicBean(in);
+        }
+
+        @Override
+        public MusicBean[] newArray(int size) {
+            return new MusicBean[size];
+        }
+    };
 }
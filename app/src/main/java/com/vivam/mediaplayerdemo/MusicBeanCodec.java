@@ -0,0 +1,244 @@
+package com.vivam.mediaplayerdemo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flat binary encoding of {@link MusicBean} lists, without reflection.
+ * <p>
+ * Layout: a 4 byte magic, a version byte, a varint record count, then per record
+ * the varint id, the varint duration, the title as a varint byte length (0 for
+ * a null title, length + 1 otherwise) followed by its UTF-8 bytes and, since
+ * version 2, the varint date modified. Readers accept every version up to
+ * {@link #VERSION}.
+ */
+public class MusicBeanCodec {
+
+    public static final int VERSION = 2;
+
+    private static final int MAGIC = 0x4d42_4c53; // "MBLS"
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static byte[] encode(List<MusicBean> list) {
+        Writer writer = new Writer(16 + list.size() * 32);
+        encode(list, writer);
+        return writer.toByteArray();
+    }
+
+    static void encode(List<MusicBean> list, Writer writer) {
+        writer.writeInt(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeVarLong(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            writeRecord(writer, list.get(i));
+        }
+    }
+
+    public static ArrayList<MusicBean> decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes the remaining bytes of {@code buffer}, which may be a mapped file.
+     */
+    public static ArrayList<MusicBean> decode(ByteBuffer buffer) {
+        Reader reader = new Reader(buffer);
+        if (reader.readInt() != MAGIC) {
+            throw new IllegalArgumentException("not an encoded MusicBean list");
+        }
+        int version = reader.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("unsupported version " + version);
+        }
+        int count = (int) reader.readVarLong();
+        ArrayList<MusicBean> list = new ArrayList<MusicBean>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(readRecord(reader, version));
+        }
+        return list;
+    }
+
+    static void writeRecord(Writer writer, MusicBean music) {
+        writer.writeVarLong(music.getId());
+        writer.writeVarLong(music.getDuration());
+        writer.writeNullableString(music.getTitle());
+        writer.writeVarLong(music.getDateModified());
+    }
+
+    static MusicBean readRecord(Reader reader, int version) {
+        MusicBean music = new MusicBean();
+        music.setId(reader.readVarLong());
+        music.setDuration(reader.readVarLong());
+        music.setTitle(reader.readNullableString());
+        if (version >= 2) {
+            music.setDateModified(reader.readVarLong());
+        }
+        return music;
+    }
+
+    /**
+     * Growable byte array writer.
+     */
+    static class Writer {
+
+        private byte[] mBuffer;
+        private int mLength;
+
+        Writer(int capacity) {
+            mBuffer = new byte[Math.max(capacity, 16)];
+        }
+
+        int length() {
+            return mLength;
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            mBuffer[mLength++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            mBuffer[mLength++] = (byte) (value >>> 24);
+            mBuffer[mLength++] = (byte) (value >>> 16);
+            mBuffer[mLength++] = (byte) (value >>> 8);
+            mBuffer[mLength++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /** Zigzag varint, small negative values stay short as well. */
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7fL) != 0) {
+                mBuffer[mLength++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            mBuffer[mLength++] = (byte) v;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, mBuffer, mLength, length);
+            mLength += length;
+        }
+
+        /** UTF-8 with a varint length, 0 for null and the byte length + 1 otherwise. */
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+            } else {
+                byte[] bytes = value.getBytes(UTF_8);
+                writeVarLong(bytes.length + 1);
+                writeBytes(bytes, 0, bytes.length);
+            }
+        }
+
+        void reset() {
+            mLength = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mLength);
+        }
+
+        byte[] buffer() {
+            return mBuffer;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (mLength + extra > mBuffer.length) {
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(mLength + extra, mBuffer.length * 2));
+            }
+        }
+    }
+
+    /**
+     * Reader over the remaining bytes of a buffer, throws
+     * {@link IllegalArgumentException} on truncated input.
+     */
+    static class Reader {
+
+        private final ByteBuffer mBuffer;
+        private byte[] mScratch;
+
+        Reader(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        boolean hasRemaining() {
+            return mBuffer.hasRemaining();
+        }
+
+        int readByte() {
+            require(1);
+            return mBuffer.get() & 0xff;
+        }
+
+        int readInt() {
+            require(4);
+            return mBuffer.getInt();
+        }
+
+        long readLong() {
+            require(8);
+            return mBuffer.getLong();
+        }
+
+        long readVarLong() {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                require(1);
+                byte b = mBuffer.get();
+                v |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new IllegalArgumentException("malformed varint");
+                }
+            }
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        /** Reads what {@link Writer#writeNullableString(String)} wrote. */
+        String readNullableString() {
+            int length = (int) readVarLong();
+            return length > 0 ? readString(length - 1) : null;
+        }
+
+        String readString(int length) {
+            require(length);
+            String value;
+            if (mBuffer.hasArray()) {
+                value = new String(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(),
+                        length, UTF_8);
+                mBuffer.position(mBuffer.position() + length);
+            } else {
+                // direct or mapped buffer, copy through a reused array
+                if (mScratch == null || mScratch.length < length) {
+                    mScratch = new byte[Math.max(length, 256)];
+                }
+                mBuffer.get(mScratch, 0, length);
+                value = new String(mScratch, 0, length, UTF_8);
+            }
+            return value;
+        }
+
+        private void require(int length) {
+            if (length < 0 || length > mBuffer.remaining()) {
+                throw new IllegalArgumentException("truncated data");
+            }
+        }
+    }
+}
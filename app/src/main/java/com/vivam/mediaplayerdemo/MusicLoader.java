@@ -0,0 +1,221 @@
+package com.vivam.mediaplayerdemo;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the local music library on a background executor and streams it to the
+ * main thread in batches. The first batch is small so the first screen of rows
+ * shows up before the rest of the library has been read.
+ * <p>
+ * With a {@link LibraryIndex}, a previously indexed library is delivered at once
+ * without touching the ContentResolver; the MediaStore is then scanned in the
+ * background and only the differences are delivered and written back.
+ */
+public class MusicLoader implements Runnable {
+
+    private static final String LOG_TAG = "MusicLoader";
+
+    /** Rows in the first batch, about one screen. */
+    private static final int FIRST_BATCH_SIZE = 30;
+    private static final int BATCH_SIZE = 500;
+
+    public interface Callback {
+
+        /**
+         * Called on the main thread for every batch, in cursor order.
+         *
+         * @param last whether this is the final batch, it may be empty.
+         */
+        void onBatchLoaded(ArrayList<MusicBean> batch, boolean last);
+
+        /**
+         * Called on the main thread when the MediaStore no longer matches the
+         * library delivered from the index.
+         */
+        void onLibraryChanged(LibraryDiff diff);
+    }
+
+    private final Context mContext;
+    private final LibraryIndex mIndex;
+    private final Executor mExecutor;
+    private final Callback mCallback;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean mCancelled;
+
+    private long mStartTime;
+    private volatile long mFirstBatchMillis = -1;
+    private volatile long mTotalMillis = -1;
+
+    /**
+     * @param index the library index to start from and keep up to date, may be null.
+     */
+    public MusicLoader(Context context, LibraryIndex index, Executor executor,
+            Callback callback) {
+        mContext = context.getApplicationContext();
+        mIndex = index;
+        mExecutor = executor;
+        mCallback = callback;
+    }
+
+    public void start() {
+        mStartTime = SystemClock.elapsedRealtime();
+        mExecutor.execute(this);
+    }
+
+    /**
+     * Stops loading, no batch is delivered after this returns.
+     */
+    public void cancel() {
+        mCancelled = true;
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * @return the time from {@link #start()} to the first batch being handed to the
+     * main thread, or -1 if it has not been delivered yet.
+     */
+    public long getFirstBatchMillis() {
+        return mFirstBatchMillis;
+    }
+
+    /**
+     * @return the time from {@link #start()} to the last batch, or -1.
+     */
+    public long getTotalMillis() {
+        return mTotalMillis;
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        ArrayList<MusicBean> indexed = mIndex != null ? mIndex.load() : null;
+        if (indexed != null) {
+            deliver(indexed, true);
+            sync(new ArrayList<MusicBean>(indexed));
+        } else {
+            stream();
+        }
+    }
+
+    private void stream() {
+        Cursor cursor = MediaUtils.queryLocalMusic(mContext);
+        if (cursor == null) {
+            deliver(new ArrayList<MusicBean>(0), true);
+            return;
+        }
+
+        ArrayList<MusicBean> all;
+        try {
+            all = new ArrayList<MusicBean>(cursor.getCount());
+            int batchSize = FIRST_BATCH_SIZE;
+            ArrayList<MusicBean> batch = new ArrayList<MusicBean>(batchSize);
+            while (!mCancelled && cursor.moveToNext()) {
+                batch.add(MediaUtils.readMusic(cursor));
+                if (batch.size() == batchSize && !cursor.isLast()) {
+                    all.addAll(batch);
+                    deliver(batch, false);
+                    batchSize = BATCH_SIZE;
+                    batch = new ArrayList<MusicBean>(batchSize);
+                }
+            }
+            all.addAll(batch);
+            deliver(batch, true);
+        } finally {
+            cursor.close();
+        }
+
+        if (!mCancelled) {
+            writeIndex(all);
+        }
+    }
+
+    /**
+     * Compares the MediaStore with the library delivered from the index.
+     *
+     * @param library a private copy of the delivered library.
+     */
+    private void sync(ArrayList<MusicBean> library) {
+        Cursor cursor = MediaUtils.queryLocalMusic(mContext);
+        if (cursor == null || mCancelled) {
+            if (cursor != null) {
+                cursor.close();
+            }
+            return;
+        }
+
+        ArrayList<MusicBean> current;
+        try {
+            current = MediaUtils.readMusicList(cursor);
+        } finally {
+            cursor.close();
+        }
+
+        final LibraryDiff diff = LibraryDiff.compute(library, current);
+        Log.d(LOG_TAG, "synced with MediaStore: " + diff);
+        if (diff.isEmpty() || mCancelled) {
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    mCallback.onLibraryChanged(diff);
+                }
+            }
+        });
+        // keep the order the UI ends up with after applying the diff
+        diff.applyTo(library);
+        writeIndex(library);
+    }
+
+    private void writeIndex(ArrayList<MusicBean> library) {
+        if (mIndex == null) {
+            return;
+        }
+        try {
+            mIndex.write(library);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, Log.getStackTraceString(e));
+        }
+    }
+
+    private void deliver(final ArrayList<MusicBean> batch, final boolean last) {
+        if (mCancelled) {
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (mCancelled) {
+                    return;
+                }
+                long elapsed = SystemClock.elapsedRealtime() - mStartTime;
+                if (mFirstBatchMillis < 0) {
+                    mFirstBatchMillis = elapsed;
+                    Log.d(LOG_TAG, "first batch of " + batch.size() + " after " + elapsed + "ms");
+                }
+                if (last) {
+                    mTotalMillis = elapsed;
+                    Log.d(LOG_TAG, "library loaded after " + elapsed + "ms");
+                }
+                mCallback.onBatchLoaded(batch, last);
+            }
+        });
+    }
+}
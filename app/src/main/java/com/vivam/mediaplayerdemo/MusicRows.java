@@ -0,0 +1,140 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The rows of the music list with their display text computed up front, so
+ * binding a row only copies references. Durations are formatted once when a row
+ * is added and kept packed in a single {@code char[]}.
+ * <p>
+ * Rows are only ever appended. A {@link #snapshot()} therefore stays valid while
+ * more rows are added and can be read from another thread, e.g. to diff against.
+ * Adding is not thread safe.
+ */
+public class MusicRows {
+
+    /** Chars reserved per row for its duration, {@code HH:mm:ss} fits. */
+    static final int DURATION_STRIDE = 8;
+
+    private MusicBean[] mItems;
+    private char[] mDurations;
+    private byte[] mDurationLengths;
+    private int mSize;
+
+    public MusicRows() {
+        this(16);
+    }
+
+    public MusicRows(int capacity) {
+        capacity = Math.max(capacity, 16);
+        mItems = new MusicBean[capacity];
+        mDurations = new char[capacity * DURATION_STRIDE];
+        mDurationLengths = new byte[capacity];
+    }
+
+    public static MusicRows of(List<MusicBean> list) {
+        MusicRows rows = new MusicRows(list.size());
+        rows.addAll(list);
+        return rows;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public MusicBean get(int position) {
+        checkPosition(position);
+        return mItems[position];
+    }
+
+    public long getId(int position) {
+        checkPosition(position);
+        return mItems[position].getId();
+    }
+
+    public void addAll(List<MusicBean> list) {
+        ensureCapacity(mSize + list.size());
+        for (int i = 0; i < list.size(); i++) {
+            MusicBean music = list.get(i);
+            int offset = mSize * DURATION_STRIDE;
+            int length;
+            if (music.getDuration() < 100 * 3600000L) {
+                length = DurationFormatter.format(music.getDuration(), mDurations, offset);
+            } else {
+                // 100 hours and more do not fit the stride, these are formatted on bind
+                length = 0;
+            }
+            mDurationLengths[mSize] = (byte) length;
+            mItems[mSize++] = music;
+        }
+    }
+
+    /**
+     * The packed durations, the one of a row starts at {@link #getDurationOffset(int)}.
+     */
+    public char[] getDurationChars() {
+        return mDurations;
+    }
+
+    public int getDurationOffset(int position) {
+        return position * DURATION_STRIDE;
+    }
+
+    /**
+     * @return the length of the precomputed duration, 0 if the row has none and
+     * has to be formatted on bind.
+     */
+    public int getDurationLength(int position) {
+        checkPosition(position);
+        return mDurationLengths[position];
+    }
+
+    /**
+     * @return the current rows as a read only list, later additions do not show up in it.
+     */
+    public List<MusicBean> snapshot() {
+        return new Snapshot(mItems, mSize);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mItems.length) {
+            int newLength = Math.max(capacity, mItems.length + (mItems.length >> 1));
+            mItems = Arrays.copyOf(mItems, newLength);
+            mDurations = Arrays.copyOf(mDurations, newLength * DURATION_STRIDE);
+            mDurationLengths = Arrays.copyOf(mDurationLengths, newLength);
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+    }
+
+    private static class Snapshot extends AbstractList<MusicBean> implements RandomAccess {
+
+        private final MusicBean[] mItems;
+        private final int mSize;
+
+        Snapshot(MusicBean[] items, int size) {
+            mItems = items;
+            mSize = size;
+        }
+
+        @Override
+        public MusicBean get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+            }
+            return mItems[index];
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+}
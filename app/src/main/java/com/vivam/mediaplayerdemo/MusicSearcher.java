@@ -0,0 +1,150 @@
+package com.vivam.mediaplayerdemo;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns a {@link SearchIndex} on a background thread. The index is fed as the
+ * library loads and queries run on the same thread, a new query cancels the one
+ * before it, so typing only ever waits for the last query.
+ * <p>
+ * Must be used from the main thread, results are delivered there as well.
+ */
+public class MusicSearcher {
+
+    private static final String LOG_TAG = "MusicSearcher";
+
+    /** Results shown at most for one query. */
+    public static final int MAX_RESULTS = 500;
+
+    public interface Callback {
+
+        /** Called on the main thread with the results of the latest query. */
+        void onSearchResults(String query, ArrayList<MusicBean> results);
+    }
+
+    private static final int MSG_ADD = 1;
+    private static final int MSG_DIFF = 2;
+    private static final int MSG_SEARCH = 3;
+
+    private final SearchIndex mIndex = new SearchIndex();
+    private final Callback mCallback;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // flag of the query running or queued, set when a newer one comes in
+    private AtomicBoolean mCancelled = new AtomicBoolean();
+
+    public MusicSearcher(Callback callback) {
+        mCallback = callback;
+        mThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper(), mHandlerCallback);
+    }
+
+    /**
+     * Indexes {@code batch}, the list must not be changed afterwards.
+     */
+    public void addAll(List<MusicBean> batch) {
+        mHandler.obtainMessage(MSG_ADD, batch).sendToTarget();
+    }
+
+    public void applyDiff(LibraryDiff diff) {
+        mHandler.obtainMessage(MSG_DIFF, diff).sendToTarget();
+    }
+
+    /**
+     * Searches for {@code query} after everything added so far is indexed. A query
+     * still queued or running is cancelled and its results are dropped.
+     */
+    public void search(String query) {
+        cancel();
+        mCancelled = new AtomicBoolean();
+        mHandler.obtainMessage(MSG_SEARCH, new Query(query, mCancelled)).sendToTarget();
+    }
+
+    public void cancel() {
+        mCancelled.set(true);
+        mHandler.removeMessages(MSG_SEARCH);
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Cancels everything and stops the thread, the searcher cannot be used afterwards.
+     */
+    public void release() {
+        cancel();
+        mThread.quit();
+    }
+
+    private final Handler.Callback mHandlerCallback = new Handler.Callback() {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean handleMessage(Message msg) {
+            switch (msg.what) {
+                case MSG_ADD:
+                    mIndex.addAll((List<MusicBean>) msg.obj);
+                    if (!mHandler.hasMessages(MSG_ADD)) {
+                        // the footprint walks every posting list, once per load
+                        Log.d(LOG_TAG, "indexed, " + mIndex);
+                    }
+                    return true;
+
+                case MSG_DIFF:
+                    mIndex.apply((LibraryDiff) msg.obj);
+                    Log.d(LOG_TAG, "applied diff, " + mIndex);
+                    return true;
+
+                case MSG_SEARCH:
+                    runQuery((Query) msg.obj);
+                    return true;
+            }
+            return false;
+        }
+    };
+
+    private void runQuery(final Query query) {
+        if (query.cancelled.get()) {
+            return;
+        }
+        long start = System.nanoTime();
+        final ArrayList<MusicBean> results = mIndex.search(query.text, MAX_RESULTS,
+                query.cancelled);
+        if (results == null) {
+            return;
+        }
+        Log.d(LOG_TAG, "\"" + query.text + "\": " + results.size() + " results in "
+                + (System.nanoTime() - start) / 1000 + "us");
+
+        mMainHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!query.cancelled.get()) {
+                    mCallback.onSearchResults(query.text, results);
+                }
+            }
+        });
+    }
+
+    private static class Query {
+
+        final String text;
+        final AtomicBoolean cancelled;
+
+        Query(String text, AtomicBoolean cancelled) {
+            this.text = text;
+            this.cancelled = cancelled;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.vivam.mediaplayerdemo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoded 16 bit PCM around the playhead, so that seeking a little back or ahead
+ * is served from memory instead of restarting the decoder.
+ * <p>
+ * The buffer holds one contiguous range of frames, counted from the start of the
+ * track, in blocks from a {@link DirectBufferPool}. The decoder appends at the
+ * end of the range until it is {@code maxAheadBytes} ahead of the read position,
+ * the blocks behind the read position are kept as history and only recycled when
+ * a new block is needed and the limit of blocks or the pool is reached. A seek
+ * inside the range only moves the read position, any other seek starts a new
+ * range with {@link #reset(long)}.
+ * <p>
+ * Not thread safe.
+ */
+public class PcmRingBuffer {
+
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final DirectBufferPool mPool;
+    private final ByteBuffer[] mBlocks;
+    private final int mMaxAheadBytes;
+    // ring of the blocks in use, the first one starts at mStartFrame
+    private int mHead;
+    private int mCount;
+
+    private int mSampleRate;
+    private int mFrameSize;
+    private int mBlockFrames;
+
+    private long mStartFrame;
+    private long mEndFrame;
+    private long mReadFrame;
+
+    /**
+     * @param maxBytes      the most memory held, history included.
+     * @param maxAheadBytes the most decoded audio ahead of the read position.
+     */
+    public PcmRingBuffer(DirectBufferPool pool, long maxBytes, int maxAheadBytes) {
+        mPool = pool;
+        mBlocks = new ByteBuffer[(int) Math.max(1, maxBytes / pool.getBufferSize())];
+        mMaxAheadBytes = maxAheadBytes;
+        setFormat(44100, 2);
+    }
+
+    /**
+     * Sets the format of the data written from now on, the buffer is emptied.
+     */
+    public void setFormat(int sampleRate, int channelCount) {
+        if (sampleRate <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException("sample rate " + sampleRate
+                    + ", channels " + channelCount);
+        }
+        int frameSize = channelCount * BYTES_PER_SAMPLE;
+        if (frameSize > mPool.getBufferSize()) {
+            throw new IllegalArgumentException("frame of " + frameSize + " bytes");
+        }
+        reset(0);
+        mSampleRate = sampleRate;
+        mFrameSize = frameSize;
+        mBlockFrames = mPool.getBufferSize() / frameSize;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    public long frameAt(long timeUs) {
+        return timeUs * mSampleRate / 1000000;
+    }
+
+    public long timeAt(long frame) {
+        return frame * 1000000 / mSampleRate;
+    }
+
+    /**
+     * Empties the buffer, the next write is the data of {@code frame}.
+     */
+    public void reset(long frame) {
+        while (mCount > 0) {
+            mPool.release(removeFirst());
+        }
+        mHead = 0;
+        mStartFrame = frame;
+        mEndFrame = frame;
+        mReadFrame = frame;
+    }
+
+    /**
+     * Moves the read position to {@code frame} if it is buffered.
+     *
+     * @return false if it is not, nothing changed then.
+     */
+    public boolean seekTo(long frame) {
+        if (frame < mStartFrame || frame > mEndFrame) {
+            return false;
+        }
+        mReadFrame = frame;
+        return true;
+    }
+
+    public long getStartFrame() {
+        return mStartFrame;
+    }
+
+    public long getEndFrame() {
+        return mEndFrame;
+    }
+
+    public long getReadFrame() {
+        return mReadFrame;
+    }
+
+    /**
+     * @return the bytes that can be read before the end of the range.
+     */
+    public int readableBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, (mEndFrame - mReadFrame) * mFrameSize);
+    }
+
+    /**
+     * @return the bytes the decoder may still write ahead of the read position.
+     * A write can take less when no block is free.
+     */
+    public int writableBytes() {
+        return Math.max(0, mMaxAheadBytes - readableBytes());
+    }
+
+    /**
+     * Appends whole frames from {@code src}, its position is advanced past them.
+     *
+     * @return the number of bytes taken.
+     */
+    public int write(ByteBuffer src) {
+        int length = Math.min(src.remaining(), writableBytes());
+        length -= length % mFrameSize;
+        int written = 0;
+        int limit = src.limit();
+        while (written < length) {
+            int index = (int) ((mEndFrame - mStartFrame) / mBlockFrames);
+            if (index == mCount && !addBlock()) {
+                break;
+            }
+            index = (int) ((mEndFrame - mStartFrame) / mBlockFrames);
+            int offset = (int) ((mEndFrame - mStartFrame) % mBlockFrames) * mFrameSize;
+            int count = Math.min(length - written, mBlockFrames * mFrameSize - offset);
+            ByteBuffer block = block(index);
+            block.limit(offset + count).position(offset);
+            src.limit(src.position() + count);
+            block.put(src);
+            src.limit(limit);
+            written += count;
+            mEndFrame += count / mFrameSize;
+        }
+        return written;
+    }
+
+    /**
+     * Copies whole frames from the read position into {@code dst}.
+     *
+     * @return the number of bytes copied.
+     */
+    public int read(byte[] dst, int offset, int length) {
+        length = Math.min(length, readableBytes());
+        length -= length % mFrameSize;
+        int read = 0;
+        while (read < length) {
+            int index = (int) ((mReadFrame - mStartFrame) / mBlockFrames);
+            int blockOffset = (int) ((mReadFrame - mStartFrame) % mBlockFrames) * mFrameSize;
+            int count = Math.min(length - read, mBlockFrames * mFrameSize - blockOffset);
+            ByteBuffer block = block(index);
+            block.limit(blockOffset + count).position(blockOffset);
+            block.get(dst, offset + read, count);
+            read += count;
+            mReadFrame += count / mFrameSize;
+        }
+        return read;
+    }
+
+    /**
+     * @return the bytes held in blocks, history included.
+     */
+    public long getBufferedBytes() {
+        return (long) mCount * mPool.getBufferSize();
+    }
+
+    private boolean addBlock() {
+        ByteBuffer block = null;
+        if (mCount < mBlocks.length) {
+            block = mPool.acquire();
+        }
+        if (block == null) {
+            // recycle the oldest block if it was played entirely
+            if (mCount == 0 || mStartFrame + mBlockFrames > mReadFrame) {
+                return false;
+            }
+            block = removeFirst();
+            mStartFrame += mBlockFrames;
+        }
+        mBlocks[(mHead + mCount) % mBlocks.length] = block;
+        mCount++;
+        return true;
+    }
+
+    private ByteBuffer removeFirst() {
+        ByteBuffer block = mBlocks[mHead];
+        mBlocks[mHead] = null;
+        mHead = (mHead + 1) % mBlocks.length;
+        mCount--;
+        return block;
+    }
+
+    private ByteBuffer block(int index) {
+        return mBlocks[(mHead + index) % mBlocks.length];
+    }
+}
@@ -0,0 +1,282 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Playback queue with a cursor on the current entry.
+ * <p>
+ * Stepping to the next or previous entry only moves the cursor, and looking up the
+ * position of a track goes through an id to position map, so navigation does not
+ * depend on the queue length. Structural changes shift the backing arrays with
+ * {@link System#arraycopy} and only mark the map stale from the first shifted
+ * position; it is brought up to date on the next lookup, so a burst of edits pays
+ * for one partial re-index.
+ * <p>
+ * Entries can be queued by id only, their {@link MusicBean} is then {@code null}
+ * until filled in with {@link #set(int, MusicBean)}.
+ * <p>
+ * A track is expected to be in the queue at most once. Not thread safe.
+ */
+public class PlayQueue {
+
+    public static final int NO_POSITION = -1;
+
+    private long[] mIds = new long[16];
+    private MusicBean[] mItems = new MusicBean[16];
+    private int mSize;
+    private int mPosition = NO_POSITION;
+
+    private final LongIntMap mIndex = new LongIntMap();
+    // mIndex is up to date for the positions below this one
+    private int mIndexedUpTo;
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Replaces the whole queue, the cursor is cleared.
+     */
+    public void setAll(List<MusicBean> list) {
+        clear();
+        ensureCapacity(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            MusicBean music = list.get(i);
+            mIds[i] = music.getId();
+            mItems[i] = music;
+        }
+        mSize = list.size();
+        mIndex.ensureCapacity(mSize);
+    }
+
+    /**
+     * Replaces the whole queue with tracks known only by id, the cursor is cleared.
+     */
+    public void setAll(long[] ids) {
+        clear();
+        ensureCapacity(ids.length);
+        System.arraycopy(ids, 0, mIds, 0, ids.length);
+        mSize = ids.length;
+        mIndex.ensureCapacity(mSize);
+    }
+
+    /**
+     * @return a copy of the queued ids, in queue order.
+     */
+    public long[] getIds() {
+        return Arrays.copyOf(mIds, mSize);
+    }
+
+    public void clear() {
+        Arrays.fill(mItems, 0, mSize, null);
+        mSize = 0;
+        mPosition = NO_POSITION;
+        mIndex.clear();
+        mIndexedUpTo = 0;
+    }
+
+    public long getId(int position) {
+        checkPosition(position);
+        return mIds[position];
+    }
+
+    public MusicBean get(int position) {
+        checkPosition(position);
+        return mItems[position];
+    }
+
+    /**
+     * Sets the metadata of the entry at {@code position}, the id must match.
+     */
+    public void set(int position, MusicBean music) {
+        checkPosition(position);
+        if (music.getId() != mIds[position]) {
+            throw new IllegalArgumentException("id " + music.getId()
+                    + " queued at " + position + " is " + mIds[position]);
+        }
+        mItems[position] = music;
+    }
+
+    /**
+     * @return the position of {@code id}, or {@link #NO_POSITION} if it is not queued.
+     */
+    public int indexOf(long id) {
+        if (mIndexedUpTo < mSize) {
+            reindex();
+        }
+        return mIndex.get(id, NO_POSITION);
+    }
+
+    public boolean contains(long id) {
+        return indexOf(id) != NO_POSITION;
+    }
+
+    public int getPosition() {
+        return mPosition;
+    }
+
+    public void setPosition(int position) {
+        if (position != NO_POSITION) {
+            checkPosition(position);
+        }
+        mPosition = position;
+    }
+
+    /**
+     * Moves the cursor to {@code id}.
+     *
+     * @return false if the track is not queued, the cursor is left untouched then.
+     */
+    public boolean moveTo(long id) {
+        int position = indexOf(id);
+        if (position == NO_POSITION) {
+            return false;
+        }
+        mPosition = position;
+        return true;
+    }
+
+    public MusicBean current() {
+        return mPosition != NO_POSITION ? mItems[mPosition] : null;
+    }
+
+    /**
+     * @return the position after the cursor, wrapping around at the end.
+     */
+    public int nextPosition() {
+        if (mPosition == NO_POSITION || mSize == 0) {
+            return NO_POSITION;
+        }
+        return mPosition + 1 == mSize ? 0 : mPosition + 1;
+    }
+
+    /**
+     * @return the position before the cursor, wrapping around at the start.
+     */
+    public int previousPosition() {
+        if (mPosition == NO_POSITION || mSize == 0) {
+            return NO_POSITION;
+        }
+        return mPosition == 0 ? mSize - 1 : mPosition - 1;
+    }
+
+    public MusicBean peekNext() {
+        int position = nextPosition();
+        return position != NO_POSITION ? mItems[position] : null;
+    }
+
+    public MusicBean moveToNext() {
+        mPosition = nextPosition();
+        return current();
+    }
+
+    public MusicBean moveToPrevious() {
+        mPosition = previousPosition();
+        return current();
+    }
+
+    public void add(MusicBean music) {
+        add(mSize, music);
+    }
+
+    public void add(int position, MusicBean music) {
+        if (position < 0 || position > mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+        ensureCapacity(mSize + 1);
+        System.arraycopy(mIds, position, mIds, position + 1, mSize - position);
+        System.arraycopy(mItems, position, mItems, position + 1, mSize - position);
+        mIds[position] = music.getId();
+        mItems[position] = music;
+        mSize++;
+
+        if (mPosition != NO_POSITION && position <= mPosition) {
+            mPosition++;
+        }
+        invalidateFrom(position);
+    }
+
+    public MusicBean remove(int position) {
+        checkPosition(position);
+        MusicBean removed = mItems[position];
+        mIndex.remove(mIds[position]);
+        System.arraycopy(mIds, position + 1, mIds, position, mSize - position - 1);
+        System.arraycopy(mItems, position + 1, mItems, position, mSize - position - 1);
+        mItems[--mSize] = null;
+
+        if (mPosition != NO_POSITION) {
+            if (position < mPosition) {
+                mPosition--;
+            } else if (position == mPosition) {
+                // the entry that took its place becomes current
+                mPosition = mSize == 0 ? NO_POSITION : (position == mSize ? 0 : position);
+            }
+        }
+        invalidateFrom(position);
+        return removed;
+    }
+
+    /**
+     * Moves the entry at {@code from} to {@code to}, only the entries in between
+     * are shifted.
+     */
+    public void move(int from, int to) {
+        checkPosition(from);
+        checkPosition(to);
+        if (from == to) {
+            return;
+        }
+        long id = mIds[from];
+        MusicBean music = mItems[from];
+        if (from < to) {
+            System.arraycopy(mIds, from + 1, mIds, from, to - from);
+            System.arraycopy(mItems, from + 1, mItems, from, to - from);
+        } else {
+            System.arraycopy(mIds, to, mIds, to + 1, from - to);
+            System.arraycopy(mItems, to, mItems, to + 1, from - to);
+        }
+        mIds[to] = id;
+        mItems[to] = music;
+
+        if (mPosition == from) {
+            mPosition = to;
+        } else if (from < mPosition && mPosition <= to) {
+            mPosition--;
+        } else if (to <= mPosition && mPosition < from) {
+            mPosition++;
+        }
+        invalidateFrom(Math.min(from, to));
+    }
+
+    private void invalidateFrom(int position) {
+        if (position < mIndexedUpTo) {
+            mIndexedUpTo = position;
+        }
+    }
+
+    private void reindex() {
+        for (int i = mIndexedUpTo; i < mSize; i++) {
+            mIndex.put(mIds[i], i);
+        }
+        mIndexedUpTo = mSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mIds.length) {
+            int newLength = Math.max(capacity, mIds.length + (mIds.length >> 1));
+            mIds = Arrays.copyOf(mIds, newLength);
+            mItems = Arrays.copyOf(mItems, newLength);
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+    }
+}
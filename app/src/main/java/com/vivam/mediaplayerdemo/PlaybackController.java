@@ -0,0 +1,397 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+
+/**
+ * Playback state machine built around {@link Player#prepareAsync()}.
+ * <p>
+ * A {@link #play(long)} request never blocks: it resets the current player, which
+ * cancels a prepare still in flight, and starts preparing the new track. Only the
+ * latest request is started once prepared, so skipping through tracks costs the
+ * same no matter how slow a data source is to open.
+ * <p>
+ * The controller also owns a second player used to prepare the following track
+ * ahead of time (see {@link #prepareNext(long)}); it is chained to the current one
+ * for gapless transitions.
+ * <p>
+ * Not thread safe, all calls and player callbacks must happen on the same thread.
+ */
+public class PlaybackController implements Player.Listener {
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_PREPARING = 1;
+    public static final int STATE_PLAYING = 2;
+    public static final int STATE_PAUSED = 3;
+    public static final int STATE_COMPLETED = 4;
+    public static final int STATE_ERROR = 5;
+
+    public static final long NO_ID = -1;
+
+    public interface Callback {
+
+        /** Called when the track requested by {@link #play(long)} starts. */
+        void onStarted(long id);
+
+        /** Called when playback moved on to the prepared next track by itself. */
+        void onTrackChanged(long id);
+
+        /** Called when a track completed and no next track was prepared. */
+        void onCompletion(long id);
+
+        void onError(long id);
+    }
+
+    /** Per track gain, e.g. from loudness normalization. */
+    public interface Gain {
+
+        /**
+         * @return the linear gain of {@code id}, 1 for none. Called when a track
+         * is prepared, on the thread of the controller.
+         */
+        float get(long id);
+    }
+
+    private Player.Factory mFactory;
+    private final Callback mCallback;
+    private PlaybackMetrics mMetrics = new PlaybackMetrics();
+
+    private Player mPlayer;
+    private long mId = NO_ID;
+    private int mState = STATE_IDLE;
+    // System.nanoTime() of the prepareAsync() of the current player
+    private long mPrepareStart;
+    private boolean mPlayWhenReady;
+    private int mPendingSeek = -1;
+    private float mVolume = 1.0f;
+    private Gain mGain;
+    // the gain of mId and of mNextId
+    private float mTrackGain = 1.0f;
+    private float mNextGain = 1.0f;
+
+    private Player mNextPlayer;
+    private long mNextId = NO_ID;
+    private boolean mNextPrepared;
+    private boolean mNextChained;
+
+    public PlaybackController(Player.Factory factory, Callback callback) {
+        mFactory = factory;
+        mCallback = callback;
+    }
+
+    /**
+     * Reports timings and starts to {@code metrics} instead of a private instance.
+     */
+    public void setMetrics(PlaybackMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    public PlaybackMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Scales the volume of every track by its gain, null for none. Applies to the
+     * current tracks at once.
+     */
+    public void setGain(Gain gain) {
+        mGain = gain;
+        mTrackGain = gainOf(mId);
+        mNextGain = gainOf(mNextId);
+        setVolume(mVolume);
+    }
+
+    /**
+     * Switches to players from {@code factory}. The current players are released,
+     * the current track is loaded again on a new one at the same position, and
+     * keeps playing if it was.
+     */
+    public void setFactory(Player.Factory factory) {
+        mFactory = factory;
+        long id = mId;
+        if (id == NO_ID) {
+            release();
+            return;
+        }
+        int position = mState == STATE_PREPARING && mPendingSeek >= 0
+                ? mPendingSeek : getCurrentPosition();
+        boolean playing = mState == STATE_PLAYING
+                || (mState == STATE_PREPARING && mPlayWhenReady);
+        release();
+        play(id);
+        seekTo(position);
+        if (!playing) {
+            pause();
+        }
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public long getCurrentId() {
+        return mId;
+    }
+
+    public long getNextId() {
+        return mNextId;
+    }
+
+    public boolean isPlaying() {
+        return mState == STATE_PLAYING;
+    }
+
+    public int getCurrentPosition() {
+        return isPrepared() ? mPlayer.getCurrentPosition() : 0;
+    }
+
+    public int getDuration() {
+        return isPrepared() ? mPlayer.getDuration() : 0;
+    }
+
+    /**
+     * Plays {@code id}, superseding any request that has not started yet.
+     */
+    public void play(long id) {
+        if (mNextPrepared && mNextId == id) {
+            switchToNext(true);
+            mMetrics.onStarted();
+            mCallback.onStarted(mId);
+            return;
+        }
+
+        if (mPlayer == null) {
+            mPlayer = mFactory.create(this);
+        } else {
+            if (mNextChained) {
+                mPlayer.setNextPlayer(null);
+                mNextChained = false;
+            }
+            mPlayer.reset();
+        }
+
+        mId = id;
+        mTrackGain = gainOf(id);
+        mPlayWhenReady = true;
+        mPendingSeek = -1;
+        mState = STATE_PREPARING;
+        try {
+            long start = System.nanoTime();
+            mPlayer.setDataSource(id);
+            mPrepareStart = System.nanoTime();
+            mMetrics.recordSetDataSource(mPrepareStart - start);
+            mPlayer.prepareAsync();
+        } catch (IOException e) {
+            onError(mPlayer, 0, 0);
+        }
+    }
+
+    public void pause() {
+        if (mState == STATE_PLAYING) {
+            mPlayer.pause();
+            mState = STATE_PAUSED;
+        } else if (mState == STATE_PREPARING) {
+            mPlayWhenReady = false;
+        }
+    }
+
+    public void resume() {
+        if (mState == STATE_PAUSED || mState == STATE_COMPLETED) {
+            mPlayer.start();
+            mState = STATE_PLAYING;
+            mMetrics.onResumed();
+        } else if (mState == STATE_PREPARING) {
+            mPlayWhenReady = true;
+        }
+    }
+
+    /**
+     * Seeks the current track, the position is applied once prepared if the track
+     * is still preparing.
+     */
+    public void seekTo(int msec) {
+        if (isPrepared()) {
+            mPlayer.seekTo(msec);
+        } else if (mState == STATE_PREPARING) {
+            mPendingSeek = msec;
+        }
+    }
+
+    public void setVolume(float volume) {
+        mVolume = volume;
+        if (mPlayer != null) {
+            mPlayer.setVolume(volume * mTrackGain);
+        }
+        if (mNextPlayer != null) {
+            mNextPlayer.setVolume(volume * mNextGain);
+        }
+    }
+
+    /**
+     * Prepares {@code id} on the second player so it follows the current track
+     * without a gap. Passing {@link #NO_ID} drops the prepared track.
+     */
+    public void prepareNext(long id) {
+        if (mNextId == id && mNextPlayer != null) {
+            return;
+        }
+
+        if (mNextChained) {
+            mPlayer.setNextPlayer(null);
+            mNextChained = false;
+        }
+        mNextPrepared = false;
+        mNextId = id;
+        mNextGain = gainOf(id);
+
+        if (id == NO_ID) {
+            if (mNextPlayer != null) {
+                mNextPlayer.reset();
+            }
+            return;
+        }
+
+        if (mNextPlayer == null) {
+            mNextPlayer = mFactory.create(this);
+        } else {
+            mNextPlayer.reset();
+        }
+        try {
+            long start = System.nanoTime();
+            mNextPlayer.setDataSource(id);
+            mMetrics.recordSetDataSource(System.nanoTime() - start);
+            mNextPlayer.prepareAsync();
+        } catch (IOException e) {
+            mNextPlayer.reset();
+            mNextId = NO_ID;
+        }
+    }
+
+    /**
+     * Stops playback, the players are kept for the next request.
+     */
+    public void stop() {
+        if (mPlayer != null) {
+            mPlayer.reset();
+        }
+        prepareNext(NO_ID);
+        mId = NO_ID;
+        mState = STATE_IDLE;
+    }
+
+    public void release() {
+        if (mPlayer != null) {
+            mPlayer.release();
+            mPlayer = null;
+        }
+        if (mNextPlayer != null) {
+            mNextPlayer.release();
+            mNextPlayer = null;
+        }
+        mNextId = NO_ID;
+        mNextPrepared = false;
+        mNextChained = false;
+        mId = NO_ID;
+        mState = STATE_IDLE;
+    }
+
+    @Override
+    public void onPrepared(Player player) {
+        if (player == mPlayer && mState == STATE_PREPARING) {
+            mMetrics.recordPrepare(System.nanoTime() - mPrepareStart);
+            if (mPendingSeek >= 0) {
+                mPlayer.seekTo(mPendingSeek);
+                mPendingSeek = -1;
+            }
+            mPlayer.setVolume(mVolume * mTrackGain);
+            if (mPlayWhenReady) {
+                mPlayer.start();
+                mState = STATE_PLAYING;
+            } else {
+                mState = STATE_PAUSED;
+            }
+            chainNext();
+            if (mState == STATE_PLAYING) {
+                mMetrics.onStarted();
+                mCallback.onStarted(mId);
+            }
+        } else if (player == mNextPlayer && mNextId != NO_ID && !mNextPrepared) {
+            mNextPrepared = true;
+            mNextPlayer.setVolume(mVolume * mNextGain);
+            chainNext();
+        }
+    }
+
+    @Override
+    public void onCompletion(Player player) {
+        if (player != mPlayer || !isPrepared()) {
+            return;
+        }
+
+        if (mNextPrepared) {
+            // A chained player has already been started by the framework.
+            switchToNext(!mNextChained);
+            mMetrics.onTrackChanged();
+            mCallback.onTrackChanged(mId);
+        } else {
+            mState = STATE_COMPLETED;
+            mMetrics.onCompleted();
+            mCallback.onCompletion(mId);
+        }
+    }
+
+    @Override
+    public void onError(Player player, int what, int extra) {
+        if (player == mNextPlayer) {
+            prepareNext(NO_ID);
+            return;
+        }
+        if (player != mPlayer) {
+            return;
+        }
+
+        mPlayer.reset();
+        mState = STATE_ERROR;
+        mMetrics.onError();
+        mCallback.onError(mId);
+    }
+
+    private float gainOf(long id) {
+        return mGain == null || id == NO_ID ? 1.0f : mGain.get(id);
+    }
+
+    private boolean isPrepared() {
+        return mState == STATE_PLAYING || mState == STATE_PAUSED || mState == STATE_COMPLETED;
+    }
+
+    private void chainNext() {
+        if (mNextPrepared && !mNextChained && isPrepared() && mState != STATE_COMPLETED) {
+            mNextChained = mPlayer.setNextPlayer(mNextPlayer);
+        }
+    }
+
+    /**
+     * Makes the prepared next player current, the previous player is kept to
+     * prepare the following track.
+     */
+    private void switchToNext(boolean start) {
+        Player previous = mPlayer;
+        mPlayer = mNextPlayer;
+        mId = mNextId;
+        mTrackGain = mNextGain;
+        mNextPlayer = previous;
+        mNextId = NO_ID;
+        mNextGain = 1.0f;
+        mNextPrepared = false;
+        mNextChained = false;
+        mPendingSeek = -1;
+
+        if (start) {
+            mPlayer.start();
+        }
+        mState = STATE_PLAYING;
+
+        if (previous != null) {
+            previous.reset();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings of the playback path, kept in {@link LatencyHistogram}s.
+ * <p>
+ * Besides the time spent in data source calls this measures what the user hears:
+ * the delay from a play request to the start of the track, and the gap between a
+ * track completing and the next one starting when the two were not chained.
+ * <p>
+ * Thread safe and lock free. Requests are stamped on any thread, the rest is
+ * reported by the play thread.
+ */
+public class PlaybackMetrics {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final LatencyHistogram mSetDataSource = new LatencyHistogram();
+    private final LatencyHistogram mPrepare = new LatencyHistogram();
+    private final LatencyHistogram mRequestToStart = new LatencyHistogram();
+    // mRequestToStart split by whether the requested track was prefetched
+    private final LatencyHistogram mPrefetchedStart = new LatencyHistogram();
+    private final LatencyHistogram mColdStart = new LatencyHistogram();
+    private final LatencyHistogram mCompletionGap = new LatencyHistogram();
+    private final LatencyHistogram mQueueDelay = new LatencyHistogram();
+    private final LatencyHistogram mResume = new LatencyHistogram();
+    // from the UI posting a transport command to the service applying it
+    private final LatencyHistogram mIntentCommand = new LatencyHistogram();
+    private final LatencyHistogram mBinderCommand = new LatencyHistogram();
+
+    // System.nanoTime() of the latest request or completion not followed by a start yet
+    private final AtomicLong mPendingRequest = new AtomicLong(NONE);
+    private final AtomicLong mPendingCompletion = new AtomicLong(NONE);
+    private final AtomicLong mPendingResume = new AtomicLong(NONE);
+    private final AtomicBoolean mPendingPrefetched = new AtomicBoolean();
+
+    private final AtomicLong mStarts = new AtomicLong();
+    private final AtomicLong mGaplessTransitions = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private final AtomicLong mSeeks = new AtomicLong();
+
+    // messages sent to the play thread and not handled yet
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    /**
+     * A play, next or previous request from the user, the latest one is timed up to
+     * {@link #onStarted()}.
+     */
+    public void onPlayRequested() {
+        mPendingPrefetched.set(false);
+        mPendingRequest.set(System.nanoTime());
+    }
+
+    /**
+     * The track of the latest request is known, see {@link TrackPrefetcher}.
+     *
+     * @param prefetched whether its start was read ahead of the request.
+     */
+    public void onRequestResolved(boolean prefetched) {
+        mPendingPrefetched.set(prefetched);
+    }
+
+    /**
+     * Playback is to go on after an interruption: a focus gain, or a resume that
+     * has to wait for focus or prepare the track again. Timed up to
+     * {@link #onResumed()} or {@link #onStarted()}.
+     */
+    public void onResumeRequested() {
+        mPendingResume.set(System.nanoTime());
+    }
+
+    /**
+     * A paused player was started again.
+     */
+    public void onResumed() {
+        long resume = mPendingResume.getAndSet(NONE);
+        if (resume != NONE) {
+            mResume.record(System.nanoTime() - resume);
+        }
+    }
+
+    public void onStarted() {
+        long now = System.nanoTime();
+        mStarts.incrementAndGet();
+        long resume = mPendingResume.getAndSet(NONE);
+        if (resume != NONE) {
+            mResume.record(now - resume);
+        }
+        long request = mPendingRequest.getAndSet(NONE);
+        if (request != NONE) {
+            mRequestToStart.record(now - request);
+            (mPendingPrefetched.get() ? mPrefetchedStart : mColdStart).record(now - request);
+        }
+        long completion = mPendingCompletion.getAndSet(NONE);
+        if (completion != NONE) {
+            mCompletionGap.record(now - completion);
+        }
+    }
+
+    /**
+     * A track completed without a prepared next track.
+     */
+    public void onCompleted() {
+        mPendingCompletion.set(System.nanoTime());
+    }
+
+    /**
+     * Playback moved on to the chained next track, there is no gap to measure.
+     */
+    public void onTrackChanged() {
+        mStarts.incrementAndGet();
+        mGaplessTransitions.incrementAndGet();
+    }
+
+    public void onError() {
+        mErrors.incrementAndGet();
+        mPendingRequest.set(NONE);
+        mPendingCompletion.set(NONE);
+        mPendingResume.set(NONE);
+    }
+
+    /**
+     * A seek reached the player.
+     */
+    public void onSeek() {
+        mSeeks.incrementAndGet();
+    }
+
+    /**
+     * A transport command was applied on the main thread of the service.
+     *
+     * @param nanos  since the UI posted it.
+     * @param binder whether it came through the {@link CommandBus} rather than an intent.
+     */
+    public void recordCommand(long nanos, boolean binder) {
+        (binder ? mBinderCommand : mIntentCommand).record(nanos);
+    }
+
+    public void recordSetDataSource(long nanos) {
+        mSetDataSource.record(nanos);
+    }
+
+    /**
+     * @param nanos from {@code prepareAsync()} to {@code onPrepared()}.
+     */
+    public void recordPrepare(long nanos) {
+        mPrepare.record(nanos);
+    }
+
+    public void onMessageQueued() {
+        int depth = mQueueDepth.incrementAndGet();
+        int max;
+        while (depth > (max = mMaxQueueDepth.get())
+                && !mMaxQueueDepth.compareAndSet(max, depth)) {
+            // retry, another thread raised the max
+        }
+    }
+
+    /**
+     * @param delayMillis how long the message waited past the time it was due.
+     */
+    public void onMessageHandled(long delayMillis) {
+        mQueueDepth.decrementAndGet();
+        mQueueDelay.record(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    /**
+     * Messages were removed from the queue before they were handled.
+     */
+    public void onMessagesRemoved(int count) {
+        mQueueDepth.addAndGet(-count);
+    }
+
+    public LatencyHistogram getSetDataSourceLatency() {
+        return mSetDataSource;
+    }
+
+    public LatencyHistogram getPrepareLatency() {
+        return mPrepare;
+    }
+
+    public LatencyHistogram getRequestToStartLatency() {
+        return mRequestToStart;
+    }
+
+    public LatencyHistogram getPrefetchedStartLatency() {
+        return mPrefetchedStart;
+    }
+
+    public LatencyHistogram getColdStartLatency() {
+        return mColdStart;
+    }
+
+    public LatencyHistogram getCompletionGap() {
+        return mCompletionGap;
+    }
+
+    public LatencyHistogram getIntentCommandLatency() {
+        return mIntentCommand;
+    }
+
+    public LatencyHistogram getBinderCommandLatency() {
+        return mBinderCommand;
+    }
+
+    public LatencyHistogram getQueueDelay() {
+        return mQueueDelay;
+    }
+
+    public LatencyHistogram getResumeLatency() {
+        return mResume;
+    }
+
+    public long getStartCount() {
+        return mStarts.get();
+    }
+
+    public long getGaplessTransitionCount() {
+        return mGaplessTransitions.get();
+    }
+
+    public long getErrorCount() {
+        return mErrors.get();
+    }
+
+    public long getSeekCount() {
+        return mSeeks.get();
+    }
+
+    public int getQueueDepth() {
+        return Math.max(0, mQueueDepth.get());
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    public void reset() {
+        mSetDataSource.reset();
+        mPrepare.reset();
+        mRequestToStart.reset();
+        mPrefetchedStart.reset();
+        mColdStart.reset();
+        mCompletionGap.reset();
+        mQueueDelay.reset();
+        mResume.reset();
+        mIntentCommand.reset();
+        mBinderCommand.reset();
+        mStarts.set(0);
+        mGaplessTransitions.set(0);
+        mErrors.set(0);
+        mSeeks.set(0);
+        mMaxQueueDepth.set(getQueueDepth());
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("starts=" + getStartCount() + " gapless=" + getGaplessTransitionCount()
+                + " errors=" + getErrorCount() + " seeks=" + getSeekCount());
+        writer.println("setDataSource: " + mSetDataSource);
+        writer.println("prepare: " + mPrepare);
+        writer.println("request to start: " + mRequestToStart);
+        writer.println("  prefetched: " + mPrefetchedStart);
+        writer.println("  cold: " + mColdStart);
+        writer.println("completion gap: " + mCompletionGap);
+        writer.println("resume after interruption: " + mResume);
+        writer.println("command via intent: " + mIntentCommand);
+        writer.println("command via binder: " + mBinderCommand);
+        writer.println("play thread queue: depth=" + getQueueDepth() + " max="
+                + getMaxQueueDepth() + " delay " + mQueueDelay);
+    }
+}
@@ -0,0 +1,220 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.Random;
+
+/**
+ * Decides which entry of a {@link PlayQueue} plays next, following the shuffle and
+ * repeat modes. The queue cursor stays the current entry in both modes, a
+ * {@link ShuffleOrder} only changes which entry it moves to.
+ * <p>
+ * Queue edits have to go through this class, or be reported to it, so that the
+ * shuffle order knows about them.
+ * <p>
+ * Not thread safe.
+ */
+public class PlaybackOrder {
+
+    /** Stops after the last entry. */
+    public static final int REPEAT_OFF = 0;
+    /** Starts over after the last entry, with a new order when shuffling. */
+    public static final int REPEAT_ALL = 1;
+    /** Plays the current entry again when it completes, skipping still moves on. */
+    public static final int REPEAT_ONE = 2;
+
+    private final PlayQueue mQueue;
+    private final ShuffleOrder mShuffle;
+    private boolean mShuffleEnabled;
+    private int mRepeatMode = REPEAT_ALL;
+
+    public PlaybackOrder(PlayQueue queue) {
+        this(queue, new Random());
+    }
+
+    public PlaybackOrder(PlayQueue queue, Random random) {
+        mQueue = queue;
+        mShuffle = new ShuffleOrder(queue, random);
+    }
+
+    public boolean isShuffleEnabled() {
+        return mShuffleEnabled;
+    }
+
+    /**
+     * Turning shuffle on starts a new order from the current entry.
+     */
+    public void setShuffleEnabled(boolean enabled) {
+        if (enabled && !mShuffleEnabled) {
+            mShuffle.reset(currentId());
+        }
+        mShuffleEnabled = enabled;
+    }
+
+    public int getRepeatMode() {
+        return mRepeatMode;
+    }
+
+    public void setRepeatMode(int mode) {
+        if (mode != REPEAT_OFF && mode != REPEAT_ALL && mode != REPEAT_ONE) {
+            throw new IllegalArgumentException("unknown repeat mode " + mode);
+        }
+        mRepeatMode = mode;
+    }
+
+    /**
+     * @param auto whether playback moves on by itself because the current entry
+     *             completed, rather than on request.
+     * @return the position played next, or {@link PlayQueue#NO_POSITION} if playback
+     * stops. May draw the next shuffled entry, the same one is returned until the
+     * cursor moves.
+     */
+    public int peekNextPosition(boolean auto) {
+        int position = mQueue.getPosition();
+        if (position == PlayQueue.NO_POSITION) {
+            return PlayQueue.NO_POSITION;
+        }
+        if (auto && mRepeatMode == REPEAT_ONE) {
+            return position;
+        }
+        if (!mShuffleEnabled) {
+            if (position == mQueue.size() - 1 && mRepeatMode == REPEAT_OFF) {
+                return PlayQueue.NO_POSITION;
+            }
+            return mQueue.nextPosition();
+        }
+
+        long id = mShuffle.peekNext();
+        if (id == ShuffleOrder.NO_ID && mRepeatMode != REPEAT_OFF) {
+            if (mQueue.size() == 1) {
+                // nothing to shuffle, the one entry repeats like without shuffle
+                return position;
+            }
+            // every entry was played, start over from the current one
+            mShuffle.reset(currentId());
+            id = mShuffle.peekNext();
+        }
+        return id != ShuffleOrder.NO_ID ? mQueue.indexOf(id) : PlayQueue.NO_POSITION;
+    }
+
+    /**
+     * @return the ids of up to {@code count} entries that skipping forward would
+     * play, in order, without the current one.
+     */
+    public long[] peekUpcoming(int count) {
+        int position = mQueue.getPosition();
+        if (position == PlayQueue.NO_POSITION || count <= 0) {
+            return new long[0];
+        }
+        if (mShuffleEnabled) {
+            return mShuffle.peekAhead(count);
+        }
+        int size = mQueue.size();
+        int available = mRepeatMode == REPEAT_OFF ? size - 1 - position : size - 1;
+        long[] ids = new long[Math.max(0, Math.min(count, available))];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mQueue.getId((position + 1 + i) % size);
+        }
+        return ids;
+    }
+
+    /**
+     * Moves the queue cursor to {@link #peekNextPosition(boolean)}.
+     *
+     * @return the new position, or {@link PlayQueue#NO_POSITION} if the cursor did not move.
+     */
+    public int moveToNext(boolean auto) {
+        int position = peekNextPosition(auto);
+        if (position != PlayQueue.NO_POSITION) {
+            moveTo(position);
+        }
+        return position;
+    }
+
+    /**
+     * @return the position played before the current one, or
+     * {@link PlayQueue#NO_POSITION} at the start.
+     */
+    public int peekPreviousPosition() {
+        int position = mQueue.getPosition();
+        if (position == PlayQueue.NO_POSITION) {
+            return PlayQueue.NO_POSITION;
+        }
+        if (mShuffleEnabled) {
+            long id = mShuffle.peekPrevious();
+            return id != ShuffleOrder.NO_ID ? mQueue.indexOf(id) : PlayQueue.NO_POSITION;
+        }
+        if (position == 0 && mRepeatMode == REPEAT_OFF) {
+            return PlayQueue.NO_POSITION;
+        }
+        return mQueue.previousPosition();
+    }
+
+    public int moveToPrevious() {
+        int position = peekPreviousPosition();
+        if (position != PlayQueue.NO_POSITION) {
+            moveTo(position);
+        }
+        return position;
+    }
+
+    /**
+     * The user picked the current entry, a shuffled order starts over from it.
+     */
+    public void onPicked() {
+        if (mShuffleEnabled) {
+            mShuffle.reset(currentId());
+        }
+    }
+
+    /**
+     * The queue cursor moved to the entry playing now, e.g. on a gapless transition.
+     */
+    public void onMoved() {
+        long id = currentId();
+        if (mShuffleEnabled && id != ShuffleOrder.NO_ID && !mShuffle.moveTo(id)) {
+            mShuffle.reset(id);
+        }
+    }
+
+    /**
+     * The whole queue was replaced.
+     */
+    public void onQueueReplaced() {
+        mShuffle.reset(currentId());
+    }
+
+    public void add(int position, MusicBean music) {
+        mQueue.add(position, music);
+        mShuffle.onAdded(music.getId());
+    }
+
+    /**
+     * Removes the entry at {@code position}. If it is the current one, the entry
+     * that would have played next becomes current.
+     */
+    public MusicBean remove(int position) {
+        long id = mQueue.getId(position);
+        long nextId = ShuffleOrder.NO_ID;
+        if (mShuffleEnabled && position == mQueue.getPosition()) {
+            nextId = mShuffle.peekNext();
+        }
+        mShuffle.onRemoved(id);
+        MusicBean removed = mQueue.remove(position);
+        if (nextId != ShuffleOrder.NO_ID) {
+            mQueue.moveTo(nextId);
+            mShuffle.moveTo(nextId);
+        }
+        return removed;
+    }
+
+    private void moveTo(int position) {
+        mQueue.setPosition(position);
+        if (mShuffleEnabled) {
+            mShuffle.moveTo(mQueue.getId(position));
+        }
+    }
+
+    private long currentId() {
+        int position = mQueue.getPosition();
+        return position != PlayQueue.NO_POSITION ? mQueue.getId(position) : ShuffleOrder.NO_ID;
+    }
+}
@@ -0,0 +1,271 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * Audio focus and player lifecycle of a {@link PlaybackController}, as one state
+ * machine:
+ * <pre>
+ *              play/resume              focus loss
+ *   IDLE/PARKED -----------> ACTIVE -----------------> LOST --park()--> PARKED
+ *                            |  ^  \ transient loss      |
+ *                       duck |  |   +---> INTERRUPTED    +--resume()--> ACTIVE
+ *                            v  |gain       | gain
+ *                           DUCKED <--------+ (resumes)
+ * </pre>
+ * Focus is requested when a session starts playing and given up when it stops or
+ * loses focus for good, not held for the lifetime of the service. Players are
+ * never released on the way: a lost session keeps its prepared player, so a
+ * resume continues without opening the track again, and a parked one only
+ * remembers the track and position and prepares it again on one of the
+ * controller's players when resumed.
+ * <p>
+ * Not thread safe, every call has to come from the play thread.
+ */
+public class PlaybackSession {
+
+    /** Abstracts {@link android.media.AudioManager} focus requests. */
+    public interface AudioFocus {
+
+        /**
+         * @return false if focus was denied.
+         */
+        boolean request();
+
+        void abandon();
+    }
+
+    /** Focus changes, with the values of the {@link android.media.AudioManager} constants. */
+    public static final int FOCUS_GAIN = 1;
+    public static final int FOCUS_LOSS = -1;
+    public static final int FOCUS_LOSS_TRANSIENT = -2;
+    public static final int FOCUS_LOSS_TRANSIENT_CAN_DUCK = -3;
+
+    /** Nothing to play. */
+    public static final int STATE_IDLE = 0;
+    /** Focus is held, the track plays or was paused by the user. */
+    public static final int STATE_ACTIVE = 1;
+    /** Plays at a lower volume while another app talks over it. */
+    public static final int STATE_DUCKED = 2;
+    /** Paused by a transient focus loss, resumes when focus comes back. */
+    public static final int STATE_INTERRUPTED = 3;
+    /** Paused by a permanent focus loss, the player stays prepared. */
+    public static final int STATE_LOST = 4;
+    /** Players are stopped, the track and position are kept for a resume. */
+    public static final int STATE_PARKED = 5;
+
+    public static final float DUCK_VOLUME = 0.2f;
+
+    private final PlaybackController mController;
+    private final AudioFocus mFocus;
+    private final PlaybackMetrics mMetrics;
+
+    private int mState = STATE_IDLE;
+    private boolean mHasFocus;
+    private long mParkedId = PlaybackController.NO_ID;
+    private long mParkedPosition;
+
+    public PlaybackSession(PlaybackController controller, AudioFocus focus) {
+        mController = controller;
+        mFocus = focus;
+        mMetrics = controller.getMetrics();
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public boolean hasFocus() {
+        return mHasFocus;
+    }
+
+    public boolean isParked() {
+        return mState == STATE_PARKED;
+    }
+
+    /**
+     * @return the parked track, or {@link PlaybackController#NO_ID}.
+     */
+    public long getParkedId() {
+        return mState == STATE_PARKED ? mParkedId : PlaybackController.NO_ID;
+    }
+
+    public long getParkedPosition() {
+        return mParkedPosition;
+    }
+
+    /**
+     * Plays {@code id} from the start.
+     *
+     * @return false if focus was denied, nothing is played then.
+     */
+    public boolean play(long id) {
+        if (!requestFocus()) {
+            return false;
+        }
+        mController.setVolume(1.0f);
+        mController.play(id);
+        mState = STATE_ACTIVE;
+        return true;
+    }
+
+    /**
+     * Resumes a paused, lost or parked track.
+     *
+     * @return false if focus was denied or there is nothing to resume.
+     */
+    public boolean resume() {
+        if (mState == STATE_IDLE) {
+            return false;
+        }
+        if (!requestFocus()) {
+            return false;
+        }
+        mMetrics.onResumeRequested();
+        mController.setVolume(1.0f);
+        if (mState == STATE_PARKED) {
+            // prepared again on a pooled player, nothing is created
+            mController.play(mParkedId);
+            mController.seekTo((int) Math.min(Integer.MAX_VALUE, mParkedPosition));
+        } else {
+            mController.resume();
+        }
+        mState = STATE_ACTIVE;
+        return true;
+    }
+
+    /**
+     * Pauses on request of the user, focus is kept so a resume is immediate.
+     */
+    public void pause() {
+        mController.pause();
+        if (mState == STATE_INTERRUPTED || mState == STATE_DUCKED) {
+            // a focus gain must not resume what the user paused
+            mController.setVolume(1.0f);
+            mState = STATE_ACTIVE;
+        }
+    }
+
+    /**
+     * Seeks the current track, or moves the position a parked one resumes at.
+     */
+    public void seekTo(long position) {
+        if (mState == STATE_PARKED) {
+            mParkedPosition = Math.max(0, position);
+        } else {
+            mController.seekTo((int) Math.min(Integer.MAX_VALUE, Math.max(0, position)));
+        }
+    }
+
+    /**
+     * Parks the session at {@code id} and {@code position} without playing, e.g.
+     * when the state of the last run was restored.
+     */
+    public void restore(long id, long position) {
+        mController.stop();
+        abandonFocus();
+        mParkedId = id;
+        mParkedPosition = Math.max(0, position);
+        mState = STATE_PARKED;
+    }
+
+    /**
+     * Stops the players and gives up focus. The track and position are kept, a
+     * later {@link #resume()} continues there. The players are kept for reuse.
+     */
+    public void stop() {
+        mController.pause();
+        park();
+        abandonFocus();
+    }
+
+    /**
+     * Frees the decoder of a session that is not playing, e.g. some time after a
+     * permanent focus loss. A playing session is left alone.
+     */
+    public void park() {
+        if (mController.isPlaying() || mState == STATE_PARKED || mState == STATE_IDLE) {
+            return;
+        }
+        long id = mController.getCurrentId();
+        if (id == PlaybackController.NO_ID) {
+            mController.stop();
+            mState = STATE_IDLE;
+            return;
+        }
+        mParkedId = id;
+        mParkedPosition = mController.getState() == PlaybackController.STATE_COMPLETED
+                ? 0 : mController.getCurrentPosition();
+        mController.stop();
+        mState = STATE_PARKED;
+    }
+
+    /**
+     * Releases the players, for good, e.g. when the service is destroyed.
+     */
+    public void release() {
+        mController.release();
+        abandonFocus();
+        mState = STATE_IDLE;
+    }
+
+    /**
+     * @param change one of the {@code FOCUS_} values.
+     */
+    public void onFocusChange(int change) {
+        switch (change) {
+            case FOCUS_GAIN:
+                // transient losses keep the request, a gain after abandoning is stale
+                if (mState == STATE_DUCKED) {
+                    mController.setVolume(1.0f);
+                    mState = STATE_ACTIVE;
+                } else if (mState == STATE_INTERRUPTED) {
+                    mMetrics.onResumeRequested();
+                    mController.setVolume(1.0f);
+                    mController.resume();
+                    mState = STATE_ACTIVE;
+                }
+                break;
+
+            case FOCUS_LOSS:
+                // someone else plays now, don't come back on our own
+                mController.pause();
+                abandonFocus();
+                if (mState == STATE_ACTIVE || mState == STATE_DUCKED
+                        || mState == STATE_INTERRUPTED) {
+                    mController.setVolume(1.0f);
+                    mState = STATE_LOST;
+                }
+                break;
+
+            case FOCUS_LOSS_TRANSIENT:
+                if (mState == STATE_ACTIVE || mState == STATE_DUCKED) {
+                    if (mController.isPlaying() || mController.getState()
+                            == PlaybackController.STATE_PREPARING) {
+                        mController.pause();
+                        mState = STATE_INTERRUPTED;
+                    }
+                }
+                break;
+
+            case FOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                if (mState == STATE_ACTIVE && mController.isPlaying()) {
+                    mController.setVolume(DUCK_VOLUME);
+                    mState = STATE_DUCKED;
+                }
+                break;
+        }
+    }
+
+    private boolean requestFocus() {
+        if (!mHasFocus) {
+            mHasFocus = mFocus.request();
+        }
+        return mHasFocus;
+    }
+
+    private void abandonFocus() {
+        if (mHasFocus) {
+            mFocus.abandon();
+            mHasFocus = false;
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent playback state: the queue, the current track and the position in it,
+ * so playback can pick up where it left off after the process was killed.
+ * <p>
+ * The file is an append-only log like the one of {@link RecordStore}: a magic
+ * and format version, then records of a length, a typed payload and a CRC32 of
+ * it. A queue snapshot stores its ids as varint deltas, after it only edits of
+ * the queue and checkpoints of the position are appended, a few bytes each, so a
+ * checkpoint never rewrites the queue. Once the appended records outgrow the
+ * snapshot the file is rewritten with {@link AtomicFiles}. A torn or corrupt
+ * tail is cut off on the next load, everything before it is kept.
+ * <p>
+ * Changes are applied to an in-memory copy of the queue and written on the
+ * executor: everything that arrives while a write is pending goes out with it,
+ * a replaced queue or a newer checkpoint supersedes the unwritten ones.
+ * <p>
+ * Thread safe, the file is loaded on first use.
+ */
+public class PlaybackStateStore {
+
+    public static final long NO_ID = -1;
+
+    private static final int MAGIC = 0x5053_5453; // "PSTS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4;
+    // length and CRC around each payload
+    private static final int RECORD_OVERHEAD = 4 + 4;
+
+    private static final int TYPE_QUEUE = 1;
+    private static final int TYPE_ADD = 2;
+    private static final int TYPE_REMOVE = 3;
+    private static final int TYPE_MOVE = 4;
+    private static final int TYPE_CHECKPOINT = 5;
+
+    /** Bytes appended after the snapshot before the file is rewritten, at least. */
+    private static final int MIN_COMPACT_BYTES = 16 * 1024;
+
+    /**
+     * What was stored, see {@link #load()}.
+     */
+    public static class State {
+
+        private final long[] mIds;
+        private final long mCurrentId;
+        private final long mPosition;
+
+        State(long[] ids, long currentId, long position) {
+            mIds = ids;
+            mCurrentId = currentId;
+            mPosition = position;
+        }
+
+        /**
+         * @return the queued ids in queue order, owned by the caller.
+         */
+        public long[] getIds() {
+            return mIds;
+        }
+
+        /**
+         * @return the track playing at the last checkpoint, or
+         * {@link PlaybackStateStore#NO_ID}.
+         */
+        public long getCurrentId() {
+            return mCurrentId;
+        }
+
+        /**
+         * @return the position in the current track in milliseconds.
+         */
+        public long getPosition() {
+            return mPosition;
+        }
+    }
+
+    private final File mFile;
+    private final Executor mExecutor;
+    // held while a write is built and done, so writes reach the file in order
+    private final Object mWriteLock = new Object();
+
+    // Guarded by this, taken after mWriteLock.
+    private boolean mLoaded;
+    private long[] mIds = new long[16];
+    private int mSize;
+    private long mCurrentId = NO_ID;
+    private long mPosition;
+
+    private final MusicBeanCodec.Writer mPending = new MusicBeanCodec.Writer(256);
+    // the queue is written out as a whole on the next write, edits are not logged
+    private boolean mSnapshotPending;
+    private boolean mCheckpointPending;
+    private boolean mWriteScheduled;
+    private final MusicBeanCodec.Writer mRecordWriter = new MusicBeanCodec.Writer(64);
+
+    // size of the file and of the snapshot at its start
+    private long mFileBytes;
+    private long mSnapshotBytes;
+
+    // Guarded by mWriteLock.
+    private MusicBeanCodec.Writer mOut = new MusicBeanCodec.Writer(256);
+
+    private final Runnable mWriteTask = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (IOException e) {
+                // the file may end in a partial append, start over with the next write
+                synchronized (PlaybackStateStore.this) {
+                    mSnapshotPending = true;
+                    mCheckpointPending = true;
+                    mPending.reset();
+                }
+            }
+        }
+    };
+
+    /**
+     * @param executor runs the writes, a single background thread is enough.
+     */
+    public PlaybackStateStore(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+    }
+
+    /**
+     * @return the stored state, or null if no queue was stored.
+     */
+    public synchronized State load() {
+        ensureLoaded();
+        if (mSize == 0) {
+            return null;
+        }
+        return new State(Arrays.copyOf(mIds, mSize), mCurrentId, mPosition);
+    }
+
+    /**
+     * The whole queue was replaced with {@code ids}.
+     */
+    public synchronized void setQueue(long[] ids) {
+        ensureLoaded();
+        ensureCapacity(ids.length);
+        System.arraycopy(ids, 0, mIds, 0, ids.length);
+        mSize = ids.length;
+        mSnapshotPending = true;
+        mPending.reset();
+        scheduleWrite();
+    }
+
+    public synchronized void add(int position, long id) {
+        ensureLoaded();
+        if (position < 0 || position > mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+        ensureCapacity(mSize + 1);
+        System.arraycopy(mIds, position, mIds, position + 1, mSize - position);
+        mIds[position] = id;
+        mSize++;
+        if (!mSnapshotPending) {
+            mRecordWriter.reset();
+            mRecordWriter.writeByte(TYPE_ADD);
+            mRecordWriter.writeVarLong(position);
+            mRecordWriter.writeVarLong(id);
+            appendRecord(mPending, mRecordWriter);
+        }
+        scheduleWrite();
+    }
+
+    public synchronized void remove(int position) {
+        ensureLoaded();
+        checkPosition(position);
+        System.arraycopy(mIds, position + 1, mIds, position, mSize - position - 1);
+        mSize--;
+        if (!mSnapshotPending) {
+            mRecordWriter.reset();
+            mRecordWriter.writeByte(TYPE_REMOVE);
+            mRecordWriter.writeVarLong(position);
+            appendRecord(mPending, mRecordWriter);
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * The entry at {@code from} was moved to {@code to}, as by
+     * {@link PlayQueue#move(int, int)}.
+     */
+    public synchronized void move(int from, int to) {
+        ensureLoaded();
+        checkPosition(from);
+        checkPosition(to);
+        if (from == to) {
+            return;
+        }
+        moveIds(from, to);
+        if (!mSnapshotPending) {
+            mRecordWriter.reset();
+            mRecordWriter.writeByte(TYPE_MOVE);
+            mRecordWriter.writeVarLong(from);
+            mRecordWriter.writeVarLong(to);
+            appendRecord(mPending, mRecordWriter);
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Records the track playing and the position in it, only the latest checkpoint
+     * that was not written yet is kept.
+     *
+     * @param position in milliseconds.
+     */
+    public synchronized void checkpoint(long currentId, long position) {
+        ensureLoaded();
+        if (currentId == mCurrentId && position == mPosition) {
+            return;
+        }
+        mCurrentId = currentId;
+        mPosition = position;
+        mCheckpointPending = true;
+        scheduleWrite();
+    }
+
+    /**
+     * Writes the changes that are still pending, on the calling thread.
+     */
+    public void flush() throws IOException {
+        synchronized (mWriteLock) {
+            boolean rewrite;
+            synchronized (this) {
+                mWriteScheduled = false;
+                if (!mSnapshotPending && !mCheckpointPending && mPending.length() == 0) {
+                    return;
+                }
+                mOut.reset();
+                long appended = mFileBytes - mSnapshotBytes + mPending.length();
+                rewrite = mSnapshotPending || mFileBytes < HEADER_SIZE
+                        || appended > Math.max(mSnapshotBytes, MIN_COMPACT_BYTES);
+                if (rewrite) {
+                    mOut.writeInt(MAGIC);
+                    mOut.writeInt(FORMAT_VERSION);
+                    writeSnapshot(mOut);
+                    mSnapshotBytes = mOut.length() - HEADER_SIZE;
+                } else {
+                    mOut.writeBytes(mPending.buffer(), 0, mPending.length());
+                }
+                writeCheckpoint(mOut);
+                mPending.reset();
+                mSnapshotPending = false;
+                mCheckpointPending = false;
+            }
+
+            if (rewrite) {
+                AtomicFiles.write(mFile, mOut.buffer(), 0, mOut.length());
+            } else {
+                FileOutputStream out = new FileOutputStream(mFile, true);
+                try {
+                    out.write(mOut.buffer(), 0, mOut.length());
+                } finally {
+                    out.close();
+                }
+            }
+            synchronized (this) {
+                mFileBytes = rewrite ? mOut.length() : mFileBytes + mOut.length();
+            }
+            if (mOut.buffer().length > 64 * 1024) {
+                // a snapshot of a long queue, don't hold on to it between writes
+                mOut = new MusicBeanCodec.Writer(256);
+            }
+        }
+    }
+
+    private void scheduleWrite() {
+        if (!mWriteScheduled) {
+            mWriteScheduled = true;
+            mExecutor.execute(mWriteTask);
+        }
+    }
+
+    private void writeSnapshot(MusicBeanCodec.Writer out) {
+        mRecordWriter.reset();
+        mRecordWriter.writeByte(TYPE_QUEUE);
+        mRecordWriter.writeVarLong(mSize);
+        long previous = 0;
+        for (int i = 0; i < mSize; i++) {
+            // library ids are mostly ascending, their deltas fit in a byte or two
+            mRecordWriter.writeVarLong(mIds[i] - previous);
+            previous = mIds[i];
+        }
+        appendRecord(out, mRecordWriter);
+    }
+
+    private void writeCheckpoint(MusicBeanCodec.Writer out) {
+        mRecordWriter.reset();
+        mRecordWriter.writeByte(TYPE_CHECKPOINT);
+        mRecordWriter.writeVarLong(mCurrentId);
+        mRecordWriter.writeVarLong(mPosition);
+        appendRecord(out, mRecordWriter);
+    }
+
+    private static void appendRecord(MusicBeanCodec.Writer out, MusicBeanCodec.Writer record) {
+        int length = record.length();
+        out.writeInt(length);
+        out.writeBytes(record.buffer(), 0, length);
+        out.writeInt(crc32(record.buffer(), 0, length));
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.isFile()) {
+            return;
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+            try {
+                long size = file.length();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    file.setLength(0);
+                    return;
+                }
+                byte[] data = new byte[(int) size];
+                file.readFully(data);
+                int end = parse(ByteBuffer.wrap(data));
+                if (end < size) {
+                    // a torn append or garbage, keep what was read before it
+                    file.setLength(end < HEADER_SIZE ? 0 : end);
+                }
+                mFileBytes = end < HEADER_SIZE ? 0 : end;
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            mSize = 0;
+            mCurrentId = NO_ID;
+            mPosition = 0;
+        }
+    }
+
+    /**
+     * @return the offset after the last good record.
+     */
+    private int parse(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            return 0;
+        }
+        int end = HEADER_SIZE;
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 4) {
+                break;
+            }
+            int start = buffer.position();
+            buffer.position(start + length);
+            int crc = buffer.getInt();
+            if (crc != crc32(buffer.array(), start, length)) {
+                break;
+            }
+            MusicBeanCodec.Reader record = new MusicBeanCodec.Reader(
+                    ByteBuffer.wrap(buffer.array(), start, length));
+            try {
+                if (!apply(record, length)) {
+                    break;
+                }
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            end = buffer.position();
+        }
+        return end;
+    }
+
+    /**
+     * @return false if the record does not fit the queue read so far.
+     */
+    private boolean apply(MusicBeanCodec.Reader record, int length) {
+        switch (record.readByte()) {
+            case TYPE_QUEUE:
+                long count = record.readVarLong();
+                // every id takes a byte at least
+                if (count < 0 || count > length) {
+                    return false;
+                }
+                mSize = 0;
+                ensureCapacity((int) count);
+                long id = 0;
+                for (int i = 0; i < count; i++) {
+                    id += record.readVarLong();
+                    mIds[i] = id;
+                }
+                mSize = (int) count;
+                mSnapshotBytes = length + RECORD_OVERHEAD;
+                return true;
+
+            case TYPE_ADD:
+                long position = record.readVarLong();
+                if (position < 0 || position > mSize) {
+                    return false;
+                }
+                ensureCapacity(mSize + 1);
+                System.arraycopy(mIds, (int) position, mIds, (int) position + 1,
+                        mSize - (int) position);
+                mIds[(int) position] = record.readVarLong();
+                mSize++;
+                return true;
+
+            case TYPE_REMOVE:
+                position = record.readVarLong();
+                if (position < 0 || position >= mSize) {
+                    return false;
+                }
+                System.arraycopy(mIds, (int) position + 1, mIds, (int) position,
+                        mSize - (int) position - 1);
+                mSize--;
+                return true;
+
+            case TYPE_MOVE:
+                long from = record.readVarLong();
+                long to = record.readVarLong();
+                if (from < 0 || from >= mSize || to < 0 || to >= mSize) {
+                    return false;
+                }
+                moveIds((int) from, (int) to);
+                return true;
+
+            case TYPE_CHECKPOINT:
+                mCurrentId = record.readVarLong();
+                mPosition = record.readVarLong();
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private void moveIds(int from, int to) {
+        long id = mIds[from];
+        if (from < to) {
+            System.arraycopy(mIds, from + 1, mIds, from, to - from);
+        } else {
+            System.arraycopy(mIds, to, mIds, to + 1, from - to);
+        }
+        mIds[to] = id;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mIds.length) {
+            mIds = Arrays.copyOf(mIds, Math.max(capacity, mIds.length + (mIds.length >> 1)));
+        }
+    }
+
+    private static int crc32(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+}
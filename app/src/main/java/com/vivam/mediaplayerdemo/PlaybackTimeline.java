@@ -0,0 +1,96 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * Immutable snapshot of the playback clock. The service publishes one whenever
+ * the playback state changes and clients extrapolate the position from it with
+ * {@link #positionAt(long)}, so showing progress needs neither polling nor IPC.
+ * <p>
+ * Times are in milliseconds, realtime values come from
+ * {@code SystemClock.elapsedRealtime()}.
+ */
+public class PlaybackTimeline {
+
+    public interface Listener {
+
+        /** Called on the main thread. */
+        void onTimelineChanged(PlaybackTimeline timeline);
+    }
+
+    public static final PlaybackTimeline IDLE =
+            new PlaybackTimeline(null, PlaybackController.STATE_IDLE, 0, 0, 0, 0);
+
+    private final MusicBean mMusic;
+    private final int mState;
+    private final long mAnchorPosition;
+    private final long mAnchorRealtime;
+    private final float mRate;
+    private final long mDuration;
+
+    /**
+     * @param state          one of the {@code PlaybackController.STATE_} constants.
+     * @param anchorPosition the position at {@code anchorRealtime}.
+     * @param rate           playback speed, the position only advances while playing.
+     */
+    public PlaybackTimeline(MusicBean music, int state, long anchorPosition,
+            long anchorRealtime, float rate, long duration) {
+        mMusic = music;
+        mState = state;
+        mAnchorPosition = anchorPosition;
+        mAnchorRealtime = anchorRealtime;
+        mRate = rate;
+        mDuration = duration;
+    }
+
+    public MusicBean getMusic() {
+        return mMusic;
+    }
+
+    public long getMusicId() {
+        return mMusic != null ? mMusic.getId() : PlaybackController.NO_ID;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public boolean isPlaying() {
+        return mState == PlaybackController.STATE_PLAYING;
+    }
+
+    public long getAnchorPosition() {
+        return mAnchorPosition;
+    }
+
+    public long getAnchorRealtime() {
+        return mAnchorRealtime;
+    }
+
+    public float getRate() {
+        return mRate;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * @return the playback position at {@code realtime}, within [0, duration].
+     */
+    public long positionAt(long realtime) {
+        long position = mAnchorPosition;
+        if (isPlaying() && realtime > mAnchorRealtime) {
+            position += (long) ((realtime - mAnchorRealtime) * mRate);
+        }
+        if (mDuration > 0 && position > mDuration) {
+            position = mDuration;
+        }
+        return position < 0 ? 0 : position;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackTimeline{music=" + getMusicId() + ", state=" + mState
+                + ", position=" + mAnchorPosition + "@" + mAnchorRealtime
+                + ", rate=" + mRate + ", duration=" + mDuration + "}";
+    }
+}
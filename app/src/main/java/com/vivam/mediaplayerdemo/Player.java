@@ -0,0 +1,60 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+
+/**
+ * The subset of {@link android.media.MediaPlayer} that {@link PlaybackController}
+ * drives. Keeping it an interface lets the controller run against a fake player
+ * in JVM tests.
+ */
+public interface Player {
+
+    interface Listener {
+
+        void onPrepared(Player player);
+
+        void onCompletion(Player player);
+
+        void onError(Player player, int what, int extra);
+    }
+
+    interface Factory {
+
+        Player create(Listener listener);
+    }
+
+    void setDataSource(long id) throws IOException;
+
+    /**
+     * Starts preparing the data source, {@link Listener#onPrepared(Player)} is
+     * called when done. A following {@link #reset()} cancels the prepare and no
+     * callback is delivered for it.
+     */
+    void prepareAsync();
+
+    void start();
+
+    void pause();
+
+    void seekTo(int msec);
+
+    void reset();
+
+    void release();
+
+    boolean isPlaying();
+
+    int getCurrentPosition();
+
+    int getDuration();
+
+    void setVolume(float volume);
+
+    /**
+     * Chains {@code next} so that it starts as soon as this player completes.
+     *
+     * @return false if chaining is not supported, the caller then has to start
+     * the next player itself.
+     */
+    boolean setNextPlayer(Player next);
+}
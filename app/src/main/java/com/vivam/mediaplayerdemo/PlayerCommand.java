@@ -0,0 +1,80 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * A transport command from the UI to {@link MediaPlayService}, sent in batches
+ * through a {@link CommandBus}.
+ * <p>
+ * Every command carries the sequence number the bus gave it and the
+ * {@link System#nanoTime()} it was posted at, so the service can tell commands
+ * it applied already and time how long each took to reach it. Immutable.
+ */
+public class PlayerCommand {
+
+    public static final int PAUSE = 1;
+    public static final int RESUME = 2;
+    /** Skips forward, the argument is the number of tracks. */
+    public static final int NEXT = 3;
+    /** Skips back, the argument is the number of tracks. */
+    public static final int PREVIOUS = 4;
+    /** The argument is the position in milliseconds. */
+    public static final int SEEK = 5;
+    public static final int STOP = 6;
+
+    private final int mType;
+    private final long mArgument;
+    private final long mSequence;
+    private final long mPostedNanos;
+
+    public PlayerCommand(int type, long argument, long sequence, long postedNanos) {
+        if (type < PAUSE || type > STOP) {
+            throw new IllegalArgumentException("type " + type);
+        }
+        mType = type;
+        mArgument = argument;
+        mSequence = sequence;
+        mPostedNanos = postedNanos;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * @return the number of tracks of a skip, the position of a seek, 0 otherwise.
+     */
+    public long getArgument() {
+        return mArgument;
+    }
+
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public long getPostedNanos() {
+        return mPostedNanos;
+    }
+
+    public static String typeToString(int type) {
+        switch (type) {
+            case PAUSE:
+                return "PAUSE";
+            case RESUME:
+                return "RESUME";
+            case NEXT:
+                return "NEXT";
+            case PREVIOUS:
+                return "PREVIOUS";
+            case SEEK:
+                return "SEEK";
+            case STOP:
+                return "STOP";
+            default:
+                return "UNKNOWN(" + type + ")";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerCommand{" + typeToString(mType) + " " + mArgument + " #" + mSequence + "}";
+    }
+}
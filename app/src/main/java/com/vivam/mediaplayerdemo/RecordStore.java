@@ -0,0 +1,243 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent records of what was analysed of a track, by track id, so every file
+ * is analysed once. Subclasses encode one kind of record.
+ * <p>
+ * The file is an append-only log: a magic and format version, then records of a
+ * length, the encoded record and a CRC32 of it. A later record of the same id
+ * replaces an earlier one. Appends are not synced, a torn or corrupt tail is cut
+ * off on the next load. The log is rewritten with {@link AtomicFiles} once it is
+ * mostly replaced records.
+ * <p>
+ * Thread safe, the file is loaded on first use.
+ */
+public abstract class RecordStore<T> {
+
+    private static final int HEADER_SIZE = 4 + 4;
+
+    /** Records buffered before they are appended to the file. */
+    private static final int FLUSH_COUNT = 64;
+
+    private final File mFile;
+    private final int mMagic;
+    private final int mFormatVersion;
+
+    private boolean mLoaded;
+    private final LongIntMap mPositions = new LongIntMap();
+    private final ArrayList<T> mRecords = new ArrayList<T>();
+    // records in the file, replaced ones included
+    private int mFileRecords;
+
+    private final MusicBeanCodec.Writer mPending = new MusicBeanCodec.Writer(4096);
+    private int mPendingCount;
+    private final MusicBeanCodec.Writer mRecordWriter = new MusicBeanCodec.Writer(256);
+
+    /**
+     * @param magic         identifies the kind of records in the file.
+     * @param formatVersion a file of another version is dropped on load.
+     */
+    protected RecordStore(File file, int magic, int formatVersion) {
+        mFile = file;
+        mMagic = magic;
+        mFormatVersion = formatVersion;
+    }
+
+    protected abstract long getId(T record);
+
+    /**
+     * @return the date modified of the file the record was made from.
+     */
+    protected abstract long getDateModified(T record);
+
+    protected abstract void write(T record, MusicBeanCodec.Writer writer);
+
+    /**
+     * @throws IllegalArgumentException if the data is malformed.
+     */
+    protected abstract T read(MusicBeanCodec.Reader reader);
+
+    /**
+     * @return the record of the track, or null if there is none for this version
+     * of the file.
+     */
+    public synchronized T get(long id, long dateModified) {
+        ensureLoaded();
+        int position = mPositions.get(id, -1);
+        if (position < 0) {
+            return null;
+        }
+        T record = mRecords.get(position);
+        return getDateModified(record) == dateModified ? record : null;
+    }
+
+    /**
+     * @return the record of the track regardless of its version, or null.
+     */
+    public synchronized T get(long id) {
+        ensureLoaded();
+        int position = mPositions.get(id, -1);
+        return position < 0 ? null : mRecords.get(position);
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return mRecords.size();
+    }
+
+    public synchronized void put(T record) throws IOException {
+        ensureLoaded();
+        long id = getId(record);
+        int position = mPositions.get(id, -1);
+        if (position < 0) {
+            mPositions.put(id, mRecords.size());
+            mRecords.add(record);
+        } else {
+            mRecords.set(position, record);
+        }
+
+        mRecordWriter.reset();
+        write(record, mRecordWriter);
+        int length = mRecordWriter.length();
+        mPending.writeInt(length);
+        mPending.writeBytes(mRecordWriter.buffer(), 0, length);
+        mPending.writeInt(crc32(mRecordWriter.buffer(), 0, length));
+        if (++mPendingCount >= FLUSH_COUNT) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends buffered records to the file.
+     */
+    public synchronized void flush() throws IOException {
+        if (mPendingCount == 0) {
+            return;
+        }
+        boolean fresh = !mFile.isFile() || mFile.length() < HEADER_SIZE;
+        FileOutputStream out = new FileOutputStream(mFile, !fresh);
+        try {
+            if (fresh) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(mMagic).putInt(mFormatVersion);
+                out.write(header.array());
+                mFileRecords = 0;
+            }
+            out.write(mPending.buffer(), 0, mPending.length());
+        } finally {
+            out.close();
+        }
+        mFileRecords += mPendingCount;
+        mPending.reset();
+        mPendingCount = 0;
+
+        if (mFileRecords > 1024 && mFileRecords > 2 * mRecords.size()) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        MusicBeanCodec.Writer writer = new MusicBeanCodec.Writer(HEADER_SIZE
+                + mRecords.size() * 64);
+        writer.writeInt(mMagic);
+        writer.writeInt(mFormatVersion);
+        for (int i = 0; i < mRecords.size(); i++) {
+            mRecordWriter.reset();
+            write(mRecords.get(i), mRecordWriter);
+            int length = mRecordWriter.length();
+            writer.writeInt(length);
+            writer.writeBytes(mRecordWriter.buffer(), 0, length);
+            writer.writeInt(crc32(mRecordWriter.buffer(), 0, length));
+        }
+        AtomicFiles.write(mFile, writer.buffer(), 0, writer.length());
+        mFileRecords = mRecords.size();
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.isFile()) {
+            return;
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+            try {
+                long size = file.length();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    file.setLength(0);
+                    return;
+                }
+                byte[] data = new byte[(int) size];
+                file.readFully(data);
+                int end = parse(ByteBuffer.wrap(data));
+                if (end < size) {
+                    // a torn append or garbage, keep what was read before it
+                    file.setLength(end < HEADER_SIZE ? 0 : end);
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            mPositions.clear();
+            mRecords.clear();
+            mFileRecords = 0;
+        }
+    }
+
+    /**
+     * @return the offset after the last good record.
+     */
+    private int parse(ByteBuffer buffer) {
+        if (buffer.getInt() != mMagic || buffer.getInt() != mFormatVersion) {
+            return 0;
+        }
+        int end = HEADER_SIZE;
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 4) {
+                break;
+            }
+            int start = buffer.position();
+            buffer.position(start + length);
+            int crc = buffer.getInt();
+            if (crc != crc32(buffer.array(), start, length)) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(buffer.array(), start, length);
+            T value;
+            try {
+                value = read(new MusicBeanCodec.Reader(record));
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            long id = getId(value);
+            int position = mPositions.get(id, -1);
+            if (position < 0) {
+                mPositions.put(id, mRecords.size());
+                mRecords.add(value);
+            } else {
+                mRecords.set(position, value);
+            }
+            mFileRecords++;
+            end = buffer.position();
+        }
+        return end;
+    }
+
+    private static int crc32(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,441 @@
+package com.vivam.mediaplayerdemo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory search over track titles.
+ * <p>
+ * Titles are folded (lower case, accents and punctuation removed) and indexed by
+ * their trigrams, plus the one and two char prefixes of every word. A query
+ * matches a title when every word of the query is contained in it; words of one
+ * or two chars only match at the start of a title word. Candidates come from
+ * intersecting the rarest posting lists and are then checked against the folded
+ * title, so the answer is exact.
+ * <p>
+ * Posting lists are delta encoded varints of document numbers, which only grow
+ * since documents are appended. Removed tracks are tombstoned and the index is
+ * rebuilt once they make up half of it.
+ * <p>
+ * Not thread safe, the index is meant to be owned by one background thread.
+ */
+public class SearchIndex {
+
+    /** Posting lists intersected per query, the rest is left to verification. */
+    private static final int MAX_LISTS = 3;
+
+    private static final long TRIGRAM = 1L << 48;
+    private static final long PREFIX = 2L << 48;
+
+    private MusicBean[] mDocs = new MusicBean[64];
+    private boolean[] mDeleted = new boolean[64];
+    // folded title of document i is mText[mStarts[i], mStarts[i + 1])
+    private int[] mStarts = new int[65];
+    private char[] mText = new char[1024];
+    private int mDocCount;
+    private int mDeletedCount;
+
+    // track id to document
+    private final LongIntMap mDocIds = new LongIntMap();
+
+    // gram key to posting list
+    private final LongIntMap mGrams = new LongIntMap();
+    private byte[][] mPostings = new byte[256][];
+    private int[] mPostingLengths = new int[256];
+    private int[] mPostingCounts = new int[256];
+    private int[] mPostingLast = new int[256];
+    private int mPostingCount;
+
+    private final StringBuilder mFoldBuffer = new StringBuilder();
+
+    /**
+     * @return the number of indexed tracks.
+     */
+    public int size() {
+        return mDocCount - mDeletedCount;
+    }
+
+    public void addAll(List<MusicBean> list) {
+        for (int i = 0; i < list.size(); i++) {
+            add(list.get(i));
+        }
+    }
+
+    /**
+     * Adds {@code music}, a track that is already indexed is replaced.
+     */
+    public void add(MusicBean music) {
+        remove(music.getId());
+        ensureDocCapacity(mDocCount + 1);
+        int doc = mDocCount++;
+        mDocs[doc] = music;
+        mDocIds.put(music.getId(), doc);
+
+        int start = mStarts[doc];
+        int length = fold(music.getTitle(), mFoldBuffer);
+        ensureTextCapacity(start + length);
+        mFoldBuffer.getChars(0, length, mText, start);
+        mStarts[doc + 1] = start + length;
+
+        for (int i = start; i < start + length; i++) {
+            if (mText[i] == ' ') {
+                continue;
+            }
+            if (mText[i - 1] == ' ') {
+                addPosting(prefixKey(mText[i], (char) 0), doc);
+                if (i + 1 < start + length && mText[i + 1] != ' ') {
+                    addPosting(prefixKey(mText[i], mText[i + 1]), doc);
+                }
+            }
+            if (i + 2 < start + length) {
+                addPosting(trigramKey(mText[i], mText[i + 1], mText[i + 2]), doc);
+            }
+        }
+    }
+
+    /**
+     * @return false if the track was not indexed.
+     */
+    public boolean remove(long id) {
+        int doc = mDocIds.get(id, -1);
+        if (doc < 0) {
+            return false;
+        }
+        mDocIds.remove(id);
+        mDeleted[doc] = true;
+        mDocs[doc] = null;
+        if (++mDeletedCount > 64 && mDeletedCount * 2 > mDocCount) {
+            rebuild();
+        }
+        return true;
+    }
+
+    public void apply(LibraryDiff diff) {
+        for (int i = 0; i < diff.removed.size(); i++) {
+            remove(diff.removed.get(i).getId());
+        }
+        addAll(diff.changed);
+        addAll(diff.added);
+    }
+
+    /**
+     * @param limit     the most results to return.
+     * @param cancelled checked while searching, may be null.
+     * @return the matching tracks in the order they were added, or null if the
+     * search was cancelled.
+     */
+    public ArrayList<MusicBean> search(String query, int limit, AtomicBoolean cancelled) {
+        ArrayList<MusicBean> results = new ArrayList<MusicBean>();
+        String folded = fold(query);
+        if (folded.length() <= 1) {
+            return results;
+        }
+        // skip the leading space of the folded query
+        String[] words = folded.substring(1).split(" ");
+        int[] lists = new int[16];
+        int listCount = 0;
+        for (String word : words) {
+            int[] wordLists = listsFor(word);
+            if (wordLists == null) {
+                // a gram that is nowhere in the library
+                return results;
+            }
+            for (int list : wordLists) {
+                if (listCount == lists.length) {
+                    lists = Arrays.copyOf(lists, listCount * 2);
+                }
+                lists[listCount++] = list;
+            }
+        }
+        lists = rarest(lists, listCount);
+
+        PostingCursor[] cursors = new PostingCursor[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = new PostingCursor(mPostings[lists[i]], mPostingLengths[lists[i]]);
+        }
+        int checked = 0;
+        int doc = cursors[0].next();
+        while (doc >= 0 && results.size() < limit) {
+            if ((++checked & 1023) == 0 && cancelled != null && cancelled.get()) {
+                return null;
+            }
+            int candidate = doc;
+            for (int i = 1; i < cursors.length; i++) {
+                candidate = cursors[i].advanceTo(doc);
+                if (candidate != doc) {
+                    break;
+                }
+            }
+            if (candidate < 0) {
+                break;
+            }
+            if (candidate != doc) {
+                // skip ahead to where the other list is
+                doc = cursors[0].advanceTo(candidate);
+                continue;
+            }
+            if (!mDeleted[doc] && matches(doc, words)) {
+                results.add(mDocs[doc]);
+            }
+            doc = cursors[0].next();
+        }
+        return results;
+    }
+
+    /**
+     * Rough heap footprint of the index in bytes, not counting the tracks.
+     */
+    public long sizeInBytes() {
+        long size = (long) mText.length * 2 + mStarts.length * 4
+                + mDocs.length * 4 + mDeleted.length
+                + mDocIds.sizeInBytes() + mGrams.sizeInBytes()
+                + (long) mPostingLengths.length * (4 * 3 + 4);
+        for (int i = 0; i < mPostingCount; i++) {
+            size += 16 + mPostings[i].length;
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchIndex{tracks=" + size() + ", grams=" + mPostingCount
+                + ", bytes=" + sizeInBytes() + "}";
+    }
+
+    /**
+     * Lower cases {@code text}, strips accents and turns everything that is not a
+     * letter or digit into single spaces. The result starts with a space and has
+     * no trailing one.
+     */
+    static String fold(String text) {
+        StringBuilder sb = new StringBuilder();
+        fold(text, sb);
+        return sb.toString();
+    }
+
+    private static int fold(String text, StringBuilder out) {
+        out.setLength(0);
+        out.append(' ');
+        if (text == null) {
+            return 1;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+            } else if (out.charAt(out.length() - 1) != ' ') {
+                out.append(' ');
+            }
+        }
+        if (out.length() > 1 && out.charAt(out.length() - 1) == ' ') {
+            out.setLength(out.length() - 1);
+        }
+        return out.length();
+    }
+
+    /**
+     * @return the posting lists a document containing {@code word} is on, or null
+     * if one of them does not exist.
+     */
+    private int[] listsFor(String word) {
+        if (word.length() <= 2) {
+            int list = mGrams.get(prefixKey(word.charAt(0),
+                    word.length() == 2 ? word.charAt(1) : (char) 0), -1);
+            return list < 0 ? null : new int[] {list};
+        }
+        int[] lists = new int[word.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = mGrams.get(trigramKey(word.charAt(i), word.charAt(i + 1),
+                    word.charAt(i + 2)), -1);
+            if (lists[i] < 0) {
+                return null;
+            }
+        }
+        return lists;
+    }
+
+    private int[] rarest(int[] lists, int count) {
+        int n = Math.min(count, MAX_LISTS);
+        // partial selection sort, count is the number of query grams
+        for (int i = 0; i < n; i++) {
+            int min = i;
+            for (int j = i + 1; j < count; j++) {
+                if (mPostingCounts[lists[j]] < mPostingCounts[lists[min]]) {
+                    min = j;
+                }
+            }
+            int tmp = lists[i];
+            lists[i] = lists[min];
+            lists[min] = tmp;
+        }
+        return Arrays.copyOf(lists, n);
+    }
+
+    private boolean matches(int doc, String[] words) {
+        int start = mStarts[doc];
+        int end = mStarts[doc + 1];
+        for (String word : words) {
+            if (!contains(start, end, word, word.length() <= 2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean contains(int start, int end, String word, boolean wordStart) {
+        int length = word.length();
+        outer:
+        // the folded title starts with a space, words start after it
+        for (int i = start + 1; i + length <= end; i++) {
+            if (wordStart && mText[i - 1] != ' ') {
+                continue;
+            }
+            for (int j = 0; j < length; j++) {
+                if (mText[i + j] != word.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void addPosting(long key, int doc) {
+        int list = mGrams.get(key, -1);
+        if (list < 0) {
+            list = mPostingCount++;
+            if (list == mPostings.length) {
+                int length = list * 2;
+                mPostings = Arrays.copyOf(mPostings, length);
+                mPostingLengths = Arrays.copyOf(mPostingLengths, length);
+                mPostingCounts = Arrays.copyOf(mPostingCounts, length);
+                mPostingLast = Arrays.copyOf(mPostingLast, length);
+            }
+            mPostings[list] = new byte[4];
+            mPostingLast[list] = -1;
+            mGrams.put(key, list);
+        } else if (mPostingLast[list] == doc) {
+            // the gram occurs more than once in this title
+            return;
+        }
+
+        byte[] bytes = mPostings[list];
+        int length = mPostingLengths[list];
+        if (length + 5 > bytes.length) {
+            bytes = mPostings[list] = Arrays.copyOf(bytes, bytes.length + (bytes.length >> 1) + 5);
+        }
+        int delta = doc - mPostingLast[list];
+        while ((delta & ~0x7f) != 0) {
+            bytes[length++] = (byte) ((delta & 0x7f) | 0x80);
+            delta >>>= 7;
+        }
+        bytes[length++] = (byte) delta;
+        mPostingLengths[list] = length;
+        mPostingLast[list] = doc;
+        mPostingCounts[list]++;
+    }
+
+    private void rebuild() {
+        MusicBean[] live = new MusicBean[size()];
+        int liveCount = 0;
+        for (int i = 0; i < mDocCount; i++) {
+            if (mDocs[i] != null) {
+                live[liveCount++] = mDocs[i];
+            }
+        }
+
+        mDocCount = 0;
+        mDeletedCount = 0;
+        Arrays.fill(mDocs, null);
+        Arrays.fill(mDeleted, false);
+        mDocIds.clear();
+        mGrams.clear();
+        Arrays.fill(mPostings, 0, mPostingCount, null);
+        Arrays.fill(mPostingLengths, 0, mPostingCount, 0);
+        Arrays.fill(mPostingCounts, 0, mPostingCount, 0);
+        mPostingCount = 0;
+
+        for (int i = 0; i < liveCount; i++) {
+            add(live[i]);
+        }
+    }
+
+    private void ensureDocCapacity(int capacity) {
+        if (capacity > mDocs.length) {
+            int length = Math.max(capacity, mDocs.length * 2);
+            mDocs = Arrays.copyOf(mDocs, length);
+            mDeleted = Arrays.copyOf(mDeleted, length);
+            mStarts = Arrays.copyOf(mStarts, length + 1);
+        }
+    }
+
+    private void ensureTextCapacity(int capacity) {
+        if (capacity > mText.length) {
+            mText = Arrays.copyOf(mText, Math.max(capacity, mText.length + (mText.length >> 1)));
+        }
+    }
+
+    private static long trigramKey(char a, char b, char c) {
+        return TRIGRAM | ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static long prefixKey(char a, char b) {
+        return PREFIX | ((long) a << 16) | b;
+    }
+
+    /**
+     * Decodes one posting list in ascending order.
+     */
+    private static class PostingCursor {
+
+        private final byte[] mBytes;
+        private final int mLength;
+        private int mOffset;
+        private int mDoc = -1;
+
+        PostingCursor(byte[] bytes, int length) {
+            mBytes = bytes;
+            mLength = length;
+        }
+
+        /**
+         * @return the next document, or -1 at the end.
+         */
+        int next() {
+            if (mOffset >= mLength) {
+                return -1;
+            }
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mBytes[mOffset++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            mDoc += delta;
+            return mDoc;
+        }
+
+        /**
+         * @return the first document at or after {@code doc}, or -1 at the end.
+         */
+        int advanceTo(int doc) {
+            int current = mDoc;
+            while (current < doc) {
+                current = next();
+                if (current < 0) {
+                    return -1;
+                }
+            }
+            return current;
+        }
+    }
+}
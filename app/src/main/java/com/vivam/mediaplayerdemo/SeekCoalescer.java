@@ -0,0 +1,82 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * Rate limits a stream of seek targets, e.g. from dragging a seek bar, to one
+ * seek per interval. Only the latest target is kept, the ones it replaced are
+ * never seeked to, so a drag costs at most one seek per interval however many
+ * targets it produces.
+ * <p>
+ * Targets are offered on one thread and taken on another, e.g. the main thread
+ * and the play thread. Thread safe.
+ */
+public class SeekCoalescer {
+
+    public static final long NO_TARGET = -1;
+
+    private final long mIntervalMs;
+
+    private long mTarget = NO_TARGET;
+    private boolean mScheduled;
+    // uptime of the last taken target
+    private long mLastSeekMs = Long.MIN_VALUE / 2;
+
+    private long mOffered;
+    private long mTaken;
+
+    public SeekCoalescer(long intervalMs) {
+        mIntervalMs = intervalMs;
+    }
+
+    /**
+     * Replaces the pending target.
+     *
+     * @param nowMs the current uptime.
+     * @return the delay after which {@link #take(long)} should be called, or -1 if
+     * a take is scheduled already and will pick up this target.
+     */
+    public synchronized long offer(long targetMs, long nowMs) {
+        mTarget = Math.max(0, targetMs);
+        mOffered++;
+        if (mScheduled) {
+            return -1;
+        }
+        mScheduled = true;
+        return Math.max(0, mLastSeekMs + mIntervalMs - nowMs);
+    }
+
+    /**
+     * @return the latest target to seek to now, or {@link #NO_TARGET} if there is none.
+     */
+    public synchronized long take(long nowMs) {
+        mScheduled = false;
+        long target = mTarget;
+        mTarget = NO_TARGET;
+        if (target != NO_TARGET) {
+            mLastSeekMs = nowMs;
+            mTaken++;
+        }
+        return target;
+    }
+
+    /**
+     * Drops the pending target, e.g. when the final position is seeked to directly.
+     */
+    public synchronized void clear() {
+        mTarget = NO_TARGET;
+        mScheduled = false;
+    }
+
+    /**
+     * @return the number of targets offered so far.
+     */
+    public synchronized long getOfferedCount() {
+        return mOffered;
+    }
+
+    /**
+     * @return the number of targets taken, that is seeks done, so far.
+     */
+    public synchronized long getTakenCount() {
+        return mTaken;
+    }
+}
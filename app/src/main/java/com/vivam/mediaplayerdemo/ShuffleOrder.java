@@ -0,0 +1,301 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Random order over the tracks of a {@link PlayQueue}, generated one track at a
+ * time as playback moves on.
+ * <p>
+ * Only the tracks already handed out are stored, in order, so stepping back and
+ * forth through them is an array access. The next new track is drawn from the
+ * queue itself, retrying when it was handed out already. Once a quarter of the
+ * queue is, the tracks not handed out yet are collected into a pool to draw from,
+ * a few queue entries per draw, so the pool is complete before retries get
+ * expensive and no step walks the whole queue.
+ * <p>
+ * Queue edits are reported with {@link #onAdded(long)} and {@link #onRemoved(long)}:
+ * an added track can come up anywhere in the rest of the order, a removed one is
+ * skipped, the order itself stays as it is.
+ * <p>
+ * Not thread safe.
+ */
+public class ShuffleOrder {
+
+    public static final long NO_ID = -1;
+
+    // marks a track that was dequeued after it was handed out
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    // draws from the queue before falling back to the pool, guards against duplicates
+    private static final int MAX_DRAWS = 32;
+    // queue entries collected into the pool per draw, the quarter of the queue drawn
+    // between starting the pool and retries getting expensive needs 4
+    private static final int POOL_SLICE = 8;
+
+    private final PlayQueue mQueue;
+    private final Random mRandom;
+
+    // ids in the order they were handed out
+    private long[] mOrder = new long[16];
+    private int mOrderSize;
+    private int mCursor = -1;
+    // position in mOrder of every handed out id
+    private final LongIntMap mOrderIndex = new LongIntMap();
+
+    // queued ids not handed out yet, null until a quarter of the queue was
+    private long[] mPool;
+    private int mPoolSize;
+    private LongIntMap mPoolIndex;
+    // next queue position to collect into the pool, the pool is complete at -1
+    private int mPoolScan;
+
+    public ShuffleOrder(PlayQueue queue, Random random) {
+        mQueue = queue;
+        mRandom = random;
+    }
+
+    /**
+     * Starts a new order, e.g. after the queue was replaced.
+     *
+     * @param firstId the track the order starts with, or {@link #NO_ID}.
+     */
+    public void reset(long firstId) {
+        mOrderSize = 0;
+        mCursor = -1;
+        mOrderIndex.clear();
+        mPool = null;
+        mPoolSize = 0;
+        mPoolIndex = null;
+        mPoolScan = 0;
+        if (firstId != NO_ID) {
+            append(firstId);
+            mCursor = 0;
+        }
+    }
+
+    /**
+     * @return the track at the cursor, {@link #NO_ID} if there is none or it was removed.
+     */
+    public long current() {
+        return mCursor >= 0 ? live(mOrder[mCursor]) : NO_ID;
+    }
+
+    /**
+     * @return the track after the cursor, drawing a new one if the cursor is at the
+     * end, or {@link #NO_ID} once every queued track was handed out.
+     */
+    public long peekNext() {
+        int index = nextIndex();
+        return index >= 0 ? mOrder[index] : NO_ID;
+    }
+
+    /**
+     * @return up to {@code count} tracks after the cursor in the order they come,
+     * drawing new ones as needed; fewer once every queued track was handed out.
+     */
+    public long[] peekAhead(int count) {
+        long[] ids = new long[count];
+        int found = 0;
+        for (int i = mCursor + 1; found < count; i++) {
+            if (i == mOrderSize) {
+                long id = draw();
+                if (id == NO_ID) {
+                    break;
+                }
+                append(id);
+            }
+            if (mOrder[i] != REMOVED) {
+                ids[found++] = mOrder[i];
+            }
+        }
+        return found == count ? ids : Arrays.copyOf(ids, found);
+    }
+
+    public long next() {
+        int index = nextIndex();
+        if (index < 0) {
+            return NO_ID;
+        }
+        mCursor = index;
+        return mOrder[index];
+    }
+
+    /**
+     * @return the track before the cursor, {@link #NO_ID} at the start of the order.
+     */
+    public long peekPrevious() {
+        int index = previousIndex();
+        return index >= 0 ? mOrder[index] : NO_ID;
+    }
+
+    public long previous() {
+        int index = previousIndex();
+        if (index < 0) {
+            return NO_ID;
+        }
+        mCursor = index;
+        return mOrder[index];
+    }
+
+    /**
+     * Moves the cursor to {@code id}.
+     *
+     * @return false if the track was not handed out yet, the cursor is left untouched.
+     */
+    public boolean moveTo(long id) {
+        int index = mOrderIndex.get(id, -1);
+        if (index < 0) {
+            return false;
+        }
+        mCursor = index;
+        return true;
+    }
+
+    /**
+     * @return the number of tracks handed out so far.
+     */
+    public int getOrderedCount() {
+        return mOrderIndex.size();
+    }
+
+    /**
+     * The track was queued, it comes up somewhere in the rest of the order.
+     */
+    public void onAdded(long id) {
+        if (mPool != null && !mOrderIndex.containsKey(id) && !mPoolIndex.containsKey(id)) {
+            addToPool(id);
+        }
+    }
+
+    /**
+     * The track was dequeued, it is skipped from now on.
+     */
+    public void onRemoved(long id) {
+        int index = mOrderIndex.get(id, -1);
+        if (index >= 0) {
+            mOrder[index] = REMOVED;
+            mOrderIndex.remove(id);
+        } else if (mPool != null) {
+            int poolIndex = mPoolIndex.get(id, -1);
+            if (poolIndex >= 0) {
+                removeFromPool(poolIndex);
+            }
+        }
+        if (mPool != null && mPoolScan > 0) {
+            // the entries after it shift back, one of them may not be collected yet
+            mPoolScan--;
+        }
+    }
+
+    private int nextIndex() {
+        for (int i = mCursor + 1; i < mOrderSize; i++) {
+            if (mOrder[i] != REMOVED) {
+                return i;
+            }
+        }
+        long id = draw();
+        if (id == NO_ID) {
+            return -1;
+        }
+        append(id);
+        return mOrderSize - 1;
+    }
+
+    private int previousIndex() {
+        for (int i = mCursor - 1; i >= 0; i--) {
+            if (mOrder[i] != REMOVED) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a random queued track that was not handed out yet, or {@link #NO_ID}.
+     */
+    private long draw() {
+        if (mPoolScan >= 0) {
+            int size = mQueue.size();
+            int remaining = size - mOrderIndex.size();
+            if (mPool == null && remaining <= 0) {
+                return NO_ID;
+            }
+            if (remaining * 4 <= size * 3) {
+                collect(POOL_SLICE);
+            }
+        }
+        if (mPoolScan >= 0) {
+            // more than half is left while the pool is collected, two draws on average
+            int size = mQueue.size();
+            for (int i = 0; i < MAX_DRAWS && size > 0; i++) {
+                long id = mQueue.getId(mRandom.nextInt(size));
+                if (!mOrderIndex.containsKey(id)) {
+                    int poolIndex = mPool != null ? mPoolIndex.get(id, -1) : -1;
+                    if (poolIndex >= 0) {
+                        removeFromPool(poolIndex);
+                    }
+                    return id;
+                }
+            }
+            // few tracks left, or edits held the pool back
+            collect(Integer.MAX_VALUE);
+        }
+        if (mPoolSize == 0) {
+            return NO_ID;
+        }
+        int index = mRandom.nextInt(mPoolSize);
+        long id = mPool[index];
+        removeFromPool(index);
+        return id;
+    }
+
+    /**
+     * Collects up to {@code count} more queue entries into the pool.
+     */
+    private void collect(int count) {
+        int size = mQueue.size();
+        if (mPool == null) {
+            mPool = new long[Math.max(16, size - mOrderIndex.size())];
+            mPoolSize = 0;
+            mPoolIndex = new LongIntMap(mPool.length);
+        }
+        int end = (int) Math.min(size, (long) mPoolScan + count);
+        for (int i = mPoolScan; i < end; i++) {
+            long id = mQueue.getId(i);
+            if (!mOrderIndex.containsKey(id) && !mPoolIndex.containsKey(id)) {
+                addToPool(id);
+            }
+        }
+        mPoolScan = end < size ? end : -1;
+    }
+
+    private void addToPool(long id) {
+        if (mPoolSize == mPool.length) {
+            mPool = Arrays.copyOf(mPool, mPoolSize + (mPoolSize >> 1));
+        }
+        mPool[mPoolSize] = id;
+        mPoolIndex.put(id, mPoolSize++);
+    }
+
+    private void removeFromPool(int index) {
+        mPoolIndex.remove(mPool[index]);
+        long last = mPool[--mPoolSize];
+        if (index < mPoolSize) {
+            mPool[index] = last;
+            mPoolIndex.put(last, index);
+        }
+    }
+
+    private void append(long id) {
+        if (mOrderSize == mOrder.length) {
+            mOrder = Arrays.copyOf(mOrder, mOrderSize + (mOrderSize >> 1));
+        }
+        mOrder[mOrderSize] = id;
+        mOrderIndex.put(id, mOrderSize++);
+    }
+
+    private static long live(long id) {
+        return id == REMOVED ? NO_ID : id;
+    }
+}
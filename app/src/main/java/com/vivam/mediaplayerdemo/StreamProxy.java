@@ -0,0 +1,647 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server that streams remote tracks to a player from a
+ * {@link ChunkCache}, so a remote track plays like a local one once its chunks
+ * are on disk and a seek back never goes to the network again.
+ * <p>
+ * A remote track is {@link #add(String) added} under a negative id, MediaStore ids
+ * are positive and {@link PlaybackController#NO_ID} is -1, and played from
+ * {@link #getUrl(long)} on the loopback interface. Each request is served chunk by
+ * chunk: a missing chunk is fetched with an HTTP range request, or read through
+ * from the start of the file if the origin ignores ranges, concurrent requests
+ * for the same chunk share one fetch, and the chunks after the ones served are
+ * read ahead in the background. Cached chunks go to the socket with
+ * {@link FileChannel#transferTo}, which the kernel copies without passing the data
+ * through the heap.
+ * <p>
+ * Thread safe.
+ */
+public class StreamProxy {
+
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    /** Chunks fetched ahead of the last one served. */
+    private static final int READ_AHEAD_CHUNKS = 2;
+    /** Chunks fetched by {@link #prefetch(long)}, enough for the player to start. */
+    private static final int PREFETCH_CHUNKS = 2;
+    private static final int MAX_HEADER_BYTES = 8192;
+
+    private final ChunkCache mCache;
+    private final ConcurrentHashMap<Long, String> mUrls = new ConcurrentHashMap<Long, String>();
+    private final AtomicLong mNextId = new AtomicLong(PlaybackController.NO_ID - 1);
+    // fetches in flight by chunk, a second request for a chunk waits for the first
+    private final ConcurrentHashMap<String, FutureTask<Void>> mFetches =
+            new ConcurrentHashMap<String, FutureTask<Void>>();
+
+    private final ExecutorService mConnections;
+    private final ExecutorService mReadAhead;
+    private ServerSocketChannel mServer;
+    private volatile int mPort;
+
+    private final LatencyHistogram mFirstByte = new LatencyHistogram();
+    private final LatencyHistogram mFetch = new LatencyHistogram();
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mBytesServed = new AtomicLong();
+    private final AtomicLong mBytesFetched = new AtomicLong();
+
+    public StreamProxy(ChunkCache cache) {
+        mCache = cache;
+        mConnections = Executors.newCachedThreadPool(threadFactory("StreamProxy-Client-"));
+        mReadAhead = Executors.newFixedThreadPool(2, threadFactory("StreamProxy-ReadAhead-"));
+    }
+
+    /**
+     * Starts listening on a free port of the loopback interface.
+     */
+    public synchronized void start() throws IOException {
+        if (mServer != null) {
+            return;
+        }
+        mServer = ServerSocketChannel.open();
+        mServer.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        mPort = mServer.socket().getLocalPort();
+        final ServerSocketChannel server = mServer;
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                accept(server);
+            }
+        }, "StreamProxy");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops serving, requests in progress are cut off. Cached chunks stay on disk.
+     */
+    public synchronized void shutdown() {
+        if (mServer != null) {
+            try {
+                mServer.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+            mServer = null;
+        }
+        mConnections.shutdownNow();
+        mReadAhead.shutdownNow();
+    }
+
+    /**
+     * @return the id to play {@code url} with.
+     */
+    public long add(String url) {
+        long id = mNextId.getAndDecrement();
+        mUrls.put(id, url);
+        return id;
+    }
+
+    public boolean isRemote(long id) {
+        return mUrls.containsKey(id);
+    }
+
+    /**
+     * @return the local URL a player streams {@code id} from, or null if it is not
+     * a remote track or the proxy is not running.
+     */
+    public String getUrl(long id) {
+        int port = mPort;
+        if (port == 0 || !mUrls.containsKey(id)) {
+            return null;
+        }
+        return "http://127.0.0.1:" + port + "/" + id;
+    }
+
+    /**
+     * Fetches the start of {@code id} in the background, e.g. the next track of the
+     * queue, so that preparing it is served from disk.
+     */
+    public void prefetch(long id) {
+        String url = mUrls.get(id);
+        if (url != null) {
+            readAhead(url, key(url), 0, PREFETCH_CHUNKS);
+        }
+    }
+
+    /**
+     * @return the time from a request to the first byte of its body.
+     */
+    public LatencyHistogram getFirstByteLatency() {
+        return mFirstByte;
+    }
+
+    /**
+     * @return the time to fetch one chunk from the remote server.
+     */
+    public LatencyHistogram getFetchLatency() {
+        return mFetch;
+    }
+
+    public ChunkCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * @return the chunks served that were on disk already.
+     */
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    /**
+     * @return the chunks a request had to wait for a fetch of.
+     */
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    public double getHitRatio() {
+        long hits = mHits.get();
+        long chunks = hits + mMisses.get();
+        return chunks == 0 ? 0 : (double) hits / chunks;
+    }
+
+    public long getBytesServed() {
+        return mBytesServed.get();
+    }
+
+    public long getBytesFetched() {
+        return mBytesFetched.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "StreamProxy{hit ratio %.2f (%d/%d), served=%dKB, "
+                        + "fetched=%dKB, cached=%dKB, first byte %s, fetch %s}",
+                getHitRatio(), mHits.get(), mHits.get() + mMisses.get(),
+                mBytesServed.get() / 1024, mBytesFetched.get() / 1024,
+                mCache.getSize() / 1024, mFirstByte, mFetch);
+    }
+
+    private void accept(ServerSocketChannel server) {
+        while (true) {
+            final SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                // closed by shutdown()
+                return;
+            }
+            try {
+                mConnections.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        serve(client);
+                    }
+                });
+            } catch (RuntimeException e) {
+                close(client);
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try {
+            long start = System.nanoTime();
+            Request request = readRequest(client.socket().getInputStream());
+            if (request == null) {
+                writeStatus(client, "400 Bad Request");
+                return;
+            }
+            String url = mUrls.get(request.id);
+            if (url == null) {
+                writeStatus(client, "404 Not Found");
+                return;
+            }
+            String key = key(url);
+            ChunkCache.Info info = mCache.getInfo(key);
+            int fetched = -1;
+            if (info == null) {
+                // the length comes with the first chunk fetched
+                fetched = chunkOf(Math.max(0, request.rangeStart));
+                try {
+                    fetch(url, key, fetched);
+                    info = mCache.getInfo(key);
+                } catch (IOException e) {
+                    // reported below
+                }
+                if (info == null) {
+                    writeStatus(client, "502 Bad Gateway");
+                    return;
+                }
+            }
+
+            long from = Math.max(0, request.rangeStart);
+            long to = request.rangeEnd < 0 ? info.length - 1
+                    : Math.min(request.rangeEnd, info.length - 1);
+            if (from >= info.length || from > to) {
+                writeHeaders(client, "416 Range Not Satisfiable",
+                        "Content-Range: bytes */" + info.length + "\r\n");
+                return;
+            }
+            String headers = "Content-Length: " + (to - from + 1) + "\r\n"
+                    + "Accept-Ranges: bytes\r\n"
+                    + (info.contentType != null ? "Content-Type: " + info.contentType + "\r\n"
+                    : "");
+            if (request.rangeStart >= 0) {
+                writeHeaders(client, "206 Partial Content", headers + "Content-Range: bytes "
+                        + from + "-" + to + "/" + info.length + "\r\n");
+            } else {
+                writeHeaders(client, "200 OK", headers);
+            }
+            if (!request.head) {
+                writeBody(client, url, key, from, to, fetched, start);
+            }
+        } catch (IOException e) {
+            // the player closed the connection, e.g. to seek, or the fetch failed
+        } finally {
+            close(client);
+        }
+    }
+
+    /**
+     * @param fetched a chunk this request fetched already, counted as a miss.
+     */
+    private void writeBody(SocketChannel client, String url, String key, long from, long to,
+            int fetched, long requestStart) throws IOException {
+        int chunkSize = mCache.getChunkSize();
+        boolean firstByte = true;
+        for (int index = chunkOf(from); index <= chunkOf(to); index++) {
+            // the next chunks download while this one is sent
+            readAhead(url, key, index + 1, READ_AHEAD_CHUNKS);
+            FileChannel chunk = mCache.open(key, index);
+            if (chunk == null) {
+                mMisses.incrementAndGet();
+                fetch(url, key, index);
+                chunk = mCache.open(key, index);
+                if (chunk == null) {
+                    throw new IOException("chunk " + index + " of " + url + " was evicted");
+                }
+            } else if (index == fetched) {
+                mMisses.incrementAndGet();
+            } else {
+                mHits.incrementAndGet();
+            }
+            try {
+                long chunkStart = (long) index * chunkSize;
+                long position = Math.max(from, chunkStart) - chunkStart;
+                long end = Math.min(to + 1, chunkStart + chunk.size()) - chunkStart;
+                while (position < end) {
+                    long sent = chunk.transferTo(position, end - position, client);
+                    if (sent <= 0) {
+                        throw new IOException("short chunk " + index + " of " + url);
+                    }
+                    if (firstByte) {
+                        mFirstByte.record(System.nanoTime() - requestStart);
+                        firstByte = false;
+                    }
+                    position += sent;
+                    mBytesServed.addAndGet(sent);
+                }
+            } finally {
+                chunk.close();
+            }
+        }
+    }
+
+    private void readAhead(final String url, final String key, int from, int count) {
+        ChunkCache.Info info = mCache.getInfo(key);
+        for (int index = from; index < from + count; index++) {
+            if (info != null && (long) index * mCache.getChunkSize() >= info.length) {
+                return;
+            }
+            if (mCache.contains(key, index) || mFetches.containsKey(chunkName(key, index))) {
+                continue;
+            }
+            final int chunk = index;
+            try {
+                mReadAhead.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            fetch(url, key, chunk);
+                        } catch (IOException e) {
+                            // fetched again when it is needed
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // shut down
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fetches chunk {@code index} into the cache, or waits for the fetch already in
+     * flight.
+     */
+    private void fetch(final String url, final String key, final int index)
+            throws IOException {
+        if (mCache.contains(key, index)) {
+            return;
+        }
+        String name = chunkName(key, index);
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                // another fetch may have finished since the check above
+                if (!mCache.contains(key, index)) {
+                    download(url, key, index);
+                }
+                return null;
+            }
+        });
+        FutureTask<Void> running = mFetches.putIfAbsent(name, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                mFetches.remove(name, task);
+            }
+        }
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause
+                    : new IOException("cannot fetch " + url, cause);
+        }
+    }
+
+    private void download(String url, String key, int index) throws IOException {
+        long start = System.nanoTime();
+        long offset = (long) index * mCache.getChunkSize();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        File temp = null;
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            // a compressed body has neither the offsets nor the length of the file
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            connection.setRequestProperty("Range", "bytes=" + offset + "-"
+                    + (offset + mCache.getChunkSize() - 1));
+            int status = connection.getResponseCode();
+            long length;
+            int first;
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                length = parseTotalLength(connection.getHeaderField("Content-Range"));
+                first = index;
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                // no range support, the body is the whole file from the start
+                length = connection.getContentLength();
+                first = 0;
+            } else {
+                throw new IOException("HTTP " + status + " for " + url);
+            }
+            if (length < 0) {
+                throw new IOException("unknown length of " + url);
+            }
+            if (offset >= length) {
+                throw new IOException("chunk " + index + " is past the end of " + url);
+            }
+            if (mCache.getInfo(key) == null) {
+                mCache.putInfo(key, new ChunkCache.Info(length, connection.getContentType()));
+            }
+
+            InputStream in = connection.getInputStream();
+            try {
+                byte[] buffer = new byte[16 * 1024];
+                // without range support the chunks before the wanted one are read
+                // through, and kept as they are fetched anyway
+                for (int chunk = first; chunk <= index; chunk++) {
+                    long expected = Math.min(mCache.getChunkSize(),
+                            length - (long) chunk * mCache.getChunkSize());
+                    if (chunk < index && mCache.contains(key, chunk)) {
+                        copy(in, null, buffer, expected, url, chunk);
+                    } else {
+                        temp = mCache.newTempFile();
+                        FileOutputStream out = new FileOutputStream(temp);
+                        try {
+                            copy(in, out, buffer, expected, url, chunk);
+                        } finally {
+                            out.close();
+                        }
+                        mCache.commit(key, chunk, temp);
+                        temp = null;
+                    }
+                    mBytesFetched.addAndGet(expected);
+                }
+            } finally {
+                in.close();
+            }
+            mFetch.record(System.nanoTime() - start);
+        } finally {
+            connection.disconnect();
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Copies {@code count} bytes of chunk {@code index} from {@code in} to
+     * {@code out}, or skips them if {@code out} is null.
+     */
+    private static void copy(InputStream in, OutputStream out, byte[] buffer, long count,
+            String url, int index) throws IOException {
+        long copied = 0;
+        while (copied < count) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, count - copied));
+            if (read < 0) {
+                throw new IOException("truncated chunk " + index + " of " + url);
+            }
+            if (out != null) {
+                out.write(buffer, 0, read);
+            }
+            copied += read;
+        }
+    }
+
+    private int chunkOf(long offset) {
+        return (int) (offset / mCache.getChunkSize());
+    }
+
+    /**
+     * @return the total of a {@code bytes first-last/total} range, or -1.
+     */
+    static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the request line and range of a GET or HEAD, or null if malformed.
+     */
+    static Request readRequest(InputStream in) throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        StringBuilder line = new StringBuilder();
+        int total = 0;
+        int c;
+        // the headers end with an empty line
+        while ((c = in.read()) >= 0 && ++total < MAX_HEADER_BYTES) {
+            if (c == '\n') {
+                if (line.length() == 0) {
+                    break;
+                }
+                lines.add(line.toString());
+                line.setLength(0);
+            } else if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        if (lines.isEmpty()) {
+            return null;
+        }
+        String[] requestLine = lines.get(0).split(" ");
+        if (requestLine.length < 2
+                || !("GET".equals(requestLine[0]) || "HEAD".equals(requestLine[0]))) {
+            return null;
+        }
+        Request request = new Request();
+        request.head = "HEAD".equals(requestLine[0]);
+        try {
+            request.id = Long.parseLong(requestLine[1].substring(1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // e.g. an empty target, "GET  HTTP/1.1"
+            return null;
+        }
+        for (int i = 1; i < lines.size(); i++) {
+            String header = lines.get(i);
+            int colon = header.indexOf(':');
+            if (colon < 0 || !"range".equalsIgnoreCase(header.substring(0, colon).trim())) {
+                continue;
+            }
+            String value = header.substring(colon + 1).trim();
+            if (!value.startsWith("bytes=")) {
+                continue;
+            }
+            int dash = value.indexOf('-');
+            try {
+                String first = value.substring(6, dash).trim();
+                String last = value.substring(dash + 1).trim();
+                // a suffix range, "bytes=-n", is not used by players and served whole
+                if (!first.isEmpty()) {
+                    request.rangeStart = Long.parseLong(first);
+                    request.rangeEnd = last.isEmpty() ? -1 : Long.parseLong(last);
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+        return request;
+    }
+
+    static class Request {
+
+        long id;
+        boolean head;
+        // -1 if the request has no range
+        long rangeStart = -1;
+        long rangeEnd = -1;
+    }
+
+    private static void writeStatus(SocketChannel client, String status) throws IOException {
+        writeHeaders(client, status, "Content-Length: 0\r\n");
+    }
+
+    private static void writeHeaders(SocketChannel client, String status, String headers)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(("HTTP/1.1 " + status + "\r\n" + headers
+                + "Connection: close\r\n\r\n").getBytes("US-ASCII"));
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    private static void close(SocketChannel client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * @return the cache key of {@code url}, stable across runs unlike the ids.
+     */
+    private static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(20);
+            for (int i = 0; i < 10; i++) {
+                key.append(String.format(Locale.US, "%02x", digest[i] & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String chunkName(String key, int index) {
+        return key + "." + index;
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        return new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Encoded artwork thumbnails on disk, one file per track id, bounded in bytes.
+ * <p>
+ * Files are written with {@link AtomicFiles}. An empty file records a track that
+ * has no artwork, so it is not looked at again. Reads refresh the modification
+ * time and the least recently used files are deleted once the directory grows past
+ * its limit.
+ * <p>
+ * Thread safe.
+ */
+public class ThumbnailDiskCache {
+
+    /** Returned by {@link #get(long)} for tracks that are known to have no artwork. */
+    public static final byte[] NO_ARTWORK = new byte[0];
+
+    private static final String SUFFIX = ".thumb";
+
+    private final File mDir;
+    private final long mMaxBytes;
+
+    // -1 until the directory was scanned
+    private long mSize = -1;
+
+    public ThumbnailDiskCache(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return the thumbnail, {@link #NO_ARTWORK}, or null if the track is not cached.
+     */
+    public synchronized byte[] get(long id) {
+        File file = fileOf(id);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                long length = in.length();
+                if (length == 0) {
+                    return NO_ARTWORK;
+                }
+                byte[] data = new byte[(int) length];
+                in.readFully(data);
+                file.setLastModified(System.currentTimeMillis());
+                return data;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param data the thumbnail, or {@link #NO_ARTWORK}.
+     */
+    public synchronized void put(long id, byte[] data) throws IOException {
+        ensureScanned();
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("cannot create " + mDir);
+        }
+        File file = fileOf(id);
+        long previous = file.length();
+        AtomicFiles.write(file, data, 0, data.length);
+        mSize += data.length - previous;
+        if (mSize > mMaxBytes) {
+            trim(mMaxBytes * 3 / 4);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        ensureScanned();
+        File file = fileOf(id);
+        long length = file.length();
+        if (file.delete()) {
+            mSize -= length;
+        }
+    }
+
+    public synchronized long getSizeInBytes() {
+        ensureScanned();
+        return mSize;
+    }
+
+    private void trim(long target) {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                long ma = modified[a];
+                long mb = modified[b];
+                return ma < mb ? -1 : (ma == mb ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < order.length && mSize > target; i++) {
+            File file = files[order[i]];
+            if (!file.getName().endsWith(SUFFIX)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+            }
+        }
+    }
+
+    private void ensureScanned() {
+        if (mSize >= 0) {
+            return;
+        }
+        mSize = 0;
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SUFFIX)) {
+                    mSize += file.length();
+                }
+            }
+        }
+    }
+
+    private File fileOf(long id) {
+        return new File(mDir, id + SUFFIX);
+    }
+}
@@ -0,0 +1,69 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * Rate limit of a number of units per second, e.g. bytes read, with bursts up to
+ * a capacity. Tokens refill continuously; {@link #acquire(long)} blocks until
+ * enough of them are there.
+ * <p>
+ * Thread safe.
+ */
+public class TokenBucket {
+
+    private final long mRatePerSecond;
+    private final long mCapacity;
+
+    private double mTokens;
+    // System.nanoTime() of the last refill
+    private long mRefilledNanos;
+
+    /**
+     * @param capacity the most tokens saved up while idle, the largest burst.
+     */
+    public TokenBucket(long ratePerSecond, long capacity) {
+        if (ratePerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("rate " + ratePerSecond + " capacity " + capacity);
+        }
+        mRatePerSecond = ratePerSecond;
+        mCapacity = capacity;
+        mTokens = capacity;
+        mRefilledNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes {@code count} tokens if they are there.
+     *
+     * @return the nanoseconds to wait before they will be, 0 if they were taken.
+     */
+    public synchronized long tryAcquire(long count, long nowNanos) {
+        refill(nowNanos);
+        // a request above the capacity goes through once the bucket is full
+        double needed = Math.min(count, mCapacity);
+        if (mTokens >= needed) {
+            mTokens -= count;
+            return 0;
+        }
+        return Math.max(1, (long) ((needed - mTokens) * 1e9 / mRatePerSecond));
+    }
+
+    /**
+     * Takes {@code count} tokens, waiting for them as long as needed.
+     */
+    public void acquire(long count) throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquire(count, System.nanoTime())) > 0) {
+            Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+        }
+    }
+
+    public long getRatePerSecond() {
+        return mRatePerSecond;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - mRefilledNanos;
+        if (elapsed > 0) {
+            mTokens = Math.min(mCapacity, mTokens + elapsed / 1e9 * mRatePerSecond);
+            mRefilledNanos = nowNanos;
+        }
+    }
+}
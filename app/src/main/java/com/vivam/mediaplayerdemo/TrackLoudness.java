@@ -0,0 +1,105 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * The integrated loudness and sample peak {@link LoudnessScanner} measured of an
+ * audio file. Immutable.
+ * <p>
+ * Like {@link TrackMetadata} the date modified of the file is kept, the values
+ * are stale once the file changed.
+ */
+public class TrackLoudness {
+
+    /** The loudness tracks are normalized to, the ReplayGain 2.0 reference level. */
+    public static final float REFERENCE_LUFS = -18f;
+
+    private final long mId;
+    private final long mDateModified;
+    private final float mLoudness;
+    private final float mPeak;
+    private final boolean mFailed;
+
+    /**
+     * @param loudness in LUFS, {@link LoudnessMeter#SILENCE} if nothing was loud
+     *                 enough to measure.
+     * @param peak     the largest sample magnitude, 1.0 is full scale.
+     */
+    public TrackLoudness(long id, long dateModified, float loudness, float peak) {
+        this(id, dateModified, loudness, peak, false);
+    }
+
+    private TrackLoudness(long id, long dateModified, float loudness, float peak,
+            boolean failed) {
+        mId = id;
+        mDateModified = dateModified;
+        mLoudness = loudness;
+        mPeak = peak;
+        mFailed = failed;
+    }
+
+    /**
+     * Records that the file could not be decoded, so it is not tried again until it
+     * changes.
+     */
+    public static TrackLoudness failed(long id, long dateModified) {
+        return new TrackLoudness(id, dateModified, (float) LoudnessMeter.SILENCE, 0, true);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public long getDateModified() {
+        return mDateModified;
+    }
+
+    public float getLoudness() {
+        return mLoudness;
+    }
+
+    public float getPeak() {
+        return mPeak;
+    }
+
+    public boolean isFailed() {
+        return mFailed;
+    }
+
+    /**
+     * @return the linear gain that brings the track to {@code targetLufs}. Players
+     * can only attenuate, so it is at most 1, and it never pushes the peak past
+     * full scale. 1 if the track failed or is silent.
+     */
+    public float getGain(float targetLufs) {
+        if (mFailed || Float.isInfinite(mLoudness)) {
+            return 1.0f;
+        }
+        double gain = Math.pow(10, (targetLufs - mLoudness) / 20.0);
+        if (mPeak > 0) {
+            gain = Math.min(gain, 1.0 / mPeak);
+        }
+        return (float) Math.min(1.0, gain);
+    }
+
+    void write(MusicBeanCodec.Writer writer) {
+        writer.writeVarLong(mId);
+        writer.writeVarLong(mDateModified);
+        writer.writeInt(Float.floatToIntBits(mLoudness));
+        writer.writeInt(Float.floatToIntBits(mPeak));
+        writer.writeByte(mFailed ? 1 : 0);
+    }
+
+    static TrackLoudness read(MusicBeanCodec.Reader reader) {
+        long id = reader.readVarLong();
+        long dateModified = reader.readVarLong();
+        float loudness = Float.intBitsToFloat(reader.readInt());
+        float peak = Float.intBitsToFloat(reader.readInt());
+        int flags = reader.readByte();
+        return new TrackLoudness(id, dateModified, loudness, peak, (flags & 1) != 0);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackLoudness{id=" + mId + ", loudness=" + mLoudness + " LUFS, peak="
+                + mPeak + (mFailed ? ", failed" : "") + "}";
+    }
+}
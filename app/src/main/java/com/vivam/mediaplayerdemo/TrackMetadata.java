@@ -0,0 +1,112 @@
+package com.vivam.mediaplayerdemo;
+
+/**
+ * What {@link MetadataEnricher} extracted from an audio file, beyond the
+ * MediaStore columns of {@link MusicBean}. Immutable.
+ * <p>
+ * The date modified of the file at extraction time is kept, the metadata is stale
+ * once the file changed.
+ */
+public class TrackMetadata {
+
+    public static final int UNKNOWN = 0;
+
+    private final long mId;
+    private final long mDateModified;
+    private final String mArtist;
+    private final String mAlbum;
+    private final int mBitrate;
+    private final int mSampleRate;
+    private final boolean mHasArtwork;
+    private final boolean mFailed;
+
+    /**
+     * @param bitrate    in bits per second, or {@link #UNKNOWN}.
+     * @param sampleRate in Hz, or {@link #UNKNOWN}.
+     */
+    public TrackMetadata(long id, long dateModified, String artist, String album,
+            int bitrate, int sampleRate, boolean hasArtwork) {
+        this(id, dateModified, artist, album, bitrate, sampleRate, hasArtwork, false);
+    }
+
+    private TrackMetadata(long id, long dateModified, String artist, String album,
+            int bitrate, int sampleRate, boolean hasArtwork, boolean failed) {
+        mId = id;
+        mDateModified = dateModified;
+        mArtist = artist;
+        mAlbum = album;
+        mBitrate = bitrate;
+        mSampleRate = sampleRate;
+        mHasArtwork = hasArtwork;
+        mFailed = failed;
+    }
+
+    /**
+     * Records that the file could not be read, so it is not tried again until it
+     * changes.
+     */
+    public static TrackMetadata failed(long id, long dateModified) {
+        return new TrackMetadata(id, dateModified, null, null, UNKNOWN, UNKNOWN, false, true);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public long getDateModified() {
+        return mDateModified;
+    }
+
+    public String getArtist() {
+        return mArtist;
+    }
+
+    public String getAlbum() {
+        return mAlbum;
+    }
+
+    public int getBitrate() {
+        return mBitrate;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public boolean hasArtwork() {
+        return mHasArtwork;
+    }
+
+    public boolean isFailed() {
+        return mFailed;
+    }
+
+    void write(MusicBeanCodec.Writer writer) {
+        writer.writeVarLong(mId);
+        writer.writeVarLong(mDateModified);
+        writer.writeNullableString(mArtist);
+        writer.writeNullableString(mAlbum);
+        writer.writeVarLong(mBitrate);
+        writer.writeVarLong(mSampleRate);
+        writer.writeByte((mHasArtwork ? 1 : 0) | (mFailed ? 2 : 0));
+    }
+
+    static TrackMetadata read(MusicBeanCodec.Reader reader) {
+        long id = reader.readVarLong();
+        long dateModified = reader.readVarLong();
+        String artist = reader.readNullableString();
+        String album = reader.readNullableString();
+        int bitrate = (int) reader.readVarLong();
+        int sampleRate = (int) reader.readVarLong();
+        int flags = reader.readByte();
+        return new TrackMetadata(id, dateModified, artist, album, bitrate, sampleRate,
+                (flags & 1) != 0, (flags & 2) != 0);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackMetadata{id=" + mId + ", artist=" + mArtist + ", album=" + mAlbum
+                + ", bitrate=" + mBitrate + ", sampleRate=" + mSampleRate
+                + ", artwork=" + mHasArtwork + (mFailed ? ", failed" : "") + "}";
+    }
+}
@@ -0,0 +1,279 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the start of the tracks that play next, so that the file system has them
+ * in the page cache by the time a player opens one. On a slow card the first reads
+ * of {@code setDataSource()} and {@code prepare()} are most of the time a skip
+ * takes; warmed, they are served from memory.
+ * <p>
+ * The upcoming tracks are {@link #setUpcoming(long[]) replaced} whenever the queue
+ * position or the play order changes. They are read one at a time in order, a track
+ * that is no longer upcoming is given up between two reads, e.g. after the user
+ * jumped elsewhere. The bytes read are bounded per track and in total, and the
+ * reads are paced by a {@link TokenBucket} so that they never compete with the
+ * player for the card.
+ * <p>
+ * Thread safe.
+ */
+public class TrackPrefetcher {
+
+    private static final int READ_BYTES = 16 * 1024;
+
+    /** Opens the tracks to read. */
+    public interface Source {
+
+        /**
+         * @return the content of {@code id}, or null if it is not worth reading,
+         * e.g. it is streamed.
+         */
+        InputStream open(long id) throws IOException;
+    }
+
+    private final Source mSource;
+    private final int mBytesPerTrack;
+    private final int mMaxTracks;
+    private final TokenBucket mRate;
+    private final ExecutorService mExecutor;
+
+    // Guarded by this.
+    private long[] mUpcoming = new long[0];
+    private boolean mScheduled;
+    private boolean mEnabled = true;
+    // read recently, most recent last; the page cache may have dropped the oldest
+    private final LinkedHashSet<Long> mWarm = new LinkedHashSet<Long>();
+
+    private final LatencyHistogram mReadTime = new LatencyHistogram();
+    private final AtomicLong mWarmed = new AtomicLong();
+    private final AtomicLong mCancelled = new AtomicLong();
+    private final AtomicLong mFailed = new AtomicLong();
+    private final AtomicLong mBytesRead = new AtomicLong();
+
+    /**
+     * @param bytesPerTrack how much of the start of each track is read.
+     * @param budgetBytes   the most bytes of upcoming tracks kept warm at once, it
+     *                      bounds how many tracks ahead are read.
+     * @param rate          paces the reads in bytes.
+     */
+    public TrackPrefetcher(Source source, int bytesPerTrack, long budgetBytes, TokenBucket rate) {
+        mSource = source;
+        mBytesPerTrack = bytesPerTrack;
+        mMaxTracks = (int) Math.max(1, budgetBytes / bytesPerTrack);
+        mRate = rate;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TrackPrefetcher");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    /**
+     * Replaces the tracks to read, in the order they are likely to play. Only as
+     * many as the budget allows are read, reading a track that is not among them
+     * anymore stops.
+     */
+    public synchronized void setUpcoming(long[] ids) {
+        int count = Math.min(ids.length, mMaxTracks);
+        long[] upcoming = new long[count];
+        System.arraycopy(ids, 0, upcoming, 0, count);
+        mUpcoming = upcoming;
+        schedule();
+    }
+
+    /**
+     * Turns reading on or off, e.g. to compare how long a skip takes without it.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (enabled) {
+            schedule();
+        } else {
+            mWarm.clear();
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @return whether the start of {@code id} was read lately.
+     */
+    public synchronized boolean isWarm(long id) {
+        return mEnabled && mWarm.contains(id);
+    }
+
+    /**
+     * @return whether every upcoming track was read.
+     */
+    public synchronized boolean isIdle() {
+        return !mScheduled;
+    }
+
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the time it took to read the start of a track.
+     */
+    public LatencyHistogram getReadTime() {
+        return mReadTime;
+    }
+
+    public long getWarmedCount() {
+        return mWarmed.get();
+    }
+
+    /**
+     * @return the number of tracks given up because they were no longer upcoming.
+     */
+    public long getCancelledCount() {
+        return mCancelled.get();
+    }
+
+    public long getFailedCount() {
+        return mFailed.get();
+    }
+
+    public long getBytesRead() {
+        return mBytesRead.get();
+    }
+
+    @Override
+    public String toString() {
+        return "prefetch: " + (isEnabled() ? "on" : "off") + " " + mWarmed.get() + " warmed, "
+                + mCancelled.get() + " cancelled, " + mFailed.get() + " failed, "
+                + mBytesRead.get() / 1024 + "KB at most " + mRate.getRatePerSecond() / 1024
+                + "KB/s, read time " + mReadTime;
+    }
+
+    private void schedule() {
+        if (!mScheduled && mEnabled && next() != PlaybackController.NO_ID) {
+            mScheduled = true;
+            mExecutor.execute(mDrain);
+        }
+    }
+
+    /**
+     * @return the first upcoming track not read yet, or {@link PlaybackController#NO_ID}.
+     */
+    private long next() {
+        for (long id : mUpcoming) {
+            if (!mWarm.contains(id)) {
+                return id;
+            }
+        }
+        return PlaybackController.NO_ID;
+    }
+
+    private synchronized boolean isUpcoming(long id) {
+        if (!mEnabled) {
+            return false;
+        }
+        for (long upcoming : mUpcoming) {
+            if (upcoming == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final Runnable mDrain = new Runnable() {
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[READ_BYTES];
+            while (true) {
+                long id;
+                synchronized (TrackPrefetcher.this) {
+                    id = mEnabled ? next() : PlaybackController.NO_ID;
+                    if (id == PlaybackController.NO_ID) {
+                        mScheduled = false;
+                        return;
+                    }
+                }
+                boolean done;
+                try {
+                    done = read(id, buffer);
+                } catch (InterruptedException | InterruptedIOException e) {
+                    synchronized (TrackPrefetcher.this) {
+                        mScheduled = false;
+                    }
+                    return;
+                } catch (IOException e) {
+                    mFailed.incrementAndGet();
+                    // not retried while it stays upcoming
+                    done = true;
+                }
+                if (done) {
+                    markWarm(id);
+                } else {
+                    mCancelled.incrementAndGet();
+                }
+            }
+        }
+    };
+
+    /**
+     * @return false if reading was given up because {@code id} is not upcoming anymore.
+     */
+    private boolean read(long id, byte[] buffer) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        InputStream in = mSource.open(id);
+        if (in == null) {
+            return true;
+        }
+        try {
+            int total = 0;
+            while (total < mBytesPerTrack) {
+                if (!isUpcoming(id)) {
+                    return false;
+                }
+                int count = Math.min(buffer.length, mBytesPerTrack - total);
+                mRate.acquire(count);
+                int read = in.read(buffer, 0, count);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+                mBytesRead.addAndGet(read);
+            }
+        } finally {
+            in.close();
+        }
+        mReadTime.record(System.nanoTime() - start);
+        mWarmed.incrementAndGet();
+        return true;
+    }
+
+    private synchronized void markWarm(long id) {
+        mWarm.remove(id);
+        mWarm.add(id);
+        // the ones played already and a few more, their pages are likely gone by now
+        Iterator<Long> iterator = mWarm.iterator();
+        while (mWarm.size() > 4 * mMaxTracks) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
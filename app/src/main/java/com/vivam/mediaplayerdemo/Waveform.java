@@ -0,0 +1,111 @@
+package com.vivam.mediaplayerdemo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Summary of what a track looks like, for drawing it under the seek bar: the
+ * lowest and highest sample of each of a fixed number of equal slices of the
+ * track, as signed bytes of the full scale. A couple of KB per track.
+ * <p>
+ * A waveform without slices records a track that could not be decoded, so it is
+ * not tried again until its file changes. Immutable.
+ */
+public class Waveform {
+
+    private static final int MAGIC = 0x5746_524d; // "WFRM"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    private final long mId;
+    private final long mDateModified;
+    // min and max of every slice, interleaved
+    private final byte[] mPeaks;
+
+    /**
+     * @param peaks the min and max of every slice, interleaved, not copied.
+     */
+    public Waveform(long id, long dateModified, byte[] peaks) {
+        if ((peaks.length & 1) != 0) {
+            throw new IllegalArgumentException("odd peaks length " + peaks.length);
+        }
+        mId = id;
+        mDateModified = dateModified;
+        mPeaks = peaks;
+    }
+
+    public static Waveform failed(long id, long dateModified) {
+        return new Waveform(id, dateModified, new byte[0]);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public long getDateModified() {
+        return mDateModified;
+    }
+
+    public boolean isFailed() {
+        return mPeaks.length == 0;
+    }
+
+    /**
+     * @return the number of slices.
+     */
+    public int size() {
+        return mPeaks.length / 2;
+    }
+
+    /**
+     * @return the lowest sample of slice {@code index}, from -128 to 127.
+     */
+    public int getMin(int index) {
+        return mPeaks[2 * index];
+    }
+
+    /**
+     * @return the highest sample of slice {@code index}, from -128 to 127.
+     */
+    public int getMax(int index) {
+        return mPeaks[2 * index + 1];
+    }
+
+    /**
+     * @return the largest magnitude of any slice, from 0 to 128.
+     */
+    public int getPeak() {
+        int peak = 0;
+        for (byte value : mPeaks) {
+            peak = Math.max(peak, Math.abs(value));
+        }
+        return peak;
+    }
+
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + mPeaks.length);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putLong(mId).putLong(mDateModified)
+                .putInt(mPeaks.length).put(mPeaks);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code data} is not an encoded waveform.
+     */
+    public static Waveform decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("not a waveform");
+        }
+        long id = buffer.getLong();
+        long dateModified = buffer.getLong();
+        int length = buffer.getInt();
+        if (length < 0 || length != buffer.remaining()) {
+            throw new IllegalArgumentException("bad peaks length " + length);
+        }
+        byte[] peaks = new byte[length];
+        buffer.get(peaks);
+        return new Waveform(id, dateModified, peaks);
+    }
+}
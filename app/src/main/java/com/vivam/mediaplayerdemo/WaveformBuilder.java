@@ -0,0 +1,136 @@
+package com.vivam.mediaplayerdemo;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Builds a {@link Waveform} of a fixed number of slices from 16 bit interleaved
+ * PCM of unknown length.
+ * <p>
+ * Frames are gathered into up to twice as many buckets as slices. Once those are
+ * full, neighbouring buckets are merged and every bucket covers twice as many
+ * frames from then on, so the memory stays the same however long the track is.
+ * {@link #build(long, long)} maps the buckets onto the slices.
+ * <p>
+ * Not thread safe.
+ */
+public class WaveformBuilder {
+
+    private static final int FIRST_BUCKET_FRAMES = 64;
+
+    private final int mSlices;
+    private final short[] mMin;
+    private final short[] mMax;
+    private int mBuckets;
+    private int mBucketFrames = FIRST_BUCKET_FRAMES;
+
+    private int mChannels = 2;
+    // the bucket being filled
+    private int mFrames;
+    private int mFrameChannel;
+    private int mLow = Short.MAX_VALUE;
+    private int mHigh = Short.MIN_VALUE;
+
+    public WaveformBuilder(int slices) {
+        if (slices <= 0) {
+            throw new IllegalArgumentException("slices " + slices);
+        }
+        mSlices = slices;
+        mMin = new short[2 * slices];
+        mMax = new short[2 * slices];
+    }
+
+    /**
+     * Sets the number of interleaved channels, before the first samples.
+     */
+    public void setChannelCount(int channels) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("channels " + channels);
+        }
+        mChannels = channels;
+    }
+
+    public void process(short[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            add(samples[i]);
+        }
+    }
+
+    /**
+     * Reads the remaining samples of {@code samples}, e.g. a codec output buffer.
+     */
+    public void process(ShortBuffer samples) {
+        while (samples.hasRemaining()) {
+            add(samples.get());
+        }
+    }
+
+    /**
+     * @return the waveform of everything processed, each slice as long as the
+     * others. A track shorter than the slices repeats its buckets.
+     */
+    public Waveform build(long id, long dateModified) {
+        int buckets = mBuckets;
+        short[] min = mMin;
+        short[] max = mMax;
+        if (mFrames > 0) {
+            // the last bucket is partial, it still belongs in the picture
+            min = mMin.clone();
+            max = mMax.clone();
+            min[buckets] = (short) mLow;
+            max[buckets] = (short) mHigh;
+            buckets++;
+        }
+        if (buckets == 0) {
+            return Waveform.failed(id, dateModified);
+        }
+
+        byte[] peaks = new byte[2 * mSlices];
+        for (int slice = 0; slice < mSlices; slice++) {
+            int from = (int) ((long) slice * buckets / mSlices);
+            int to = Math.max(from + 1, (int) ((long) (slice + 1) * buckets / mSlices));
+            int low = Short.MAX_VALUE;
+            int high = Short.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                low = Math.min(low, min[i]);
+                high = Math.max(high, max[i]);
+            }
+            peaks[2 * slice] = (byte) (low >> 8);
+            peaks[2 * slice + 1] = (byte) (high >> 8);
+        }
+        return new Waveform(id, dateModified, peaks);
+    }
+
+    private void add(short sample) {
+        if (sample < mLow) {
+            mLow = sample;
+        }
+        if (sample > mHigh) {
+            mHigh = sample;
+        }
+        if (++mFrameChannel < mChannels) {
+            return;
+        }
+        mFrameChannel = 0;
+        if (++mFrames < mBucketFrames) {
+            return;
+        }
+
+        mMin[mBuckets] = (short) mLow;
+        mMax[mBuckets] = (short) mHigh;
+        mFrames = 0;
+        mLow = Short.MAX_VALUE;
+        mHigh = Short.MIN_VALUE;
+        if (++mBuckets == mMin.length) {
+            halve();
+        }
+    }
+
+    private void halve() {
+        for (int i = 0; i < mSlices; i++) {
+            mMin[i] = (short) Math.min(mMin[2 * i], mMin[2 * i + 1]);
+            mMax[i] = (short) Math.max(mMax[2 * i], mMax[2 * i + 1]);
+        }
+        mBuckets = mSlices;
+        mBucketFrames *= 2;
+    }
+}
@@ -0,0 +1,261 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background stage that decodes every track of the library once into a
+ * {@link Waveform} for the seek bar.
+ * <p>
+ * Tracks are decoded one at a time on a low priority thread, the library in the
+ * order it was queued. A track {@link #request requested} for the seek bar runs
+ * before all of them, the latest request first, and a library track being decoded
+ * meanwhile is interrupted and queued again. Waveforms, failures included, are kept
+ * encoded in a {@link ThumbnailDiskCache}, a track is decoded again only when its
+ * file changed.
+ * <p>
+ * Thread safe.
+ */
+public class WaveformGenerator {
+
+    /** Slices of every waveform, about a pixel each on a phone in portrait. */
+    public static final int SLICES = 720;
+
+    public interface Decoder {
+
+        /**
+         * Decodes {@code music} into {@code builder}, called on the worker thread.
+         *
+         * @throws InterruptedIOException if the thread was interrupted.
+         * @throws IOException            if the file cannot be decoded.
+         */
+        void decode(MusicBean music, WaveformBuilder builder) throws IOException;
+    }
+
+    public interface Listener {
+
+        /** Called on the worker thread once the waveform of a request is known. */
+        void onWaveform(MusicBean music, Waveform waveform);
+    }
+
+    private final ThumbnailDiskCache mStore;
+    private final Decoder mDecoder;
+    private final ThreadPoolExecutor mExecutor;
+
+    // date modified of every library track queued or done, queueing it again is a no-op
+    private final ConcurrentHashMap<Long, Long> mClaimed = new ConcurrentHashMap<Long, Long>();
+    private final AtomicLong mSequence = new AtomicLong();
+
+    // Guarded by this, the library task being decoded and its thread.
+    private Task mRunning;
+    private Thread mRunningThread;
+
+    private final AtomicInteger mGenerated = new AtomicInteger();
+    private final AtomicInteger mFailed = new AtomicInteger();
+    private final AtomicInteger mCached = new AtomicInteger();
+    private final AtomicInteger mPreempted = new AtomicInteger();
+
+    public WaveformGenerator(ThumbnailDiskCache store, Decoder decoder) {
+        mStore = store;
+        mDecoder = decoder;
+        mExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "WaveformGenerator");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues {@code list} behind everything queued so far, e.g. each batch of the
+     * library as it loads.
+     */
+    public void enqueue(List<MusicBean> list) {
+        for (int i = 0; i < list.size(); i++) {
+            MusicBean music = list.get(i);
+            Long dateModified = music.getDateModified();
+            Long previous = mClaimed.put(music.getId(), dateModified);
+            if (previous == null || !previous.equals(dateModified)) {
+                mExecutor.execute(new Task(music, null, mSequence.incrementAndGet()));
+            }
+        }
+    }
+
+    /**
+     * Looks up or decodes the waveform of {@code music} ahead of the library, e.g.
+     * of the track playing now.
+     */
+    public void request(MusicBean music, Listener listener) {
+        mExecutor.execute(new Task(music, listener, mSequence.incrementAndGet()));
+        synchronized (this) {
+            if (mRunning != null) {
+                mRunning.preempted = true;
+                mRunningThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for the thread.
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    public int getGeneratedCount() {
+        return mGenerated.get();
+    }
+
+    public int getFailedCount() {
+        return mFailed.get();
+    }
+
+    /**
+     * @return the number of tracks that were already in the store.
+     */
+    public int getCachedCount() {
+        return mCached.get();
+    }
+
+    /**
+     * @return the number of library tracks interrupted by a request.
+     */
+    public int getPreemptedCount() {
+        return mPreempted.get();
+    }
+
+    /**
+     * Stops the thread, queued tracks are dropped and the one being decoded is
+     * interrupted.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        mExecutor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WaveformGenerator{generated=%d, failed=%d, cached=%d, "
+                        + "preempted=%d, queued=%d}", mGenerated.get(), mFailed.get(),
+                mCached.get(), mPreempted.get(), getQueueDepth());
+    }
+
+    private void process(Task task) {
+        MusicBean music = task.music;
+        Waveform waveform = load(music);
+        if (waveform != null) {
+            mCached.incrementAndGet();
+            deliver(task, waveform);
+            return;
+        }
+
+        boolean library = task.listener == null;
+        if (library) {
+            synchronized (this) {
+                mRunning = task;
+                mRunningThread = Thread.currentThread();
+            }
+        }
+        try {
+            WaveformBuilder builder = new WaveformBuilder(SLICES);
+            mDecoder.decode(music, builder);
+            waveform = builder.build(music.getId(), music.getDateModified());
+            mGenerated.incrementAndGet();
+        } catch (InterruptedIOException e) {
+            if (task.preempted && !mExecutor.isShutdown()) {
+                // after the request, still ahead of the rest of the library
+                mPreempted.incrementAndGet();
+                mExecutor.execute(new Task(music, null, task.sequence));
+            }
+            return;
+        } catch (IOException | RuntimeException e) {
+            waveform = Waveform.failed(music.getId(), music.getDateModified());
+            mFailed.incrementAndGet();
+        } finally {
+            if (library) {
+                synchronized (this) {
+                    mRunning = null;
+                    mRunningThread = null;
+                }
+            }
+        }
+
+        try {
+            mStore.put(music.getId(), waveform.encode());
+        } catch (IOException e) {
+            // decoded again next time
+        }
+        deliver(task, waveform);
+    }
+
+    /**
+     * @return the stored waveform of this version of the file, or null.
+     */
+    private Waveform load(MusicBean music) {
+        byte[] data = mStore.get(music.getId());
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try {
+            Waveform waveform = Waveform.decode(data);
+            return waveform.getDateModified() == music.getDateModified() ? waveform : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void deliver(Task task, Waveform waveform) {
+        if (task.listener != null) {
+            task.listener.onWaveform(task.music, waveform);
+        }
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+
+        final MusicBean music;
+        // null for library tasks
+        final Listener listener;
+        final long sequence;
+        // set by a request that interrupted this library task
+        volatile boolean preempted;
+
+        Task(MusicBean music, Listener listener, long sequence) {
+            this.music = music;
+            this.listener = listener;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            process(this);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            boolean requested = listener != null;
+            if (requested != (other.listener != null)) {
+                return requested ? -1 : 1;
+            }
+            // the latest request first, the library in the order it was queued
+            int order = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+            return requested ? -order : order;
+        }
+    }
+}
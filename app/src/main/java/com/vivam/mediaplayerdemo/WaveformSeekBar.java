@@ -0,0 +1,145 @@
+package com.vivam.mediaplayerdemo;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.widget.SeekBar;
+
+/**
+ * {@link SeekBar} that draws the {@link Waveform} of the track in place of its
+ * track, the part played so far in the progress color. Without a waveform it is
+ * a plain seek bar.
+ * <p>
+ * The waveform is turned into one vertical line per column when it or the size
+ * changes, drawing a frame only clips and draws those lines.
+ */
+public class WaveformSeekBar extends SeekBar {
+
+    private final Paint mPlayedPaint = new Paint();
+    private final Paint mPaint = new Paint();
+    private final float mColumnWidth;
+
+    // set from the SeekBar constructor, so it must not have an initializer
+    private Drawable mThumb;
+
+    private Waveform mWaveform;
+    // x0, y0, x1, y1 of every column
+    private float[] mLines;
+    private int mLineCount;
+
+    public WaveformSeekBar(Context context) {
+        this(context, null);
+    }
+
+    public WaveformSeekBar(Context context, AttributeSet attrs) {
+        this(context, attrs, android.R.attr.seekBarStyle);
+    }
+
+    public WaveformSeekBar(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        float density = getResources().getDisplayMetrics().density;
+        mColumnWidth = 3 * density;
+        mPlayedPaint.setColor(ContextCompat.getColor(context, R.color.waveform_played));
+        mPlayedPaint.setStrokeWidth(2 * density);
+        mPaint.setColor(ContextCompat.getColor(context, R.color.waveform));
+        mPaint.setStrokeWidth(2 * density);
+    }
+
+    @Override
+    public void setThumb(Drawable thumb) {
+        super.setThumb(thumb);
+        mThumb = thumb;
+    }
+
+    /**
+     * @param waveform of the track shown, null or a failed one for none.
+     */
+    public void setWaveform(Waveform waveform) {
+        if (waveform != null && waveform.isFailed()) {
+            waveform = null;
+        }
+        if (waveform != mWaveform) {
+            mWaveform = waveform;
+            buildLines();
+            invalidate();
+        }
+    }
+
+    public Waveform getWaveform() {
+        return mWaveform;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        buildLines();
+    }
+
+    @Override
+    protected synchronized void onDraw(Canvas canvas) {
+        if (mLineCount == 0) {
+            super.onDraw(canvas);
+            return;
+        }
+        int left = getPaddingLeft();
+        int right = getWidth() - getPaddingRight();
+        int top = getPaddingTop();
+        int bottom = getHeight() - getPaddingBottom();
+        int max = getMax();
+        float split = left + (max > 0 ? (right - left) * (float) getProgress() / max : 0);
+
+        canvas.save();
+        canvas.clipRect(left, top, split, bottom);
+        canvas.drawLines(mLines, 0, mLineCount * 4, mPlayedPaint);
+        canvas.restore();
+        canvas.save();
+        canvas.clipRect(split, top, right, bottom);
+        canvas.drawLines(mLines, 0, mLineCount * 4, mPaint);
+        canvas.restore();
+
+        if (mThumb != null) {
+            // where SeekBar draws it, its bounds follow the progress
+            canvas.save();
+            canvas.translate(getPaddingLeft() - getThumbOffset(), getPaddingTop());
+            mThumb.draw(canvas);
+            canvas.restore();
+        }
+    }
+
+    private void buildLines() {
+        mLineCount = 0;
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (mWaveform == null || width <= 0 || height <= 0) {
+            return;
+        }
+        int columns = Math.max(1, (int) (width / mColumnWidth));
+        if (mLines == null || mLines.length < columns * 4) {
+            mLines = new float[columns * 4];
+        }
+        int slices = mWaveform.size();
+        // quiet tracks fill the height as well
+        float scale = height / 2f / Math.max(1, mWaveform.getPeak());
+        float center = getPaddingTop() + height / 2f;
+        for (int column = 0; column < columns; column++) {
+            int from = (int) ((long) column * slices / columns);
+            int to = Math.max(from + 1, (int) ((long) (column + 1) * slices / columns));
+            int low = 0;
+            int high = 0;
+            for (int i = from; i < to; i++) {
+                low = Math.min(low, mWaveform.getMin(i));
+                high = Math.max(high, mWaveform.getMax(i));
+            }
+            float x = getPaddingLeft() + (column + 0.5f) * width / columns;
+            int i = column * 4;
+            mLines[i] = x;
+            mLines[i + 1] = center - Math.max(high * scale, 0.5f);
+            mLines[i + 2] = x;
+            mLines[i + 3] = center - Math.min(low * scale, -0.5f);
+        }
+        mLineCount = columns;
+    }
+}
@@ -0,0 +1,309 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ArtworkCacheTest {
+
+    private static final int SIZE = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeCodec mCodec;
+    private QueueExecutor mExecutor;
+    private ThumbnailDiskCache mDisk;
+
+    @Before
+    public void setUp() {
+        mCodec = new FakeCodec();
+        mExecutor = new QueueExecutor();
+        mDisk = new ThumbnailDiskCache(mFolder.getRoot(), 1024 * 1024);
+    }
+
+    @Test
+    public void secondLoad_isMemoryHit() {
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 0);
+        Recorder first = new Recorder();
+        cache.load(1, first);
+        assertTrue(first.results.isEmpty());
+        mExecutor.runAll();
+        assertEquals(1, first.results.size());
+        assertEquals(1, first.results.get(0).id);
+
+        Recorder second = new Recorder();
+        cache.load(1, second);
+        // delivered right away, no task
+        assertEquals(0, mExecutor.size());
+        assertSame(first.results.get(0), second.results.get(0));
+
+        assertEquals(2, cache.getRequestCount());
+        assertEquals(1, cache.getMemoryHitCount());
+        assertEquals(1, cache.getExtractionCount());
+        assertEquals(0.5, cache.getMemoryHitRate(), 1e-9);
+        assertEquals(1, cache.getExtractLatency().getCount());
+        assertEquals(1, cache.getDecodeLatency().getCount());
+    }
+
+    @Test
+    public void concurrentLoads_shareOneDecode() {
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 0);
+        Recorder a = new Recorder();
+        Recorder b = new Recorder();
+        cache.load(1, a);
+        cache.load(1, b);
+        assertEquals(1, mExecutor.size());
+        mExecutor.runAll();
+
+        assertEquals(1, mCodec.extracted);
+        assertEquals(1, mCodec.decoded);
+        assertSame(a.results.get(0), b.results.get(0));
+        // both hold a reference
+        cache.release(a.results.get(0));
+        cache.release(b.results.get(0));
+        try {
+            cache.release(a.results.get(0));
+            fail();
+        } catch (IllegalStateException expected) {
+            // released twice
+        }
+    }
+
+    @Test
+    public void cancelled_isNotCalled() {
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 0);
+        Recorder a = new Recorder();
+        cache.load(1, a);
+        assertTrue(cache.cancel(1, a));
+        mExecutor.runAll();
+
+        assertTrue(a.results.isEmpty());
+        // decoded anyway and cached
+        assertEquals(SIZE, cache.getMemorySizeInBytes());
+        assertFalse(cache.cancel(1, a));
+    }
+
+    @Test
+    public void memory_isBoundedInBytes_leastRecentlyUsedFirst() {
+        ArtworkCache<Art> cache = newCache(3 * SIZE, 0);
+        Recorder recorder = new Recorder();
+        for (long id = 1; id <= 3; id++) {
+            cache.load(id, recorder);
+            mExecutor.runAll();
+        }
+        // 1 becomes the most recently used
+        cache.load(1, recorder);
+        cache.load(4, recorder);
+        mExecutor.runAll();
+        assertEquals(3 * SIZE, cache.getMemorySizeInBytes());
+
+        long hits = cache.getMemoryHitCount();
+        cache.load(1, recorder);
+        assertEquals(hits + 1, cache.getMemoryHitCount());
+        cache.load(2, recorder);
+        assertEquals(hits + 1, cache.getMemoryHitCount());
+        assertEquals(1, mExecutor.size());
+    }
+
+    @Test
+    public void evictedArtwork_isReused_onceReleased() {
+        ArtworkCache<Art> cache = newCache(SIZE, 10 * SIZE);
+        Recorder recorder = new Recorder();
+        cache.load(1, recorder);
+        mExecutor.runAll();
+        Art first = recorder.results.get(0);
+
+        // 1 is evicted while held, it must not be pooled yet
+        cache.load(2, recorder);
+        mExecutor.runAll();
+        assertEquals(0, cache.getPoolSizeInBytes());
+
+        cache.release(first);
+        assertEquals(SIZE, cache.getPoolSizeInBytes());
+
+        cache.load(3, recorder);
+        mExecutor.runAll();
+        Art third = recorder.results.get(2);
+        assertSame(first, third);
+        assertEquals(3, third.id);
+        assertEquals(1, cache.getPoolReuseCount());
+        assertEquals(0, cache.getPoolSizeInBytes());
+    }
+
+    @Test
+    public void diskTier_survivesNewCache() {
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 0);
+        cache.load(1, new Recorder());
+        mExecutor.runAll();
+
+        ArtworkCache<Art> restarted = newCache(10 * SIZE, 0);
+        Recorder recorder = new Recorder();
+        restarted.load(1, recorder);
+        mExecutor.runAll();
+
+        assertEquals(1, recorder.results.get(0).id);
+        assertEquals(1, mCodec.extracted);
+        assertEquals(1, restarted.getDiskHitCount());
+        assertEquals(0, restarted.getExtractionCount());
+    }
+
+    @Test
+    public void missingArtwork_isRemembered() {
+        mCodec.missing = 7;
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 0);
+        Recorder recorder = new Recorder();
+        cache.load(7, recorder);
+        mExecutor.runAll();
+        assertEquals(1, recorder.results.size());
+        assertNull(recorder.results.get(0));
+
+        cache.load(7, recorder);
+        assertEquals(0, mExecutor.size());
+        assertEquals(2, recorder.results.size());
+
+        // and on disk
+        ArtworkCache<Art> restarted = newCache(10 * SIZE, 0);
+        restarted.load(7, recorder);
+        mExecutor.runAll();
+        assertNull(recorder.results.get(2));
+        assertEquals(1, mCodec.extracted);
+        assertEquals(0, mCodec.decoded);
+    }
+
+    @Test
+    public void unreadableTrack_isMissing_andLaterLoadsCallBack() {
+        mCodec.unreadable = 5;
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 0);
+        Recorder recorder = new Recorder();
+        cache.load(5, recorder);
+        mExecutor.runAll();
+        assertEquals(1, recorder.results.size());
+        assertNull(recorder.results.get(0));
+
+        cache.load(5, recorder);
+        mExecutor.runAll();
+        assertEquals(2, recorder.results.size());
+        assertEquals(1, mCodec.extracted);
+    }
+
+    @Test
+    public void failedDecode_givesThePooledArtworkBack() {
+        ArtworkCache<Art> cache = newCache(SIZE, 10 * SIZE);
+        Recorder recorder = new Recorder();
+        cache.load(1, recorder);
+        mExecutor.runAll();
+        cache.load(2, recorder);
+        mExecutor.runAll();
+        cache.release(recorder.results.get(0));
+        assertEquals(SIZE, cache.getPoolSizeInBytes());
+
+        mCodec.corrupt = 3;
+        cache.load(3, recorder);
+        mExecutor.runAll();
+        assertNull(recorder.results.get(2));
+        assertEquals(SIZE, cache.getPoolSizeInBytes());
+    }
+
+    @Test
+    public void clearMemory_dropsEverything() {
+        ArtworkCache<Art> cache = newCache(10 * SIZE, 10 * SIZE);
+        Recorder recorder = new Recorder();
+        cache.load(1, recorder);
+        cache.load(2, recorder);
+        mExecutor.runAll();
+        cache.release(recorder.results.get(0));
+
+        cache.clearMemory();
+        assertEquals(0, cache.getMemorySizeInBytes());
+        assertEquals(0, cache.getPoolSizeInBytes());
+
+        // still held, pooled once released
+        cache.release(recorder.results.get(1));
+        assertEquals(SIZE, cache.getPoolSizeInBytes());
+    }
+
+    private ArtworkCache<Art> newCache(long maxBytes, long maxPoolBytes) {
+        return new ArtworkCache<Art>(mCodec, mDisk, mExecutor, maxBytes, maxPoolBytes);
+    }
+
+    static class Art {
+
+        long id;
+    }
+
+    static class FakeCodec implements ArtworkCache.Codec<Art> {
+
+        long missing = -1;
+        // throw like MediaMetadataRetriever and BitmapFactory do on bad input
+        long unreadable = -1;
+        long corrupt = -1;
+        int extracted;
+        int decoded;
+
+        @Override
+        public byte[] extract(long id) throws IOException {
+            extracted++;
+            if (id == unreadable) {
+                throw new RuntimeException("setDataSource failed");
+            }
+            return id == missing ? null : Long.toString(id).getBytes("UTF-8");
+        }
+
+        @Override
+        public Art decode(byte[] data, Art reusable) throws IOException {
+            decoded++;
+            if (Long.parseLong(new String(data, "UTF-8")) == corrupt) {
+                throw new IllegalStateException("corrupt thumbnail");
+            }
+            Art art = reusable != null ? reusable : new Art();
+            art.id = Long.parseLong(new String(data, "UTF-8"));
+            return art;
+        }
+
+        @Override
+        public int sizeOf(Art artwork) {
+            return SIZE;
+        }
+    }
+
+    static class Recorder implements ArtworkCache.Callback<Art> {
+
+        final List<Art> results = new ArrayList<Art>();
+
+        @Override
+        public void onArtwork(long id, Art artwork) {
+            results.add(artwork);
+        }
+    }
+
+    static class QueueExecutor implements Executor {
+
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        int size() {
+            return mTasks.size();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = mTasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
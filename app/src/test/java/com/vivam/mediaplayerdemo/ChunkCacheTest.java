@@ -0,0 +1,122 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ChunkCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(mFolder.getRoot(), "chunks");
+    }
+
+    @Test
+    public void committedChunk_canBeRead() throws IOException {
+        ChunkCache cache = new ChunkCache(mDir, 100, 1000);
+        assertNull(cache.open("a", 0));
+
+        put(cache, "a", 0, 100, (byte) 7);
+        assertTrue(cache.contains("a", 0));
+        FileChannel channel = cache.open("a", 0);
+        ByteBuffer buffer = ByteBuffer.allocate(200);
+        assertEquals(100, channel.read(buffer, 0));
+        assertEquals(7, buffer.get(99));
+        channel.close();
+        assertEquals(100, cache.getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() throws IOException {
+        ChunkCache cache = new ChunkCache(mDir, 100, 300);
+        put(cache, "a", 0, 100, (byte) 1);
+        put(cache, "a", 1, 100, (byte) 1);
+        put(cache, "a", 2, 100, (byte) 1);
+        // reading chunk 0 makes chunk 1 the oldest
+        cache.open("a", 0).close();
+        put(cache, "b", 0, 100, (byte) 1);
+
+        assertTrue(cache.contains("a", 0));
+        assertFalse(cache.contains("a", 1));
+        assertTrue(cache.contains("a", 2));
+        assertTrue(cache.contains("b", 0));
+        assertEquals(300, cache.getSize());
+        assertFalse(new File(mDir, "a.1").exists());
+    }
+
+    @Test
+    public void infoThatCannotBeWritten_throws_andLeavesNoTempFile() throws IOException {
+        ChunkCache cache = new ChunkCache(mDir, 100, 1000);
+        // a directory in the way of the info file
+        File blocker = new File(mDir, "a.info");
+        assertTrue(new File(blocker, "x").mkdirs());
+        try {
+            cache.putInfo("a", new ChunkCache.Info(140, "audio/mpeg"));
+            fail();
+        } catch (IOException expected) {
+            // not persisted
+        }
+        assertEquals(140, cache.getInfo("a").length);
+        String[] names = mDir.list();
+        assertEquals(1, names.length);
+        assertEquals("a.info", names[0]);
+    }
+
+    @Test
+    public void reopened_keepsChunksAndInfo_dropsTempFiles() throws IOException {
+        ChunkCache cache = new ChunkCache(mDir, 100, 1000);
+        put(cache, "a", 0, 100, (byte) 1);
+        put(cache, "a", 1, 40, (byte) 1);
+        cache.putInfo("a", new ChunkCache.Info(140, "audio/mpeg"));
+        File abandoned = cache.newTempFile();
+        new FileOutputStream(abandoned).close();
+
+        ChunkCache reopened = new ChunkCache(mDir, 100, 1000);
+        assertTrue(reopened.contains("a", 0));
+        assertTrue(reopened.contains("a", 1));
+        assertEquals(140, reopened.getSize());
+        assertEquals(140, reopened.getInfo("a").length);
+        assertEquals("audio/mpeg", reopened.getInfo("a").contentType);
+        assertNull(reopened.getInfo("b"));
+        assertFalse(abandoned.exists());
+    }
+
+    @Test
+    public void reopened_evictsDownToTheLimit() throws IOException {
+        ChunkCache cache = new ChunkCache(mDir, 100, 1000);
+        for (int i = 0; i < 5; i++) {
+            put(cache, "a", i, 100, (byte) 1);
+        }
+        ChunkCache smaller = new ChunkCache(mDir, 100, 250);
+        assertTrue(smaller.getSize() <= 250);
+    }
+
+    private static void put(ChunkCache cache, String key, int index, int length, byte value)
+            throws IOException {
+        File temp = cache.newTempFile();
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            byte[] data = new byte[length];
+            Arrays.fill(data, value);
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        cache.commit(key, index, temp);
+    }
+}
@@ -0,0 +1,174 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CommandBusTest {
+
+    private final ManualExecutor mExecutor = new ManualExecutor();
+    private final RecordingReceiver mReceiver = new RecordingReceiver();
+    private final CommandBus mBus = new CommandBus(mExecutor);
+
+    @Test
+    public void commandsPostedBeforeTheFlush_goInOneBatch() {
+        mBus.setReceiver(mReceiver);
+        mBus.post(PlayerCommand.PAUSE, 0);
+        mBus.post(PlayerCommand.SEEK, 1000);
+        long last = mBus.post(PlayerCommand.RESUME, 0);
+        assertEquals(1, mExecutor.tasks.size());
+
+        mExecutor.runAll();
+        assertEquals(1, mReceiver.batches.size());
+        assertEquals("PAUSE 0, SEEK 1000, RESUME 0", describe(mReceiver.batches.get(0)));
+        assertEquals(last, mBus.getAcknowledgedSequence());
+        assertEquals(1, mBus.getBatchCount());
+        assertEquals(1, mBus.getRoundTripLatency().getCount());
+    }
+
+    @Test
+    public void withoutReceiver_commandsAreHeld() {
+        mBus.post(PlayerCommand.NEXT, 1);
+        mBus.flush();
+        assertTrue(mExecutor.tasks.isEmpty());
+        assertEquals(1, mBus.getPendingCount());
+
+        mBus.setReceiver(mReceiver);
+        mExecutor.runAll();
+        assertEquals("NEXT 1", describe(mReceiver.batches.get(0)));
+        assertEquals(0, mBus.getPendingCount());
+    }
+
+    @Test
+    public void repeatedSkips_addUp() {
+        List<PlayerCommand> pending = new ArrayList<PlayerCommand>();
+        CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 1, 100));
+        CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 2, 200));
+        int removed = CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 3, 300));
+
+        assertEquals(1, removed);
+        assertEquals("NEXT 3", describe(pending));
+        // the latest sequence, timed from the first tap
+        assertEquals(3, pending.get(0).getSequence());
+        assertEquals(100, pending.get(0).getPostedNanos());
+    }
+
+    @Test
+    public void skipsInOppositeDirections_areKept() {
+        List<PlayerCommand> pending = new ArrayList<PlayerCommand>();
+        CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 1, 0));
+        CommandBus.append(pending, command(PlayerCommand.PREVIOUS, 1, 2, 0));
+        CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 3, 0));
+
+        assertEquals("NEXT 1, PREVIOUS 1, NEXT 1", describe(pending));
+    }
+
+    @Test
+    public void seeks_keepTheLatest_andAreDroppedBySkips() {
+        List<PlayerCommand> pending = new ArrayList<PlayerCommand>();
+        CommandBus.append(pending, command(PlayerCommand.SEEK, 1000, 1, 0));
+        CommandBus.append(pending, command(PlayerCommand.SEEK, 2000, 2, 0));
+        assertEquals("SEEK 2000", describe(pending));
+
+        CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 3, 0));
+        // a seek within the new track stays
+        CommandBus.append(pending, command(PlayerCommand.SEEK, 3000, 4, 0));
+        assertEquals("NEXT 1, SEEK 3000", describe(pending));
+    }
+
+    @Test
+    public void pauseAndResume_keepTheLatest() {
+        List<PlayerCommand> pending = new ArrayList<PlayerCommand>();
+        CommandBus.append(pending, command(PlayerCommand.PAUSE, 0, 1, 0));
+        CommandBus.append(pending, command(PlayerCommand.RESUME, 0, 2, 0));
+        CommandBus.append(pending, command(PlayerCommand.PAUSE, 0, 3, 0));
+
+        assertEquals("PAUSE 0", describe(pending));
+        assertEquals(3, pending.get(0).getSequence());
+    }
+
+    @Test
+    public void stop_dropsWhatItOverrides_butNotSkips() {
+        List<PlayerCommand> pending = new ArrayList<PlayerCommand>();
+        CommandBus.append(pending, command(PlayerCommand.NEXT, 1, 1, 0));
+        CommandBus.append(pending, command(PlayerCommand.RESUME, 0, 2, 0));
+        CommandBus.append(pending, command(PlayerCommand.SEEK, 500, 3, 0));
+        int removed = CommandBus.append(pending, command(PlayerCommand.STOP, 0, 4, 0));
+
+        assertEquals(2, removed);
+        assertEquals("NEXT 1, STOP 0", describe(pending));
+    }
+
+    @Test
+    public void collapsedCommands_areCounted() {
+        mBus.setReceiver(mReceiver);
+        for (int i = 0; i < 5; i++) {
+            mBus.post(PlayerCommand.NEXT, 1);
+        }
+        mExecutor.runAll();
+
+        assertEquals(5, mBus.getPostedCount());
+        assertEquals(4, mBus.getCollapsedCount());
+        assertEquals("NEXT 5", describe(mReceiver.batches.get(0)));
+        assertEquals(5, mBus.getAcknowledgedSequence());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownType_isRejected() {
+        mBus.post(42, 0);
+    }
+
+    private static PlayerCommand command(int type, long argument, long sequence, long posted) {
+        return new PlayerCommand(type, argument, sequence, posted);
+    }
+
+    private static String describe(List<PlayerCommand> batch) {
+        StringBuilder builder = new StringBuilder();
+        for (PlayerCommand command : batch) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(PlayerCommand.typeToString(command.getType()))
+                    .append(' ').append(command.getArgument());
+        }
+        return builder.toString();
+    }
+
+    private static class ManualExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    /**
+     * Records every batch and acknowledges its highest sequence number.
+     */
+    private static class RecordingReceiver implements CommandBus.Receiver {
+
+        final List<List<PlayerCommand>> batches = new ArrayList<List<PlayerCommand>>();
+        long applied;
+
+        @Override
+        public long apply(List<PlayerCommand> batch) {
+            batches.add(batch);
+            for (PlayerCommand command : batch) {
+                applied = Math.max(applied, command.getSequence());
+            }
+            return applied;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class DirectBufferPoolTest {
+
+    @Test
+    public void acquire_stopsAtTheLimit() {
+        DirectBufferPool pool = new DirectBufferPool(1024, 3000);
+        ByteBuffer a = pool.acquire();
+        ByteBuffer b = pool.acquire();
+        assertNotNull(a);
+        assertNotNull(b);
+        assertTrue(a.isDirect());
+        assertEquals(1024, a.capacity());
+        assertNull(pool.acquire());
+        assertEquals(2048, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void released_isReusedCleared() {
+        DirectBufferPool pool = new DirectBufferPool(1024, 1024);
+        ByteBuffer a = pool.acquire();
+        a.position(100).limit(200);
+        pool.release(a);
+
+        ByteBuffer b = pool.acquire();
+        assertSame(a, b);
+        assertEquals(0, b.position());
+        assertEquals(1024, b.limit());
+    }
+
+    @Test
+    public void trim_dropsFreeBuffersOnly() {
+        DirectBufferPool pool = new DirectBufferPool(1024, 4096);
+        ByteBuffer a = pool.acquire();
+        pool.release(pool.acquire());
+        pool.trim();
+
+        assertEquals(0, pool.getFreeCount());
+        assertEquals(1024, pool.getAllocatedBytes());
+        pool.release(a);
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void release_foreignBuffer_throws() {
+        new DirectBufferPool(1024, 4096).release(ByteBuffer.allocate(1024));
+    }
+}
@@ -0,0 +1,159 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class DurationFormatterTest {
+
+    private TimeZone mDefaultZone;
+
+    @Before
+    public void setUp() {
+        mDefaultZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(mDefaultZone);
+    }
+
+    @Test
+    public void format_minutesAndSeconds() {
+        assertEquals("00:00", DurationFormatter.format(0));
+        assertEquals("00:00", DurationFormatter.format(999));
+        assertEquals("00:01", DurationFormatter.format(1000));
+        assertEquals("03:25", DurationFormatter.format(205432));
+        assertEquals("59:59", DurationFormatter.format(3599999));
+    }
+
+    @Test
+    public void format_hours() {
+        assertEquals("01:00:00", DurationFormatter.format(3600000));
+        assertEquals("02:03:04", DurationFormatter.format((2 * 3600 + 3 * 60 + 4) * 1000L));
+        // hours do not wrap at a day
+        assertEquals("25:00:00", DurationFormatter.format(25 * 3600000L));
+        assertEquals("123:00:00", DurationFormatter.format(123 * 3600000L));
+    }
+
+    @Test
+    public void format_negativeIsZero() {
+        assertEquals("00:00", DurationFormatter.format(-5000));
+    }
+
+    @Test
+    public void format_longMaxFits() {
+        char[] chars = new char[DurationFormatter.MAX_LENGTH];
+        int length = DurationFormatter.format(Long.MAX_VALUE, chars, 0);
+        assertEquals(DurationFormatter.MAX_LENGTH, length);
+        assertEquals("2562047788015:12:55", new String(chars, 0, length));
+    }
+
+    @Test
+    public void format_doesNotDependOnTimeZone() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+05:30"));
+        assertEquals("01:30:00", DurationFormatter.format(5400000));
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-08:00"));
+        assertEquals("01:30:00", DurationFormatter.format(5400000));
+    }
+
+    @Test
+    public void format_matchesSimpleDateFormatInUtc() {
+        // the old one is off by the zone offset anywhere else
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        DurationFormatter.Buffer buffer = new DurationFormatter.Buffer();
+        for (int i = 0; i < 1024; i++) {
+            long millis = (i * 7919L) % 7200000;
+            String pattern = millis < 3600000 ? "mm:ss" : "HH:mm:ss";
+            assertEquals(new SimpleDateFormat(pattern).format(new Date(millis)),
+                    buffer.clear().appendDuration(millis).toString());
+        }
+    }
+
+    @Test
+    public void format_doesNotAllocate() {
+        assumeTrue(allocatedBytes() >= 0);
+        DurationFormatter.Buffer buffer = new DurationFormatter.Buffer(64);
+        char[] chars = new char[DurationFormatter.MAX_LENGTH];
+        // warm up, so nothing the JIT or class loading allocates is counted
+        formatLoop(buffer, chars);
+
+        long before = allocatedBytes();
+        long sum = formatLoop(buffer, chars);
+        long allocated = allocatedBytes() - before;
+
+        assertTrue(sum > 0);
+        // some slack for the measurement itself, a per call allocation would be MBs
+        assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+    }
+
+    @Test
+    public void format_atOffset() {
+        char[] chars = "xx-----yy".toCharArray();
+        assertEquals(5, DurationFormatter.format(61000, chars, 2));
+        assertEquals("xx01:01yy", new String(chars));
+    }
+
+    @Test
+    public void buffer_appendsAndClears() {
+        DurationFormatter.Buffer buffer = new DurationFormatter.Buffer(2 * DurationFormatter.MAX_LENGTH + 3);
+        buffer.clear().appendDuration(83000).append(" / ").appendDuration(3723000);
+
+        assertEquals("01:23 / 01:02:03", buffer.toString());
+        assertTrue(buffer.contentEquals("01:23 / 01:02:03"));
+        assertEquals('/', buffer.charAt(6));
+        assertEquals("01:23", buffer.subSequence(0, 5).toString());
+
+        buffer.clear().appendDuration(0);
+        assertEquals("00:00", buffer.toString());
+    }
+
+    @Test
+    public void buffer_nearlyFullStillTakesShortDuration() {
+        DurationFormatter.Buffer buffer = new DurationFormatter.Buffer(8);
+        buffer.append("a").appendDuration(61000);
+        assertEquals("a01:01", buffer.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void buffer_overflowThrows() {
+        new DurationFormatter.Buffer(4).appendDuration(0);
+    }
+
+    @Test
+    public void dateFormat_delegates() {
+        assertEquals("04:05", MediaUtils.dateFormat(245000));
+    }
+
+    private static long formatLoop(DurationFormatter.Buffer buffer, char[] chars) {
+        long sum = 0;
+        for (int i = 0; i < 200000; i++) {
+            buffer.clear().appendDuration(i * 1000L).append(" / ").appendDuration(4000000);
+            sum += buffer.length() + DurationFormatter.format(i, chars, 0);
+        }
+        return sum;
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, or -1 if the VM cannot tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,141 @@
+package com.vivam.mediaplayerdemo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory {@link Player} whose prepares complete only when a test says so.
+ */
+public class FakePlayer implements Player {
+
+    public static class Factory implements Player.Factory {
+
+        public final List<FakePlayer> created = new ArrayList<FakePlayer>();
+        /** Ids of every track that was started, in order, over all players. */
+        public final List<Long> started = new ArrayList<Long>();
+
+        @Override
+        public Player create(Listener listener) {
+            FakePlayer player = new FakePlayer(this, listener);
+            created.add(player);
+            return player;
+        }
+    }
+
+    private final Factory mFactory;
+    private final Listener mListener;
+
+    public long dataSource = -1;
+    public boolean preparing;
+    public boolean prepared;
+    public boolean playing;
+    public boolean released;
+    public int position;
+    public int duration = 1000;
+    public float volume = 1.0f;
+    public int resetCount;
+    public FakePlayer next;
+
+    FakePlayer(Factory factory, Listener listener) {
+        mFactory = factory;
+        mListener = listener;
+    }
+
+    /** Finishes the prepare in flight, if any. */
+    public void finishPrepare() {
+        if (preparing) {
+            preparing = false;
+            prepared = true;
+            mListener.onPrepared(this);
+        }
+    }
+
+    /** Completes the current track, starting the chained player like MediaPlayer does. */
+    public void complete() {
+        playing = false;
+        if (next != null && next.prepared) {
+            next.start();
+        }
+        mListener.onCompletion(this);
+    }
+
+    public void fail() {
+        mListener.onError(this, 1, 0);
+    }
+
+    @Override
+    public void setDataSource(long id) throws IOException {
+        if (id < 0) {
+            throw new IOException("no such track " + id);
+        }
+        dataSource = id;
+    }
+
+    @Override
+    public void prepareAsync() {
+        preparing = true;
+    }
+
+    @Override
+    public void start() {
+        if (!prepared) {
+            throw new IllegalStateException("start() before prepared");
+        }
+        playing = true;
+        mFactory.started.add(dataSource);
+    }
+
+    @Override
+    public void pause() {
+        playing = false;
+    }
+
+    @Override
+    public void seekTo(int msec) {
+        position = msec;
+    }
+
+    @Override
+    public void reset() {
+        dataSource = -1;
+        preparing = false;
+        prepared = false;
+        playing = false;
+        position = 0;
+        next = null;
+        resetCount++;
+    }
+
+    @Override
+    public void release() {
+        reset();
+        released = true;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return position;
+    }
+
+    @Override
+    public int getDuration() {
+        return duration;
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        this.volume = volume;
+    }
+
+    @Override
+    public boolean setNextPlayer(Player next) {
+        this.next = (FakePlayer) next;
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99));
+        assertEquals(0, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void percentiles_areWithinAnEighth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getMeanNanos());
+        assertWithinEighth(500000, histogram.getPercentileNanos(50));
+        assertWithinEighth(900000, histogram.getPercentileNanos(90));
+        assertWithinEighth(990000, histogram.getPercentileNanos(99));
+        assertEquals(1000000, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void buckets_coverEveryValue() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " above its bucket", value <= LatencyHistogram.upperBoundOf(bucket));
+            if (bucket > 0) {
+                assertTrue(value + " below its bucket",
+                        value > LatencyHistogram.upperBoundOf(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    private static void assertWithinEighth(long expected, long actual) {
+        assertTrue(actual + " < " + expected, actual >= expected);
+        assertTrue(actual + " > " + expected + " * 9 / 8", actual <= expected * 9 / 8);
+    }
+}
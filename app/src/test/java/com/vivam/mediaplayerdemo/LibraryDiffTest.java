@@ -0,0 +1,53 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LibraryDiffTest {
+
+    @Test
+    public void sameLibrary_isEmpty() {
+        LibraryDiff diff = LibraryDiff.compute(LibraryIndexTest.library(0, 50),
+                LibraryIndexTest.library(0, 50));
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void addedChangedRemoved() {
+        List<MusicBean> indexed = LibraryIndexTest.library(0, 10);
+        List<MusicBean> current = LibraryIndexTest.library(2, 10);
+        current.get(3).setDateModified(1);
+        current.get(3).setTitle("renamed");
+
+        LibraryDiff diff = LibraryDiff.compute(indexed, current);
+
+        assertEquals(ids(10, 11), ids(diff.added));
+        assertEquals(ids(5), ids(diff.changed));
+        assertEquals(ids(0, 1), ids(diff.removed));
+
+        diff.applyTo(indexed);
+        assertEquals(ids(2, 3, 4, 5, 6, 7, 8, 9, 10, 11), ids(indexed));
+        assertEquals("renamed", indexed.get(3).getTitle());
+        assertTrue(LibraryDiff.compute(indexed, current).isEmpty());
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<Long>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static List<Long> ids(List<MusicBean> music) {
+        List<Long> list = new ArrayList<Long>();
+        for (MusicBean m : music) {
+            list.add(m.getId());
+        }
+        return list;
+    }
+}
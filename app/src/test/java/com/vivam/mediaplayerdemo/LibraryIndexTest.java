@@ -0,0 +1,110 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LibraryIndexTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mFolder.getRoot(), "library.idx");
+    }
+
+    @Test
+    public void missingFile_loadsNull() {
+        assertNull(new LibraryIndex(mFile).load());
+    }
+
+    @Test
+    public void writeThenLoad() throws IOException {
+        List<MusicBean> library = library(0, 1000);
+        LibraryIndex index = new LibraryIndex(mFile);
+        index.write(library);
+        assertEquals(1, index.getGeneration());
+
+        LibraryIndex reopened = new LibraryIndex(mFile);
+        List<MusicBean> loaded = reopened.load();
+        assertEquals(1, reopened.getGeneration());
+        assertEquals(library.size(), loaded.size());
+        for (int i = 0; i < library.size(); i++) {
+            assertEquals(library.get(i).getId(), loaded.get(i).getId());
+            assertEquals(library.get(i).getTitle(), loaded.get(i).getTitle());
+            assertEquals(library.get(i).getDateModified(), loaded.get(i).getDateModified());
+        }
+    }
+
+    @Test
+    public void rewrite_bumpsGeneration() throws IOException {
+        LibraryIndex index = new LibraryIndex(mFile);
+        index.write(library(0, 10));
+        index.write(library(0, 20));
+
+        LibraryIndex reopened = new LibraryIndex(mFile);
+        assertEquals(20, reopened.load().size());
+        assertEquals(2, reopened.getGeneration());
+        assertFalse(AtomicFiles.tempFile(mFile).exists());
+    }
+
+    @Test
+    public void crashDuringRewrite_keepsPreviousIndex() throws IOException {
+        new LibraryIndex(mFile).write(library(0, 10));
+
+        // a rewrite that died before the rename leaves a partial temp file behind
+        FileOutputStream partial = new FileOutputStream(AtomicFiles.tempFile(mFile));
+        partial.write(new byte[] {0x4d, 0x4c, 0x49});
+        partial.close();
+
+        LibraryIndex index = new LibraryIndex(mFile);
+        assertEquals(10, index.load().size());
+
+        index.write(library(0, 5));
+        assertEquals(5, new LibraryIndex(mFile).load().size());
+        assertFalse(AtomicFiles.tempFile(mFile).exists());
+    }
+
+    @Test
+    public void truncatedFile_loadsNull() throws IOException {
+        new LibraryIndex(mFile).write(library(0, 100));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 10);
+        file.close();
+
+        assertNull(new LibraryIndex(mFile).load());
+    }
+
+    @Test
+    public void corruptPayload_loadsNull() throws IOException {
+        new LibraryIndex(mFile).write(library(0, 100));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.seek(file.length() / 2);
+        int b = file.read();
+        file.seek(file.length() / 2);
+        file.write(b ^ 0xff);
+        file.close();
+
+        assertNull(new LibraryIndex(mFile).load());
+    }
+
+    static List<MusicBean> library(long firstId, int count) {
+        List<MusicBean> library = PlayQueueTest.musicList(firstId, count);
+        for (MusicBean music : library) {
+            music.setDateModified(1450000000L + music.getId());
+        }
+        return library;
+    }
+}
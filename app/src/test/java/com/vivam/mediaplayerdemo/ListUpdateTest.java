@@ -0,0 +1,161 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ListUpdateTest {
+
+    @Test
+    public void identicalLists_isEmpty() {
+        List<MusicBean> list = PlayQueueTest.musicList(1, 10);
+        ListUpdate update = ListUpdate.compute(list, new ArrayList<MusicBean>(list));
+
+        assertTrue(update.isEmpty());
+        assertEquals("", dispatch(update, list, list).log.toString());
+    }
+
+    @Test
+    public void removedRanges_dispatchBackToFront() {
+        List<MusicBean> oldList = PlayQueueTest.musicList(1, 10);
+        List<MusicBean> newList = new ArrayList<MusicBean>(oldList);
+        newList.subList(7, 9).clear();
+        newList.subList(1, 3).clear();
+
+        Recorder recorder = dispatch(ListUpdate.compute(oldList, newList), oldList, newList);
+        assertEquals("-7x2 -1x2 ", recorder.log.toString());
+        assertEquals(newList, recorder.list);
+    }
+
+    @Test
+    public void insertedAndChanged() {
+        List<MusicBean> oldList = PlayQueueTest.musicList(1, 5);
+        List<MusicBean> newList = new ArrayList<MusicBean>(oldList);
+        newList.add(0, PlayQueueTest.music(100));
+        newList.add(3, PlayQueueTest.music(101));
+        newList.add(4, PlayQueueTest.music(102));
+        MusicBean changed = PlayQueueTest.music(4);
+        changed.setTitle("renamed");
+        newList.set(newList.indexOf(oldList.get(3)), changed);
+
+        Recorder recorder = dispatch(ListUpdate.compute(oldList, newList), oldList, newList);
+        assertEquals("+0x1 +3x2 ~6x1 ", recorder.log.toString());
+        assertEquals(newList, recorder.list);
+    }
+
+    @Test
+    public void sameIdSameContent_isNotChanged() {
+        List<MusicBean> oldList = PlayQueueTest.musicList(1, 3);
+        List<MusicBean> newList = PlayQueueTest.musicList(1, 3);
+
+        assertTrue(ListUpdate.compute(oldList, newList).isEmpty());
+    }
+
+    @Test
+    public void moved_reloads() {
+        List<MusicBean> oldList = PlayQueueTest.musicList(1, 5);
+        List<MusicBean> newList = new ArrayList<MusicBean>(oldList);
+        newList.add(newList.remove(0));
+
+        ListUpdate update = ListUpdate.compute(oldList, newList);
+        assertTrue(update.isReload());
+        assertEquals("reload ", dispatch(update, oldList, newList).log.toString());
+    }
+
+    @Test
+    public void manyRanges_reload() {
+        List<MusicBean> oldList = PlayQueueTest.musicList(1, 4 * ListUpdate.MAX_OPS);
+        List<MusicBean> newList = new ArrayList<MusicBean>();
+        for (int i = 0; i < oldList.size(); i += 2) {
+            newList.add(oldList.get(i));
+        }
+
+        assertTrue(ListUpdate.compute(oldList, newList).isReload());
+    }
+
+    @Test
+    public void randomEdits_reproduceNewList() {
+        Random random = new Random(10);
+        for (int round = 0; round < 200; round++) {
+            List<MusicBean> oldList = PlayQueueTest.musicList(1, random.nextInt(50));
+            List<MusicBean> newList = new ArrayList<MusicBean>();
+            long nextId = 1000;
+            for (MusicBean music : oldList) {
+                int roll = random.nextInt(10);
+                if (roll == 0) {
+                    continue;
+                }
+                if (roll == 1) {
+                    newList.add(PlayQueueTest.music(nextId++));
+                }
+                if (roll == 2) {
+                    MusicBean changed = PlayQueueTest.music(music.getId());
+                    changed.setDuration(music.getDuration() + 1);
+                    newList.add(changed);
+                } else {
+                    newList.add(music);
+                }
+            }
+            if (random.nextBoolean()) {
+                newList.add(PlayQueueTest.music(nextId));
+            }
+
+            ListUpdate update = ListUpdate.compute(oldList, newList);
+            if (!update.isReload()) {
+                assertEquals(newList, dispatch(update, oldList, newList).list);
+            }
+        }
+    }
+
+    private static Recorder dispatch(ListUpdate update, List<MusicBean> oldList,
+            List<MusicBean> newList) {
+        Recorder recorder = new Recorder(oldList, newList);
+        update.dispatchTo(recorder);
+        return recorder;
+    }
+
+    /** Applies the notifications to a copy of the old list, like a view would. */
+    private static class Recorder implements ListUpdate.Callback {
+
+        final ArrayList<MusicBean> list;
+        final List<MusicBean> newList;
+        final StringBuilder log = new StringBuilder();
+
+        Recorder(List<MusicBean> oldList, List<MusicBean> newList) {
+            list = new ArrayList<MusicBean>(oldList);
+            this.newList = newList;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            log.append('+').append(position).append('x').append(count).append(' ');
+            list.addAll(position, newList.subList(position, position + count));
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            log.append('-').append(position).append('x').append(count).append(' ');
+            list.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            log.append('~').append(position).append('x').append(count).append(' ');
+            for (int i = position; i < position + count; i++) {
+                list.set(i, newList.get(i));
+            }
+        }
+
+        @Override
+        public void onReloaded() {
+            log.append("reload ");
+            list.clear();
+            list.addAll(newList);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongIntMap map = new LongIntMap();
+        map.put(42L, 1);
+        map.put(-7L, 2);
+        map.put(0L, 3);
+
+        assertEquals(3, map.size());
+        assertEquals(1, map.get(42L, -1));
+        assertEquals(2, map.get(-7L, -1));
+        assertEquals(3, map.get(0L, -1));
+        assertEquals(-1, map.get(43L, -1));
+
+        map.put(42L, 10);
+        assertEquals(10, map.get(42L, -1));
+        assertEquals(3, map.size());
+
+        assertTrue(map.remove(42L));
+        assertFalse(map.remove(42L));
+        assertFalse(map.containsKey(42L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void randomOperations_matchHashMap() {
+        Random random = new Random(1);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+
+        for (int i = 0; i < 200000; i++) {
+            // a small key range forces long probe runs and many removals
+            long key = random.nextInt(5000) - 2500;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = -2500; key < 2500; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value != null ? value : -1, map.get(key, -1));
+        }
+    }
+
+    @Test
+    public void clear() {
+        LongIntMap map = new LongIntMap();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(5, -1));
+    }
+}
@@ -0,0 +1,122 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class LoudnessMeterTest {
+
+    @Test
+    public void sine_readsItsLevel() {
+        // a 997Hz sine in both channels reads its level in dBFS, the K-weighting
+        // and the -0.691 offset of the standard cancel out there
+        for (int rate : new int[] {44100, 48000}) {
+            LoudnessMeter meter = new LoudnessMeter(rate, 2);
+            meter.process(sine(rate, 2, 997, 0.5, 5), 0, rate * 2 * 5);
+            assertEquals(-6.02, meter.getIntegratedLoudness(), 0.1);
+            assertEquals(0.5, meter.getPeak(), 0.001);
+            assertEquals(5000000, meter.getDurationUs());
+        }
+    }
+
+    @Test
+    public void lowFrequencies_areWeightedDown() {
+        LoudnessMeter low = new LoudnessMeter(48000, 1);
+        low.process(sine(48000, 1, 40, 0.5, 3), 0, 48000 * 3);
+        LoudnessMeter mid = new LoudnessMeter(48000, 1);
+        mid.process(sine(48000, 1, 997, 0.5, 3), 0, 48000 * 3);
+
+        assertTrue(low.getIntegratedLoudness() < mid.getIntegratedLoudness() - 1);
+    }
+
+    @Test
+    public void silence_isNotMeasured() {
+        LoudnessMeter meter = new LoudnessMeter(44100, 2);
+        meter.process(new short[44100 * 2 * 2], 0, 44100 * 2 * 2);
+        assertEquals(LoudnessMeter.SILENCE, meter.getIntegratedLoudness(), 0);
+        assertEquals(0, meter.getPeak(), 0);
+
+        // shorter than one block
+        LoudnessMeter tooShort = new LoudnessMeter(44100, 2);
+        tooShort.process(sine(44100, 2, 997, 0.5, 0.3), 0, 13230 * 2);
+        assertEquals(LoudnessMeter.SILENCE, tooShort.getIntegratedLoudness(), 0);
+    }
+
+    @Test
+    public void quietPassages_areGatedOut() {
+        int rate = 48000;
+        short[] loud = sine(rate, 2, 997, 0.5, 10);
+        short[] quiet = sine(rate, 2, 997, 0.005, 10);
+        LoudnessMeter meter = new LoudnessMeter(rate, 2);
+        meter.process(loud, 0, loud.length);
+        meter.process(quiet, 0, quiet.length);
+
+        // 40dB below, the quiet half falls under the relative gate
+        assertEquals(-6.02, meter.getIntegratedLoudness(), 0.2);
+    }
+
+    @Test
+    public void chunking_doesNotChangeTheResult() {
+        int rate = 44100;
+        short[] samples = sine(rate, 2, 440, 0.25, 3);
+        LoudnessMeter whole = new LoudnessMeter(rate, 2);
+        whole.process(samples, 0, samples.length);
+
+        LoudnessMeter chunked = new LoudnessMeter(rate, 2);
+        ShortBuffer buffer = ShortBuffer.wrap(samples);
+        while (buffer.hasRemaining()) {
+            ShortBuffer chunk = buffer.slice();
+            chunk.limit(Math.min(chunk.remaining(), 1234));
+            chunked.process(chunk);
+            buffer.position(buffer.position() + chunk.position());
+        }
+
+        assertEquals(whole.getIntegratedLoudness(), chunked.getIntegratedLoudness(), 1e-9);
+        assertEquals(whole.getFrameCount(), chunked.getFrameCount());
+    }
+
+    @Test
+    public void lfe_isExcluded() {
+        int rate = 48000;
+        short[] lfeOnly = new short[rate * 6 * 2];
+        short[] sine = sine(rate, 1, 997, 0.5, 2);
+        for (int i = 0; i < sine.length; i++) {
+            lfeOnly[i * 6 + 3] = sine[i];
+        }
+        LoudnessMeter meter = new LoudnessMeter(rate, 6);
+        meter.process(lfeOnly, 0, lfeOnly.length);
+        assertEquals(LoudnessMeter.SILENCE, meter.getIntegratedLoudness(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partialFrames_areRejected() {
+        new LoudnessMeter(44100, 2).process(new short[3], 0, 3);
+    }
+
+    @Test
+    public void gain_normalizesLoudTracks_withoutClipping() {
+        TrackLoudness loud = new TrackLoudness(1, 0, -8f, 0.9f);
+        assertEquals(Math.pow(10, -10 / 20.0), loud.getGain(-18f), 1e-6);
+
+        // quiet tracks would need a boost, players cannot amplify
+        assertEquals(1.0f, new TrackLoudness(2, 0, -24f, 0.5f).getGain(-18f), 0f);
+        assertEquals(1.0f, new TrackLoudness(3, 0, (float) LoudnessMeter.SILENCE, 0f)
+                .getGain(-18f), 0f);
+        assertEquals(1.0f, TrackLoudness.failed(4, 0).getGain(-18f), 0f);
+    }
+
+    static short[] sine(int rate, int channels, double hz, double amplitude, double seconds) {
+        int frames = (int) Math.round(rate * seconds);
+        short[] samples = new short[frames * channels];
+        for (int i = 0; i < frames; i++) {
+            short value = (short) Math.round(amplitude * 32767
+                    * Math.sin(2 * Math.PI * hz * i / rate));
+            for (int c = 0; c < channels; c++) {
+                samples[i * channels + c] = value;
+            }
+        }
+        return samples;
+    }
+}
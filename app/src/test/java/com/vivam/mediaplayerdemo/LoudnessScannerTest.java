@@ -0,0 +1,151 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LoudnessScannerTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private FakeDecoder mDecoder;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "loudness");
+        mDecoder = new FakeDecoder();
+    }
+
+    @Test
+    public void everyTrack_isDecodedOnce() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 200);
+        LoudnessScanner scanner = new LoudnessScanner(new LoudnessStore(mFile), mDecoder, 4);
+        scanner.enqueue(library);
+        scanner.enqueue(library);
+        drain(scanner, 200);
+
+        assertEquals(200, scanner.getScannedCount());
+        assertEquals(200, new HashSet<Long>(mDecoder.decoded).size());
+        assertTrue(scanner.getTracksPerSecond() > 0);
+        assertTrue(scanner.getRealtimeFactor() > 0);
+        assertEquals(-6.02, scanner.get(7).getLoudness(), 0.1);
+    }
+
+    @Test
+    public void scan_resumesWhereItStopped() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 50);
+        LoudnessScanner scanner = new LoudnessScanner(new LoudnessStore(mFile), mDecoder, 2);
+        scanner.enqueue(library.subList(0, 30));
+        drain(scanner, 30);
+
+        FakeDecoder second = new FakeDecoder();
+        LoudnessScanner reopened = new LoudnessScanner(new LoudnessStore(mFile), second, 2);
+        library.get(3).setDateModified(1);
+        reopened.enqueue(library);
+        drain(reopened, 50);
+
+        List<Long> expected = new ArrayList<Long>();
+        expected.add(4L);
+        for (long id = 31; id <= 50; id++) {
+            expected.add(id);
+        }
+        List<Long> decoded = new ArrayList<Long>(second.decoded);
+        Collections.sort(decoded);
+        assertEquals(expected, decoded);
+        assertEquals(29, reopened.getCachedCount());
+    }
+
+    @Test
+    public void failures_arePersisted_interruptionsAreNot() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 10);
+        mDecoder.failingId = 5;
+        mDecoder.interruptedId = 6;
+        LoudnessScanner scanner = new LoudnessScanner(new LoudnessStore(mFile), mDecoder, 2);
+        scanner.enqueue(library);
+        drain(scanner, 9);
+
+        assertEquals(1, scanner.getFailedCount());
+        LoudnessStore store = new LoudnessStore(mFile);
+        assertTrue(store.get(5, 0).isFailed());
+        assertNull(store.get(6));
+        assertEquals(9, store.size());
+    }
+
+    @Test
+    public void throttled_decodesOneTrackAtATime() throws Exception {
+        final AtomicInteger decoding = new AtomicInteger();
+        final AtomicInteger maxDecoding = new AtomicInteger();
+        LoudnessScanner.Decoder decoder = new LoudnessScanner.Decoder() {
+
+            @Override
+            public LoudnessMeter decode(MusicBean music) throws IOException {
+                int count = decoding.incrementAndGet();
+                synchronized (maxDecoding) {
+                    maxDecoding.set(Math.max(maxDecoding.get(), count));
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } finally {
+                    decoding.decrementAndGet();
+                }
+                return new LoudnessMeter(44100, 2);
+            }
+        };
+        LoudnessScanner scanner = new LoudnessScanner(new LoudnessStore(mFile), decoder, 4);
+        scanner.setThrottled(true);
+        scanner.enqueue(PlayQueueTest.musicList(1, 40));
+        drain(scanner, 40);
+
+        assertEquals(1, maxDecoding.get());
+    }
+
+    private static void drain(LoudnessScanner scanner, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scanner.getScannedCount() + scanner.getFailedCount() + scanner.getCachedCount()
+                < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        scanner.shutdown();
+        scanner.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static class FakeDecoder implements LoudnessScanner.Decoder {
+
+        private static final short[] SINE = LoudnessMeterTest.sine(8000, 2, 997, 0.5, 1);
+
+        final List<Long> decoded = Collections.synchronizedList(new ArrayList<Long>());
+        volatile long failingId = -1;
+        volatile long interruptedId = -1;
+
+        @Override
+        public LoudnessMeter decode(MusicBean music) throws IOException {
+            decoded.add(music.getId());
+            if (music.getId() == failingId) {
+                throw new IOException("unreadable");
+            }
+            if (music.getId() == interruptedId) {
+                throw new InterruptedIOException();
+            }
+            LoudnessMeter meter = new LoudnessMeter(8000, 2);
+            meter.process(SINE, 0, SINE.length);
+            return meter;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetadataEnricherTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private FakeExtractor mExtractor;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "metadata.db");
+        mExtractor = new FakeExtractor();
+    }
+
+    @Test
+    public void everyTrack_isExtractedOnce() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 500);
+        MetadataEnricher enricher = new MetadataEnricher(new MetadataStore(mFile),
+                mExtractor, 4, null);
+        enricher.enqueue(library);
+        enricher.enqueue(library);
+        enricher.prioritize(library.subList(10, 20));
+        drain(enricher);
+
+        assertEquals(500, enricher.getAnalysedCount());
+        assertEquals(500, mExtractor.extracted.size());
+        assertEquals(500, new HashSet<Long>(mExtractor.extracted).size());
+        assertEquals(0, enricher.getQueueDepth());
+        assertTrue(enricher.getFilesPerSecond() > 0);
+        assertEquals("artist 7", enricher.get(library.get(6)).getArtist());
+    }
+
+    @Test
+    public void persisted_notExtractedAgain() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 100);
+        MetadataEnricher enricher = new MetadataEnricher(new MetadataStore(mFile),
+                mExtractor, 2, null);
+        enricher.enqueue(library);
+        drain(enricher);
+
+        FakeExtractor second = new FakeExtractor();
+        MetadataEnricher reopened = new MetadataEnricher(new MetadataStore(mFile),
+                second, 2, null);
+        library.get(3).setDateModified(1);
+        reopened.enqueue(library);
+        drain(reopened);
+
+        assertEquals(Collections.singletonList(4L), second.extracted);
+        assertEquals(99, reopened.getCachedCount());
+    }
+
+    @Test
+    public void failures_arePersisted() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 10);
+        mExtractor.failingId = 5;
+        MetadataEnricher enricher = new MetadataEnricher(new MetadataStore(mFile),
+                mExtractor, 2, null);
+        enricher.enqueue(library);
+        drain(enricher);
+
+        assertEquals(1, enricher.getFailedCount());
+        assertEquals(9, enricher.getAnalysedCount());
+        assertTrue(new MetadataStore(mFile).get(5, 0).isFailed());
+    }
+
+    @Test
+    public void visibleRows_runFirst() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+        MetadataEnricher.Extractor extractor = new MetadataEnricher.Extractor() {
+
+            @Override
+            public TrackMetadata extract(MusicBean music) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                order.add(music.getId());
+                return new TrackMetadata(music.getId(), music.getDateModified(), null, null,
+                        0, 0, false);
+            }
+        };
+        List<MusicBean> library = PlayQueueTest.musicList(1, 50);
+        MetadataEnricher enricher = new MetadataEnricher(new MetadataStore(mFile),
+                extractor, 1, null);
+        enricher.enqueue(library);
+        // the single thread is blocked in track 1, the rest is queued
+        Thread.sleep(50);
+        enricher.prioritize(library.subList(30, 32));
+        enricher.prioritize(library.subList(40, 42));
+        assertTrue(enricher.getQueueDepth() > 0);
+        release.countDown();
+        drain(enricher);
+
+        assertEquals(50, enricher.getAnalysedCount());
+        assertEquals(1L, (long) order.get(0));
+        assertEquals(41L, (long) order.get(1));
+        assertEquals(42L, (long) order.get(2));
+        assertEquals(31L, (long) order.get(3));
+        assertEquals(32L, (long) order.get(4));
+        assertEquals(2L, (long) order.get(5));
+    }
+
+    @Test
+    public void prioritizingAgain_doesNotQueueTwice() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        MetadataEnricher.Extractor extractor = new MetadataEnricher.Extractor() {
+
+            @Override
+            public TrackMetadata extract(MusicBean music) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return mExtractor.extract(music);
+            }
+        };
+        List<MusicBean> library = PlayQueueTest.musicList(1, 50);
+        MetadataEnricher enricher = new MetadataEnricher(new MetadataStore(mFile),
+                extractor, 1, null);
+        enricher.enqueue(library);
+        // the single thread is blocked in track 1, the rest is queued
+        Thread.sleep(50);
+        enricher.prioritize(library.subList(30, 40));
+        int depth = enricher.getQueueDepth();
+        // scrolled away and back
+        enricher.prioritize(library.subList(20, 30));
+        enricher.prioritize(library.subList(30, 40));
+        assertEquals(depth + 10, enricher.getQueueDepth());
+        release.countDown();
+        drain(enricher);
+
+        assertEquals(50, enricher.getAnalysedCount());
+        assertEquals(50, new HashSet<Long>(mExtractor.extracted).size());
+    }
+
+    private static void drain(MetadataEnricher enricher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (enricher.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        enricher.shutdown();
+        enricher.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static class FakeExtractor implements MetadataEnricher.Extractor {
+
+        final List<Long> extracted = Collections.synchronizedList(new ArrayList<Long>());
+        volatile long failingId = -1;
+
+        @Override
+        public TrackMetadata extract(MusicBean music) throws IOException {
+            extracted.add(music.getId());
+            if (music.getId() == failingId) {
+                throw new IOException("unreadable");
+            }
+            return new TrackMetadata(music.getId(), music.getDateModified(),
+                    "artist " + music.getId(), "album", 128000, 44100, false);
+        }
+    }
+}
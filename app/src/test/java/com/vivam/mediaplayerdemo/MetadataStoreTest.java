@@ -0,0 +1,155 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class MetadataStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "metadata.db");
+    }
+
+    @Test
+    public void putFlushReload() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        store.put(metadata(1, 100, "Queen"));
+        store.put(TrackMetadata.failed(2, 200));
+        store.flush();
+
+        MetadataStore reopened = new MetadataStore(mFile);
+        assertEquals(2, reopened.size());
+        TrackMetadata first = reopened.get(1, 100);
+        assertEquals("Queen", first.getArtist());
+        assertEquals("Album 1", first.getAlbum());
+        assertEquals(320000, first.getBitrate());
+        assertEquals(44100, first.getSampleRate());
+        assertTrue(first.hasArtwork());
+        assertFalse(first.isFailed());
+        assertTrue(reopened.get(2, 200).isFailed());
+    }
+
+    @Test
+    public void unflushed_isNotPersisted() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        store.put(metadata(1, 100, "Queen"));
+        assertNotNull(store.get(1, 100));
+
+        assertNull(new MetadataStore(mFile).get(1));
+    }
+
+    @Test
+    public void staleVersion_isMissing() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        store.put(metadata(1, 100, "Queen"));
+
+        assertNull(store.get(1, 101));
+        assertNotNull(store.get(1));
+    }
+
+    @Test
+    public void laterRecord_replaces() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        store.put(metadata(1, 100, "Queen"));
+        store.flush();
+        store.put(metadata(1, 101, "Freddie"));
+        store.flush();
+
+        MetadataStore reopened = new MetadataStore(mFile);
+        assertEquals(1, reopened.size());
+        assertEquals("Freddie", reopened.get(1, 101).getArtist());
+    }
+
+    @Test
+    public void tornTail_isCutOff() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        store.put(metadata(1, 100, "Queen"));
+        store.put(metadata(2, 100, "Abba"));
+        store.flush();
+        long good = mFile.length();
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(good - 3);
+        file.close();
+
+        MetadataStore reopened = new MetadataStore(mFile);
+        assertEquals(1, reopened.size());
+        assertNull(reopened.get(2));
+        assertTrue(mFile.length() < good - 3);
+
+        reopened.put(metadata(3, 100, "Blur"));
+        reopened.flush();
+        assertEquals(2, new MetadataStore(mFile).size());
+    }
+
+    @Test
+    public void corruptRecord_stopsLoading() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        store.put(metadata(1, 100, "Queen"));
+        store.flush();
+        long firstEnd = mFile.length();
+        store.put(metadata(2, 100, "Abba"));
+        store.flush();
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.seek(firstEnd + 6);
+        file.write(0x7f);
+        file.close();
+
+        MetadataStore reopened = new MetadataStore(mFile);
+        assertEquals(1, reopened.size());
+        assertEquals(firstEnd, mFile.length());
+    }
+
+    @Test
+    public void garbageFile_isReset() throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        out.close();
+
+        MetadataStore store = new MetadataStore(mFile);
+        assertEquals(0, store.size());
+        store.put(metadata(1, 100, "Queen"));
+        store.flush();
+        assertEquals(1, new MetadataStore(mFile).size());
+    }
+
+    @Test
+    public void replacedRecords_areCompacted() throws IOException {
+        MetadataStore store = new MetadataStore(mFile);
+        for (int round = 0; round < 40; round++) {
+            for (int id = 0; id < 64; id++) {
+                store.put(metadata(id, round, "Artist " + round));
+            }
+        }
+        store.flush();
+        long compacted = mFile.length();
+
+        File single = new File(mFolder.getRoot(), "single.db");
+        MetadataStore one = new MetadataStore(single);
+        one.put(metadata(5, 39, "Artist 39"));
+        one.flush();
+        long appendedOnly = single.length() * 40 * 64;
+        assertTrue("file has " + compacted + " bytes", compacted < appendedOnly / 2);
+        MetadataStore reopened = new MetadataStore(mFile);
+        assertEquals(64, reopened.size());
+        assertEquals("Artist 39", reopened.get(5, 39).getArtist());
+    }
+
+    static TrackMetadata metadata(long id, long dateModified, String artist) {
+        return new TrackMetadata(id, dateModified, artist, "Album " + id, 320000, 44100, true);
+    }
+}
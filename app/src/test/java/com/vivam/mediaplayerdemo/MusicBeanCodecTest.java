@@ -0,0 +1,132 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MusicBeanCodecTest {
+
+    @Test
+    public void roundTrip() {
+        List<MusicBean> list = new ArrayList<MusicBean>();
+        list.add(PlayQueueTest.music(1));
+        list.add(bean(Long.MAX_VALUE, "\u00dcn\u00efc\u00f6d\u00e9 \u97f3\u697d \ud83c\udfb5", 0));
+        list.add(bean(-3, null, 3600000L * 30));
+        list.add(bean(0, "", -1));
+        list.get(0).setDateModified(1453334400L);
+
+        List<MusicBean> decoded = MusicBeanCodec.decode(MusicBeanCodec.encode(list));
+
+        assertEquals(list.size(), decoded.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i).getId(), decoded.get(i).getId());
+            assertEquals(list.get(i).getTitle(), decoded.get(i).getTitle());
+            assertEquals(list.get(i).getDuration(), decoded.get(i).getDuration());
+            assertEquals(list.get(i).getDateModified(), decoded.get(i).getDateModified());
+        }
+    }
+
+    @Test
+    public void emptyList() {
+        assertTrue(MusicBeanCodec.decode(
+                MusicBeanCodec.encode(new ArrayList<MusicBean>())).isEmpty());
+    }
+
+    @Test
+    public void compactRecords() {
+        byte[] data = MusicBeanCodec.encode(Arrays.asList(bean(1234, "abc", 185000)));
+        // header 6 bytes, id 2, duration 3, title 1 + 3, date modified 1
+        assertEquals(16, data.length);
+    }
+
+    @Test
+    public void smallerThanJavaSerialization() throws IOException {
+        for (int size : new int[] {1, 1000, 100000}) {
+            List<MusicBean> list = PlayQueueTest.musicList(100000, size);
+            ArrayList<SerializableMusicBean> serializable =
+                    new ArrayList<SerializableMusicBean>(size);
+            for (int i = 0; i < size; i++) {
+                MusicBean music = list.get(i);
+                music.setTitle("Some Artist - Track Title Number " + i);
+                music.setDuration(120000 + i * 7);
+                serializable.add(new SerializableMusicBean(music));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(serializable);
+            out.close();
+
+            int flat = MusicBeanCodec.encode(list).length;
+            int serialized = bytes.size();
+            assertTrue(size + " beans: flat " + flat + " bytes, serialized " + serialized,
+                    flat < serialized);
+        }
+    }
+
+    @Test
+    public void decodesVersion1() {
+        // zigzag varints: count 2, then id 1, duration 2, title "a" and id 2,
+        // duration 3, no title; version 1 has no date modified
+        byte[] data = {0x4d, 0x42, 0x4c, 0x53, 1, 4, 2, 4, 4, 'a', 4, 6, 0};
+        List<MusicBean> decoded = MusicBeanCodec.decode(data);
+
+        assertEquals(2, decoded.size());
+        assertEquals(1, decoded.get(0).getId());
+        assertEquals(2, decoded.get(0).getDuration());
+        assertEquals("a", decoded.get(0).getTitle());
+        assertEquals(0, decoded.get(0).getDateModified());
+        assertEquals(2, decoded.get(1).getId());
+        assertEquals(3, decoded.get(1).getDuration());
+        assertNull(decoded.get(1).getTitle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedData() {
+        byte[] data = MusicBeanCodec.encode(PlayQueueTest.musicList(0, 10));
+        MusicBeanCodec.decode(Arrays.copyOf(data, data.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newerVersion() {
+        byte[] data = MusicBeanCodec.encode(PlayQueueTest.musicList(0, 1));
+        data[4] = (byte) (MusicBeanCodec.VERSION + 1);
+        MusicBeanCodec.decode(data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badMagic() {
+        MusicBeanCodec.decode(new byte[] {1, 2, 3, 4, 1, 0});
+    }
+
+    private static MusicBean bean(long id, String title, long duration) {
+        MusicBean music = new MusicBean();
+        music.setId(id);
+        music.setTitle(title);
+        music.setDuration(duration);
+        return music;
+    }
+
+    /** Same shape as MusicBean was when it implemented Serializable. */
+    private static class SerializableMusicBean implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+        private final String title;
+        private final long duration;
+
+        SerializableMusicBean(MusicBean music) {
+            id = music.getId();
+            title = music.getTitle();
+            duration = music.getDuration();
+        }
+    }
+}
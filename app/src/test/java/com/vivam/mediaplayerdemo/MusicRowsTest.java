@@ -0,0 +1,74 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MusicRowsTest {
+
+    @Test
+    public void addAll_precomputesDurations() {
+        List<MusicBean> list = PlayQueueTest.musicList(1, 3);
+        list.get(0).setDuration(65000);
+        list.get(1).setDuration(2 * 3600000L + 1000);
+        list.get(2).setDuration(0);
+        MusicRows rows = MusicRows.of(list);
+
+        assertEquals(3, rows.size());
+        assertEquals("01:05", duration(rows, 0));
+        assertEquals("02:00:01", duration(rows, 1));
+        assertEquals("00:00", duration(rows, 2));
+        assertEquals(2, rows.getId(1));
+        assertSame(list.get(2), rows.get(2));
+    }
+
+    @Test
+    public void hundredHours_isLeftForBind() {
+        List<MusicBean> list = PlayQueueTest.musicList(1, 1);
+        list.get(0).setDuration(100 * 3600000L);
+
+        assertEquals(0, MusicRows.of(list).getDurationLength(0));
+    }
+
+    @Test
+    public void growing_keepsEarlierRows() {
+        MusicRows rows = new MusicRows();
+        for (int i = 0; i < 10; i++) {
+            rows.addAll(PlayQueueTest.musicList(1 + i * 100, 100));
+        }
+
+        assertEquals(1000, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i + 1, rows.getId(i));
+            assertEquals(MediaUtils.dateFormat(rows.get(i).getDuration()), duration(rows, i));
+        }
+    }
+
+    @Test
+    public void snapshot_ignoresLaterRows() {
+        MusicRows rows = MusicRows.of(PlayQueueTest.musicList(1, 16));
+        List<MusicBean> snapshot = rows.snapshot();
+        rows.addAll(PlayQueueTest.musicList(100, 50));
+
+        assertEquals(16, snapshot.size());
+        assertEquals(16, snapshot.get(15).getId());
+        assertEquals(66, rows.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshot_isReadOnly() {
+        MusicRows.of(PlayQueueTest.musicList(1, 2)).snapshot().remove(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfRangeThrows() {
+        MusicRows.of(PlayQueueTest.musicList(1, 2)).get(2);
+    }
+
+    private static String duration(MusicRows rows, int position) {
+        return new String(rows.getDurationChars(), rows.getDurationOffset(position),
+                rows.getDurationLength(position));
+    }
+}
@@ -0,0 +1,132 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class PcmRingBufferTest {
+
+    // stereo 16 bit, 4 bytes a frame, 100 frames a block
+    private static final int BLOCK = 400;
+
+    private DirectBufferPool mPool;
+    private PcmRingBuffer mBuffer;
+
+    @Before
+    public void setUp() {
+        mPool = new DirectBufferPool(BLOCK, 10 * BLOCK);
+        mBuffer = new PcmRingBuffer(mPool, 4 * BLOCK, 2 * BLOCK);
+        mBuffer.setFormat(1000, 2);
+    }
+
+    /** Frames whose bytes all hold the frame number, modulo 256. */
+    private static ByteBuffer frames(long first, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * 4);
+        for (long frame = first; frame < first + count; frame++) {
+            for (int i = 0; i < 4; i++) {
+                buffer.put((byte) frame);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void assertReads(long firstFrame, int count) {
+        byte[] data = new byte[count * 4];
+        assertEquals(data.length, mBuffer.read(data, 0, data.length));
+        for (int i = 0; i < count; i++) {
+            assertEquals("frame " + (firstFrame + i), (byte) (firstFrame + i), data[i * 4]);
+            assertEquals((byte) (firstFrame + i), data[i * 4 + 3]);
+        }
+    }
+
+    @Test
+    public void writeThenRead_acrossBlocks() {
+        assertEquals(150 * 4, mBuffer.write(frames(0, 150)));
+        assertEquals(150, mBuffer.getEndFrame());
+        assertReads(0, 120);
+        assertReads(120, 30);
+        assertEquals(0, mBuffer.readableBytes());
+    }
+
+    @Test
+    public void write_stopsAheadOfTheReadPosition() {
+        ByteBuffer src = frames(0, 300);
+        assertEquals(2 * BLOCK, mBuffer.write(src));
+        assertEquals(0, mBuffer.writableBytes());
+        assertEquals(100 * 4, src.remaining());
+
+        assertReads(0, 50);
+        assertEquals(50 * 4, mBuffer.write(src));
+    }
+
+    @Test
+    public void partialFrames_areLeftInTheSource() {
+        ByteBuffer src = ByteBuffer.allocate(10);
+        assertEquals(8, mBuffer.write(src));
+        assertEquals(2, src.remaining());
+    }
+
+    @Test
+    public void seekBack_isServedFromHistory() {
+        for (int i = 0; i < 3; i++) {
+            mBuffer.write(frames(i * 100, 100));
+            assertReads(i * 100, 100);
+        }
+        assertTrue(mBuffer.seekTo(20));
+        assertReads(20, 10);
+        // ahead into what was decoded already
+        assertTrue(mBuffer.seekTo(250));
+        assertReads(250, 50);
+    }
+
+    @Test
+    public void history_isRecycledAtTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(BLOCK, mBuffer.write(frames(i * 100, 100)));
+            assertReads(i * 100, 100);
+        }
+        // four blocks at most, the oldest ones made room
+        assertEquals(4 * BLOCK, mBuffer.getBufferedBytes());
+        assertEquals(600, mBuffer.getStartFrame());
+        assertFalse(mBuffer.seekTo(550));
+        assertTrue(mBuffer.seekTo(600));
+        assertReads(600, 100);
+    }
+
+    @Test
+    public void exhaustedPool_recyclesHistory() {
+        DirectBufferPool pool = new DirectBufferPool(BLOCK, 2 * BLOCK);
+        PcmRingBuffer buffer = new PcmRingBuffer(pool, 8 * BLOCK, 2 * BLOCK);
+        buffer.setFormat(1000, 2);
+        byte[] data = new byte[BLOCK];
+        for (int i = 0; i < 5; i++) {
+            assertEquals(BLOCK, buffer.write(frames(i * 100, 100)));
+            assertEquals(BLOCK, buffer.read(data, 0, data.length));
+        }
+        assertEquals(2 * BLOCK, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void seekOutside_isRefused_resetStartsANewRange() {
+        mBuffer.write(frames(0, 100));
+        assertFalse(mBuffer.seekTo(5000));
+        assertEquals(0, mBuffer.getReadFrame());
+
+        mBuffer.reset(5000);
+        assertEquals(0, mPool.getAllocatedBytes() - mPool.getFreeCount() * BLOCK);
+        mBuffer.write(frames(5000, 10));
+        assertReads(5000, 10);
+    }
+
+    @Test
+    public void timeConversion_followsTheSampleRate() {
+        mBuffer.setFormat(44100, 2);
+        assertEquals(44100, mBuffer.frameAt(1000000));
+        assertEquals(500000, mBuffer.timeAt(22050));
+        assertEquals(4, mBuffer.getFrameSize());
+    }
+}
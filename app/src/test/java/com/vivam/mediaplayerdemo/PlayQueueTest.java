@@ -0,0 +1,162 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlayQueueTest {
+
+    private PlayQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mQueue = new PlayQueue();
+        mQueue.setAll(musicList(10, 15));
+    }
+
+    @Test
+    public void navigation_wrapsAround() {
+        assertNull(mQueue.current());
+        assertTrue(mQueue.moveTo(24));
+
+        assertEquals(14, mQueue.getPosition());
+        assertEquals(10, mQueue.moveToNext().getId());
+        assertEquals(24, mQueue.moveToPrevious().getId());
+        assertEquals(23, mQueue.moveToPrevious().getId());
+        assertEquals(24, mQueue.peekNext().getId());
+    }
+
+    @Test
+    public void moveTo_unknownId() {
+        mQueue.setPosition(2);
+        assertFalse(mQueue.moveTo(99));
+        assertEquals(2, mQueue.getPosition());
+    }
+
+    @Test
+    public void add_shiftsCursorAndIndex() {
+        mQueue.moveTo(12);
+        mQueue.add(0, music(100));
+        mQueue.add(music(101));
+
+        assertEquals(17, mQueue.size());
+        assertEquals(3, mQueue.getPosition());
+        assertEquals(12, mQueue.current().getId());
+        assertEquals(0, mQueue.indexOf(100));
+        assertEquals(1, mQueue.indexOf(10));
+        assertEquals(16, mQueue.indexOf(101));
+    }
+
+    @Test
+    public void remove_current() {
+        mQueue.moveTo(12);
+        mQueue.remove(2);
+
+        assertEquals(PlayQueue.NO_POSITION, mQueue.indexOf(12));
+        assertEquals(13, mQueue.current().getId());
+        assertEquals(2, mQueue.indexOf(13));
+
+        mQueue.moveTo(24);
+        mQueue.remove(mQueue.size() - 1);
+        assertEquals(10, mQueue.current().getId());
+    }
+
+    @Test
+    public void remove_lastEntry() {
+        PlayQueue queue = new PlayQueue();
+        queue.add(music(1));
+        queue.setPosition(0);
+        queue.remove(0);
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.current());
+        assertEquals(PlayQueue.NO_POSITION, queue.nextPosition());
+    }
+
+    @Test
+    public void move_keepsCursorOnSameTrack() {
+        mQueue.moveTo(11);
+        mQueue.move(0, 10);
+        assertEquals(11, mQueue.current().getId());
+        assertEquals(10, mQueue.indexOf(10));
+        assertEquals(0, mQueue.indexOf(11));
+
+        mQueue.move(14, 0);
+        assertEquals(11, mQueue.current().getId());
+        assertEquals(0, mQueue.indexOf(24));
+    }
+
+    @Test
+    public void setAllIds_metadataFilledLater() {
+        PlayQueue queue = new PlayQueue();
+        queue.setAll(new long[] {5, 6, 7});
+
+        assertTrue(queue.moveTo(6));
+        assertNull(queue.current());
+
+        queue.set(1, music(6));
+        assertEquals(6, queue.current().getId());
+        assertArrayEquals(new long[] {5, 6, 7}, queue.getIds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void set_wrongId() {
+        mQueue.set(0, music(99));
+    }
+
+    @Test
+    public void randomEdits_matchArrayList() {
+        Random random = new Random(7);
+        List<MusicBean> expected = musicList(0, 200);
+        PlayQueue queue = new PlayQueue();
+        queue.setAll(expected);
+        long nextId = 1000;
+
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || expected.isEmpty()) {
+                int position = random.nextInt(expected.size() + 1);
+                MusicBean music = music(nextId++);
+                expected.add(position, music);
+                queue.add(position, music);
+            } else if (op == 1) {
+                int position = random.nextInt(expected.size());
+                assertSame(expected.remove(position), queue.remove(position));
+            } else {
+                int from = random.nextInt(expected.size());
+                int to = random.nextInt(expected.size());
+                expected.add(to, expected.remove(from));
+                queue.move(from, to);
+            }
+
+            if (i % 50 == 0) {
+                assertEquals(expected.size(), queue.size());
+                for (int j = 0; j < expected.size(); j++) {
+                    assertEquals(j, queue.indexOf(expected.get(j).getId()));
+                    assertSame(expected.get(j), queue.get(j));
+                }
+            }
+        }
+    }
+
+    static MusicBean music(long id) {
+        MusicBean music = new MusicBean();
+        music.setId(id);
+        music.setTitle("Track " + id);
+        music.setDuration(180000);
+        return music;
+    }
+
+    static List<MusicBean> musicList(long firstId, int count) {
+        List<MusicBean> list = new ArrayList<MusicBean>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(music(firstId + i));
+        }
+        return list;
+    }
+}
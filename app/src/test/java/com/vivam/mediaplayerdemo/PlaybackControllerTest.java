@@ -0,0 +1,278 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlaybackControllerTest {
+
+    private FakePlayer.Factory mFactory;
+    private RecordingCallback mCallback;
+    private PlaybackController mController;
+
+    @Before
+    public void setUp() {
+        mFactory = new FakePlayer.Factory();
+        mCallback = new RecordingCallback();
+        mController = new PlaybackController(mFactory, mCallback);
+    }
+
+    @Test
+    public void play_startsOnlyOncePrepared() {
+        mController.play(1);
+        assertEquals(PlaybackController.STATE_PREPARING, mController.getState());
+        assertTrue(mFactory.started.isEmpty());
+
+        current().finishPrepare();
+
+        assertEquals(PlaybackController.STATE_PLAYING, mController.getState());
+        assertEquals(Arrays.asList(1L), mFactory.started);
+        assertEquals(Arrays.asList(1L), mCallback.started);
+    }
+
+    @Test
+    public void supersededRequests_neverReachStart() {
+        for (long id = 1; id <= 10; id++) {
+            mController.play(id);
+        }
+        // a single player is reused, every request reset the one before it
+        assertEquals(1, mFactory.created.size());
+        assertEquals(9, current().resetCount);
+
+        current().finishPrepare();
+
+        assertEquals(Arrays.asList(10L), mFactory.started);
+        assertEquals(Arrays.asList(10L), mCallback.started);
+        assertEquals(10L, mController.getCurrentId());
+    }
+
+    @Test
+    public void supersededRequest_afterPrepareCompleted() {
+        mController.play(1);
+        current().finishPrepare();
+        mController.play(2);
+        mController.play(3);
+        current().finishPrepare();
+
+        assertEquals(Arrays.asList(1L, 3L), mFactory.started);
+    }
+
+    @Test
+    public void pauseWhilePreparing_doesNotStart() {
+        mController.play(1);
+        mController.pause();
+        current().finishPrepare();
+
+        assertEquals(PlaybackController.STATE_PAUSED, mController.getState());
+        assertTrue(mFactory.started.isEmpty());
+
+        mController.resume();
+        assertEquals(PlaybackController.STATE_PLAYING, mController.getState());
+    }
+
+    @Test
+    public void seekWhilePreparing_isAppliedOncePrepared() {
+        mController.play(1);
+        mController.seekTo(500);
+        assertEquals(0, current().position);
+
+        current().finishPrepare();
+        assertEquals(500, current().position);
+    }
+
+    @Test
+    public void prepareNext_chainsAndSwitchesOnCompletion() {
+        mController.play(1);
+        current().finishPrepare();
+        mController.prepareNext(2);
+        FakePlayer first = current();
+        FakePlayer second = mFactory.created.get(1);
+        second.finishPrepare();
+
+        assertSame(second, first.next);
+
+        first.complete();
+
+        assertSame(second, current());
+        assertEquals(2L, mController.getCurrentId());
+        assertEquals(Arrays.asList(2L), mCallback.changed);
+        assertEquals(Arrays.asList(1L, 2L), mFactory.started);
+        // the previous player is recycled for the track after
+        assertEquals(-1, first.dataSource);
+        assertEquals(PlaybackController.NO_ID, mController.getNextId());
+    }
+
+    @Test
+    public void playPreparedNext_switchesWithoutPreparing() {
+        mController.play(1);
+        current().finishPrepare();
+        mController.prepareNext(2);
+        mFactory.created.get(1).finishPrepare();
+
+        mController.play(2);
+
+        assertEquals(PlaybackController.STATE_PLAYING, mController.getState());
+        assertEquals(Arrays.asList(1L, 2L), mFactory.started);
+        assertEquals(2, mFactory.created.size());
+    }
+
+    @Test
+    public void completionWithoutNext_reportsCompletion() {
+        mController.play(1);
+        current().finishPrepare();
+        current().complete();
+
+        assertEquals(PlaybackController.STATE_COMPLETED, mController.getState());
+        assertEquals(Arrays.asList(1L), mCallback.completed);
+    }
+
+    @Test
+    public void error_thenPlayRecovers() {
+        mController.play(1);
+        current().fail();
+        assertEquals(PlaybackController.STATE_ERROR, mController.getState());
+        assertEquals(Arrays.asList(1L), mCallback.errors);
+
+        mController.play(2);
+        current().finishPrepare();
+        assertEquals(Arrays.asList(2L), mFactory.started);
+    }
+
+    @Test
+    public void badDataSource_reportsError() {
+        mController.play(-5);
+        assertEquals(PlaybackController.STATE_ERROR, mController.getState());
+        assertEquals(Arrays.asList(-5L), mCallback.errors);
+    }
+
+    @Test
+    public void metrics_followThePlaybackPath() {
+        PlaybackMetrics metrics = mController.getMetrics();
+        metrics.onPlayRequested();
+        mController.play(1);
+        assertEquals(1, metrics.getSetDataSourceLatency().getCount());
+        assertEquals(0, metrics.getRequestToStartLatency().getCount());
+        current().finishPrepare();
+        assertEquals(1, metrics.getPrepareLatency().getCount());
+        assertEquals(1, metrics.getRequestToStartLatency().getCount());
+
+        mController.prepareNext(2);
+        mFactory.created.get(1).finishPrepare();
+        current().complete();
+        assertEquals(2, metrics.getStartCount());
+        assertEquals(1, metrics.getGaplessTransitionCount());
+
+        // without a next track the gap lasts until the next start
+        current().complete();
+        assertEquals(0, metrics.getCompletionGap().getCount());
+        mController.play(3);
+        current().finishPrepare();
+        assertEquals(1, metrics.getCompletionGap().getCount());
+        assertEquals(1, metrics.getRequestToStartLatency().getCount());
+        assertEquals(3, metrics.getStartCount());
+        assertEquals(3, metrics.getSetDataSourceLatency().getCount());
+    }
+
+    @Test
+    public void setFactory_carriesOnAtTheSamePosition() {
+        mController.play(1);
+        current().finishPrepare();
+        current().seekTo(400);
+        FakePlayer old = current();
+
+        FakePlayer.Factory other = new FakePlayer.Factory();
+        mController.setFactory(other);
+        assertTrue(old.released);
+        assertEquals(PlaybackController.STATE_PREPARING, mController.getState());
+
+        other.created.get(0).finishPrepare();
+        assertEquals(PlaybackController.STATE_PLAYING, mController.getState());
+        assertEquals(400, other.created.get(0).position);
+        assertEquals(1L, other.created.get(0).dataSource);
+    }
+
+    @Test
+    public void setFactory_whilePaused_staysPaused() {
+        mController.play(1);
+        current().finishPrepare();
+        mController.pause();
+
+        FakePlayer.Factory other = new FakePlayer.Factory();
+        mController.setFactory(other);
+        other.created.get(0).finishPrepare();
+        assertEquals(PlaybackController.STATE_PAUSED, mController.getState());
+        assertTrue(other.started.isEmpty());
+    }
+
+    @Test
+    public void gain_scalesTheVolumeOfEachTrack() {
+        mController.setGain(new PlaybackController.Gain() {
+
+            @Override
+            public float get(long id) {
+                return id == 1 ? 0.5f : 0.25f;
+            }
+        });
+        mController.play(1);
+        current().finishPrepare();
+        mController.prepareNext(2);
+        FakePlayer next = mFactory.created.get(1);
+        next.finishPrepare();
+        assertEquals(0.5f, current().volume, 0f);
+        assertEquals(0.25f, next.volume, 0f);
+
+        mController.setVolume(0.2f);
+        assertEquals(0.1f, current().volume, 1e-6f);
+        assertEquals(0.05f, next.volume, 1e-6f);
+
+        // the next track keeps its own gain once it is current
+        current().complete();
+        assertSame(next, current());
+        mController.setVolume(1.0f);
+        assertEquals(0.25f, current().volume, 0f);
+    }
+
+    /** The player holding the current track, or the first one when nothing is loaded. */
+    private FakePlayer current() {
+        long id = mController.getCurrentId();
+        for (FakePlayer player : mFactory.created) {
+            if (player.dataSource == id) {
+                return player;
+            }
+        }
+        return mFactory.created.get(0);
+    }
+
+    private static class RecordingCallback implements PlaybackController.Callback {
+
+        final List<Long> started = new ArrayList<Long>();
+        final List<Long> changed = new ArrayList<Long>();
+        final List<Long> completed = new ArrayList<Long>();
+        final List<Long> errors = new ArrayList<Long>();
+
+        @Override
+        public void onStarted(long id) {
+            started.add(id);
+        }
+
+        @Override
+        public void onTrackChanged(long id) {
+            changed.add(id);
+        }
+
+        @Override
+        public void onCompletion(long id) {
+            completed.add(id);
+        }
+
+        @Override
+        public void onError(long id) {
+            errors.add(id);
+        }
+    }
+}
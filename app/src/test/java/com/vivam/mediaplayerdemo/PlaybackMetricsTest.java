@@ -0,0 +1,115 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class PlaybackMetricsTest {
+
+    @Test
+    public void requestToStart_timesTheLatestRequest() throws InterruptedException {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.onPlayRequested();
+        Thread.sleep(5);
+        metrics.onPlayRequested();
+        metrics.onStarted();
+        // a start without a request, e.g. after a completion, is not timed
+        metrics.onStarted();
+
+        assertEquals(1, metrics.getRequestToStartLatency().getCount());
+        assertTrue(metrics.getRequestToStartLatency().getMaxNanos() < 5000000);
+        assertEquals(2, metrics.getStartCount());
+    }
+
+    @Test
+    public void error_dropsPendingTimings() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.onPlayRequested();
+        metrics.onCompleted();
+        metrics.onError();
+        metrics.onStarted();
+
+        assertEquals(0, metrics.getRequestToStartLatency().getCount());
+        assertEquals(0, metrics.getCompletionGap().getCount());
+        assertEquals(1, metrics.getErrorCount());
+    }
+
+    @Test
+    public void resume_isTimedToTheStartOrResume() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.onResumed();
+        assertEquals(0, metrics.getResumeLatency().getCount());
+
+        metrics.onResumeRequested();
+        metrics.onResumed();
+        // a prepared again track reports a start instead
+        metrics.onResumeRequested();
+        metrics.onStarted();
+        metrics.onResumeRequested();
+        metrics.onError();
+        metrics.onResumed();
+
+        assertEquals(2, metrics.getResumeLatency().getCount());
+    }
+
+    @Test
+    public void queueDepth() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.onMessageQueued();
+        metrics.onMessageQueued();
+        metrics.onMessageQueued();
+        metrics.onMessagesRemoved(1);
+        metrics.onMessageHandled(2);
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(3, metrics.getMaxQueueDepth());
+        assertEquals(1, metrics.getQueueDelay().getCount());
+        assertTrue(metrics.getQueueDelay().getMaxNanos() >= 2000000);
+
+        metrics.reset();
+        assertEquals(1, metrics.getMaxQueueDepth());
+        assertEquals(0, metrics.getQueueDelay().getCount());
+    }
+
+    @Test
+    public void dump() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.recordPrepare(3000000);
+        StringWriter out = new StringWriter();
+        metrics.dump(new PrintWriter(out));
+        assertTrue(out.toString(), out.toString().contains("prepare: n=1"));
+    }
+
+    @Test
+    public void requestToStart_isSplitByPrefetch() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.onPlayRequested();
+        metrics.onRequestResolved(true);
+        metrics.onStarted();
+        // a new request is cold until it is resolved
+        metrics.onPlayRequested();
+        metrics.onStarted();
+
+        assertEquals(2, metrics.getRequestToStartLatency().getCount());
+        assertEquals(1, metrics.getPrefetchedStartLatency().getCount());
+        assertEquals(1, metrics.getColdStartLatency().getCount());
+    }
+
+    @Test
+    public void commands_areSplitByPath() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.recordCommand(2000000, false);
+        metrics.recordCommand(100000, true);
+        metrics.recordCommand(200000, true);
+        StringWriter out = new StringWriter();
+        metrics.dump(new PrintWriter(out));
+
+        assertEquals(1, metrics.getIntentCommandLatency().getCount());
+        assertEquals(2, metrics.getBinderCommandLatency().getCount());
+        assertTrue(out.toString(), out.toString().contains("command via binder: n=2"));
+        metrics.reset();
+        assertEquals(0, metrics.getBinderCommandLatency().getCount());
+    }
+}
@@ -0,0 +1,133 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlaybackOrderTest {
+
+    private PlayQueue mQueue;
+    private PlaybackOrder mOrder;
+
+    @Before
+    public void setUp() {
+        mQueue = new PlayQueue();
+        mQueue.setAll(PlayQueueTest.musicList(10, 5));
+        mOrder = new PlaybackOrder(mQueue, new Random(5));
+    }
+
+    @Test
+    public void repeatAll_wraps() {
+        mQueue.moveTo(14);
+        assertEquals(0, mOrder.moveToNext(true));
+        assertEquals(4, mOrder.moveToPrevious());
+    }
+
+    @Test
+    public void repeatOff_stopsAtTheEnds() {
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_OFF);
+        mQueue.moveTo(14);
+        assertEquals(PlayQueue.NO_POSITION, mOrder.moveToNext(true));
+        assertEquals(PlayQueue.NO_POSITION, mOrder.moveToNext(false));
+        assertEquals(4, mQueue.getPosition());
+        mQueue.moveTo(10);
+        assertEquals(PlayQueue.NO_POSITION, mOrder.peekPreviousPosition());
+    }
+
+    @Test
+    public void repeatOne_repeatsOnlyOnCompletion() {
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_ONE);
+        mQueue.moveTo(12);
+        assertEquals(2, mOrder.moveToNext(true));
+        assertEquals(3, mOrder.moveToNext(false));
+    }
+
+    @Test
+    public void shuffle_playsEveryEntryThenStartsOver() {
+        mQueue.moveTo(10);
+        mOrder.setShuffleEnabled(true);
+        Set<Integer> seen = new HashSet<Integer>();
+        seen.add(0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(seen.add(mOrder.moveToNext(true)));
+        }
+        assertEquals(5, seen.size());
+
+        // with repeat all a new pass starts, without it playback stops
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_OFF);
+        assertEquals(PlayQueue.NO_POSITION, mOrder.peekNextPosition(true));
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_ALL);
+        int last = mQueue.getPosition();
+        int next = mOrder.moveToNext(true);
+        assertNotEquals(last, next);
+        assertEquals(last, mOrder.moveToPrevious());
+    }
+
+    @Test
+    public void shuffle_singleEntryRepeats() {
+        mQueue.setAll(PlayQueueTest.musicList(10, 1));
+        mQueue.moveTo(10);
+        mOrder.setShuffleEnabled(true);
+        mOrder.onQueueReplaced();
+        assertEquals(0, mOrder.moveToNext(true));
+        assertEquals(0, mOrder.moveToNext(false));
+
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_OFF);
+        assertEquals(PlayQueue.NO_POSITION, mOrder.moveToNext(true));
+    }
+
+    @Test
+    public void shuffle_previousRetracesHistory() {
+        mQueue.moveTo(10);
+        mOrder.setShuffleEnabled(true);
+        int first = mOrder.moveToNext(false);
+        int second = mOrder.moveToNext(false);
+        assertEquals(first, mOrder.moveToPrevious());
+        assertEquals(0, mOrder.moveToPrevious());
+        assertEquals(PlayQueue.NO_POSITION, mOrder.moveToPrevious());
+        assertEquals(first, mOrder.moveToNext(false));
+        assertEquals(second, mOrder.moveToNext(false));
+    }
+
+    @Test
+    public void shuffle_removingCurrent_movesToShuffledNext() {
+        mQueue.moveTo(10);
+        mOrder.setShuffleEnabled(true);
+        long next = mQueue.getId(mOrder.peekNextPosition(false));
+
+        mOrder.remove(0);
+        assertEquals(next, mQueue.getId(mQueue.getPosition()));
+        assertEquals(4, mQueue.size());
+    }
+
+    @Test
+    public void gaplessMove_followsTheOrder() {
+        mQueue.moveTo(10);
+        mOrder.setShuffleEnabled(true);
+        int next = mOrder.peekNextPosition(true);
+        // the controller moved on by itself, the service moves the cursor along
+        mQueue.setPosition(next);
+        mOrder.onMoved();
+        assertEquals(0, mOrder.peekPreviousPosition());
+    }
+
+    @Test
+    public void peekUpcoming_followsTheOrder() {
+        mQueue.moveTo(13);
+        assertArrayEquals(new long[] {14, 10, 11}, mOrder.peekUpcoming(3));
+        assertEquals(4, mOrder.peekUpcoming(10).length);
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_OFF);
+        assertArrayEquals(new long[] {14}, mOrder.peekUpcoming(3));
+
+        mOrder.setShuffleEnabled(true);
+        mOrder.setRepeatMode(PlaybackOrder.REPEAT_ALL);
+        long[] upcoming = mOrder.peekUpcoming(2);
+        assertEquals(upcoming[0], mQueue.getId(mOrder.moveToNext(false)));
+        assertEquals(upcoming[1], mQueue.getId(mOrder.moveToNext(false)));
+    }
+}
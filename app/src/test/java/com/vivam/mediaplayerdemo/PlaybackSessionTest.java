@@ -0,0 +1,215 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PlaybackSessionTest {
+
+    private FakePlayer.Factory mFactory;
+    private PlaybackController mController;
+    private FakeFocus mFocus;
+    private PlaybackSession mSession;
+
+    @Before
+    public void setUp() {
+        mFactory = new FakePlayer.Factory();
+        mController = new PlaybackController(mFactory, new NoCallback());
+        mFocus = new FakeFocus();
+        mSession = new PlaybackSession(mController, mFocus);
+    }
+
+    @Test
+    public void focus_requestedOnPlay_abandonedOnStop() {
+        assertEquals(0, mFocus.requests);
+
+        playPrepared(1);
+        assertTrue(mSession.hasFocus());
+        assertEquals(1, mFocus.requests);
+
+        mSession.stop();
+        assertFalse(mSession.hasFocus());
+        assertEquals(1, mFocus.abandons);
+        assertEquals(PlaybackSession.STATE_PARKED, mSession.getState());
+    }
+
+    @Test
+    public void focusDenied_playsNothing() {
+        mFocus.grant = false;
+        assertFalse(mSession.play(1));
+        assertTrue(mFactory.created.isEmpty());
+        assertEquals(PlaybackSession.STATE_IDLE, mSession.getState());
+    }
+
+    @Test
+    public void transientLoss_resumesOnGain() {
+        playPrepared(1);
+
+        mSession.onFocusChange(PlaybackSession.FOCUS_LOSS_TRANSIENT);
+        assertEquals(PlaybackSession.STATE_INTERRUPTED, mSession.getState());
+        assertFalse(mController.isPlaying());
+
+        mSession.onFocusChange(PlaybackSession.FOCUS_GAIN);
+        assertEquals(PlaybackSession.STATE_ACTIVE, mSession.getState());
+        assertTrue(mController.isPlaying());
+        assertEquals(1, mController.getMetrics().getResumeLatency().getCount());
+    }
+
+    @Test
+    public void userPauseDuringInterruption_isNotResumedOnGain() {
+        playPrepared(1);
+        mSession.onFocusChange(PlaybackSession.FOCUS_LOSS_TRANSIENT);
+        mSession.pause();
+
+        mSession.onFocusChange(PlaybackSession.FOCUS_GAIN);
+        assertFalse(mController.isPlaying());
+        assertEquals(PlaybackSession.STATE_ACTIVE, mSession.getState());
+    }
+
+    @Test
+    public void duck_lowersAndRestoresVolume() {
+        playPrepared(1);
+
+        mSession.onFocusChange(PlaybackSession.FOCUS_LOSS_TRANSIENT_CAN_DUCK);
+        assertEquals(PlaybackSession.STATE_DUCKED, mSession.getState());
+        assertEquals(PlaybackSession.DUCK_VOLUME, player().volume, 0f);
+        assertTrue(mController.isPlaying());
+
+        mSession.onFocusChange(PlaybackSession.FOCUS_GAIN);
+        assertEquals(PlaybackSession.STATE_ACTIVE, mSession.getState());
+        assertEquals(1.0f, player().volume, 0f);
+    }
+
+    @Test
+    public void loss_abandonsFocus_andResumesWithoutReopening() {
+        playPrepared(1);
+        player().position = 300;
+
+        mSession.onFocusChange(PlaybackSession.FOCUS_LOSS);
+        assertEquals(PlaybackSession.STATE_LOST, mSession.getState());
+        assertFalse(mSession.hasFocus());
+        assertEquals(1, mFocus.abandons);
+
+        // a later gain is not ours to act on
+        mSession.onFocusChange(PlaybackSession.FOCUS_GAIN);
+        assertFalse(mController.isPlaying());
+
+        assertTrue(mSession.resume());
+        assertTrue(mController.isPlaying());
+        assertEquals(0, player().resetCount);
+        assertEquals(300, player().position);
+        assertEquals(1, mFactory.created.size());
+        assertEquals(2, mFocus.requests);
+    }
+
+    @Test
+    public void park_reopensOnTheSamePlayer_atTheParkedPosition() {
+        playPrepared(1);
+        FakePlayer player = player();
+        player.position = 400;
+        mSession.onFocusChange(PlaybackSession.FOCUS_LOSS);
+
+        mSession.park();
+        assertEquals(PlaybackSession.STATE_PARKED, mSession.getState());
+        assertEquals(1L, mSession.getParkedId());
+        assertEquals(400, mSession.getParkedPosition());
+        assertEquals(PlaybackController.STATE_IDLE, mController.getState());
+        assertFalse(player.released);
+
+        mSession.resume();
+        player.finishPrepare();
+
+        assertEquals(1, mFactory.created.size());
+        assertEquals(1L, player.dataSource);
+        assertEquals(400, player.position);
+        assertTrue(mController.isPlaying());
+        assertEquals(1, mController.getMetrics().getResumeLatency().getCount());
+    }
+
+    @Test
+    public void park_leavesPlayingSessionAlone() {
+        playPrepared(1);
+        mSession.park();
+        assertEquals(PlaybackSession.STATE_ACTIVE, mSession.getState());
+        assertTrue(mController.isPlaying());
+    }
+
+    @Test
+    public void restore_parksWithoutFocus_andSeekMovesTheParkedPosition() {
+        mSession.restore(7, 1200);
+        assertTrue(mSession.isParked());
+        assertEquals(0, mFocus.requests);
+
+        mSession.seekTo(800);
+        assertEquals(800, mSession.getParkedPosition());
+
+        mSession.resume();
+        player().finishPrepare();
+        assertEquals(Arrays.asList(7L), mFactory.started);
+        assertEquals(800, player().position);
+    }
+
+    @Test
+    public void resume_whenIdle_doesNothing() {
+        assertFalse(mSession.resume());
+        assertEquals(0, mFocus.requests);
+    }
+
+    @Test
+    public void release_releasesPlayers_andAbandonsFocus() {
+        playPrepared(1);
+        mSession.release();
+        assertTrue(player().released);
+        assertFalse(mSession.hasFocus());
+        assertEquals(PlaybackSession.STATE_IDLE, mSession.getState());
+    }
+
+    private void playPrepared(long id) {
+        assertTrue(mSession.play(id));
+        player().finishPrepare();
+    }
+
+    private FakePlayer player() {
+        return mFactory.created.get(0);
+    }
+
+    private static class FakeFocus implements PlaybackSession.AudioFocus {
+
+        boolean grant = true;
+        int requests;
+        int abandons;
+
+        @Override
+        public boolean request() {
+            requests++;
+            return grant;
+        }
+
+        @Override
+        public void abandon() {
+            abandons++;
+        }
+    }
+
+    private static class NoCallback implements PlaybackController.Callback {
+
+        @Override
+        public void onStarted(long id) {
+        }
+
+        @Override
+        public void onTrackChanged(long id) {
+        }
+
+        @Override
+        public void onCompletion(long id) {
+        }
+
+        @Override
+        public void onError(long id) {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class PlaybackStateStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    // collects the scheduled writes, they run when the test says so
+    private final ArrayList<Runnable> mTasks = new ArrayList<Runnable>();
+    private final Executor mExecutor = new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+    };
+
+    private File file() {
+        return new File(mFolder.getRoot(), "playback_state");
+    }
+
+    private PlaybackStateStore reopen() {
+        return new PlaybackStateStore(file(), mExecutor);
+    }
+
+    private void runTasks() {
+        while (!mTasks.isEmpty()) {
+            mTasks.remove(0).run();
+        }
+    }
+
+    @Test
+    public void nothingStored_loadsNull() {
+        assertNull(reopen().load());
+    }
+
+    @Test
+    public void queueAndCheckpoint_survive() {
+        PlaybackStateStore store = reopen();
+        store.setQueue(new long[]{30, 10, 20});
+        store.checkpoint(10, 4500);
+        runTasks();
+
+        PlaybackStateStore.State state = reopen().load();
+        assertArrayEquals(new long[]{30, 10, 20}, state.getIds());
+        assertEquals(10, state.getCurrentId());
+        assertEquals(4500, state.getPosition());
+    }
+
+    @Test
+    public void changes_areCoalescedIntoOneWrite() {
+        PlaybackStateStore store = reopen();
+        store.setQueue(new long[]{1, 2, 3});
+        for (int i = 1; i <= 100; i++) {
+            store.checkpoint(2, i * 1000);
+        }
+        store.add(3, 4);
+        assertEquals(1, mTasks.size());
+        runTasks();
+
+        store.checkpoint(4, 0);
+        assertEquals(1, mTasks.size());
+        runTasks();
+
+        PlaybackStateStore.State state = reopen().load();
+        assertArrayEquals(new long[]{1, 2, 3, 4}, state.getIds());
+        assertEquals(4, state.getCurrentId());
+    }
+
+    @Test
+    public void edits_areAppendedAndReplayed() {
+        PlaybackStateStore store = reopen();
+        store.setQueue(new long[]{1, 2, 3, 4, 5});
+        runTasks();
+        long snapshotLength = file().length();
+
+        store.add(0, 9);
+        store.remove(3);
+        store.move(0, 3);
+        store.checkpoint(5, 1234);
+        runTasks();
+
+        // a few bytes per edit, the queue is not written again
+        assertTrue(file().length() - snapshotLength < 64);
+        PlaybackStateStore.State state = reopen().load();
+        assertArrayEquals(new long[]{1, 2, 4, 9, 5}, state.getIds());
+        assertEquals(5, state.getCurrentId());
+        assertEquals(1234, state.getPosition());
+    }
+
+    @Test
+    public void largeQueue_isCompact() {
+        long[] ids = new long[50000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1000 + i * 3;
+        }
+        PlaybackStateStore store = reopen();
+        store.setQueue(ids);
+        runTasks();
+
+        assertTrue(file().length() < 2 * ids.length);
+        assertArrayEquals(ids, reopen().load().getIds());
+    }
+
+    @Test
+    public void tornTail_keepsRecordsBeforeIt() throws IOException {
+        PlaybackStateStore store = reopen();
+        store.setQueue(new long[]{1, 2, 3});
+        store.checkpoint(2, 100);
+        runTasks();
+        long goodLength = file().length();
+        store.checkpoint(3, 200);
+        runTasks();
+
+        RandomAccessFile raf = new RandomAccessFile(file(), "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        PlaybackStateStore reopened = reopen();
+        PlaybackStateStore.State state = reopened.load();
+        assertEquals(2, state.getCurrentId());
+        assertEquals(100, state.getPosition());
+        assertEquals(goodLength, file().length());
+
+        // appends go on after the cut
+        reopened.checkpoint(3, 300);
+        runTasks();
+        assertEquals(300, reopen().load().getPosition());
+    }
+
+    @Test
+    public void manyCheckpoints_compactTheLog() {
+        PlaybackStateStore store = reopen();
+        store.setQueue(new long[]{1, 2, 3});
+        runTasks();
+        for (int i = 1; i <= 5000; i++) {
+            store.checkpoint(i % 3 + 1, i * 1000L);
+            runTasks();
+        }
+
+        // rewritten every 16K or so instead of growing by every checkpoint
+        assertTrue(file().length() < 20 * 1024);
+        PlaybackStateStore.State state = reopen().load();
+        assertArrayEquals(new long[]{1, 2, 3}, state.getIds());
+        assertEquals(5000 % 3 + 1, state.getCurrentId());
+        assertEquals(5000000L, state.getPosition());
+    }
+}
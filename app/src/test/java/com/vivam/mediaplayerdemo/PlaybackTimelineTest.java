@@ -0,0 +1,53 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlaybackTimelineTest {
+
+    private static final MusicBean MUSIC = PlayQueueTest.music(1);
+
+    @Test
+    public void playing_advancesWithRealtime() {
+        PlaybackTimeline timeline = new PlaybackTimeline(MUSIC,
+                PlaybackController.STATE_PLAYING, 5000, 100000, 1.0f, 180000);
+
+        assertEquals(5000, timeline.positionAt(100000));
+        assertEquals(5016, timeline.positionAt(100016));
+        assertEquals(65000, timeline.positionAt(160000));
+    }
+
+    @Test
+    public void paused_staysAtAnchor() {
+        PlaybackTimeline timeline = new PlaybackTimeline(MUSIC,
+                PlaybackController.STATE_PAUSED, 5000, 100000, 1.0f, 180000);
+
+        assertEquals(5000, timeline.positionAt(160000));
+        assertFalse(timeline.isPlaying());
+    }
+
+    @Test
+    public void rate_scalesElapsedTime() {
+        PlaybackTimeline timeline = new PlaybackTimeline(MUSIC,
+                PlaybackController.STATE_PLAYING, 0, 0, 1.5f, 180000);
+
+        assertEquals(3000, timeline.positionAt(2000));
+    }
+
+    @Test
+    public void position_isClamped() {
+        PlaybackTimeline timeline = new PlaybackTimeline(MUSIC,
+                PlaybackController.STATE_PLAYING, 170000, 0, 1.0f, 180000);
+
+        assertEquals(180000, timeline.positionAt(60000));
+        // a realtime before the anchor does not run the clock backwards
+        assertEquals(170000, timeline.positionAt(-1000));
+    }
+
+    @Test
+    public void idle() {
+        assertEquals(PlaybackController.NO_ID, PlaybackTimeline.IDLE.getMusicId());
+        assertEquals(0, PlaybackTimeline.IDLE.positionAt(1000));
+    }
+}
@@ -0,0 +1,163 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    private SearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new SearchIndex();
+        mIndex.addAll(titled("Bohemian Rhapsody", "Café del Mar", "Don't Stop Me Now",
+                "Stop! In the Name of Love", "Niño", "LOVE STORY", null));
+    }
+
+    @Test
+    public void fold_lowerCasesAndStripsAccents() {
+        assertEquals(" cafe del mar", SearchIndex.fold("Café  del Mar!"));
+        assertEquals(" don t stop", SearchIndex.fold("Don't Stop"));
+        assertEquals(" ", SearchIndex.fold(null));
+    }
+
+    @Test
+    public void substring_matchesAnywhere() {
+        assertEquals(ids(1), search("hemia"));
+        assertEquals(ids(4, 6), search("love"));
+        assertEquals(ids(4, 6), search("OVE"));
+    }
+
+    @Test
+    public void accentsAndCase_areFolded() {
+        assertEquals(ids(2), search("cafe"));
+        assertEquals(ids(2), search("CAFÉ"));
+        assertEquals(ids(5), search("nino"));
+    }
+
+    @Test
+    public void shortWords_matchWordStarts() {
+        assertEquals(ids(3, 4, 6), search("st"));
+        assertEquals(ids(2, 3), search("m"));
+        // "op" is inside "stop" but starts no word
+        assertEquals(ids(), search("op"));
+    }
+
+    @Test
+    public void allWords_haveToMatch() {
+        assertEquals(ids(4), search("stop love"));
+        assertEquals(ids(3), search("stop me"));
+        assertEquals(ids(), search("stop rhapsody"));
+    }
+
+    @Test
+    public void unknownGram_isEmpty() {
+        assertEquals(ids(), search("xyz"));
+        assertEquals(ids(), search(""));
+        assertEquals(ids(), search("  !! "));
+    }
+
+    @Test
+    public void limit_isApplied() {
+        assertEquals(1, mIndex.search("love", 1, null).size());
+    }
+
+    @Test
+    public void cancelled_returnsNull() {
+        SearchIndex index = new SearchIndex();
+        List<MusicBean> list = PlayQueueTest.musicList(1, 5000);
+        for (MusicBean music : list) {
+            music.setTitle("track " + music.getId());
+        }
+        index.addAll(list);
+
+        assertNull(index.search("track", Integer.MAX_VALUE, new AtomicBoolean(true)));
+        assertEquals(5000, index.search("track", Integer.MAX_VALUE, new AtomicBoolean()).size());
+    }
+
+    @Test
+    public void removeAndReplace() {
+        assertTrue(mIndex.remove(6));
+        assertFalse(mIndex.remove(6));
+        assertEquals(ids(4), search("love"));
+
+        MusicBean renamed = PlayQueueTest.music(1);
+        renamed.setTitle("Love Me Do");
+        mIndex.add(renamed);
+        assertEquals(ids(4, 1), search("love"));
+        assertEquals(ids(), search("rhapsody"));
+        assertEquals(6, mIndex.size());
+    }
+
+    @Test
+    public void apply_libraryDiff() {
+        List<MusicBean> current = new ArrayList<MusicBean>(titled("Bohemian Rhapsody",
+                "Café del Mar", "Don't Stop Me Now"));
+        MusicBean added = PlayQueueTest.music(10);
+        added.setTitle("Another One Bites the Dust");
+        current.add(added);
+        MusicBean changed = current.get(1);
+        changed.setTitle("Cafe Tacvba");
+        changed.setDateModified(1);
+
+        LibraryDiff diff = LibraryDiff.compute(titled("Bohemian Rhapsody", "Café del Mar",
+                "Don't Stop Me Now", "Stop! In the Name of Love", "Niño", "LOVE STORY", null),
+                current);
+        mIndex.apply(diff);
+
+        assertEquals(4, mIndex.size());
+        assertEquals(ids(2), search("cafe"));
+        assertEquals(ids(), search("mar"));
+        assertEquals(ids(), search("love"));
+        assertEquals(ids(10), search("dust"));
+    }
+
+    @Test
+    public void manyRemovals_rebuild() {
+        SearchIndex index = new SearchIndex();
+        List<MusicBean> list = PlayQueueTest.musicList(1, 1000);
+        for (MusicBean music : list) {
+            music.setTitle("song " + music.getId());
+        }
+        index.addAll(list);
+        long before = index.sizeInBytes();
+        for (int i = 1; i <= 900; i++) {
+            index.remove(i);
+        }
+
+        assertEquals(100, index.size());
+        assertEquals(100, index.search("song", Integer.MAX_VALUE, null).size());
+        assertEquals(1, index.search("song 950", Integer.MAX_VALUE, null).size());
+        assertTrue(index.sizeInBytes() <= before);
+    }
+
+    private List<Long> search(String query) {
+        List<Long> ids = new ArrayList<Long>();
+        for (MusicBean music : mIndex.search(query, Integer.MAX_VALUE, null)) {
+            ids.add(music.getId());
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(long... values) {
+        List<Long> ids = new ArrayList<Long>();
+        for (long value : values) {
+            ids.add(value);
+        }
+        return ids;
+    }
+
+    private static List<MusicBean> titled(String... titles) {
+        List<MusicBean> list = PlayQueueTest.musicList(1, titles.length);
+        for (int i = 0; i < titles.length; i++) {
+            list.get(i).setTitle(titles[i]);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,66 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SeekCoalescerTest {
+
+    @Test
+    public void firstTarget_isDueRightAway() {
+        SeekCoalescer seeks = new SeekCoalescer(100);
+        assertEquals(0, seeks.offer(500, 1000));
+        assertEquals(500, seeks.take(1000));
+    }
+
+    @Test
+    public void targetsWhileScheduled_keepOnlyTheLatest() {
+        SeekCoalescer seeks = new SeekCoalescer(100);
+        assertEquals(0, seeks.offer(100, 1000));
+        assertEquals(-1, seeks.offer(200, 1000));
+        assertEquals(-1, seeks.offer(300, 1001));
+
+        assertEquals(300, seeks.take(1002));
+        assertEquals(SeekCoalescer.NO_TARGET, seeks.take(1003));
+    }
+
+    @Test
+    public void nextTarget_waitsForTheInterval() {
+        SeekCoalescer seeks = new SeekCoalescer(100);
+        seeks.offer(100, 1000);
+        seeks.take(1000);
+
+        assertEquals(70, seeks.offer(200, 1030));
+        seeks.take(1100);
+        assertEquals(0, seeks.offer(300, 1250));
+    }
+
+    @Test
+    public void drag_costsOneSeekPerInterval() {
+        SeekCoalescer seeks = new SeekCoalescer(100);
+        long due = -1;
+        // a target every 16ms for two seconds, taken when due
+        for (long now = 0; now <= 2000; now += 16) {
+            if (due >= 0 && now >= due) {
+                seeks.take(now);
+                due = -1;
+            }
+            long delay = seeks.offer(now, now);
+            if (delay >= 0) {
+                due = now + delay;
+            }
+        }
+        assertEquals(126, seeks.getOfferedCount());
+        assertTrue(seeks.getTakenCount() <= 21);
+    }
+
+    @Test
+    public void clear_dropsThePendingTarget() {
+        SeekCoalescer seeks = new SeekCoalescer(100);
+        seeks.offer(100, 1000);
+        seeks.clear();
+        assertEquals(SeekCoalescer.NO_TARGET, seeks.take(1000));
+        // nothing is scheduled any more, the next offer schedules again
+        assertEquals(0, seeks.offer(200, 1000));
+    }
+}
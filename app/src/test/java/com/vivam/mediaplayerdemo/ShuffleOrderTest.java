@@ -0,0 +1,224 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShuffleOrderTest {
+
+    private PlayQueue mQueue;
+    private ShuffleOrder mOrder;
+
+    @Before
+    public void setUp() {
+        mQueue = new PlayQueue();
+        mQueue.setAll(PlayQueueTest.musicList(1, 1000));
+        mOrder = new ShuffleOrder(mQueue, new Random(7));
+    }
+
+    @Test
+    public void onePass_visitsEveryTrackOnce() {
+        mOrder.reset(500);
+        Set<Long> seen = new HashSet<Long>();
+        seen.add(mOrder.current());
+        long id;
+        while ((id = mOrder.next()) != ShuffleOrder.NO_ID) {
+            assertTrue("repeated " + id, seen.add(id));
+        }
+        assertEquals(1000, seen.size());
+        assertEquals(ShuffleOrder.NO_ID, mOrder.peekNext());
+    }
+
+    @Test
+    public void isShuffled() {
+        mOrder.reset(ShuffleOrder.NO_ID);
+        int inPlace = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (mOrder.next() == i + 1) {
+                inPlace++;
+            }
+        }
+        assertTrue(inPlace + " in place", inPlace < 20);
+    }
+
+    @Test
+    public void previousAndNext_retraceTheOrder() {
+        mOrder.reset(1);
+        List<Long> forward = new ArrayList<Long>();
+        forward.add(1L);
+        for (int i = 0; i < 20; i++) {
+            forward.add(mOrder.next());
+        }
+        for (int i = 19; i >= 0; i--) {
+            assertEquals(forward.get(i), (Long) mOrder.previous());
+        }
+        assertEquals(ShuffleOrder.NO_ID, mOrder.previous());
+        for (int i = 1; i <= 20; i++) {
+            assertEquals(forward.get(i), (Long) mOrder.next());
+        }
+        assertEquals(21, mOrder.getOrderedCount());
+    }
+
+    @Test
+    public void peekNext_isStable() {
+        mOrder.reset(1);
+        long next = mOrder.peekNext();
+        assertEquals(next, mOrder.peekNext());
+        assertEquals(next, mOrder.next());
+    }
+
+    @Test
+    public void peekAhead_isTheComingOrder() {
+        mOrder.reset(1);
+        long[] ahead = mOrder.peekAhead(5);
+        assertEquals(5, ahead.length);
+        assertEquals(ahead[0], mOrder.peekNext());
+        mOrder.onRemoved(ahead[1]);
+        for (long id : new long[] {ahead[0], ahead[2], ahead[3], ahead[4]}) {
+            assertEquals(id, mOrder.next());
+        }
+
+        PlayQueue small = new PlayQueue();
+        small.setAll(PlayQueueTest.musicList(1, 3));
+        ShuffleOrder order = new ShuffleOrder(small, new Random(1));
+        order.reset(2);
+        assertEquals(2, order.peekAhead(10).length);
+    }
+
+    @Test
+    public void edits_keepTheOrder() {
+        mOrder.reset(1);
+        List<Long> played = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            played.add(mOrder.next());
+        }
+        // remove one already played, then walk back over it
+        long removed = played.get(4);
+        mQueue.remove(mQueue.indexOf(removed));
+        mOrder.onRemoved(removed);
+        for (int i = 8; i >= 0; i--) {
+            if (i != 4) {
+                assertEquals(played.get(i), (Long) mOrder.previous());
+            }
+        }
+
+        MusicBean added = PlayQueueTest.music(5000);
+        mQueue.add(0, added);
+        mOrder.onAdded(added.getId());
+
+        Set<Long> rest = new HashSet<Long>();
+        long id;
+        mOrder.moveTo(played.get(9));
+        while ((id = mOrder.next()) != ShuffleOrder.NO_ID) {
+            assertTrue(rest.add(id));
+        }
+        assertTrue(rest.contains(5000L));
+        assertFalse(rest.contains(removed));
+        // 1000 queued after the edits, 10 of them handed out before
+        assertEquals(1000 - 10, rest.size());
+    }
+
+    @Test
+    public void edits_afterPoolFilled() {
+        mOrder.reset(1);
+        for (int i = 0; i < 700; i++) {
+            mOrder.next();
+        }
+        Set<Long> remaining = new HashSet<Long>();
+        for (long id = 1; id <= 1000; id++) {
+            remaining.add(id);
+        }
+        mOrder.moveTo(1);
+        remaining.remove(1L);
+        for (int i = 0; i < 700; i++) {
+            remaining.remove(mOrder.next());
+        }
+        long gone = remaining.iterator().next();
+        mQueue.remove(mQueue.indexOf(gone));
+        mOrder.onRemoved(gone);
+        remaining.remove(gone);
+        mQueue.add(PlayQueueTest.music(2000));
+        mOrder.onAdded(2000);
+        remaining.add(2000L);
+
+        long id;
+        while ((id = mOrder.next()) != ShuffleOrder.NO_ID) {
+            assertTrue("unexpected " + id, remaining.remove(id));
+        }
+        assertTrue(remaining.isEmpty());
+    }
+
+    @Test
+    public void edits_whilePoolIsCollected() {
+        mOrder.reset(1);
+        Set<Long> remaining = new HashSet<Long>();
+        for (long id = 2; id <= 1000; id++) {
+            remaining.add(id);
+        }
+        // past a quarter, part of the queue is in the pool
+        for (int i = 0; i < 300; i++) {
+            remaining.remove(mOrder.next());
+        }
+        for (int position : new int[] {900, 500, 10}) {
+            long gone = mQueue.getId(position);
+            mQueue.remove(position);
+            mOrder.onRemoved(gone);
+            remaining.remove(gone);
+        }
+        mQueue.add(0, PlayQueueTest.music(2000));
+        mOrder.onAdded(2000);
+        remaining.add(2000L);
+
+        long id;
+        while ((id = mOrder.next()) != ShuffleOrder.NO_ID) {
+            assertTrue("unexpected " + id, remaining.remove(id));
+        }
+        assertTrue(remaining.isEmpty());
+    }
+
+    @Test
+    public void noStep_walksTheQueue() {
+        CountingQueue queue = new CountingQueue();
+        queue.setAll(PlayQueueTest.musicList(1, 100000));
+        ShuffleOrder order = new ShuffleOrder(queue, new Random(3));
+        order.reset(ShuffleOrder.NO_ID);
+        int steps = 0;
+        int worst = 0;
+        queue.reads = 0;
+        while (order.next() != ShuffleOrder.NO_ID) {
+            steps++;
+            worst = Math.max(worst, queue.reads);
+            queue.reads = 0;
+        }
+        assertEquals(100000, steps);
+        assertTrue(worst + " queue reads in one step", worst < 100);
+    }
+
+    @Test
+    public void duplicateIds_doNotLoop() {
+        PlayQueue queue = new PlayQueue();
+        queue.setAll(new long[]{1, 1, 1, 2});
+        ShuffleOrder order = new ShuffleOrder(queue, new Random(1));
+        order.reset(1);
+        assertEquals(2, order.next());
+        assertEquals(ShuffleOrder.NO_ID, order.next());
+    }
+
+    private static class CountingQueue extends PlayQueue {
+
+        int reads;
+
+        @Override
+        public long getId(int position) {
+            reads++;
+            return super.getId(position);
+        }
+    }
+}
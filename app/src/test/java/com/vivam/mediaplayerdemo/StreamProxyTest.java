@@ -0,0 +1,274 @@
+package com.vivam.mediaplayerdemo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StreamProxyTest {
+
+    private static final int CHUNK = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final byte[] mContent = new byte[100 * 1000];
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private HttpServer mOrigin;
+    private String mUrl;
+    private StreamProxy mProxy;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(3).nextBytes(mContent);
+        mOrigin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mOrigin.createContext("/track.mp3", new RangeHandler(true));
+        mOrigin.createContext("/plain.mp3", new RangeHandler(false));
+        mOrigin.start();
+        mUrl = "http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/track.mp3";
+
+        mProxy = newProxy();
+    }
+
+    @After
+    public void tearDown() {
+        mProxy.shutdown();
+        mOrigin.stop(0);
+    }
+
+    @Test
+    public void wholeFile_isServed_thenFromCache() throws IOException {
+        long id = mProxy.add(mUrl);
+        assertTrue(id < PlaybackController.NO_ID);
+
+        assertArrayEquals(mContent, get(mProxy.getUrl(id), null, 200));
+        int fetches = mRequests.get();
+        assertEquals(7, fetches);
+        // the first chunk at least was waited for, the rest may have been read ahead
+        assertTrue(mProxy.getMissCount() >= 1);
+
+        long hits = mProxy.getHitCount();
+        assertArrayEquals(mContent, get(mProxy.getUrl(id), null, 200));
+        assertEquals(fetches, mRequests.get());
+        assertEquals(hits + 7, mProxy.getHitCount());
+        assertTrue(mProxy.getHitRatio() >= 0.5);
+        assertEquals(2, mProxy.getFirstByteLatency().getCount());
+    }
+
+    @Test
+    public void range_isServedPartially() throws IOException {
+        long id = mProxy.add(mUrl);
+
+        byte[] body = get(mProxy.getUrl(id), "bytes=40000-", 206);
+        assertArrayEquals(Arrays.copyOfRange(mContent, 40000, mContent.length), body);
+        // chunks before the range are never fetched
+        assertFalse(mProxy.getCache().contains(key(), 0));
+
+        body = get(mProxy.getUrl(id), "bytes=16380-16390", 206);
+        assertArrayEquals(Arrays.copyOfRange(mContent, 16380, 16391), body);
+    }
+
+    @Test
+    public void originWithoutRanges_isReadThrough() throws IOException {
+        long id = mProxy.add(mUrl.replace("track.mp3", "plain.mp3"));
+
+        byte[] body = get(mProxy.getUrl(id), "bytes=40000-", 206);
+        assertArrayEquals(Arrays.copyOfRange(mContent, 40000, mContent.length), body);
+        // the chunks before the range came with the body and are kept
+        assertTrue(mProxy.getCache().contains(key(), 0));
+        assertArrayEquals(mContent, get(mProxy.getUrl(id), null, 200));
+    }
+
+    @Test
+    public void rangeHeaders() throws IOException {
+        long id = mProxy.add(mUrl);
+        HttpURLConnection connection = open(mProxy.getUrl(id), "bytes=100-199");
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("bytes 100-199/100000", connection.getHeaderField("Content-Range"));
+        assertEquals(100, connection.getContentLength());
+        assertEquals("audio/mpeg", connection.getContentType());
+        connection.disconnect();
+
+        connection = open(mProxy.getUrl(id), "bytes=200000-");
+        assertEquals(416, connection.getResponseCode());
+        connection.disconnect();
+    }
+
+    @Test
+    public void prefetch_fillsTheStart() throws Exception {
+        long id = mProxy.add(mUrl);
+        mProxy.prefetch(id);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!mProxy.getCache().contains(key(), 1) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        int fetches = mRequests.get();
+        assertEquals(2, fetches);
+
+        get(mProxy.getUrl(id), "bytes=0-" + (2 * CHUNK - 1), 206);
+        assertEquals(2, mProxy.getHitCount());
+        assertEquals(0, mProxy.getMissCount());
+    }
+
+    @Test
+    public void cache_survivesTheProxy() throws IOException {
+        long id = mProxy.add(mUrl);
+        get(mProxy.getUrl(id), null, 200);
+        mProxy.shutdown();
+        int fetches = mRequests.get();
+
+        mProxy = newProxy();
+        long again = mProxy.add(mUrl);
+        assertArrayEquals(mContent, get(mProxy.getUrl(again), null, 200));
+        assertEquals(fetches, mRequests.get());
+        assertEquals(1.0, mProxy.getHitRatio(), 0);
+    }
+
+    @Test
+    public void unknownTrack_isNotFound() throws IOException {
+        long id = mProxy.add(mUrl);
+        HttpURLConnection connection = open(mProxy.getUrl(id).replace("/" + id, "/-99"), null);
+        assertEquals(404, connection.getResponseCode());
+        connection.disconnect();
+        assertNull(mProxy.getUrl(42));
+    }
+
+    @Test
+    public void originFailure_isBadGateway() throws IOException {
+        long id = mProxy.add(mUrl.replace("track.mp3", "missing.mp3"));
+        HttpURLConnection connection = open(mProxy.getUrl(id), null);
+        assertEquals(502, connection.getResponseCode());
+        connection.disconnect();
+    }
+
+    @Test
+    public void requestParsing() throws IOException {
+        StreamProxy.Request request = StreamProxy.readRequest(stream(
+                "GET /-5 HTTP/1.1\r\nHost: x\r\nRange: bytes=10-20\r\n\r\n"));
+        assertEquals(-5, request.id);
+        assertEquals(10, request.rangeStart);
+        assertEquals(20, request.rangeEnd);
+        assertFalse(request.head);
+
+        request = StreamProxy.readRequest(stream("HEAD /-2 HTTP/1.1\nrange: bytes=7-\n\n"));
+        assertTrue(request.head);
+        assertEquals(7, request.rangeStart);
+        assertEquals(-1, request.rangeEnd);
+
+        assertNull(StreamProxy.readRequest(stream("POST /-2 HTTP/1.1\r\n\r\n")));
+        assertNull(StreamProxy.readRequest(stream("GET /x HTTP/1.1\r\n\r\n")));
+        assertNull(StreamProxy.readRequest(stream("GET  HTTP/1.1\r\n\r\n")));
+        assertEquals(1234, StreamProxy.parseTotalLength("bytes 0-9/1234"));
+        assertEquals(-1, StreamProxy.parseTotalLength("bytes 0-9/*"));
+    }
+
+    private StreamProxy newProxy() throws IOException {
+        StreamProxy proxy = new StreamProxy(new ChunkCache(
+                new File(mFolder.getRoot(), "stream"), CHUNK, 1024 * 1024));
+        proxy.start();
+        return proxy;
+    }
+
+    /** The cache key of mUrl, found through the info file the proxy wrote. */
+    private String key() {
+        File[] infos = new File(mFolder.getRoot(), "stream").listFiles();
+        if (infos != null) {
+            for (File file : infos) {
+                if (file.getName().endsWith(".info")) {
+                    return file.getName().substring(0, file.getName().length() - 5);
+                }
+            }
+        }
+        return "";
+    }
+
+    private static HttpURLConnection open(String url, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+        return connection;
+    }
+
+    private static byte[] get(String url, String range, int status) throws IOException {
+        HttpURLConnection connection = open(url, range);
+        try {
+            assertEquals(status, connection.getResponseCode());
+            return readAll(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static InputStream stream(String text) throws IOException {
+        return new ByteArrayInputStream(text.getBytes("US-ASCII"));
+    }
+
+    /**
+     * Serves mContent with single byte ranges like a static file server, or the
+     * whole of it whatever the range.
+     */
+    private class RangeHandler implements HttpHandler {
+
+        private final boolean mRanges;
+
+        RangeHandler(boolean ranges) {
+            mRanges = ranges;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mRequests.incrementAndGet();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int from = 0;
+            int to = mContent.length - 1;
+            int status = 200;
+            if (mRanges && range != null && range.startsWith("bytes=")) {
+                String[] parts = range.substring(6).split("-", -1);
+                from = Integer.parseInt(parts[0]);
+                if (!parts[1].isEmpty()) {
+                    to = Math.min(to, Integer.parseInt(parts[1]));
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + from + "-" + to + "/" + mContent.length);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "audio/mpeg");
+            exchange.sendResponseHeaders(status, to - from + 1);
+            OutputStream out = exchange.getResponseBody();
+            out.write(mContent, from, to - from + 1);
+            out.close();
+        }
+    }
+}
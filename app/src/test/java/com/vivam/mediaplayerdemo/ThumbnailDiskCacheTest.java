@@ -0,0 +1,51 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void putGet() throws IOException {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mFolder.getRoot(), 1024);
+        assertNull(cache.get(1));
+        cache.put(1, new byte[]{1, 2, 3});
+        cache.put(2, ThumbnailDiskCache.NO_ARTWORK);
+
+        ThumbnailDiskCache reopened = new ThumbnailDiskCache(mFolder.getRoot(), 1024);
+        assertArrayEquals(new byte[]{1, 2, 3}, reopened.get(1));
+        assertSame(ThumbnailDiskCache.NO_ARTWORK, reopened.get(2));
+        assertEquals(3, reopened.getSizeInBytes());
+
+        reopened.remove(1);
+        assertNull(reopened.get(1));
+        assertEquals(0, reopened.getSizeInBytes());
+    }
+
+    @Test
+    public void overLimit_trimsLeastRecentlyUsed() throws IOException {
+        File dir = mFolder.getRoot();
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(dir, 400);
+        for (long id = 1; id <= 4; id++) {
+            cache.put(id, new byte[100]);
+            new File(dir, id + ".thumb").setLastModified(id * 100000);
+        }
+        cache.put(5, new byte[100]);
+
+        // trimmed to 300 bytes, oldest first
+        assertEquals(300, cache.getSizeInBytes());
+        assertNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(5));
+    }
+}
@@ -0,0 +1,44 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void burst_thenPacedByTheRate() {
+        TokenBucket bucket = new TokenBucket(1000, 500);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.tryAcquire(500, now));
+        long wait = bucket.tryAcquire(100, now);
+        assertEquals(SECOND / 10, wait, SECOND / 1000);
+
+        assertEquals(0, bucket.tryAcquire(100, now + wait));
+        // saved up while idle, but no more than the capacity
+        assertEquals(0, bucket.tryAcquire(500, now + 10 * SECOND));
+        assertTrue(bucket.tryAcquire(1, now + 10 * SECOND) > 0);
+    }
+
+    @Test
+    public void largeRequest_goesThroughWhenFull() {
+        TokenBucket bucket = new TokenBucket(1000, 100);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.tryAcquire(300, now));
+        // the debt is paid off before the next one
+        assertEquals(SECOND / 5 + SECOND / 100, bucket.tryAcquire(10, now), SECOND / 1000);
+    }
+
+    @Test
+    public void acquire_waits() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10000, 100);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            bucket.acquire(100);
+        }
+        // 500 tokens at 10000 per second
+        assertTrue(System.nanoTime() - start >= 45 * SECOND / 1000);
+    }
+}
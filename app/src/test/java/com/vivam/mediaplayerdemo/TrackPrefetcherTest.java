@@ -0,0 +1,165 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.*;
+
+public class TrackPrefetcherTest {
+
+    private final FakeSource mSource = new FakeSource();
+    private TrackPrefetcher mPrefetcher;
+
+    @After
+    public void tearDown() {
+        if (mPrefetcher != null) {
+            mPrefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void upcoming_areReadWithinTheBudget() throws Exception {
+        mPrefetcher = new TrackPrefetcher(mSource, 1000, 2500, fastRate());
+        mPrefetcher.setUpcoming(new long[] {1, 2, 3});
+        awaitIdle(mPrefetcher);
+
+        assertEquals(list(1, 2), mSource.opened);
+        assertEquals(2000, mPrefetcher.getBytesRead());
+        assertEquals(2, mPrefetcher.getWarmedCount());
+        assertTrue(mPrefetcher.isWarm(1));
+        assertFalse(mPrefetcher.isWarm(3));
+        assertEquals(2, mPrefetcher.getReadTime().getCount());
+    }
+
+    @Test
+    public void warmTracks_areNotReadAgain() throws Exception {
+        mPrefetcher = new TrackPrefetcher(mSource, 1000, 10000, fastRate());
+        mPrefetcher.setUpcoming(new long[] {1, 2});
+        awaitIdle(mPrefetcher);
+        mPrefetcher.setUpcoming(new long[] {2, 3});
+        awaitIdle(mPrefetcher);
+
+        assertEquals(list(1, 2, 3), mSource.opened);
+    }
+
+    @Test
+    public void jump_cancelsTracksNoLongerUpcoming() throws Exception {
+        mSource.gate = new Semaphore(0);
+        mPrefetcher = new TrackPrefetcher(mSource, 4000, 10000, fastRate());
+        mPrefetcher.setUpcoming(new long[] {1});
+        mSource.gate.release();
+        while (mPrefetcher.getBytesRead() == 0) {
+            Thread.sleep(1);
+        }
+        mPrefetcher.setUpcoming(new long[] {2});
+        mSource.gate.release(100);
+        awaitIdle(mPrefetcher);
+
+        assertEquals(1, mPrefetcher.getCancelledCount());
+        assertFalse(mPrefetcher.isWarm(1));
+        assertTrue(mPrefetcher.isWarm(2));
+        assertEquals(list(1, 2), mSource.opened);
+    }
+
+    @Test
+    public void disabled_readsNothing() throws Exception {
+        mPrefetcher = new TrackPrefetcher(mSource, 1000, 10000, fastRate());
+        mPrefetcher.setEnabled(false);
+        mPrefetcher.setUpcoming(new long[] {1, 2});
+        awaitIdle(mPrefetcher);
+        assertTrue(mSource.opened.isEmpty());
+
+        mPrefetcher.setEnabled(true);
+        awaitIdle(mPrefetcher);
+        assertEquals(list(1, 2), mSource.opened);
+        mPrefetcher.setEnabled(false);
+        assertFalse(mPrefetcher.isWarm(1));
+    }
+
+    @Test
+    public void failures_andSkippedTracks_areNotRetried() throws Exception {
+        mSource.failingId = 2;
+        mSource.skippedId = 3;
+        mPrefetcher = new TrackPrefetcher(mSource, 1000, 10000, fastRate());
+        mPrefetcher.setUpcoming(new long[] {1, 2, 3, 4});
+        awaitIdle(mPrefetcher);
+        mPrefetcher.setUpcoming(new long[] {2, 3, 4});
+        awaitIdle(mPrefetcher);
+
+        assertEquals(list(1, 2, 3, 4), mSource.opened);
+        assertEquals(1, mPrefetcher.getFailedCount());
+        assertEquals(2, mPrefetcher.getWarmedCount());
+    }
+
+    @Test
+    public void reads_arePaced() throws Exception {
+        mPrefetcher = new TrackPrefetcher(mSource, 20000, 40000, new TokenBucket(200000, 16384));
+        long start = System.nanoTime();
+        mPrefetcher.setUpcoming(new long[] {1, 2});
+        awaitIdle(mPrefetcher);
+
+        assertEquals(40000, mPrefetcher.getBytesRead());
+        // all but the first burst at 200KB/s
+        assertTrue(System.nanoTime() - start >= 100 * 1000000L);
+    }
+
+    private static TokenBucket fastRate() {
+        return new TokenBucket(1L << 40, 1 << 20);
+    }
+
+    private static void awaitIdle(TrackPrefetcher prefetcher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!prefetcher.isIdle() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(prefetcher.isIdle());
+    }
+
+    private static List<Long> list(long... ids) {
+        List<Long> list = new ArrayList<Long>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static class FakeSource implements TrackPrefetcher.Source {
+
+        final List<Long> opened = Collections.synchronizedList(new ArrayList<Long>());
+        volatile long failingId = -1;
+        volatile long skippedId = -1;
+        // a permit per read when set
+        volatile Semaphore gate;
+
+        @Override
+        public InputStream open(long id) throws IOException {
+            opened.add(id);
+            if (id == failingId) {
+                throw new IOException("unreadable");
+            }
+            if (id == skippedId) {
+                return null;
+            }
+            return new ByteArrayInputStream(new byte[50000]) {
+
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    Semaphore gate = FakeSource.this.gate;
+                    if (gate != null) {
+                        gate.acquireUninterruptibly();
+                    }
+                    // small reads, so that a jump is noticed in between
+                    return super.read(b, off, Math.min(len, 1000));
+                }
+            };
+        }
+    }
+}
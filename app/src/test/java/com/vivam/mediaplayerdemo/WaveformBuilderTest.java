@@ -0,0 +1,81 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class WaveformBuilderTest {
+
+    @Test
+    public void slices_followTheEnvelope() {
+        // a second of silence, then a second of a loud sine, long enough to be halved
+        short[] silence = new short[8000 * 2];
+        short[] loud = LoudnessMeterTest.sine(8000, 2, 440, 0.9, 1);
+        WaveformBuilder builder = new WaveformBuilder(100);
+        builder.setChannelCount(2);
+        builder.process(silence, 0, silence.length);
+        builder.process(ShortBuffer.wrap(loud));
+        Waveform waveform = builder.build(7, 42);
+
+        assertEquals(7, waveform.getId());
+        assertEquals(42, waveform.getDateModified());
+        assertEquals(100, waveform.size());
+        for (int i = 0; i < 45; i++) {
+            assertEquals(0, waveform.getMin(i));
+            assertEquals(0, waveform.getMax(i));
+        }
+        for (int i = 55; i < 100; i++) {
+            assertTrue(waveform.getMax(i) > 100);
+            assertTrue(waveform.getMin(i) < -100);
+        }
+        assertEquals(115, waveform.getPeak(), 1);
+    }
+
+    @Test
+    public void shortTrack_fillsEverySlice() {
+        short[] samples = {1000, -1000, 8000, -8000, 16000, -16000};
+        WaveformBuilder builder = new WaveformBuilder(50);
+        builder.setChannelCount(1);
+        builder.process(samples, 0, samples.length);
+        Waveform waveform = builder.build(1, 1);
+
+        assertEquals(50, waveform.size());
+        assertFalse(waveform.isFailed());
+        assertEquals(16000 >> 8, waveform.getMax(49));
+        assertEquals(-16000 >> 8, waveform.getMin(0));
+    }
+
+    @Test
+    public void nothingDecoded_isFailed() {
+        assertTrue(new WaveformBuilder(10).build(1, 1).isFailed());
+    }
+
+    @Test
+    public void encode_roundTrips() {
+        short[] samples = LoudnessMeterTest.sine(8000, 1, 100, 0.5, 3);
+        WaveformBuilder builder = new WaveformBuilder(WaveformGenerator.SLICES);
+        builder.setChannelCount(1);
+        builder.process(samples, 0, samples.length);
+        Waveform waveform = builder.build(3, 4);
+
+        byte[] data = waveform.encode();
+        assertTrue(data.length < 2 * 1024);
+        Waveform decoded = Waveform.decode(data);
+        assertEquals(3, decoded.getId());
+        assertEquals(4, decoded.getDateModified());
+        assertEquals(waveform.size(), decoded.size());
+        for (int i = 0; i < waveform.size(); i++) {
+            assertEquals(waveform.getMin(i), decoded.getMin(i));
+            assertEquals(waveform.getMax(i), decoded.getMax(i));
+        }
+        assertTrue(Waveform.decode(Waveform.failed(3, 4).encode()).isFailed());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsGarbage() {
+        Waveform.decode(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28});
+    }
+}
@@ -0,0 +1,154 @@
+package com.vivam.mediaplayerdemo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WaveformGeneratorTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ThumbnailDiskCache mStore;
+    private FakeDecoder mDecoder;
+    private WaveformGenerator mGenerator;
+    private final BlockingQueue<Waveform> mDelivered = new ArrayBlockingQueue<Waveform>(16);
+    private final WaveformGenerator.Listener mListener = new WaveformGenerator.Listener() {
+
+        @Override
+        public void onWaveform(MusicBean music, Waveform waveform) {
+            assertEquals(music.getId(), waveform.getId());
+            mDelivered.add(waveform);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mStore = new ThumbnailDiskCache(new File(mFolder.getRoot(), "waveform"), 1024 * 1024);
+        mDecoder = new FakeDecoder();
+        mGenerator = new WaveformGenerator(mStore, mDecoder);
+    }
+
+    @After
+    public void tearDown() {
+        mGenerator.shutdown();
+    }
+
+    @Test
+    public void library_isDecodedOnce_thenRequestedFromTheStore() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 50);
+        mGenerator.enqueue(library);
+        mGenerator.enqueue(library.subList(0, 10));
+        drain(mGenerator, 50);
+        assertEquals(50, mGenerator.getGeneratedCount());
+        assertEquals(50, new HashSet<Long>(mDecoder.decoded).size());
+
+        WaveformGenerator reopened = new WaveformGenerator(mStore, mDecoder);
+        reopened.request(library.get(6), mListener);
+        Waveform waveform = mDelivered.poll(5, TimeUnit.SECONDS);
+        assertEquals(WaveformGenerator.SLICES, waveform.size());
+        assertEquals(1, reopened.getCachedCount());
+        assertEquals(50, mDecoder.decoded.size());
+        reopened.shutdown();
+    }
+
+    @Test
+    public void changedFile_isDecodedAgain() throws Exception {
+        MusicBean music = PlayQueueTest.musicList(1, 1).get(0);
+        mGenerator.request(music, mListener);
+        mDelivered.poll(5, TimeUnit.SECONDS);
+        music.setDateModified(music.getDateModified() + 1);
+        mGenerator.request(music, mListener);
+
+        assertEquals(music.getDateModified(),
+                mDelivered.poll(5, TimeUnit.SECONDS).getDateModified());
+        assertEquals(2, mDecoder.decoded.size());
+    }
+
+    @Test
+    public void request_preemptsTheLibrary() throws Exception {
+        List<MusicBean> library = PlayQueueTest.musicList(1, 3);
+        mDecoder.blockingId = 1;
+        mGenerator.enqueue(library);
+        assertTrue(mDecoder.blocked.await(5, TimeUnit.SECONDS));
+
+        MusicBean playing = PlayQueueTest.musicList(100, 1).get(0);
+        mGenerator.request(playing, mListener);
+        assertEquals(100, mDelivered.poll(5, TimeUnit.SECONDS).getId());
+        drain(mGenerator, 4);
+
+        assertEquals(1, mGenerator.getPreemptedCount());
+        // the interrupted track goes on right after the request
+        List<Long> expected = new ArrayList<Long>();
+        Collections.addAll(expected, 1L, 100L, 1L, 2L, 3L);
+        assertEquals(expected, mDecoder.decoded);
+    }
+
+    @Test
+    public void failures_areStored() throws Exception {
+        MusicBean music = PlayQueueTest.musicList(5, 1).get(0);
+        mDecoder.failingId = 5;
+        mGenerator.request(music, mListener);
+        assertTrue(mDelivered.poll(5, TimeUnit.SECONDS).isFailed());
+        mGenerator.request(music, mListener);
+        assertTrue(mDelivered.poll(5, TimeUnit.SECONDS).isFailed());
+
+        assertEquals(1, mDecoder.decoded.size());
+        assertEquals(1, mGenerator.getFailedCount());
+        assertEquals(1, mGenerator.getCachedCount());
+    }
+
+    private static void drain(WaveformGenerator generator, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (generator.getGeneratedCount() + generator.getFailedCount()
+                + generator.getCachedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static class FakeDecoder implements WaveformGenerator.Decoder {
+
+        private static final short[] SINE = LoudnessMeterTest.sine(8000, 2, 440, 0.5, 1);
+
+        final List<Long> decoded = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        volatile long failingId = -1;
+        // decoded until interrupted, the first time only
+        volatile long blockingId = -1;
+
+        @Override
+        public void decode(MusicBean music, WaveformBuilder builder) throws IOException {
+            decoded.add(music.getId());
+            if (music.getId() == failingId) {
+                throw new IOException("unreadable");
+            }
+            if (music.getId() == blockingId) {
+                blockingId = -1;
+                blocked.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            builder.setChannelCount(2);
+            builder.process(SINE, 0, SINE.length);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commands per second through {@link CommandBus}: a flush per command, the shape
+ * of the one intent per command path, against a flush per burst of commands.
+ * The receiver checks sequence numbers like the service does but applies nothing.
+ * <p>
+ * startService() needs a device, the latency of both paths as the service sees
+ * it is in its dumpsys, "command via intent" and "command via binder".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBusBenchmark {
+
+    private static final int BURST = 16;
+    // nothing in a row that the bus folds away
+    private static final int[] MIXED = {
+            PlayerCommand.PAUSE, PlayerCommand.SEEK, PlayerCommand.RESUME, PlayerCommand.SEEK
+    };
+
+    private CommandBus mBus;
+    private Blackhole mBlackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        mBlackhole = blackhole;
+        // flushed by the benchmarks themselves
+        mBus = new CommandBus(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+            }
+        });
+        mBus.setReceiver(new CommandBus.Receiver() {
+
+            private long mApplied;
+
+            @Override
+            public long apply(List<PlayerCommand> batch) {
+                for (int i = 0; i < batch.size(); i++) {
+                    PlayerCommand command = batch.get(i);
+                    if (command.getSequence() > mApplied) {
+                        mBlackhole.consume(command.getArgument());
+                        mApplied = command.getSequence();
+                    }
+                }
+                return mApplied;
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long flushPerCommand() {
+        for (int i = 0; i < BURST; i++) {
+            mBus.post(MIXED[i % MIXED.length], i);
+            mBus.flush();
+        }
+        return mBus.getAcknowledgedSequence();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long flushPerBurst() {
+        for (int i = 0; i < BURST; i++) {
+            mBus.post(MIXED[i % MIXED.length], i);
+        }
+        mBus.flush();
+        return mBus.getAcknowledgedSequence();
+    }
+
+    /**
+     * Seek keys held down: the burst reaches the receiver as one seek.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long flushPerSeekBurst() {
+        for (int i = 0; i < BURST; i++) {
+            mBus.post(PlayerCommand.SEEK, i * 1000L);
+        }
+        mBus.flush();
+        return mBus.getAcknowledgedSequence();
+    }
+}
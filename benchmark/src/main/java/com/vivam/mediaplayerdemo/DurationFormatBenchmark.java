@@ -0,0 +1,62 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MediaUtils#dateFormat}, the allocation free {@link DurationFormatter} path
+ * and the {@code SimpleDateFormat} version dateFormat used to be. Run with
+ * {@code -prof gc} for allocations per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationFormatBenchmark {
+
+    private final long[] mDurations = new long[1024];
+    private final char[] mChars = new char[DurationFormatter.MAX_LENGTH];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < mDurations.length; i++) {
+            mDurations[i] = Libraries.duration(i);
+        }
+    }
+
+    @Benchmark
+    public String dateFormat() {
+        return MediaUtils.dateFormat(nextDuration());
+    }
+
+    @Benchmark
+    public int formatIntoChars() {
+        return DurationFormatter.format(nextDuration(), mChars, 0);
+    }
+
+    @Benchmark
+    public String legacySimpleDateFormat() {
+        long millis = nextDuration();
+        String pattern = millis < 3600000 ? "mm:ss" : "HH:mm:ss";
+        return new SimpleDateFormat(pattern).format(new Date(millis));
+    }
+
+    private long nextDuration() {
+        return mDurations[mNext++ & (mDurations.length - 1)];
+    }
+}
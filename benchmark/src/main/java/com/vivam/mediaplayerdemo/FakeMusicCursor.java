@@ -0,0 +1,259 @@
+package com.vivam.mediaplayerdemo;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+
+/**
+ * In-memory cursor over {@link MediaUtils#MUSIC_PROJECTION}, stands in for the
+ * MediaStore query so that reading the library can be measured without a device.
+ * <p>
+ * Implements {@link Cursor} directly, AbstractCursor creates a Bundle and that
+ * needs the native runtime.
+ */
+class FakeMusicCursor implements Cursor {
+
+    private final long[] mIds;
+    private final String[] mTitles;
+    private final long[] mDurations;
+    private final long[] mDatesModified;
+    private int mPosition = -1;
+    private boolean mClosed;
+
+    FakeMusicCursor(int size) {
+        mIds = new long[size];
+        mTitles = new String[size];
+        mDurations = new long[size];
+        mDatesModified = new long[size];
+        for (int i = 0; i < size; i++) {
+            MusicBean music = Libraries.music(i);
+            mIds[i] = music.getId();
+            mTitles[i] = music.getTitle();
+            mDurations[i] = music.getDuration();
+            mDatesModified[i] = music.getDateModified();
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mIds.length;
+    }
+
+    @Override
+    public int getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(mPosition + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        mPosition = Math.max(-1, Math.min(position, mIds.length));
+        return mPosition >= 0 && mPosition < mIds.length;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(mIds.length - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(mPosition + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(mPosition - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return mPosition == 0 && mIds.length > 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        return mPosition == mIds.length - 1 && mIds.length > 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return mPosition < 0 || mIds.length == 0;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return mPosition >= mIds.length || mIds.length == 0;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        for (int i = 0; i < MediaUtils.MUSIC_PROJECTION.length; i++) {
+            if (MediaUtils.MUSIC_PROJECTION[i].equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("no column " + columnName);
+        }
+        return index;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return MediaUtils.MUSIC_PROJECTION[columnIndex];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return MediaUtils.MUSIC_PROJECTION.clone();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return MediaUtils.MUSIC_PROJECTION.length;
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        return columnIndex == 1 ? mTitles[mPosition] : Long.toString(getLong(columnIndex));
+    }
+
+    @Override
+    public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        switch (columnIndex) {
+            case 0:
+                return mIds[mPosition];
+            case 2:
+                return mDurations[mPosition];
+            case 3:
+                return mDatesModified[mPosition];
+            default:
+                throw new IllegalArgumentException("not a number column: " + columnIndex);
+        }
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        return getLong(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        return getLong(columnIndex);
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        return columnIndex == 1 ? FIELD_TYPE_STRING : FIELD_TYPE_INTEGER;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public void deactivate() {
+    }
+
+    @Override
+    @Deprecated
+    public boolean requery() {
+        return !mClosed;
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    @Override
+    public void registerContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void unregisterContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void setNotificationUri(ContentResolver cr, Uri uri) {
+    }
+
+    @Override
+    public Uri getNotificationUri() {
+        return null;
+    }
+
+    @Override
+    public boolean getWantsAllOnMoveCalls() {
+        return false;
+    }
+
+    @Override
+    public void setExtras(Bundle extras) {
+    }
+
+    @Override
+    public Bundle getExtras() {
+        return null;
+    }
+
+    @Override
+    public Bundle respond(Bundle extras) {
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.vivam.mediaplayerdemo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic libraries shared by the benchmarks, the same size always gives the
+ * same tracks.
+ */
+final class Libraries {
+
+    /** Sizes every library benchmark runs with, JMH takes them as strings. */
+    static final String SMALL = "100";
+    static final String LARGE = "10000";
+    static final String HUGE = "100000";
+
+    private Libraries() {
+    }
+
+    static MusicBean music(int index) {
+        MusicBean music = new MusicBean();
+        music.setId(1000 + index);
+        music.setTitle(title(index));
+        music.setDuration(duration(index));
+        music.setDateModified(1450000000L + index);
+        return music;
+    }
+
+    static List<MusicBean> musicList(int size) {
+        ArrayList<MusicBean> list = new ArrayList<MusicBean>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(music(i));
+        }
+        return list;
+    }
+
+    static String title(int index) {
+        return "Some Artist - Track Title Number " + index;
+    }
+
+    /** Between 0 and two hours, mostly under one. */
+    static long duration(int index) {
+        return (index * 7919L) % 7200000;
+    }
+}
@@ -0,0 +1,45 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the library from a cursor, the part of
+ * {@link MediaUtils#getLocalMusicList} that does not depend on the MediaStore.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryLoadBenchmark {
+
+    @Param({Libraries.SMALL, Libraries.LARGE, Libraries.HUGE})
+    public int size;
+
+    private FakeMusicCursor mCursor;
+
+    @Setup
+    public void setUp() {
+        mCursor = new FakeMusicCursor(size);
+    }
+
+    @Benchmark
+    public ArrayList<MusicBean> readMusicList() {
+        mCursor.moveToPosition(-1);
+        return MediaUtils.readMusicList(mCursor);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoudnessMeter} over ten seconds of 44.1kHz audio, the measuring part of
+ * a loudness scan with the decoder left out. Stereo runs at several hundred times
+ * realtime per core on a desktop JVM, the decoder is what bounds a scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoudnessMeterBenchmark {
+
+    private static final int RATE = 44100;
+    private static final int SECONDS = 10;
+
+    @Param({"1", "2", "6"})
+    public int channels;
+
+    private short[] mSamples;
+
+    @Setup
+    public void setUp() {
+        mSamples = new short[RATE * SECONDS * channels];
+        Random random = new Random(42);
+        for (int i = 0; i < mSamples.length; i++) {
+            mSamples[i] = (short) (random.nextGaussian() * 4000);
+        }
+    }
+
+    @Benchmark
+    public double measure() {
+        LoudnessMeter meter = new LoudnessMeter(RATE, channels);
+        meter.process(mSamples, 0, mSamples.length);
+        return meter.getIntegratedLoudness();
+    }
+}
@@ -0,0 +1,106 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattening tracks to bytes and back with {@link MusicBeanCodec}, the form they
+ * take in the library index and when handed over in a bundle, against the Java
+ * serialization MusicBean used to go through. Parcel needs the native runtime, so
+ * the Parcelable path is not covered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MusicBeanTransferBenchmark {
+
+    // 1 is a single EXTRA_MUSIC
+    @Param({"1", Libraries.SMALL, "1000", Libraries.LARGE, Libraries.HUGE})
+    public int size;
+
+    private List<MusicBean> mList;
+    private byte[] mEncoded;
+    private ArrayList<SerializableMusicBean> mSerializable;
+    private byte[] mSerialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        mList = Libraries.musicList(size);
+        mEncoded = MusicBeanCodec.encode(mList);
+        mSerializable = new ArrayList<SerializableMusicBean>(size);
+        for (MusicBean music : mList) {
+            mSerializable.add(new SerializableMusicBean(music));
+        }
+        mSerialized = serialize();
+        // the wire size does not change between iterations, JMH prints it with the fork's output
+        System.out.println("size " + size + ": flat " + mEncoded.length + " bytes, serialized "
+                + mSerialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return MusicBeanCodec.encode(mList);
+    }
+
+    @Benchmark
+    public ArrayList<MusicBean> decode() {
+        return MusicBeanCodec.decode(mEncoded);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(mSerializable);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(mSerialized));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Same shape as MusicBean was when it implemented Serializable. */
+    static class SerializableMusicBean implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+        private final String title;
+        private final long duration;
+
+        SerializableMusicBean(MusicBean music) {
+            id = music.getId();
+            title = music.getTitle();
+            duration = music.getDuration();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What MusicAdapter.onBindViewHolder adds on top of the views per row, before and
+ * after {@link MusicRows}, and the background work of a library reload: the
+ * {@link ListUpdate} diff and the new rows. The views themselves need a device.
+ * A frame of 16ms fits 16000000 divided by the bind time rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MusicListBindBenchmark {
+
+    @Param({Libraries.SMALL, Libraries.LARGE, Libraries.HUGE})
+    public int size;
+
+    private List<MusicBean> mList;
+    private MusicRows mRows;
+    private List<MusicBean> mReloaded;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mList = Libraries.musicList(size);
+        mRows = MusicRows.of(mList);
+        // a rescan that removed, changed and added a few tracks
+        ArrayList<MusicBean> reloaded = new ArrayList<MusicBean>(mList);
+        int step = Math.max(1, size / 10);
+        for (int i = step; i < reloaded.size() - 1; i += step) {
+            reloaded.remove(i);
+            MusicBean changed = Libraries.music(i + 1);
+            changed.setTitle("changed " + i);
+            reloaded.set(i, changed);
+        }
+        for (int i = 0; i < 10; i++) {
+            reloaded.add(Libraries.music(size + i));
+        }
+        mReloaded = reloaded;
+    }
+
+    /** What onBindViewHolder did per row before MusicRows. */
+    @Benchmark
+    public int legacyBind() {
+        final MusicBean item = mList.get(nextPosition());
+        Runnable listener = new Runnable() {
+
+            @Override
+            public void run() {
+                item.getId();
+            }
+        };
+        long millis = item.getDuration();
+        String duration = new SimpleDateFormat(millis < 3600000 ? "mm:ss" : "HH:mm:ss")
+                .format(new Date(millis));
+        return item.getTitle().length() + duration.length() + (listener != null ? 1 : 0);
+    }
+
+    @Benchmark
+    public long rowsBind() {
+        int position = nextPosition();
+        char[] chars = mRows.getDurationChars();
+        return mRows.get(position).getTitle().length() + mRows.getId(position)
+                + chars[mRows.getDurationOffset(position)] + mRows.getDurationLength(position);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ListUpdate diff() {
+        return ListUpdate.compute(mList, mReloaded);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public MusicRows rowsOf() {
+        return MusicRows.of(mReloaded);
+    }
+
+    private int nextPosition() {
+        int position = mNext++;
+        if (mNext == size) {
+            mNext = 0;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,80 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The part of a restart MediaPlayService does on the main thread: loading the
+ * stored playback state and putting the queue back, which has to fit in a frame.
+ * The file holds a snapshot followed by an hour of checkpoints and a few edits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackStateRestoreBenchmark {
+
+    private static final Executor DIRECT = new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({Libraries.SMALL, Libraries.LARGE, Libraries.HUGE})
+    public int size;
+
+    private File mFile;
+    private long mCurrentId;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("playback_state", null);
+        mFile.delete();
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = Libraries.music(i).getId();
+        }
+        PlaybackStateStore store = new PlaybackStateStore(mFile, DIRECT);
+        store.setQueue(ids);
+        for (int i = 0; i < 720; i++) {
+            store.checkpoint(ids[i % size], i * 5000L);
+        }
+        store.add(0, Libraries.music(size).getId());
+        store.move(0, size / 2);
+        mCurrentId = ids[size / 3];
+        store.checkpoint(mCurrentId, 12345);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public PlayQueue restore() {
+        PlaybackStateStore.State state = new PlaybackStateStore(mFile, DIRECT).load();
+        PlayQueue queue = new PlayQueue();
+        queue.setAll(state.getIds());
+        queue.moveTo(state.getCurrentId());
+        return queue;
+    }
+}
@@ -0,0 +1,81 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Next track from an arbitrary position: {@link PlayQueue} against the linear
+ * id scan MediaPlayService.getCurrentIndex() used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueNavigationBenchmark {
+
+    @Param({Libraries.SMALL, Libraries.LARGE, Libraries.HUGE})
+    public int size;
+
+    private List<MusicBean> mList;
+    private PlayQueue mQueue;
+    private long[] mTargets;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mList = Libraries.musicList(size);
+        mQueue = new PlayQueue();
+        mQueue.setAll(mList);
+        Random random = new Random(3);
+        mTargets = new long[1024];
+        for (int i = 0; i < mTargets.length; i++) {
+            mTargets[i] = mList.get(random.nextInt(size)).getId();
+        }
+    }
+
+    @Benchmark
+    public MusicBean linearScanNext() {
+        long currentId = nextTarget();
+        int currentIndex = -1;
+        for (MusicBean m : mList) {
+            if (currentId == m.getId()) {
+                currentIndex = mList.indexOf(m);
+                break;
+            }
+        }
+        if (++currentIndex == mList.size()) {
+            currentIndex = 0;
+        }
+        return mList.get(currentIndex);
+    }
+
+    @Benchmark
+    public MusicBean queueMoveToNext() {
+        mQueue.moveTo(nextTarget());
+        return mQueue.moveToNext();
+    }
+
+    @Benchmark
+    public MusicBean queueNext() {
+        return mQueue.moveToNext();
+    }
+
+    private long nextTarget() {
+        return mTargets[mNext++ & (mTargets.length - 1)];
+    }
+}
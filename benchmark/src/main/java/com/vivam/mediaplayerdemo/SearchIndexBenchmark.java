@@ -0,0 +1,74 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a {@link SearchIndex} over the library and querying it, from a one
+ * letter query matching most titles to one matching none.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+    // MusicSearcher.MAX_RESULTS
+    private static final int MAX_RESULTS = 500;
+    private static final String[] WORDS = {"love", "night", "blue", "moon", "caf\u00e9", "remix",
+            "the", "song", "dance", "heart", "fire", "rain", "city", "dream", "ni\u00f1a", "summer",
+            "road", "light", "live", "version"};
+
+    @Param({Libraries.LARGE, Libraries.HUGE})
+    public int size;
+
+    @Param({"a", "lo", "blue moon", "caf", "zz", "track 4711"})
+    public String query;
+
+    private List<MusicBean> mList;
+    private SearchIndex mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(5);
+        mList = Libraries.musicList(size);
+        for (MusicBean music : mList) {
+            StringBuilder title = new StringBuilder();
+            int count = 2 + random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            title.append("track ").append(music.getId());
+            music.setTitle(title.toString());
+        }
+        mIndex = build();
+    }
+
+    @Benchmark
+    public SearchIndex build() {
+        SearchIndex index = new SearchIndex();
+        index.addAll(mList);
+        return index;
+    }
+
+    @Benchmark
+    public ArrayList<MusicBean> search() {
+        return mIndex.search(query, MAX_RESULTS, null);
+    }
+}
@@ -0,0 +1,53 @@
+package com.vivam.mediaplayerdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WaveformBuilder} over ten seconds of 44.1kHz stereo, the summarizing part
+ * of generating a waveform with the decoder left out. It is a compare per sample,
+ * far below what decoding the same audio costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveformBuilderBenchmark {
+
+    private static final int RATE = 44100;
+    private static final int SECONDS = 10;
+    // WaveformGenerator.SLICES, which is not part of the benchmark build
+    private static final int SLICES = 720;
+
+    private short[] mSamples;
+
+    @Setup
+    public void setUp() {
+        mSamples = new short[RATE * SECONDS * 2];
+        Random random = new Random(42);
+        for (int i = 0; i < mSamples.length; i++) {
+            mSamples[i] = (short) (random.nextGaussian() * 4000);
+        }
+    }
+
+    @Benchmark
+    public Waveform build() {
+        WaveformBuilder builder = new WaveformBuilder(SLICES);
+        builder.setChannelCount(2);
+        builder.process(mSamples, 0, mSamples.length);
+        return builder.build(1, 1);
+    }
+}